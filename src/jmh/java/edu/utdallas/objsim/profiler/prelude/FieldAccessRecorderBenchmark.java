@@ -0,0 +1,114 @@
+package edu.utdallas.objsim.profiler.prelude;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of recording field accesses and of entering/leaving patched
+ * methods in {@link FieldAccessRecorder} against {@link LegacyFieldAccessRecorder}.
+ * Each trial runs in a fresh JVM, so the static state of one recorder does not leak
+ * into the trials of the other.
+ * Run with <code>mvn -P benchmark test-compile exec:exec</code>.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class FieldAccessRecorderBenchmark {
+    private static final int FIELDS_COUNT = 4096;
+
+    @Param({"50"})
+    public int knownMethods; // patched methods entered at least once
+
+    @Param({"1", "2", "8"})
+    public int activeFrames; // patched methods on the stack while fields are accessed
+
+    private int fieldIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int methodIndex = 0; methodIndex < this.knownMethods; methodIndex++) {
+            FieldAccessRecorder.inc(methodIndex);
+            FieldAccessRecorder.dec(methodIndex);
+            LegacyFieldAccessRecorder.inc(methodIndex);
+            LegacyFieldAccessRecorder.dec(methodIndex);
+        }
+        for (int methodIndex = 0; methodIndex < this.activeFrames; methodIndex++) {
+            FieldAccessRecorder.inc(methodIndex);
+            LegacyFieldAccessRecorder.inc(methodIndex);
+        }
+        this.fieldIndex = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (int methodIndex = this.activeFrames - 1; methodIndex >= 0; methodIndex--) {
+            FieldAccessRecorder.dec(methodIndex);
+            LegacyFieldAccessRecorder.dec(methodIndex);
+        }
+    }
+
+    private int nextFieldIndex() {
+        this.fieldIndex = (this.fieldIndex + 1) % FIELDS_COUNT;
+        return this.fieldIndex;
+    }
+
+    @Benchmark
+    public void registerFieldAccess() {
+        FieldAccessRecorder.registerFieldAccess(nextFieldIndex());
+    }
+
+    @Benchmark
+    public void registerFieldAccessLegacy() {
+        LegacyFieldAccessRecorder.registerFieldAccess(nextFieldIndex());
+    }
+
+    @Benchmark
+    public void enterAndLeave() {
+        FieldAccessRecorder.inc(this.knownMethods - 1);
+        FieldAccessRecorder.dec(this.knownMethods - 1);
+    }
+
+    @Benchmark
+    public void enterAndLeaveLegacy() {
+        LegacyFieldAccessRecorder.inc(this.knownMethods - 1);
+        LegacyFieldAccessRecorder.dec(this.knownMethods - 1);
+    }
+}
@@ -0,0 +1,89 @@
+package edu.utdallas.objsim.profiler.prelude;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The field access recorder as it was before each thread kept its own stack of
+ * active patched methods: every field access walks the shared map of method entries.
+ * Kept only as the baseline of {@link FieldAccessRecorderBenchmark}.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas)
+ */
+public final class LegacyFieldAccessRecorder {
+    private static final int BITMAP_UNIT_SIZE = 1024;
+
+    private static final long[] BITMAP_TEMPLATE;
+
+    private static final Map<Integer, long[]> FIELD_ACCESS_BITMAP;
+
+    private static final Map<Integer, Integer> METHOD_ENTRIES;
+
+    private static int activeEntries; // total number of patched method frames on the stack
+
+    static {
+        METHOD_ENTRIES = new ConcurrentHashMap<>();
+        FIELD_ACCESS_BITMAP = new ConcurrentHashMap<>();
+        BITMAP_TEMPLATE = new long[BITMAP_UNIT_SIZE];
+        Arrays.fill(BITMAP_TEMPLATE, 0L);
+    }
+
+    private LegacyFieldAccessRecorder() { }
+
+    public static void inc(final int methodIndex) {
+        long[] bitmap = FIELD_ACCESS_BITMAP.get(methodIndex);
+        if (bitmap == null) {
+            bitmap = BITMAP_TEMPLATE.clone();
+            FIELD_ACCESS_BITMAP.put(methodIndex, bitmap);
+        }
+        Integer entries = METHOD_ENTRIES.get(methodIndex);
+        if (entries == null) {
+            entries = 0;
+        }
+        METHOD_ENTRIES.put(methodIndex, 1 + entries);
+        activeEntries++;
+    }
+
+    public static void dec(final int methodIndex) {
+        Integer entries = METHOD_ENTRIES.get(methodIndex);
+        if (entries == null) {
+            throw new IllegalArgumentException();
+        }
+        METHOD_ENTRIES.put(methodIndex, entries - 1);
+        activeEntries--;
+    }
+
+    public static void registerFieldAccess(final int fieldIndex) {
+        if (activeEntries <= 0) {
+            return; // no patched method on the stack
+        }
+        for (final Map.Entry<Integer, Integer> entry : METHOD_ENTRIES.entrySet()) {
+            if (entry.getValue() > 0) {
+                final long[] bitmap = FIELD_ACCESS_BITMAP.get(entry.getKey());
+                final int index = (fieldIndex / Long.SIZE) % bitmap.length;
+                bitmap[index] |= 1L << (fieldIndex % Long.SIZE);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package edu.utdallas.objsim;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.source.PatchCompiler;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Input source backed by an input CSV file, as produced by the external input file
+ * generator. Source-level patches are compiled all at once upon the first request for
+ * patches, while patched class files are loaded one patch at a time.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class CSVInputSource implements InputSource {
+    private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT;
+
+    private final File inputCSVFile;
+
+    private final File sourceDirectory;
+
+    private final File baseDirectory;
+
+    private final String classPath;
+
+    private final String compilerTargetVersion;
+
+    CSVInputSource(final File inputCSVFile,
+                   final File sourceDirectory,
+                   final File baseDirectory,
+                   final String classPath,
+                   final String compilerTargetVersion) {
+        this.inputCSVFile = inputCSVFile;
+        this.sourceDirectory = sourceDirectory;
+        this.baseDirectory = baseDirectory;
+        this.classPath = classPath;
+        this.compilerTargetVersion = compilerTargetVersion;
+    }
+
+    private List<InputRecord> readRecords() throws IOException {
+        final List<InputRecord> records = new LinkedList<>();
+        try (final Reader fr = new FileReader(this.inputCSVFile);
+             final CSVParser parser = CSVParser.parse(fr, CSV_FORMAT)) {
+            for (final CSVRecord record : parser.getRecords()) {
+                records.add(InputRecord.fromCSVRecord(record));
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public Set<String> getTargetMethods() throws IOException {
+        final Set<String> targetMethods = new HashSet<>();
+        for (final InputRecord record : readRecords()) {
+            targetMethods.addAll(record.patchedMethods);
+        }
+        return targetMethods;
+    }
+
+    @Override
+    public Iterator<Patch> iterator() throws IOException {
+        final List<InputRecord> records = readRecords();
+        // source-level patches are compiled all at once
+        final Map<Integer, Map<String, String>> sources = new LinkedHashMap<>();
+        for (final InputRecord record : records) {
+            if (record.isSourceLevel()) {
+                try {
+                    sources.put(record.patchId, record.readSources(this.sourceDirectory, this.baseDirectory));
+                } catch (IllegalArgumentException e) {
+                    System.out.println("WARNING: Patch " + record.patchId + " is skipped: " + e.getMessage());
+                }
+            }
+        }
+        final Map<Integer, Map<String, byte[]>> compiledPatches = compileSourcePatches(sources);
+        final Iterator<InputRecord> rit = records.iterator();
+        return new Iterator<Patch>() {
+            private Patch nextPatch = advance();
+
+            private Patch advance() {
+                while (rit.hasNext()) {
+                    final InputRecord record = rit.next();
+                    if (!record.isSourceLevel()) {
+                        try {
+                            return record.toPatch();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e.getMessage(), e);
+                        }
+                    } else if (compiledPatches.containsKey(record.patchId)) {
+                        return record.toPatch(compiledPatches.get(record.patchId));
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.nextPatch != null;
+            }
+
+            @Override
+            public Patch next() {
+                if (this.nextPatch == null) {
+                    throw new NoSuchElementException();
+                }
+                final Patch patch = this.nextPatch;
+                this.nextPatch = advance();
+                return patch;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private Map<Integer, Map<String, byte[]>> compileSourcePatches(final Map<Integer, Map<String, String>> sources)
+            throws IOException {
+        if (sources.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        final PatchCompiler compiler = new PatchCompiler(this.classPath, this.compilerTargetVersion);
+        try {
+            return compiler.compile(sources);
+        } finally {
+            compiler.close();
+        }
+    }
+
+    @Override
+    public List<File> listInputFiles() throws IOException {
+        final List<File> inputFiles = new LinkedList<>();
+        inputFiles.add(this.inputCSVFile);
+        for (final InputRecord record : readRecords()) {
+            inputFiles.addAll(record.classFiles);
+        }
+        return inputFiles;
+    }
+}
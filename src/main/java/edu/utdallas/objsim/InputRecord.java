@@ -20,12 +20,19 @@ package edu.utdallas.objsim;
  * #L%
  */
 
+import edu.utdallas.objsim.commons.misc.NameUtils;
+import edu.utdallas.objsim.source.UnifiedDiff;
 import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.FileUtils;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -39,7 +46,7 @@ class InputRecord {
 
     final Set<String> patchedMethods; // full names
 
-    final Set<File> classFiles;
+    final Set<File> classFiles; // or source files, i.e. .java files and unified diffs
 
     final String groundTruthLabel;
 
@@ -73,4 +80,93 @@ class InputRecord {
         final String groundTruthLabel = record.get(4);
         return new InputRecord(patchId, patchedMethods, classFileNames, groundTruthLabel);
     }
+
+    /**
+     * @return <code>true</code> iff the patch is given in terms of patched Java files
+     *         or unified diffs, rather than class files
+     */
+    boolean isSourceLevel() {
+        boolean source = false;
+        boolean binary = false;
+        for (final File file : this.classFiles) {
+            final String name = file.getName();
+            if (name.endsWith(".java") || name.endsWith(".diff") || name.endsWith(".patch")) {
+                source = true;
+            } else {
+                binary = true;
+            }
+        }
+        if (source && binary) {
+            throw new IllegalArgumentException("patch " + this.patchId + " mixes source and class files");
+        }
+        return source;
+    }
+
+    /**
+     * Reads patched source code of a source-level patch. Diffs are applied to the
+     * files they refer to, which are looked up in the base directory and the source
+     * directory.
+     *
+     * @param sourceDirectory Source directory of the program
+     * @param baseDirectory Base directory of the program
+     * @return Compilation unit path --> patched source code
+     * @throws IOException In case of failure to read any of the files
+     */
+    Map<String, String> readSources(final File sourceDirectory, final File baseDirectory) throws IOException {
+        final Map<String, String> sources = new HashMap<>();
+        for (final File file : this.classFiles) {
+            if (!file.isFile()) {
+                throw new IllegalArgumentException("Invalid patch file " + file.getAbsolutePath());
+            }
+            if (file.getName().endsWith(".java")) {
+                sources.put(file.getPath(), FileUtils.readFileToString(file, Charset.defaultCharset()));
+                continue;
+            }
+            for (final UnifiedDiff diff : UnifiedDiff.parse(file)) {
+                final File original = locate(diff.getTargetPath(), sourceDirectory, baseDirectory);
+                String source = sources.get(original.getPath());
+                if (source == null) {
+                    source = FileUtils.readFileToString(original, Charset.defaultCharset());
+                }
+                sources.put(original.getPath(), diff.apply(source));
+            }
+        }
+        return sources;
+    }
+
+    private static File locate(final String path, final File sourceDirectory, final File baseDirectory) {
+        for (final File candidate : new File[] {new File(path),
+                new File(baseDirectory, path),
+                new File(sourceDirectory, path)}) {
+            if (candidate.isFile()) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("Cannot locate patched file " + path);
+    }
+
+    /**
+     * @param patchedClasses Class files obtained by compiling the patch
+     * @return The patch described by this record
+     */
+    Patch toPatch(final Map<String, byte[]> patchedClasses) {
+        return new Patch(this.patchId, patchedClasses, this.patchedMethods, this.groundTruthLabel);
+    }
+
+    /**
+     * Loads patched class files into memory.
+     *
+     * @return The patch described by this record
+     * @throws IOException In case of failure to read any of the class files
+     */
+    Patch toPatch() throws IOException {
+        final Map<String, byte[]> patchedClasses = new HashMap<>();
+        for (final File classFile : this.classFiles) {
+            if (!classFile.isFile()) {
+                throw new IllegalArgumentException("Invalid patch file " + classFile.getAbsolutePath());
+            }
+            patchedClasses.put(NameUtils.getClassName(classFile), FileUtils.readFileToByteArray(classFile));
+        }
+        return new Patch(this.patchId, patchedClasses, this.patchedMethods, this.groundTruthLabel);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package edu.utdallas.objsim;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A source of patches to be scored by ObjSim, e.g. an input CSV file or a PraPR
+ * report directory.
+ * Patches are supposed to be produced lazily, so that the whole set of patched
+ * class files need not reside in memory at the same time.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public interface InputSource {
+    /**
+     * @return Full names of all the methods modified by the patches of this source.
+     *         These are needed before scoring the first patch, as the prelude has to
+     *         record the fields accessed by these methods.
+     * @throws IOException In case of failure to read the input
+     */
+    Set<String> getTargetMethods() throws IOException;
+
+    /**
+     * @return An iterator over the patches, in the order of their priority. The iterator
+     *         may throw {@link IllegalStateException} in case of I/O errors.
+     * @throws IOException In case of failure to read the input
+     */
+    Iterator<Patch> iterator() throws IOException;
+
+    /**
+     * @return The files the patches depend on, e.g. the input CSV file and the
+     *         patched class files
+     * @throws IOException In case of failure to read the input
+     */
+    List<File> listInputFiles() throws IOException;
+}
@@ -21,16 +21,28 @@ package edu.utdallas.objsim;
  */
 
 import edu.utdallas.objectutils.Wrapped;
+import edu.utdallas.objsim.analysis.CallGraph;
+import edu.utdallas.objsim.analysis.CoveringTestsMinimizer;
+import edu.utdallas.objsim.analysis.FieldAccessAnalysis;
+import edu.utdallas.objsim.analysis.FieldAccessMode;
+import edu.utdallas.objsim.analysis.StaticCoverage;
+import edu.utdallas.objsim.commons.asm.ClassDiffUtils;
+import edu.utdallas.objsim.commons.classpath.ClassPathUtils;
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
 import edu.utdallas.objsim.commons.process.LoggerUtils;
 import edu.utdallas.objsim.commons.relational.MethodsDom;
+import edu.utdallas.objsim.constants.Params;
+import edu.utdallas.objsim.profiler.prelude.BlockCoverage;
+import edu.utdallas.objsim.profiler.prelude.CoverageIndex;
 import edu.utdallas.objsim.profiler.prelude.PreludeProfiler;
+import edu.utdallas.objsim.profiler.prelude.PreludeProfilerArguments;
 import edu.utdallas.objsim.profiler.prelude.PreludeProfilerResults;
+import edu.utdallas.objsim.profiler.primary.PatchSchemata;
 import edu.utdallas.objsim.profiler.primary.PrimaryProfiler;
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Triple;
 import org.pitest.classinfo.ClassByteArraySource;
@@ -40,6 +52,7 @@ import org.pitest.classpath.ClassPath;
 import org.pitest.classpath.CodeSource;
 import org.pitest.classpath.PathFilter;
 import org.pitest.classpath.ProjectClassPaths;
+import org.pitest.functional.Option;
 import org.pitest.functional.predicate.Predicate;
 import org.pitest.functional.prelude.Prelude;
 import org.pitest.mutationtest.config.DefaultCodePathPredicate;
@@ -53,33 +66,42 @@ import org.pitest.process.LaunchOptions;
 import org.pitest.process.ProcessArgs;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Entry point for our patch prioritization system!
+ * Instances of this class shall be created using {@link Builder}. Besides the usual
+ * CSV-based workflow, i.e. {@link ObjSimEntryPoint#run()}, the class offers an
+ * in-process API, i.e. {@link ObjSimEntryPoint#score(Collection, Iterator)}, through
+ * which patches given as byte arrays can be scored without any disk round-trip.
  *
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public class ObjSimEntryPoint {
     private static final CSVFormat CSV_FORMAT;
 
+    private static final int DEFAULT_CALL_GRAPH_DEPTH = 5;
+
+    private static final double DEFAULT_SAMPLING_CONFIDENCE = 0.95D;
+
     static {
         CSV_FORMAT = CSVFormat.DEFAULT.withRecordSeparator(System.lineSeparator());
     }
 
-    private final File classBuildDirectory;
-
     private final ClassPath classPath;
 
     private final ClassByteArraySource byteArraySource;
@@ -92,157 +114,727 @@ public class ObjSimEntryPoint {
 
     private final List<String> childJVMArgs;
 
-    private final File inputCSVFile;
-
-    public ObjSimEntryPoint(final File classBuildDirectory,
-                            final ClassPath classPath,
-                            final ClassByteArraySource byteArraySource,
-                            final Predicate<String> appClassFilter,
-                            final Predicate<String> testClassFilter,
-                            final File compatibleJREHome,
-                            final Collection<String> childJVMArgs,
-                            final File inputCSVFile) {
-        this.classBuildDirectory = classBuildDirectory;
-        this.classPath = classPath;
-        this.byteArraySource = byteArraySource;
-        this.appClassFilter = appClassFilter;
-        this.testClassFilter = testClassFilter;
-        this.compatibleJREHome = compatibleJREHome;
-        this.childJVMArgs = new ArrayList<>(childJVMArgs);
-        this.inputCSVFile = inputCSVFile;
+    private final InputSource inputSource;
+
+    private final File outputCSVFile;
+
+    private final File baseDirectory;
+
+    private final File scratchDirectory;
+
+    private final int maxSchemaSize;
+
+    private final boolean replayInvocations;
+
+    private final boolean differential;
+
+    private final boolean targetedPrelude;
+
+    private final FieldAccessMode fieldAccessMode;
+
+    private final int callGraphDepth;
+
+    private final boolean testPreselection;
+
+    private final boolean skipPrelude;
+
+    private final File failingTestsFile;
+
+    private final int preludeThreads;
+
+    private final boolean blockCoverage;
+
+    private final int maxCoveringTests;
+
+    private final int samplingBatchSize;
+
+    private final double samplingConfidence;
+
+    private ProcessArgs defaultProcessArgs;
+
+    private ObjSimEntryPoint(final Builder builder) {
+        this.classPath = builder.classPath;
+        this.byteArraySource = builder.byteArraySource == null
+                ? ClassPathUtils.createClassByteArraySource(builder.classPath)
+                : builder.byteArraySource;
+        this.appClassFilter = builder.appClassFilter;
+        this.testClassFilter = builder.testClassFilter;
+        this.compatibleJREHome = builder.compatibleJREHome;
+        this.childJVMArgs = new ArrayList<>(builder.childJVMArgs);
+        this.outputCSVFile = builder.outputCSVFile;
+        this.baseDirectory = builder.baseDirectory;
+        this.scratchDirectory = builder.scratchDirectory == null ? builder.baseDirectory : builder.scratchDirectory;
+        this.maxSchemaSize = builder.maxSchemaSize;
+        this.replayInvocations = builder.replayInvocations;
+        this.differential = builder.differential;
+        this.targetedPrelude = builder.targetedPrelude;
+        this.fieldAccessMode = builder.fieldAccessMode;
+        this.callGraphDepth = builder.callGraphDepth;
+        this.testPreselection = builder.testPreselection;
+        this.skipPrelude = builder.skipPrelude;
+        this.failingTestsFile = builder.failingTestsFile;
+        this.preludeThreads = builder.preludeThreads;
+        this.blockCoverage = builder.blockCoverage;
+        this.maxCoveringTests = builder.maxCoveringTests;
+        this.samplingBatchSize = builder.samplingBatchSize;
+        this.samplingConfidence = builder.samplingConfidence;
+        if (builder.inputSource != null) {
+            this.inputSource = builder.inputSource;
+        } else if (builder.praprReportDirectory != null) {
+            this.inputSource = new PraPRInputSource(builder.praprReportDirectory, this.byteArraySource);
+        } else if (builder.inputCSVFile != null) {
+            final File sourceDirectory = builder.sourceDirectory == null
+                    ? FileUtils.getFile(builder.baseDirectory, "src", "main", "java")
+                    : builder.sourceDirectory;
+            this.inputSource = new CSVInputSource(builder.inputCSVFile,
+                    sourceDirectory,
+                    builder.baseDirectory,
+                    builder.classPath.getLocalClassPath(),
+                    builder.compilerTargetVersion);
+        } else {
+            this.inputSource = null;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The source of the patches, or <code>null</code> if no input is specified
+     */
+    public InputSource getInputSource() {
+        return this.inputSource;
+    }
+
+    public File getScratchDirectory() {
+        return this.scratchDirectory;
+    }
+
+    /**
+     * @return <code>true</code> iff passing covering tests are sampled, in which case
+     *         patches shall be scored by {@link ObjSimEntryPoint#scoreBySampling(List, PreludeProfilerResults)}
+     */
+    public boolean isSampling() {
+        return this.samplingBatchSize > 0;
     }
 
     /**
      * Entry point for the entire system!
+     * Reads patches from the input source, i.e. the input CSV file or the PraPR report
+     * directory, and writes their scores into the output CSV file.
+     * Unless patches are to be merged, invocations are to be replayed, or covering tests
+     * are to be sampled, patches are streamed from the input source, so that at any
+     * point in time only the patch being profiled resides in memory.
      *
      * @throws Exception Any failure
      */
     public void run() throws Exception {
-        final List<InputRecord> records = new LinkedList<>();
+        Validate.notNull(this.inputSource, "input source is not specified");
+        if (isSampling()) {
+            final List<Patch> patches = readPatches();
+            final Set<String> targetMethods = new HashSet<>();
+            for (final Patch patch : patches) {
+                targetMethods.addAll(patch.getPatchedMethods());
+            }
+            writeScores(patches, scoreBySampling(patches, runPrelude(targetMethods)).iterator());
+            return;
+        }
+        if (this.maxSchemaSize <= 1 && !this.replayInvocations) {
+            final Set<String> targetMethods = this.inputSource.getTargetMethods();
+            final Map<Integer, String> groundTruthMap = new HashMap<>();
+            writeScores(groundTruthMap, score(targetMethods, recordLabels(this.inputSource.iterator(), groundTruthMap)));
+            return;
+        }
+        final List<Patch> patches = readPatches();
         final Set<String> targetMethods = new HashSet<>();
+        for (final Patch patch : patches) {
+            targetMethods.addAll(patch.getPatchedMethods());
+        }
+        final PreludeProfilerResults preludeResults = runPrelude(targetMethods);
+        final Map<Integer, PatchScore> scores = new HashMap<>();
+        for (final List<Patch> group : groupPatches(patches)) {
+            for (final PatchScore score : score(group, preludeResults)) {
+                scores.put(score.getPatchId(), score);
+            }
+        }
+        final List<PatchScore> orderedScores = new ArrayList<>(patches.size());
+        for (final Patch patch : patches) {
+            orderedScores.add(scores.get(patch.getPatchId()));
+        }
+        writeScores(patches, orderedScores.iterator());
+    }
+
+    // records ground-truth labels of the patches as they pass through
+    private static Iterator<Patch> recordLabels(final Iterator<Patch> patches,
+                                                final Map<Integer, String> groundTruthMap) {
+        return new Iterator<Patch>() {
+            @Override
+            public boolean hasNext() {
+                return patches.hasNext();
+            }
+
+            @Override
+            public Patch next() {
+                final Patch patch = patches.next();
+                groundTruthMap.put(patch.getPatchId(), patch.getGroundTruthLabel());
+                return patch;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Reads all the patches of the input source into memory.
+     *
+     * @return The list of patches in the order they appear in the input
+     * @throws IOException In case of failure to read the input or any of the class files
+     */
+    public List<Patch> readPatches() throws IOException {
+        Validate.notNull(this.inputSource, "input source is not specified");
+        final List<Patch> patches = new LinkedList<>();
+        final Iterator<Patch> it = this.inputSource.iterator();
+        while (it.hasNext()) {
+            patches.add(it.next());
+        }
+        return patches;
+    }
+
+    /**
+     * Lists the files the results of {@link ObjSimEntryPoint#run()} depend on, apart
+     * from the class path, e.g. the input CSV file and the patched class files.
+     *
+     * @return The list of input files
+     * @throws IOException In case of failure to read the input
+     */
+    public List<File> listInputFiles() throws IOException {
+        Validate.notNull(this.inputSource, "input source is not specified");
+        final List<File> inputFiles = new ArrayList<>(this.inputSource.listInputFiles());
+        if (this.skipPrelude && this.failingTestsFile != null) {
+            inputFiles.add(this.failingTestsFile);
+        }
+        return inputFiles;
+    }
+
+    /**
+     * Writes patch scores into the output CSV file.
+     *
+     * @param patches Patches being scored; used for retrieving ground-truth labels
+     * @param scores Scores of the patches
+     * @throws IOException In case of failure to write the file
+     */
+    public void writeScores(final Collection<? extends Patch> patches,
+                            final Iterator<PatchScore> scores) throws IOException {
         final Map<Integer, String> groundTruthMap = new HashMap<>(); // patchId --> ground-truth label
+        for (final Patch patch : patches) {
+            groundTruthMap.put(patch.getPatchId(), patch.getGroundTruthLabel());
+        }
+        writeScores(groundTruthMap, scores);
+    }
 
-        try (final Reader fr = new FileReader(this.inputCSVFile);
-             final CSVParser parser = CSVParser.parse(fr, CSV_FORMAT)) {
-            for (final CSVRecord record : parser.getRecords()) {
-                final InputRecord inputRecord = InputRecord.fromCSVRecord(record);
-                records.add(inputRecord);
-                targetMethods.addAll(inputRecord.patchedMethods);
-                groundTruthMap.put(inputRecord.patchId, inputRecord.groundTruthLabel);
+    /**
+     * Writes patch scores into the output CSV file.
+     *
+     * @param groundTruthMap Patch id --> ground-truth label
+     * @param scores Scores of the patches
+     * @throws IOException In case of failure to write the file
+     */
+    public void writeScores(final Map<Integer, String> groundTruthMap,
+                            final Iterator<PatchScore> scores) throws IOException {
+        try (final PrintWriter pw = new PrintWriter(this.outputCSVFile);
+             final CSVPrinter printer = new CSVPrinter(pw, CSV_FORMAT)) {
+            final List<Object> header = new ArrayList<>(Arrays.<Object>asList("Patch Id",
+                    "Min Score (Passing)",
+                    "Avg. Score (Passing)",
+                    "Max Score (Passing)",
+                    "Min Score (Failing)",
+                    "Avg. Score (Failing)",
+                    "Max Score (Failing)",
+                    "Ground-Truth Label"));
+            if (isSampling()) {
+                header.add("Confidence");
+            }
+            printer.printRecord(header);
+            while (scores.hasNext()) {
+                final PatchScore score = scores.next();
+                final int patchId = score.getPatchId();
+                final List<Object> record = new ArrayList<>(Arrays.<Object>asList(patchId,
+                        score.getPassingScore().getLeft(),
+                        score.getPassingScore().getMiddle(),
+                        score.getPassingScore().getRight(),
+                        score.getFailingScore().getLeft(),
+                        score.getFailingScore().getMiddle(),
+                        score.getFailingScore().getRight(),
+                        groundTruthMap.get(patchId)));
+                if (isSampling()) {
+                    record.add(score.getConfidence());
+                }
+                printer.printRecord(record);
             }
         }
+    }
 
-        final ProcessArgs defaultProcessArgs = getDefaultProcessArgs();
-        final Collection<String> testClassNames = retrieveTestClassNames();
+    /**
+     * Scores a stream of patches.
+     * The stream is consumed lazily: the prelude is run upon the first request for a
+     * score, and each patch is pulled from <code>patches</code> and profiled only when
+     * its score is requested.
+     *
+     * @param targetMethods Full names of all the methods that might be modified by the
+     *                      patches. This shall be known in advance, as the prelude has
+     *                      to record the fields accessed by these methods.
+     * @param patches The patches to be scored
+     * @return An iterator over the scores of the patches, in the order of the input
+     */
+    public Iterator<PatchScore> score(final Collection<String> targetMethods,
+                                      final Iterator<? extends Patch> patches) {
+        final Set<String> targets = new HashSet<>(targetMethods);
+        return new Iterator<PatchScore>() {
+            private PreludeProfilerResults preludeResults;
+
+            @Override
+            public boolean hasNext() {
+                return patches.hasNext();
+            }
+
+            @Override
+            public PatchScore next() {
+                final Patch patch = patches.next();
+                if (!targets.containsAll(patch.getPatchedMethods())) {
+                    throw new IllegalArgumentException("patch " + patch.getPatchId()
+                            + " modifies methods outside of target methods");
+                }
+                try {
+                    if (this.preludeResults == null) {
+                        this.preludeResults = runPrelude(targets);
+                    }
+                    return score(patch, this.preludeResults);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Runs all the test cases against the original program so as to record covered
+     * methods as well as the fields accessed by the target methods.
+     * If test pre-selection is enabled, only the test classes that statically reach
+     * some target method are run; if the prelude is skipped, nothing is run, and the
+     * results are computed statically.
+     *
+     * @param targetMethods Full names of the methods that might be modified by patches
+     * @return Prelude results to be used in scoring patches
+     * @throws Exception Any failure
+     */
+    public PreludeProfilerResults runPrelude(final Collection<String> targetMethods) throws Exception {
+        Collection<String> testClassNames = retrieveTestClassNames();
 
         if (testClassNames.isEmpty()) {
             throw new ClassNotFoundException("no test classes found; perhaps testClassFilter is not set properly");
         }
 
-        final PreludeProfilerResults preludeResults = PreludeProfiler.runPrelude(defaultProcessArgs,
-                this.appClassFilter, testClassNames, targetMethods);
+        FileUtils.forceMkdir(this.scratchDirectory);
+        CallGraph callGraph = null;
+        if (this.testPreselection || this.skipPrelude) {
+            final Set<String> classNames = new HashSet<>(this.classPath.findClasses(this.appClassFilter));
+            classNames.addAll(testClassNames);
+            callGraph = CallGraph.build(this.byteArraySource, classNames);
+            final StaticCoverage staticCoverage = StaticCoverage.compute(callGraph, testClassNames, targetMethods);
+            if (this.skipPrelude) {
+                System.out.println("WARNING: Prelude is skipped; covering tests are over-approximated.");
+                final Map<String, Set<String>> accessedFields =
+                        FieldAccessAnalysis.computeAccessedFields(callGraph, targetMethods, this.callGraphDepth);
+                return staticCoverage.toPreludeResults(this.scratchDirectory,
+                        targetMethods,
+                        accessedFields,
+                        readFailingTests());
+            }
+            final Set<String> coveringTestClasses = staticCoverage.getCoveringTestClasses();
+            if (coveringTestClasses.isEmpty()) {
+                System.out.println("WARNING: No test class reaches target methods; all test classes shall be run.");
+            } else {
+                System.out.println("INFO: " + coveringTestClasses.size() + " out of "
+                        + testClassNames.size() + " test classes pre-selected.");
+                testClassNames = coveringTestClasses;
+            }
+        }
+        final PreludeProfilerArguments arguments = PreludeProfilerArguments.builder()
+                .appClassFilter(this.appClassFilter)
+                .testClassNames(testClassNames)
+                .patchedMethods(new HashSet<>(targetMethods))
+                .scratchDirectory(this.scratchDirectory)
+                .targeted(this.targetedPrelude)
+                .recordFieldAccesses(this.fieldAccessMode != FieldAccessMode.STATIC)
+                .threads(this.preludeThreads)
+                .blockCoverage(this.blockCoverage)
+                .profileTests(this.maxCoveringTests > 0)
+                .build();
+        final PreludeProfilerResults preludeResults = PreludeProfiler.runPrelude(getDefaultProcessArgs(), arguments);
+        reportHeavyTests(preludeResults);
+        if (this.fieldAccessMode == FieldAccessMode.DYNAMIC) {
+            return preludeResults;
+        }
+        if (callGraph == null) {
+            callGraph = CallGraph.build(this.byteArraySource, this.classPath.findClasses(this.appClassFilter));
+        }
+        final Map<String, Set<String>> accessedFields =
+                FieldAccessAnalysis.computeAccessedFields(callGraph, targetMethods, this.callGraphDepth);
+        return FieldAccessAnalysis.apply(preludeResults, accessedFields, this.fieldAccessMode == FieldAccessMode.UNION);
+    }
 
+    // only the last few snapshots of a test case are kept, yet every invocation of a
+    // patched method takes a snapshot, so heavy tests dominate the cost of scoring
+    private static void reportHeavyTests(final PreludeProfilerResults preludeResults) {
         final MethodsDom methodsDom = preludeResults.getMethodsDom();
-        final Map<Integer, Score> patchScoreMap = new HashMap<>();
-        for (final InputRecord record : records) {
-            final Set<String> patchedMethods = record.patchedMethods;
-            final Set<String> coveringPassingTests = new HashSet<>();
-            final Set<String> coveringFailingTests = new HashSet<>();
-            for (final String methodName : patchedMethods) {
-                final int methodIndex = methodsDom.indexOf(methodName);
-                if (methodIndex < 0) {
-                    throw new IllegalStateException("Not found method '" + methodName + "' in methods dom.");
+        for (final Map.Entry<String, Map<Integer, Long>> entry : preludeResults.getInvocationCounts().entrySet()) {
+            for (final Map.Entry<Integer, Long> methodEntry : entry.getValue().entrySet()) {
+                if (methodEntry.getValue() > Params.HEAVY_TEST_INVOCATIONS) {
+                    System.out.println("WARNING: Test " + entry.getKey() + " calls " + methodsDom.get(methodEntry.getKey())
+                            + " " + methodEntry.getValue() + " times; it shall be run after lighter tests.");
                 }
-                final CoveringTests coveringTests = getCoveringTests(preludeResults.getMethodCoverageMap(),
-                        preludeResults.getFailingTests(), methodIndex);
-                coveringPassingTests.addAll(coveringTests.passingTests);
-                coveringFailingTests.addAll(coveringTests.failingTests);
-            }
-            // run covering passing tests on unpatched program
-            Map<String, Wrapped[]> originalSnapshots = PrimaryProfiler.getSnapshots(defaultProcessArgs,
-                    patchedMethods, coveringPassingTests, preludeResults);
-            // run covering passing tests on patched program
-            Map<String, Wrapped[]> patchedSnapshots = PrimaryProfiler.getSnapshots(defaultProcessArgs,
-                    this.classBuildDirectory, record.classFiles, patchedMethods, coveringPassingTests, preludeResults);
+            }
+        }
+    }
+
+    /**
+     * Estimates the cost of scoring a group of patches as the number of covering test
+     * runs plus the number of snapshots taken, i.e. invocations of patched methods,
+     * during the runs against the original and the patched versions. Invocations are
+     * counted in the prelude; if they are unknown, only test runs are counted.
+     *
+     * @param patches The patches, typically a group produced by
+     *                {@link ObjSimEntryPoint#groupPatches(Collection)}
+     * @param preludeResults Results obtained from {@link ObjSimEntryPoint#runPrelude(Collection)}
+     * @return Estimated cost, only meaningful in comparison to that of other groups
+     */
+    public long estimateCost(final List<? extends Patch> patches,
+                             final PreludeProfilerResults preludeResults) {
+        final Set<String> patchedMethods = patches.get(0).getPatchedMethods();
+        final CoveringTests coveringTests = new CoveringTests();
+        for (final Patch patch : patches) {
+            coveringTests.addAll(getCoveringTests(patch, preludeResults));
+        }
+        final MethodsDom methodsDom = preludeResults.getMethodsDom();
+        final Map<String, Map<Integer, Long>> invocationCounts = preludeResults.getInvocationCounts();
+        long cost = 0L;
+        for (final Set<String> testNames : Arrays.asList(coveringTests.passingTests, coveringTests.failingTests)) {
+            for (final String testName : testNames) {
+                cost++;
+                final Map<Integer, Long> counts = invocationCounts.get(testName);
+                if (counts == null) {
+                    continue;
+                }
+                for (final String methodName : patchedMethods) {
+                    final Long count = counts.get(methodsDom.indexOf(methodName));
+                    if (count != null) {
+                        cost += count;
+                    }
+                }
+            }
+        }
+        return cost * (1 + patches.size());
+    }
+
+    /**
+     * Partitions patches into groups that can be scored together by
+     * {@link ObjSimEntryPoint#score(List, PreludeProfilerResults)}: patches in a group
+     * modify the same classes and the same methods. If patch schemata are disabled,
+     * every patch constitutes a group on its own.
+     *
+     * @param patches The patches
+     * @param <T> Type of patches
+     * @return The groups
+     */
+    public <T extends Patch> List<List<T>> groupPatches(final Collection<T> patches) {
+        final List<List<T>> groups = new ArrayList<>();
+        final Map<String, List<T>> openGroups = new HashMap<>();
+        for (final T patch : patches) {
+            if (this.maxSchemaSize <= 1) {
+                groups.add(Collections.singletonList(patch));
+                continue;
+            }
+            final String key = new TreeSet<>(patch.getPatchedClasses().keySet()) + "/"
+                    + new TreeSet<>(patch.getPatchedMethods());
+            List<T> group = openGroups.get(key);
+            if (group == null || group.size() >= this.maxSchemaSize) {
+                group = new ArrayList<>();
+                openGroups.put(key, group);
+                groups.add(group);
+            }
+            group.add(patch);
+        }
+        return groups;
+    }
+
+    /**
+     * Scores a group of patches modifying the same methods.
+     * If possible, patched classes are merged into meta-classes (see
+     * {@link PatchSchemata}) so that all the patches are run in a single child process;
+     * otherwise the patches are scored one by one. If invocation replay is enabled,
+     * covering tests are run only against the original version and the recorded
+     * invocations of patched methods are replayed against all versions, including
+     * the original one.
+     *
+     * @param patches The patches, typically a group produced by
+     *                {@link ObjSimEntryPoint#groupPatches(Collection)}
+     * @param preludeResults Results obtained from {@link ObjSimEntryPoint#runPrelude(Collection)}
+     * @return Scores of the patches, in the same order
+     * @throws Exception Any failure
+     */
+    public List<PatchScore> score(final List<? extends Patch> patches,
+                                  final PreludeProfilerResults preludeResults) throws Exception {
+        final List<PatchScore> scores = new ArrayList<>(patches.size());
+        final Map<String, byte[]> metaClasses = patches.size() > 1 || this.replayInvocations
+                ? mergePatches(patches)
+                : null;
+        if (metaClasses == null) {
+            for (final Patch patch : patches) {
+                scores.add(score(patch, preludeResults));
+            }
+            return scores;
+        }
+        final Set<String> patchedMethods = patches.get(0).getPatchedMethods();
+        final List<CoveringTests> coveringTests = new ArrayList<>(patches.size());
+        final Set<String> allCoveringTests = new HashSet<>();
+        for (final Patch patch : patches) {
+            final CoveringTests patchCoveringTests = getCoveringTests(patch, preludeResults);
+            coveringTests.add(patchCoveringTests);
+            allCoveringTests.addAll(patchCoveringTests.passingTests);
+            allCoveringTests.addAll(patchCoveringTests.failingTests);
+        }
+        final Map<Integer, Map<String, Wrapped[]>> snapshots = PrimaryProfiler.getSnapshots(getDefaultProcessArgs(),
+                metaClasses, 1 + patches.size(), this.replayInvocations, patchedMethods, allCoveringTests,
+                preludeResults);
+        final Map<String, Wrapped[]> originalSnapshots = variantSnapshots(snapshots, 0);
+        for (int i = 0; i < patches.size(); i++) {
+            final Map<String, Wrapped[]> patchedSnapshots = variantSnapshots(snapshots, i + 1);
+            final CoveringTests patchCoveringTests = coveringTests.get(i);
             final Triple<Double /*min*/, Double /*avg*/, Double /*max*/> passingScore =
-                    calculateDistance(originalSnapshots, patchedSnapshots);
-            // run covering failing tests on unpatched program
-            originalSnapshots = PrimaryProfiler.getSnapshots(defaultProcessArgs, patchedMethods,
-                    coveringFailingTests, preludeResults);
-            // run covering failing tests on patched program
-            patchedSnapshots = PrimaryProfiler.getSnapshots(defaultProcessArgs, this.classBuildDirectory,
-                    record.classFiles, patchedMethods, coveringFailingTests, preludeResults);
+                    calculateDistance(restrict(originalSnapshots, patchCoveringTests.passingTests),
+                            restrict(patchedSnapshots, patchCoveringTests.passingTests));
             final Triple<Double /*min*/, Double /*avg*/, Double /*max*/> failingScore =
-                    calculateDistance(originalSnapshots, patchedSnapshots);
-            patchScoreMap.put(record.patchId, new Score(passingScore, failingScore));
+                    calculateDistance(restrict(originalSnapshots, patchCoveringTests.failingTests),
+                            restrict(patchedSnapshots, patchCoveringTests.failingTests));
+            scores.add(new PatchScore(patches.get(i).getPatchId(), passingScore, failingScore));
         }
+        return scores;
+    }
 
-        try (final PrintWriter pw = new PrintWriter("objsim-scores-complete.csv");
-             final CSVPrinter printer = new CSVPrinter(pw, CSV_FORMAT)) {
-            printer.printRecord("Patch Id",
-                    "Min Score (Passing)",
-                    "Avg. Score (Passing)",
-                    "Max Score (Passing)",
-                    "Min Score (Failing)",
-                    "Avg. Score (Failing)",
-                    "Max Score (Failing)",
-                    "Ground-Truth Label");
-            for (final Map.Entry<Integer, Score> entry : patchScoreMap.entrySet()) {
-                final int patchId = entry.getKey();
-                final Score score = entry.getValue();
-                printer.printRecord(patchId,
-                        score.passingScore.getLeft(),
-                        score.passingScore.getMiddle(),
-                        score.passingScore.getRight(),
-                        score.failingScore.getLeft(),
-                        score.failingScore.getMiddle(),
-                        score.failingScore.getRight(),
-                        groundTruthMap.get(patchId));
+    // returns null if the patches cannot be merged
+    private Map<String, byte[]> mergePatches(final List<? extends Patch> patches) {
+        final Map<String, byte[]> metaClasses = new HashMap<>();
+        final Patch first = patches.get(0);
+        for (final String className : first.getPatchedClasses().keySet()) {
+            final Option<byte[]> original = this.byteArraySource.getBytes(className);
+            if (original.hasNone()) {
+                return null;
+            }
+            final List<byte[]> versions = new ArrayList<>(patches.size());
+            for (final Patch patch : patches) {
+                versions.add(patch.getPatchedClasses().get(className));
             }
+            final byte[] metaClass = PatchSchemata.merge(this.byteArraySource,
+                    original.value(),
+                    versions,
+                    first.getPatchedMethods());
+            if (metaClass == null) {
+                return null;
+            }
+            metaClasses.put(className, metaClass);
         }
+        return metaClasses;
     }
 
-    private static class Score {
-        final Triple<Double, Double, Double> passingScore;
+    private static Map<String, Wrapped[]> variantSnapshots(final Map<Integer, Map<String, Wrapped[]>> snapshots,
+                                                           final int variant) {
+        final Map<String, Wrapped[]> map = snapshots.get(variant);
+        return map == null ? Collections.<String, Wrapped[]>emptyMap() : map;
+    }
 
-        final Triple<Double, Double, Double> failingScore;
+    private static Map<String, Wrapped[]> restrict(final Map<String, Wrapped[]> snapshots,
+                                                   final Set<String> testNames) {
+        final Map<String, Wrapped[]> restricted = new HashMap<>();
+        for (final Map.Entry<String, Wrapped[]> entry : snapshots.entrySet()) {
+            if (testNames.contains(entry.getKey())) {
+                restricted.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return restricted;
+    }
 
-        public Score(final Triple<Double, Double, Double> passingScore,
-                     final Triple<Double, Double, Double> failingScore) {
-            this.passingScore = passingScore;
-            this.failingScore = failingScore;
+    /**
+     * Scores a single patch.
+     *
+     * @param patch The patch to be scored
+     * @param preludeResults Results obtained from {@link ObjSimEntryPoint#runPrelude(Collection)}
+     * @return Score of the patch
+     * @throws Exception Any failure
+     */
+    public PatchScore score(final Patch patch,
+                            final PreludeProfilerResults preludeResults) throws Exception {
+        final ProcessArgs defaultProcessArgs = getDefaultProcessArgs();
+        final Set<String> patchedMethods = patch.getPatchedMethods();
+        final CoveringTests coveringTests = getCoveringTests(patch, preludeResults);
+        final Set<String> coveringPassingTests = coveringTests.passingTests;
+        final Set<String> coveringFailingTests = coveringTests.failingTests;
+        if (this.differential) {
+            // original and patched programs are run side by side, and only distances are transferred
+            final Map<String, double[]> passingDistances = PrimaryProfiler.getDistances(defaultProcessArgs,
+                    patch.getPatchedClasses(), patchedMethods, coveringPassingTests, preludeResults);
+            final Map<String, double[]> failingDistances = PrimaryProfiler.getDistances(defaultProcessArgs,
+                    patch.getPatchedClasses(), patchedMethods, coveringFailingTests, preludeResults);
+            return new PatchScore(patch.getPatchId(),
+                    aggregateDistances(passingDistances, coveringPassingTests),
+                    aggregateDistances(failingDistances, coveringFailingTests));
         }
+        // run covering passing tests on unpatched program
+        Map<String, Wrapped[]> originalSnapshots = PrimaryProfiler.getSnapshots(defaultProcessArgs,
+                patchedMethods, coveringPassingTests, preludeResults);
+        // run covering passing tests on patched program
+        Map<String, Wrapped[]> patchedSnapshots = PrimaryProfiler.getSnapshots(defaultProcessArgs,
+                patch.getPatchedClasses(), patchedMethods, coveringPassingTests, preludeResults);
+        final Triple<Double /*min*/, Double /*avg*/, Double /*max*/> passingScore =
+                calculateDistance(originalSnapshots, patchedSnapshots);
+        // run covering failing tests on unpatched program
+        originalSnapshots = PrimaryProfiler.getSnapshots(defaultProcessArgs, patchedMethods,
+                coveringFailingTests, preludeResults);
+        // run covering failing tests on patched program
+        patchedSnapshots = PrimaryProfiler.getSnapshots(defaultProcessArgs, patch.getPatchedClasses(),
+                patchedMethods, coveringFailingTests, preludeResults);
+        final Triple<Double /*min*/, Double /*avg*/, Double /*max*/> failingScore =
+                calculateDistance(originalSnapshots, patchedSnapshots);
+        return new PatchScore(patch.getPatchId(), passingScore, failingScore);
+    }
+
+    /**
+     * Scores patches by sampling their passing covering tests (see {@link SamplingScorer}).
+     * Failing covering tests, which are typically few, are all run.
+     *
+     * @param patches The patches
+     * @param preludeResults Results obtained from {@link ObjSimEntryPoint#runPrelude(Collection)}
+     * @return Scores of the patches, in the same order
+     * @throws Exception Any failure
+     */
+    public List<PatchScore> scoreBySampling(final List<? extends Patch> patches,
+                                            final PreludeProfilerResults preludeResults) throws Exception {
+        Validate.isTrue(isSampling(), "sampling is not enabled");
+        final List<ScoreSampler> samplers = new ArrayList<>(patches.size());
+        final List<Triple<Double, Double, Double>> failingScores = new ArrayList<>(patches.size());
+        for (final Patch patch : patches) {
+            final CoveringTests coveringTests = getCoveringTests(patch, preludeResults);
+            samplers.add(new ScoreSampler(coveringTests.passingTests, this.samplingBatchSize, patch.getPatchId()));
+            failingScores.add(aggregateDistances(getDistances(patch, coveringTests.failingTests, preludeResults)));
+        }
+        final double[] confidences = new SamplingScorer(samplers, this.samplingConfidence)
+                .sample(new SamplingScorer.BatchRunner() {
+                    @Override
+                    public Map<String, double[]> run(final int patchIndex, final Set<String> testNames) throws Exception {
+                        return getDistances(patches.get(patchIndex), testNames, preludeResults);
+                    }
+                });
+        final List<PatchScore> scores = new ArrayList<>(patches.size());
+        for (int i = 0; i < patches.size(); i++) {
+            scores.add(new PatchScore(patches.get(i).getPatchId(),
+                    aggregateDistances(samplers.get(i).getDistances()),
+                    failingScores.get(i),
+                    confidences[i]));
+        }
+        return scores;
+    }
+
+    // distances observed when running the tests against the original and patched programs
+    private Map<String, double[]> getDistances(final Patch patch,
+                                               final Set<String> testNames,
+                                               final PreludeProfilerResults preludeResults) throws Exception {
+        if (testNames.isEmpty()) {
+            return new HashMap<>();
+        }
+        final ProcessArgs defaultProcessArgs = getDefaultProcessArgs();
+        final Set<String> patchedMethods = patch.getPatchedMethods();
+        if (this.differential) {
+            final Map<String, double[]> distances = new HashMap<>(PrimaryProfiler.getDistances(defaultProcessArgs,
+                    patch.getPatchedClasses(), patchedMethods, testNames, preludeResults));
+            for (final String testName : testNames) {
+                if (!distances.containsKey(testName)) {
+                    distances.put(testName, null); // the child process terminated abnormally
+                }
+            }
+            return distances;
+        }
+        final Map<String, Wrapped[]> originalSnapshots = PrimaryProfiler.getSnapshots(defaultProcessArgs,
+                patchedMethods, testNames, preludeResults);
+        final Map<String, Wrapped[]> patchedSnapshots = PrimaryProfiler.getSnapshots(defaultProcessArgs,
+                patch.getPatchedClasses(), patchedMethods, testNames, preludeResults);
+        return computeDistances(originalSnapshots, patchedSnapshots);
     }
 
     private Triple<Double /*min*/, Double /*avg*/, Double /*max*/> calculateDistance(final Map<String, Wrapped[]> originalSnapshots,
                                                                                      final Map<String, Wrapped[]> patchedSnapshots) {
-        if (originalSnapshots.size() != patchedSnapshots.size()) {
-            return ImmutableTriple.of(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        return aggregateDistances(computeDistances(originalSnapshots, patchedSnapshots));
+    }
+
+    // a test that is run against only one of the versions, or that takes different
+    // numbers of snapshots, gets a null value, as its executions are incomparable
+    private static Map<String, double[]> computeDistances(final Map<String, Wrapped[]> originalSnapshots,
+                                                          final Map<String, Wrapped[]> patchedSnapshots) {
+        final Map<String, double[]> distances = new HashMap<>();
+        for (final Map.Entry<String, Wrapped[]> entry : originalSnapshots.entrySet()) {
+            final String testName = entry.getKey();
+            final Wrapped[] os = entry.getValue();
+            final Wrapped[] ps = patchedSnapshots.get(testName);
+            if (ps == null || os.length != ps.length) {
+                distances.put(testName, null);
+                continue;
+            }
+            final double[] ds = new double[os.length];
+            for (int i = 0; i < ds.length; i++) {
+                ds[i] = os[i].distance(ps[i]);
+            }
+            distances.put(testName, ds);
+        }
+        for (final String testName : patchedSnapshots.keySet()) {
+            if (!originalSnapshots.containsKey(testName)) {
+                distances.put(testName, null);
+            }
         }
-        if (originalSnapshots.isEmpty()) {
+        return distances;
+    }
+
+    /**
+     * Computes min, average, and max of distances between corresponding snapshots.
+     *
+     * @param distances Test name --> distances; <code>null</code> value denotes that
+     *                  the executions of the test are incomparable
+     * @return (min, avg, max) distances
+     */
+    private Triple<Double /*min*/, Double /*avg*/, Double /*max*/> aggregateDistances(final Map<String, double[]> distances) {
+        if (distances.isEmpty()) {
             return ImmutableTriple.of(0D, 0D, 0D);
         }
         double minDist = Double.POSITIVE_INFINITY;
         double maxDist = Double.NEGATIVE_INFINITY;
         double distSum = 0D;
         int size = 0;
-        for (final Map.Entry<String, Wrapped[]> entry : originalSnapshots.entrySet()) {
-            final String testName = entry.getKey();
-            final Wrapped[] os = entry.getValue();
-            final Wrapped[] ps = patchedSnapshots.get(testName);
-            if (ps == null) {
+        for (final double[] ds : distances.values()) {
+            if (ds == null) {
                 return ImmutableTriple.of(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
             }
-            if (os.length != ps.length) {
-                return ImmutableTriple.of(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
-            }
-            final int n = os.length;
+            final int n = ds.length;
             if (n == 0) { // avoiding NaN's
                 continue;
             }
             size += n;
-            for (int i = 0; i < n; i++) {
-                final double distance = os[i].distance(ps[i]);
+            for (final double distance : ds) {
                 minDist = Math.min(minDist, distance);
                 maxDist = Math.max(maxDist, distance);
                 if (!Double.isInfinite(distance) && !Double.isInfinite(distSum)) {
@@ -259,21 +851,82 @@ public class ObjSimEntryPoint {
         return ImmutableTriple.of(minDist, avgDist, maxDist);
     }
 
-    private CoveringTests getCoveringTests(final Map<String, Set<Integer>> map,
-                                           final Set<String> failingTests,
-                                           final int methodIndex) {
-        final CoveringTests coveringTests = new CoveringTests();
-        for (final Map.Entry<String, Set<Integer>> entry : map.entrySet()) {
-            if (entry.getValue().contains(methodIndex)) {
-                final String testName = entry.getKey();
-                if (failingTests.contains(testName)) {
-                    coveringTests.failingTests.add(testName);
-                } else {
-                    coveringTests.passingTests.add(testName);
+    // used in differential mode, wherein a missing test denotes an abnormal termination of the child process
+    private Triple<Double /*min*/, Double /*avg*/, Double /*max*/> aggregateDistances(final Map<String, double[]> distances,
+                                                                                      final Set<String> coveringTests) {
+        if (distances.size() < coveringTests.size()) {
+            return ImmutableTriple.of(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+        return aggregateDistances(distances);
+    }
+
+    private CoveringTests getCoveringTests(final Patch patch,
+                                           final PreludeProfilerResults preludeResults) {
+        return getCoveringTests(patch.getPatchedMethods(), getModifiedRegions(patch), preludeResults);
+    }
+
+    // tests covering a patched method; if the basic blocks of the method are probed and
+    // its modified region is known, only the tests executing the region are taken, and
+    // if test cases are profiled, passing tests are minimized
+    private CoveringTests getCoveringTests(final Set<String> patchedMethods,
+                                           final Map<String, int[]> modifiedRegions,
+                                           final PreludeProfilerResults preludeResults) {
+        final MethodsDom methodsDom = preludeResults.getMethodsDom();
+        final CoverageIndex coverageIndex = preludeResults.getCoverageIndex();
+        final BlockCoverage blockCoverage = preludeResults.getBlockCoverage();
+        final Set<String> failingTestNames = preludeResults.getFailingTests();
+        final CompressedBitmap passingTests = new CompressedBitmap();
+        final CompressedBitmap failingTests = new CompressedBitmap();
+        final CoveringTests result = new CoveringTests();
+        final List<Integer> methodIndices = new ArrayList<>();
+        boolean profiled = true; // whether the blocks of all patched methods are probed
+        for (final String methodName : patchedMethods) {
+            final int methodIndex = methodsDom.indexOf(methodName);
+            if (methodIndex < 0) {
+                throw new IllegalStateException("Not found method '" + methodName + "' in methods dom.");
+            }
+            methodIndices.add(methodIndex);
+            profiled &= blockCoverage.hasBlocks(methodIndex);
+            final int[] region = modifiedRegions.get(methodName);
+            if (region != null && blockCoverage.hasBlocks(methodIndex)) {
+                for (final String testName : blockCoverage.getTestsReaching(methodIndex, region[0], region[1])) {
+                    if (failingTestNames.contains(testName)) {
+                        result.failingTests.add(testName);
+                    } else {
+                        result.passingTests.add(testName);
+                    }
                 }
+            } else {
+                passingTests.or(coverageIndex.getPassingTests(methodIndex));
+                failingTests.or(coverageIndex.getFailingTests(methodIndex));
+            }
+        }
+        result.passingTests.addAll(coverageIndex.getTestNames(passingTests));
+        result.failingTests.addAll(coverageIndex.getTestNames(failingTests));
+        if (this.maxCoveringTests > 0 && profiled) {
+            final List<String> selected = CoveringTestsMinimizer.minimize(result.passingTests,
+                    methodIndices,
+                    preludeResults,
+                    this.maxCoveringTests);
+            result.passingTests.retainAll(new HashSet<>(selected));
+        }
+        return result;
+    }
+
+    // full name of patched method --> range of the modified instructions of the original
+    // method; empty unless basic blocks are probed in the prelude
+    private Map<String, int[]> getModifiedRegions(final Patch patch) {
+        final Map<String, int[]> regions = new HashMap<>();
+        if (!this.blockCoverage) {
+            return regions;
+        }
+        for (final Map.Entry<String, byte[]> entry : patch.getPatchedClasses().entrySet()) {
+            final Option<byte[]> original = this.byteArraySource.getBytes(entry.getKey());
+            if (original.hasSome()) {
+                regions.putAll(ClassDiffUtils.getModifiedRegions(original.value(), entry.getValue()));
             }
         }
-        return coveringTests;
+        return regions;
     }
 
     private static class CoveringTests {
@@ -285,6 +938,37 @@ public class ObjSimEntryPoint {
             this.passingTests = new HashSet<>();
             this.failingTests = new HashSet<>();
         }
+
+        void addAll(final CoveringTests other) {
+            this.passingTests.addAll(other.passingTests);
+            this.failingTests.addAll(other.failingTests);
+        }
+    }
+
+    // test cases listed in the failing tests file, either in Defects4J format, i.e.
+    // lines of the form "--- pkg.Cls::method" followed by stack traces, or one per line
+    private Set<String> readFailingTests() throws IOException {
+        final Set<String> failingTests = new HashSet<>();
+        if (this.failingTestsFile == null) {
+            System.out.println("WARNING: No failing tests file is specified; all tests are assumed to pass.");
+            return failingTests;
+        }
+        final List<String> lines = FileUtils.readLines(this.failingTestsFile, Charset.defaultCharset());
+        boolean defects4J = false;
+        for (final String line : lines) {
+            if (line.startsWith("--- ")) {
+                defects4J = true;
+                failingTests.add(line.substring(4).trim().replace("::", "."));
+            }
+        }
+        if (!defects4J) {
+            for (final String line : lines) {
+                if (!line.trim().isEmpty()) {
+                    failingTests.add(line.trim());
+                }
+            }
+        }
+        return failingTests;
     }
 
     private Set<String> retrieveTestClassNames() {
@@ -306,15 +990,20 @@ public class ObjSimEntryPoint {
         return new ClassFilter(this.testClassFilter, this.appClassFilter);
     }
 
-    private ProcessArgs getDefaultProcessArgs() {
-        final LaunchOptions defaultLaunchOptions = new LaunchOptions(getJavaAgent(),
-                getDefaultJavaExecutableLocator(),
-                this.childJVMArgs,
-                Collections.<String, String>emptyMap());
-        return ProcessArgs.withClassPath(this.classPath)
-                .andLaunchOptions(defaultLaunchOptions)
-                .andStderr(LoggerUtils.err())
-                .andStdout(LoggerUtils.out());
+    // the agent jar is created only once, as patches might be scored concurrently
+    private synchronized ProcessArgs getDefaultProcessArgs() {
+        if (this.defaultProcessArgs == null) {
+            final LaunchOptions defaultLaunchOptions = new LaunchOptions(getJavaAgent(),
+                    getDefaultJavaExecutableLocator(),
+                    this.childJVMArgs,
+                    Collections.<String, String>emptyMap());
+            this.defaultProcessArgs = ProcessArgs.withClassPath(this.classPath)
+                    .andLaunchOptions(defaultLaunchOptions)
+                    .andBaseDir(this.baseDirectory)
+                    .andStderr(LoggerUtils.err())
+                    .andStdout(LoggerUtils.out());
+        }
+        return this.defaultProcessArgs;
     }
 
     private JavaExecutableLocator getDefaultJavaExecutableLocator() {
@@ -328,4 +1017,358 @@ public class ObjSimEntryPoint {
                 .value();
         return new KnownLocationJavaAgentFinder(jarLocation);
     }
-}
+
+    /**
+     * A builder for {@link ObjSimEntryPoint}.
+     * Class path, application class filter, and test class filter are mandatory.
+     */
+    public static class Builder {
+        private ClassPath classPath;
+
+        private ClassByteArraySource byteArraySource;
+
+        private Predicate<String> appClassFilter;
+
+        private Predicate<String> testClassFilter;
+
+        private File compatibleJREHome;
+
+        private Collection<String> childJVMArgs;
+
+        private File inputCSVFile;
+
+        private File praprReportDirectory;
+
+        private InputSource inputSource;
+
+        private File outputCSVFile;
+
+        private File baseDirectory;
+
+        private File scratchDirectory;
+
+        private int maxSchemaSize;
+
+        private boolean replayInvocations;
+
+        private boolean differential;
+
+        private boolean targetedPrelude;
+
+        private FieldAccessMode fieldAccessMode;
+
+        private int callGraphDepth;
+
+        private boolean testPreselection;
+
+        private boolean skipPrelude;
+
+        private File failingTestsFile;
+
+        private int preludeThreads;
+
+        private boolean blockCoverage;
+
+        private int maxCoveringTests;
+
+        private int samplingBatchSize;
+
+        private double samplingConfidence;
+
+        private File sourceDirectory;
+
+        private String compilerTargetVersion;
+
+        private Builder() {
+            final String jreHome = System.getProperty("java.home");
+            if (jreHome != null) {
+                this.compatibleJREHome = new File(jreHome);
+            }
+            this.childJVMArgs = Collections.singleton("-Xmx128g");
+            this.outputCSVFile = new File("objsim-scores-complete.csv");
+            this.baseDirectory = new File(System.getProperty("user.dir"));
+            this.fieldAccessMode = FieldAccessMode.DYNAMIC;
+            this.callGraphDepth = DEFAULT_CALL_GRAPH_DEPTH;
+            this.preludeThreads = 1;
+            this.samplingConfidence = DEFAULT_SAMPLING_CONFIDENCE;
+        }
+
+        public Builder classPath(final ClassPath classPath) {
+            this.classPath = classPath;
+            return this;
+        }
+
+        /**
+         * Optional; by default a byte array source is created for the class path.
+         */
+        public Builder byteArraySource(final ClassByteArraySource byteArraySource) {
+            this.byteArraySource = byteArraySource;
+            return this;
+        }
+
+        public Builder appClassFilter(final Predicate<String> appClassFilter) {
+            this.appClassFilter = appClassFilter;
+            return this;
+        }
+
+        public Builder testClassFilter(final Predicate<String> testClassFilter) {
+            this.testClassFilter = testClassFilter;
+            return this;
+        }
+
+        /**
+         * Optional; by default the JRE running ObjSim shall be used.
+         */
+        public Builder compatibleJREHome(final File compatibleJREHome) {
+            this.compatibleJREHome = compatibleJREHome;
+            return this;
+        }
+
+        public Builder childJVMArgs(final Collection<String> childJVMArgs) {
+            this.childJVMArgs = childJVMArgs;
+            return this;
+        }
+
+        /**
+         * Only needed if patches are to be read from a CSV file, i.e. by
+         * {@link ObjSimEntryPoint#run()}.
+         */
+        public Builder inputCSVFile(final File inputCSVFile) {
+            this.inputCSVFile = inputCSVFile;
+            return this;
+        }
+
+        /**
+         * Reads patches directly from a PraPR report directory, rather than from the
+         * CSV file produced by the input file generator. Takes precedence over the
+         * input CSV file.
+         */
+        public Builder praprReportDirectory(final File praprReportDirectory) {
+            this.praprReportDirectory = praprReportDirectory;
+            return this;
+        }
+
+        /**
+         * A custom source of patches. Takes precedence over the input CSV file and the
+         * PraPR report directory.
+         */
+        public Builder inputSource(final InputSource inputSource) {
+            this.inputSource = inputSource;
+            return this;
+        }
+
+        /**
+         * Optional; by default <code>objsim-scores-complete.csv</code> in the current
+         * directory shall be used.
+         */
+        public Builder outputCSVFile(final File outputCSVFile) {
+            this.outputCSVFile = outputCSVFile;
+            return this;
+        }
+
+        /**
+         * Working directory of child processes. Optional; by default the current
+         * directory shall be used.
+         */
+        public Builder baseDirectory(final File baseDirectory) {
+            this.baseDirectory = baseDirectory;
+            return this;
+        }
+
+        /**
+         * Directory wherein intermediate files, e.g. field and method domains, are
+         * stored. Optional; by default base directory shall be used. Entry points
+         * running concurrently shall not share scratch directories.
+         */
+        public Builder scratchDirectory(final File scratchDirectory) {
+            this.scratchDirectory = scratchDirectory;
+            return this;
+        }
+
+        /**
+         * Maximum number of patches merged into a single meta-class, i.e. profiled
+         * in a single child process. Optional; by default, and for values less than
+         * 2, patch schemata are disabled and each patch is profiled separately.
+         */
+        public Builder maxSchemaSize(final int maxSchemaSize) {
+            this.maxSchemaSize = maxSchemaSize;
+            return this;
+        }
+
+        /**
+         * Whether or not to record inputs of patched methods while running covering
+         * tests against the original program, and replay those invocations against
+         * the patches, instead of running whole test cases. Replay only restores the
+         * state reachable from receiver and arguments, so it is an approximation
+         * which is disabled by default.
+         */
+        public Builder replayInvocations(final boolean replayInvocations) {
+            this.replayInvocations = replayInvocations;
+            return this;
+        }
+
+        /**
+         * Whether or not to run the original and the patched program side by side,
+         * through two class loaders, in a single child process that sends back only
+         * distances between snapshots. Only applies to patches that are scored
+         * individually, i.e. not merged into meta-classes. Disabled by default.
+         */
+        public Builder differential(final boolean differential) {
+            this.differential = differential;
+            return this;
+        }
+
+        /**
+         * Whether or not to place coverage probes only on target methods during the
+         * prelude, as coverage of other methods is never consulted. Field accesses are
+         * recorded only while a target method is on the stack in either case.
+         * Disabled by default.
+         */
+        public Builder targetedPrelude(final boolean targetedPrelude) {
+            this.targetedPrelude = targetedPrelude;
+            return this;
+        }
+
+        /**
+         * How to compute the fields accessed by patched methods, i.e. the fields
+         * included in snapshots. Optional; by default, fields are recorded dynamically
+         * during the prelude.
+         */
+        public Builder fieldAccessMode(final FieldAccessMode fieldAccessMode) {
+            this.fieldAccessMode = fieldAccessMode;
+            return this;
+        }
+
+        /**
+         * Maximum length of the call chains followed by the static field access
+         * analysis; negative values mean no limit. Optional; by default, call chains
+         * of length up to 5 are followed.
+         */
+        public Builder callGraphDepth(final int callGraphDepth) {
+            this.callGraphDepth = callGraphDepth;
+            return this;
+        }
+
+        /**
+         * Whether or not to run, during the prelude, only the test classes that reach
+         * some target method according to a static call graph of application and test
+         * classes. Disabled by default.
+         */
+        public Builder testPreselection(final boolean testPreselection) {
+            this.testPreselection = testPreselection;
+            return this;
+        }
+
+        /**
+         * Whether or not to skip the prelude altogether, taking the test cases that
+         * statically reach a patched method as its covering tests, and computing the
+         * accessed fields statically. Disabled by default.
+         */
+        public Builder skipPrelude(final boolean skipPrelude) {
+            this.skipPrelude = skipPrelude;
+            return this;
+        }
+
+        /**
+         * File listing the test cases failing on the original program, used when the
+         * prelude is skipped. Optional; by default, all test cases are assumed to pass.
+         */
+        public Builder failingTestsFile(final File failingTestsFile) {
+            this.failingTestsFile = failingTestsFile;
+            return this;
+        }
+
+        /**
+         * Number of test classes run concurrently during the prelude; the test cases
+         * of a test class are always run one after another. Optional; by default, all
+         * test cases are run one after another.
+         */
+        public Builder preludeThreads(final int preludeThreads) {
+            this.preludeThreads = preludeThreads;
+            return this;
+        }
+
+        /**
+         * Whether or not to probe the basic blocks of patched methods during the prelude,
+         * so that only the test cases executing the instructions modified by a patch
+         * are run against it. Optional; by default, all the test cases covering the
+         * patched methods are run.
+         */
+        public Builder blockCoverage(final boolean blockCoverage) {
+            this.blockCoverage = blockCoverage;
+            return this;
+        }
+
+        /**
+         * Maximum number of passing test cases run against a patch. If positive, the
+         * basic blocks and fields of patched methods exercised by each test case are
+         * recorded during the prelude, and the passing test cases covering a patch are
+         * minimized to a subset with distinct execution profiles, picked greedily and
+         * capped at this number; failing test cases are always kept. Optional; by
+         * default, covering tests are not minimized.
+         */
+        public Builder maxCoveringTests(final int maxCoveringTests) {
+            this.maxCoveringTests = maxCoveringTests;
+            return this;
+        }
+
+        /**
+         * Number of passing test cases drawn at a time when sampling covering tests. If
+         * positive, the passing test cases covering each patch are run in random batches,
+         * stratified by test class, until the confidence interval of the average passing
+         * score of the patch no longer overlaps those of its neighbours in the ranking.
+         * Patches are then scored one by one, hence sampling cannot be combined with patch
+         * schemata or invocation replay. Optional; by default, all covering tests are run.
+         */
+        public Builder samplingBatchSize(final int samplingBatchSize) {
+            this.samplingBatchSize = samplingBatchSize;
+            return this;
+        }
+
+        /**
+         * Confidence level of the intervals compared when sampling covering tests.
+         * Optional; by default 0.95.
+         */
+        public Builder samplingConfidence(final double samplingConfidence) {
+            this.samplingConfidence = samplingConfidence;
+            return this;
+        }
+
+        /**
+         * Directory against which source-level patches (i.e. unified diffs) are
+         * applied. Optional; by default <code>src/main/java</code> under the base
+         * directory shall be used.
+         */
+        public Builder sourceDirectory(final File sourceDirectory) {
+            this.sourceDirectory = sourceDirectory;
+            return this;
+        }
+
+        /**
+         * Java version targeted when compiling source-level patches, e.g.
+         * <code>1.7</code>. Optional; by default the compiler default shall be used.
+         */
+        public Builder compilerTargetVersion(final String compilerTargetVersion) {
+            this.compilerTargetVersion = compilerTargetVersion;
+            return this;
+        }
+
+        public ObjSimEntryPoint build() {
+            Validate.notNull(this.classPath, "class path is not specified");
+            Validate.notNull(this.appClassFilter, "application class filter is not specified");
+            Validate.notNull(this.testClassFilter, "test class filter is not specified");
+            Validate.notNull(this.compatibleJREHome, "JRE home is not specified");
+            Validate.isTrue(this.compatibleJREHome.isDirectory(), "invalid JRE home");
+            Validate.notNull(this.childJVMArgs);
+            Validate.notNull(this.outputCSVFile);
+            Validate.notNull(this.baseDirectory);
+            Validate.notNull(this.fieldAccessMode);
+            Validate.isTrue(this.preludeThreads > 0, "number of prelude threads must be positive");
+            Validate.isTrue(this.samplingConfidence > 0D && this.samplingConfidence < 1D,
+                    "sampling confidence must be between 0 and 1");
+            Validate.isTrue(this.samplingBatchSize <= 0 || (this.maxSchemaSize <= 1 && !this.replayInvocations),
+                    "sampling covering tests cannot be combined with patch schemata or invocation replay");
+            return new ObjSimEntryPoint(this);
+        }
+    }
+}
\ No newline at end of file
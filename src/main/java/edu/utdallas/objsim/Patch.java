@@ -0,0 +1,93 @@
+package edu.utdallas.objsim;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory representation of a patch to be scored by ObjSim.
+ * A patch is identified by a unique integer and consists of a set of patched
+ * class files, given as byte arrays, together with the full names of the methods
+ * that are modified by the patch.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class Patch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int patchId;
+
+    private final HashMap<String, byte[]> patchedClasses; // class name --> class file bytes
+
+    private final HashSet<String> patchedMethods; // full names
+
+    private final String groundTruthLabel;
+
+    public Patch(final int patchId,
+                 final Map<String, byte[]> patchedClasses,
+                 final Collection<String> patchedMethods) {
+        this(patchId, patchedClasses, patchedMethods, null);
+    }
+
+    public Patch(final int patchId,
+                 final Map<String, byte[]> patchedClasses,
+                 final Collection<String> patchedMethods,
+                 final String groundTruthLabel) {
+        Validate.notEmpty(patchedClasses, "patch %d has no patched class", patchId);
+        Validate.notEmpty(patchedMethods, "patch %d has no patched method", patchId);
+        this.patchId = patchId;
+        this.patchedClasses = new HashMap<>(patchedClasses);
+        this.patchedMethods = new HashSet<>(patchedMethods);
+        this.groundTruthLabel = groundTruthLabel;
+    }
+
+    public int getPatchId() {
+        return this.patchId;
+    }
+
+    /**
+     * @return A map from Java names of the patched classes to their class file
+     *         byte arrays.
+     */
+    public Map<String, byte[]> getPatchedClasses() {
+        return Collections.unmodifiableMap(this.patchedClasses);
+    }
+
+    public Set<String> getPatchedMethods() {
+        return Collections.unmodifiableSet(this.patchedMethods);
+    }
+
+    /**
+     * @return Ground-truth label of the patch, or <code>null</code> if the label
+     *         is unknown.
+     */
+    public String getGroundTruthLabel() {
+        return this.groundTruthLabel;
+    }
+}
@@ -0,0 +1,81 @@
+package edu.utdallas.objsim;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.io.Serializable;
+
+/**
+ * Similarity scores computed for a patch.
+ * Passing (resp. failing) score is a triple of minimum, average, and maximum of
+ * the distances between the system states at the exit point(s) of the patched
+ * methods in the original and patched programs when running originally passing
+ * (resp. failing) test cases covering the patch.
+ * If passing test cases are sampled, the passing score is computed over the sampled
+ * test cases, and confidence tells how certain the position of the patch is in the
+ * ranking by average passing score; otherwise, confidence is <code>1</code>.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class PatchScore implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int patchId;
+
+    private final Triple<Double, Double, Double> passingScore;
+
+    private final Triple<Double, Double, Double> failingScore;
+
+    private final double confidence;
+
+    public PatchScore(final int patchId,
+                      final Triple<Double, Double, Double> passingScore,
+                      final Triple<Double, Double, Double> failingScore) {
+        this(patchId, passingScore, failingScore, 1D);
+    }
+
+    public PatchScore(final int patchId,
+                      final Triple<Double, Double, Double> passingScore,
+                      final Triple<Double, Double, Double> failingScore,
+                      final double confidence) {
+        this.patchId = patchId;
+        this.passingScore = passingScore;
+        this.failingScore = failingScore;
+        this.confidence = confidence;
+    }
+
+    public int getPatchId() {
+        return this.patchId;
+    }
+
+    public Triple<Double /*min*/, Double /*avg*/, Double /*max*/> getPassingScore() {
+        return this.passingScore;
+    }
+
+    public Triple<Double /*min*/, Double /*avg*/, Double /*max*/> getFailingScore() {
+        return this.failingScore;
+    }
+
+    public double getConfidence() {
+        return this.confidence;
+    }
+}
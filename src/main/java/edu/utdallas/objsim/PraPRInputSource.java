@@ -0,0 +1,276 @@
+package edu.utdallas.objsim;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.asm.ClassDiffUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.pitest.classinfo.ClassByteArraySource;
+import org.pitest.functional.Option;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Input source that reads the patches directly from a PraPR report directory, i.e.
+ * <code>target/prapr-reports/&lt;timestamp&gt;</code>, rather than from an input CSV
+ * file produced by the external input file generator.
+ * Patches are listed in the order of <code>fix-report.log</code> and identified by
+ * their entry numbers in that file. Patched methods are resolved by comparing the
+ * bytes of each mutant against the bytes of the original class. If the fix report is
+ * missing, all the mutants in the pool are taken, in the order of their numbers.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class PraPRInputSource implements InputSource {
+    private static final String FIX_REPORT = "fix-report.log";
+
+    private static final String POOL = "pool";
+
+    private static final Pattern ENTRY_PATTERN = Pattern.compile("^(\\d+)\\.\\s*$");
+
+    private static final Pattern DUMP_PATTERN = Pattern.compile("^\\s*Dump:\\s*(\\S+)\\s*$");
+
+    private static final Pattern MUTANT_PATTERN = Pattern.compile("^mutant-(\\d+)\\.class$");
+
+    private final File reportDirectory;
+
+    private final ClassByteArraySource byteArraySource;
+
+    // patch id --> patched methods; resolving patched methods requires reading the mutants,
+    // so we do it only once
+    private Map<Integer, Set<String>> patchedMethodsCache;
+
+    /**
+     * @param reportDirectory Either a PraPR report directory, containing the file
+     *                        <code>fix-report.log</code> and/or the directory
+     *                        <code>pool</code>, or the directory <code>prapr-reports</code>,
+     *                        in which case the latest report is taken.
+     * @param byteArraySource Byte array source for the original classes
+     */
+    public PraPRInputSource(final File reportDirectory, final ClassByteArraySource byteArraySource) {
+        Validate.isTrue(reportDirectory.isDirectory(), "invalid PraPR report directory %s",
+                reportDirectory.getAbsolutePath());
+        Validate.notNull(byteArraySource);
+        this.reportDirectory = resolveReportDirectory(reportDirectory);
+        this.byteArraySource = byteArraySource;
+    }
+
+    private static File resolveReportDirectory(final File directory) {
+        if (isReportDirectory(directory)) {
+            return directory;
+        }
+        File latest = null;
+        final File[] children = directory.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                // report directories are named after time stamps, e.g. 202002011910
+                if (isReportDirectory(child) && (latest == null || child.getName().compareTo(latest.getName()) > 0)) {
+                    latest = child;
+                }
+            }
+        }
+        if (latest == null) {
+            throw new IllegalArgumentException("No PraPR report found in " + directory.getAbsolutePath());
+        }
+        return latest;
+    }
+
+    private static boolean isReportDirectory(final File directory) {
+        return directory.isDirectory()
+                && (new File(directory, FIX_REPORT).isFile() || new File(directory, POOL).isDirectory());
+    }
+
+    public File getReportDirectory() {
+        return this.reportDirectory;
+    }
+
+    // patch id --> mutant file, in the order of the fix report
+    private Map<Integer, File> listMutants() throws IOException {
+        final Map<Integer, File> mutants = new LinkedHashMap<>();
+        final File poolDirectory = new File(this.reportDirectory, POOL);
+        final File fixReport = new File(this.reportDirectory, FIX_REPORT);
+        if (fixReport.isFile()) {
+            try (final BufferedReader br = new BufferedReader(new FileReader(fixReport))) {
+                Integer entry = null;
+                String line;
+                while ((line = br.readLine()) != null) {
+                    Matcher matcher = ENTRY_PATTERN.matcher(line);
+                    if (matcher.matches()) {
+                        entry = Integer.valueOf(matcher.group(1));
+                        continue;
+                    }
+                    matcher = DUMP_PATTERN.matcher(line);
+                    if (matcher.matches() && entry != null) {
+                        mutants.put(entry, new File(poolDirectory, matcher.group(1)));
+                        entry = null;
+                    }
+                }
+            }
+            return mutants;
+        }
+        final File[] files = poolDirectory.listFiles();
+        if (files == null) {
+            return mutants;
+        }
+        final List<File> mutantFiles = new ArrayList<>();
+        for (final File file : files) {
+            if (MUTANT_PATTERN.matcher(file.getName()).matches()) {
+                mutantFiles.add(file);
+            }
+        }
+        Collections.sort(mutantFiles, new Comparator<File>() {
+            @Override
+            public int compare(final File f1, final File f2) {
+                return Integer.compare(mutantNumber(f1), mutantNumber(f2));
+            }
+        });
+        for (final File file : mutantFiles) {
+            mutants.put(mutantNumber(file), file);
+        }
+        return mutants;
+    }
+
+    private static int mutantNumber(final File mutantFile) {
+        final Matcher matcher = MUTANT_PATTERN.matcher(mutantFile.getName());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid mutant file name " + mutantFile.getName());
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    // returns null if the mutant does not modify any method body, or its
+    // original class is not available
+    private Set<String> resolvePatchedMethods(final int patchId, final String className, final byte[] mutantBytes) {
+        Set<String> patchedMethods = this.patchedMethodsCache == null
+                ? null : this.patchedMethodsCache.get(patchId);
+        if (patchedMethods == null) {
+            final Option<byte[]> original = this.byteArraySource.getBytes(className);
+            if (original.hasNone()) {
+                return null;
+            }
+            patchedMethods = ClassDiffUtils.getModifiedMethods(original.value(), mutantBytes);
+        }
+        return patchedMethods.isEmpty() ? null : patchedMethods;
+    }
+
+    private static String getClassName(final byte[] classBytes) {
+        return Type.getObjectType(new ClassReader(classBytes).getClassName()).getClassName();
+    }
+
+    @Override
+    public synchronized Set<String> getTargetMethods() throws IOException {
+        if (this.patchedMethodsCache == null) {
+            final Map<Integer, Set<String>> cache = new HashMap<>();
+            for (final Map.Entry<Integer, File> entry : listMutants().entrySet()) {
+                final byte[] mutantBytes = FileUtils.readFileToByteArray(entry.getValue());
+                final Set<String> patchedMethods =
+                        resolvePatchedMethods(entry.getKey(), getClassName(mutantBytes), mutantBytes);
+                cache.put(entry.getKey(), patchedMethods == null ? Collections.<String>emptySet() : patchedMethods);
+            }
+            this.patchedMethodsCache = cache;
+        }
+        final Set<String> targetMethods = new HashSet<>();
+        for (final Set<String> patchedMethods : this.patchedMethodsCache.values()) {
+            targetMethods.addAll(patchedMethods);
+        }
+        return targetMethods;
+    }
+
+    @Override
+    public Iterator<Patch> iterator() throws IOException {
+        final Iterator<Map.Entry<Integer, File>> mit = listMutants().entrySet().iterator();
+        return new Iterator<Patch>() {
+            private Patch nextPatch = advance();
+
+            private Patch advance() {
+                while (mit.hasNext()) {
+                    final Map.Entry<Integer, File> entry = mit.next();
+                    final int patchId = entry.getKey();
+                    final byte[] mutantBytes;
+                    try {
+                        mutantBytes = FileUtils.readFileToByteArray(entry.getValue());
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                    final String className = getClassName(mutantBytes);
+                    final Set<String> patchedMethods = resolvePatchedMethods(patchId, className, mutantBytes);
+                    if (patchedMethods == null) {
+                        System.out.println("WARNING: Patch " + patchId + " is skipped: no modified method found in "
+                                + entry.getValue().getName());
+                        continue;
+                    }
+                    return new Patch(patchId, Collections.singletonMap(className, mutantBytes), patchedMethods);
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.nextPatch != null;
+            }
+
+            @Override
+            public Patch next() {
+                if (this.nextPatch == null) {
+                    throw new NoSuchElementException();
+                }
+                final Patch patch = this.nextPatch;
+                this.nextPatch = advance();
+                return patch;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public List<File> listInputFiles() throws IOException {
+        final List<File> inputFiles = new LinkedList<>();
+        final File fixReport = new File(this.reportDirectory, FIX_REPORT);
+        if (fixReport.isFile()) {
+            inputFiles.add(fixReport);
+        }
+        inputFiles.addAll(listMutants().values());
+        return inputFiles;
+    }
+}
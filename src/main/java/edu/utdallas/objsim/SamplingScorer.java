@@ -0,0 +1,129 @@
+package edu.utdallas.objsim;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Samples the passing covering tests of several patches at once (see {@link ScoreSampler}).
+ * Test cases are run in rounds: after each round, patches are ranked by the estimate
+ * of their average passing score, and only the patches whose confidence interval
+ * overlaps that of a neighbour in the ranking, at the requested confidence level, draw
+ * another batch. The confidence of each estimate is the highest confidence level at
+ * which its interval is apart from those of its neighbours.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+final class SamplingScorer {
+    /**
+     * Runs sampled test cases against a patch.
+     */
+    interface BatchRunner {
+        /**
+         * @param patchIndex Index of the patch among the samplers
+         * @param testNames Names of the test cases of the batch
+         * @return Test name --> distances; <code>null</code> value denotes that the
+         *         executions of the test are incomparable
+         * @throws Exception Any failure
+         */
+        Map<String, double[]> run(int patchIndex, Set<String> testNames) throws Exception;
+    }
+
+    private final List<ScoreSampler> samplers;
+
+    private final double confidenceLevel;
+
+    /**
+     * @param samplers One sampler per patch
+     * @param confidenceLevel Confidence level at which the intervals of neighbouring
+     *                        patches shall be apart, between <code>0</code> and <code>1</code>
+     */
+    SamplingScorer(final List<ScoreSampler> samplers, final double confidenceLevel) {
+        this.samplers = samplers;
+        this.confidenceLevel = confidenceLevel;
+    }
+
+    /**
+     * Draws batches until the estimates of all patches are either apart from those of
+     * their neighbours or settled.
+     *
+     * @param runner Runner of the batches
+     * @return Confidence of the estimate of each patch, in the order of the samplers
+     * @throws Exception Any failure
+     */
+    double[] sample(final BatchRunner runner) throws Exception {
+        List<Integer> active = new ArrayList<>(); // indices of the patches drawing another batch
+        for (int i = 0; i < this.samplers.size(); i++) {
+            active.add(i);
+        }
+        final double[] confidences = new double[this.samplers.size()];
+        for (int round = 1; !active.isEmpty(); round++) {
+            System.out.println("INFO: Sampling round " + round + ": " + active.size() + " patch(es) draw a batch.");
+            for (final int i : active) {
+                final ScoreSampler sampler = this.samplers.get(i);
+                if (sampler.hasNext()) {
+                    sampler.addDistances(runner.run(i, new HashSet<>(sampler.nextBatch())));
+                }
+            }
+            active = new ArrayList<>();
+            final List<Integer> ranking = rank(this.samplers);
+            for (int r = 0; r < ranking.size(); r++) {
+                final int i = ranking.get(r);
+                double confidence = 1D;
+                if (r > 0) {
+                    confidence = ScoreSampler.separationConfidence(this.samplers.get(i),
+                            this.samplers.get(ranking.get(r - 1)));
+                }
+                if (r + 1 < ranking.size()) {
+                    confidence = Math.min(confidence, ScoreSampler.separationConfidence(this.samplers.get(i),
+                            this.samplers.get(ranking.get(r + 1))));
+                }
+                confidences[i] = confidence;
+                if (confidence < this.confidenceLevel && !this.samplers.get(i).isSettled()) {
+                    active.add(i);
+                }
+            }
+        }
+        return confidences;
+    }
+
+    // indices of the samplers, in ascending order of their estimates
+    static List<Integer> rank(final List<ScoreSampler> samplers) {
+        final List<Integer> ranking = new ArrayList<>(samplers.size());
+        for (int i = 0; i < samplers.size(); i++) {
+            ranking.add(i);
+        }
+        Collections.sort(ranking, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer i1, final Integer i2) {
+                return Double.compare(samplers.get(i1).getEstimate(), samplers.get(i2).getEstimate());
+            }
+        });
+        return ranking;
+    }
+}
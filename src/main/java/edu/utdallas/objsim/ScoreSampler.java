@@ -0,0 +1,292 @@
+package edu.utdallas.objsim;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Random sampling of the passing test cases covering a patch, used for estimating its
+ * average passing score without running all of them. Test cases are stratified by
+ * test class, and each batch draws from every stratum in proportion to the number of
+ * test cases left in it, so that batches are not dominated by a few large test classes.
+ *
+ * The average score is estimated as the ratio of the sum of distances to the number of
+ * snapshots of the sampled test cases, i.e. exactly the average reported for them,
+ * and its standard error is that of a combined ratio estimator over the strata, with
+ * finite population correction, so that the error vanishes once all test cases are
+ * sampled. Strata with fewer than two sampled test cases borrow the variance pooled
+ * over all the sampled test cases.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+final class ScoreSampler {
+    private final int batchSize;
+
+    private final int populationSize;
+
+    private final List<List<String>> strata; // shuffled test names of each test class; drawn from the end
+
+    private final int[] stratumSizes;
+
+    private final List<List<String>> sampledStrata; // sampled test names of each test class
+
+    private final Map<String, double[]> distances; // sampled test name --> distances
+
+    private int sampledCount;
+
+    private double distanceSum;
+
+    private long snapshotsCount;
+
+    private boolean incomparable; // some sampled test case has incomparable executions
+
+    /**
+     * @param testNames Names of the test cases to be sampled
+     * @param batchSize Number of test cases drawn in each batch
+     * @param seed Seed of the random generator, so that samples are reproducible
+     */
+    ScoreSampler(final Collection<String> testNames, final int batchSize, final long seed) {
+        this.batchSize = batchSize;
+        this.populationSize = testNames.size();
+        final List<String> sortedNames = new ArrayList<>(testNames);
+        Collections.sort(sortedNames); // independent of the iteration order of the collection
+        final Map<String, List<String>> strata = new LinkedHashMap<>(); // test class name --> test names
+        for (final String testName : sortedNames) {
+            final int lastDot = testName.lastIndexOf('.');
+            final String testClassName = lastDot < 0 ? "" : testName.substring(0, lastDot);
+            List<String> stratum = strata.get(testClassName);
+            if (stratum == null) {
+                stratum = new ArrayList<>();
+                strata.put(testClassName, stratum);
+            }
+            stratum.add(testName);
+        }
+        final Random random = new Random(seed);
+        this.strata = new ArrayList<>(strata.values());
+        this.stratumSizes = new int[this.strata.size()];
+        this.sampledStrata = new ArrayList<>(this.strata.size());
+        for (int i = 0; i < this.stratumSizes.length; i++) {
+            final List<String> stratum = this.strata.get(i);
+            Collections.shuffle(stratum, random);
+            this.stratumSizes[i] = stratum.size();
+            this.sampledStrata.add(new ArrayList<String>());
+        }
+        this.distances = new HashMap<>();
+    }
+
+    /**
+     * @return <code>true</code> iff some test case is not sampled yet
+     */
+    boolean hasNext() {
+        return this.sampledCount < this.populationSize;
+    }
+
+    /**
+     * Draws the next batch. Test cases are allotted one at a time to the stratum lagging
+     * furthest behind its proportional share of all the test cases sampled so far, so
+     * that the sample stays proportional to the strata across batches.
+     *
+     * @return Names of the test cases of the next batch
+     */
+    List<String> nextBatch() {
+        final int size = Math.min(this.batchSize, this.populationSize - this.sampledCount);
+        final long total = this.sampledCount + size; // number of sampled test cases after the batch
+        final int[] quotas = new int[this.strata.size()];
+        for (int k = 0; k < size; k++) {
+            int best = -1;
+            long bestDeficit = 0L;
+            for (int i = 0; i < quotas.length; i++) {
+                if (quotas[i] == this.strata.get(i).size()) {
+                    continue; // the stratum is exhausted
+                }
+                // share of the stratum minus its sampled test cases, scaled by population size
+                final long deficit = total * this.stratumSizes[i]
+                        - (long) this.populationSize * (this.sampledStrata.get(i).size() + quotas[i]);
+                if (best < 0 || deficit > bestDeficit) {
+                    best = i;
+                    bestDeficit = deficit;
+                }
+            }
+            quotas[best]++;
+        }
+        final List<String> batch = new ArrayList<>(size);
+        for (int i = 0; i < quotas.length; i++) {
+            final List<String> stratum = this.strata.get(i);
+            for (int k = 0; k < quotas[i]; k++) {
+                final String testName = stratum.remove(stratum.size() - 1);
+                this.sampledStrata.get(i).add(testName);
+                batch.add(testName);
+            }
+        }
+        this.sampledCount += batch.size();
+        return batch;
+    }
+
+    /**
+     * Records the distances observed for a batch.
+     *
+     * @param distances Test name --> distances; <code>null</code> value denotes that the
+     *                  executions of the test are incomparable
+     */
+    void addDistances(final Map<String, double[]> distances) {
+        for (final Map.Entry<String, double[]> entry : distances.entrySet()) {
+            final double[] ds = entry.getValue();
+            this.distances.put(entry.getKey(), ds);
+            if (ds == null) {
+                this.incomparable = true;
+                continue;
+            }
+            for (final double distance : ds) {
+                this.distanceSum += distance;
+            }
+            this.snapshotsCount += ds.length;
+        }
+    }
+
+    /**
+     * @return Test name --> distances, for the test cases sampled so far
+     */
+    Map<String, double[]> getDistances() {
+        return this.distances;
+    }
+
+    /**
+     * @return Estimate of the average score
+     */
+    double getEstimate() {
+        if (this.incomparable || Double.isInfinite(this.distanceSum)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return this.snapshotsCount == 0L ? 0D : this.distanceSum / this.snapshotsCount;
+    }
+
+    /**
+     * @return Standard error of the estimate; infinite if the test cases sampled so far
+     *         tell nothing about its spread
+     */
+    double getStandardError() {
+        if (isSettled()) {
+            return 0D;
+        }
+        final int n = this.sampledCount;
+        if (n < 2 || this.snapshotsCount == 0L) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final double ratio = getEstimate();
+        final List<String> sampled = new ArrayList<>(n);
+        for (final List<String> sampledStratum : this.sampledStrata) {
+            sampled.addAll(sampledStratum);
+        }
+        final double pooledVariance = getResidualVariance(sampled, ratio);
+        double variance = 0D;
+        for (int i = 0; i < this.stratumSizes.length; i++) {
+            final int stratumSize = this.stratumSizes[i];
+            final List<String> sampledStratum = this.sampledStrata.get(i);
+            final int sampledSize = sampledStratum.size();
+            if (sampledSize == stratumSize) {
+                continue; // the stratum is known exactly
+            }
+            final double weight = (double) stratumSize / this.populationSize;
+            final double stratumVariance = sampledSize < 2 ? pooledVariance : getResidualVariance(sampledStratum, ratio);
+            variance += weight * weight * (1D - (double) sampledSize / stratumSize) * stratumVariance
+                    / Math.max(1, sampledSize);
+        }
+        final double meanSnapshots = (double) this.snapshotsCount / n;
+        return Math.sqrt(variance) / meanSnapshots;
+    }
+
+    // sample variance of the residuals of the ratio estimator over the given test cases
+    private double getResidualVariance(final List<String> testNames, final double ratio) {
+        final double[] residuals = new double[testNames.size()];
+        double mean = 0D;
+        for (int i = 0; i < residuals.length; i++) {
+            final double[] ds = this.distances.get(testNames.get(i));
+            if (ds == null) {
+                continue; // the test took no snapshot
+            }
+            double sum = 0D;
+            for (final double distance : ds) {
+                sum += distance;
+            }
+            residuals[i] = sum - ratio * ds.length;
+            mean += residuals[i] / residuals.length;
+        }
+        double squares = 0D;
+        for (final double residual : residuals) {
+            squares += (residual - mean) * (residual - mean);
+        }
+        return squares / (residuals.length - 1);
+    }
+
+    /**
+     * @return <code>true</code> iff further sampling cannot change the estimate, i.e.
+     *         all test cases are sampled or the estimate is already infinite
+     */
+    boolean isSettled() {
+        return !hasNext() || Double.isInfinite(getEstimate());
+    }
+
+    /**
+     * Computes the highest confidence level at which the confidence intervals of the
+     * average scores of two patches do not overlap. Patches with identical estimates,
+     * e.g. both infinite, are tied, and thus not apart at all.
+     *
+     * @param s1 Sampler of a patch
+     * @param s2 Sampler of another patch
+     * @return Confidence level, between <code>0</code> and <code>1</code>
+     */
+    static double separationConfidence(final ScoreSampler s1, final ScoreSampler s2) {
+        final double e1 = s1.getEstimate();
+        final double e2 = s2.getEstimate();
+        if (e1 == e2) {
+            return 0D;
+        }
+        if (Double.isInfinite(e1) || Double.isInfinite(e2)) {
+            return 1D; // an infinite estimate is final, and apart from any finite one
+        }
+        final double errors = s1.getStandardError() + s2.getStandardError();
+        if (errors == 0D) {
+            return 1D;
+        }
+        final double z = Math.abs(e1 - e2) / errors;
+        return Math.max(0D, 2D * standardNormalCdf(z) - 1D);
+    }
+
+    // Abramowitz and Stegun approximation 7.1.26 of the error function; absolute error below 1.5e-7
+    private static double standardNormalCdf(final double z) {
+        if (Double.isInfinite(z)) {
+            return z > 0D ? 1D : 0D;
+        }
+        final double x = Math.abs(z) / Math.sqrt(2D);
+        final double t = 1D / (1D + 0.3275911D * x);
+        final double erf = 1D - t * (0.254829592D + t * (-0.284496736D + t * (1.421413741D
+                + t * (-1.453152027D + t * 1.061405429D)))) * Math.exp(-x * x);
+        return z >= 0D ? 0.5D * (1D + erf) : 0.5D * (1D - erf);
+    }
+}
@@ -0,0 +1,206 @@
+package edu.utdallas.objsim;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.process.FairShareScheduler;
+import edu.utdallas.objsim.profiler.prelude.PreludeProfilerResults;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scoring of the patches of a single project on a shared scheduler: the prelude is
+ * scheduled first, and once it is done, one task per group of patches (see
+ * {@link ObjSimEntryPoint#groupPatches(Collection)}) is scheduled. If covering tests
+ * are sampled, a single task scores all the patches instead.
+ * Output file is written as soon as all the patches are scored.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class ScoringJob {
+    private final String name;
+
+    private final ObjSimEntryPoint entryPoint;
+
+    private final FairShareScheduler scheduler;
+
+    private final long memoryPerTask;
+
+    private final CountDownLatch done;
+
+    private final AtomicBoolean finished;
+
+    private final ConcurrentHashMap<Integer, PatchScore> scores; // patchId --> score
+
+    private volatile Throwable failure;
+
+    /**
+     * @param name Name of the job; also used as the group name in the scheduler
+     * @param entryPoint Entry point configured for the project
+     * @param scheduler The scheduler shared among the jobs
+     * @param memoryPerTask Amount of memory, in megabytes, needed by a child process
+     */
+    public ScoringJob(final String name,
+                      final ObjSimEntryPoint entryPoint,
+                      final FairShareScheduler scheduler,
+                      final long memoryPerTask) {
+        this.name = name;
+        this.entryPoint = entryPoint;
+        this.scheduler = scheduler;
+        this.memoryPerTask = memoryPerTask;
+        this.done = new CountDownLatch(1);
+        this.finished = new AtomicBoolean(false);
+        this.scores = new ConcurrentHashMap<>();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Reads the patches and schedules the prelude.
+     */
+    public void start() {
+        final List<Patch> patches;
+        try {
+            patches = this.entryPoint.readPatches();
+        } catch (Exception e) {
+            fail(e);
+            return;
+        }
+        final Set<String> targetMethods = new HashSet<>();
+        for (final Patch patch : patches) {
+            targetMethods.addAll(patch.getPatchedMethods());
+        }
+        this.scheduler.submit(this.name, this.memoryPerTask, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                try {
+                    schedulePatches(patches, ScoringJob.this.entryPoint.runPrelude(targetMethods));
+                } catch (Throwable t) {
+                    fail(t);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Waits for the job to finish.
+     *
+     * @return The cause of failure, or <code>null</code> if the job succeeded
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public Throwable await() throws InterruptedException {
+        this.done.await();
+        return this.failure;
+    }
+
+    private void schedulePatches(final List<Patch> patches,
+                                 final PreludeProfilerResults preludeResults) throws Exception {
+        if (patches.isEmpty()) {
+            finish(patches);
+            return;
+        }
+        if (this.entryPoint.isSampling()) {
+            // patches are ranked against each other after every round, so they are scored together
+            this.scheduler.submit(this.name, this.memoryPerTask, new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        for (final PatchScore score : ScoringJob.this.entryPoint.scoreBySampling(patches, preludeResults)) {
+                            ScoringJob.this.scores.put(score.getPatchId(), score);
+                        }
+                        finish(patches);
+                    } catch (Throwable t) {
+                        fail(t);
+                    }
+                    return null;
+                }
+            });
+            return;
+        }
+        final List<List<Patch>> groups = this.entryPoint.groupPatches(patches);
+        // costliest groups first, so that they do not start last and hold back the job
+        final Map<List<Patch>, Long> costs = new IdentityHashMap<>();
+        for (final List<Patch> group : groups) {
+            costs.put(group, this.entryPoint.estimateCost(group, preludeResults));
+        }
+        Collections.sort(groups, new Comparator<List<Patch>>() {
+            @Override
+            public int compare(final List<Patch> g1, final List<Patch> g2) {
+                return Long.compare(costs.get(g2), costs.get(g1));
+            }
+        });
+        final AtomicInteger pending = new AtomicInteger(groups.size());
+        for (final List<Patch> group : groups) {
+            this.scheduler.submit(this.name, this.memoryPerTask, new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    if (ScoringJob.this.finished.get()) {
+                        return null; // the job has already failed
+                    }
+                    try {
+                        for (final PatchScore score : ScoringJob.this.entryPoint.score(group, preludeResults)) {
+                            ScoringJob.this.scores.put(score.getPatchId(), score);
+                        }
+                        if (pending.decrementAndGet() == 0) {
+                            finish(patches);
+                        }
+                    } catch (Throwable t) {
+                        fail(t);
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    private void finish(final Collection<Patch> patches) throws Exception {
+        final List<PatchScore> ordered = new ArrayList<>(patches.size());
+        for (final Patch patch : patches) {
+            ordered.add(this.scores.get(patch.getPatchId()));
+        }
+        this.entryPoint.writeScores(patches, ordered.iterator());
+        if (this.finished.compareAndSet(false, true)) {
+            this.done.countDown();
+        }
+    }
+
+    private void fail(final Throwable t) {
+        if (this.finished.compareAndSet(false, true)) {
+            this.failure = t;
+            this.done.countDown();
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package edu.utdallas.objsim.analysis;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.pitest.classinfo.ClassByteArraySource;
+import org.pitest.functional.Option;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static edu.utdallas.objsim.commons.misc.NameUtils.composeMethodFullName;
+
+/**
+ * A call graph of a set of classes, built using class hierarchy analysis (CHA).
+ * Virtual and interface calls are resolved to the implementations of the method
+ * in all the subtypes of the receiver type, among the classes of the graph. Calls to
+ * classes outside the graph, e.g. library classes, are ignored, and so are the calls
+ * made back to the classes of the graph by those classes.
+ * Methods are identified by keys of the form <code>owner.name+desc</code>, where
+ * <code>owner</code> is the internal name of the declaring class.
+ * For a conservative approximation of the methods reachable from a set of entry points,
+ * see {@link CallGraph#getConservativelyReachableMethods(Collection)}.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class CallGraph {
+    private static final String CLINIT = "<clinit>()V";
+
+    private final ClassByteArraySource byteArraySource;
+
+    private final Map<String, ClassSummary> classes; // internal name --> summary
+
+    private final Map<String, Set<String>> directSubtypes; // internal name --> internal names
+
+    private final Map<String, String> methodKeys; // method full name --> method key
+
+    private final Map<String, Set<String>> calleesCache; // method key --> callee keys
+
+    // internal name of a library type --> name + desc of the methods of the type and its super-types
+    private final Map<String, Set<String>> libraryMethodsCache;
+
+    private CallGraph(final ClassByteArraySource byteArraySource) {
+        this.byteArraySource = byteArraySource;
+        this.libraryMethodsCache = new HashMap<>();
+        this.classes = new HashMap<>();
+        this.directSubtypes = new HashMap<>();
+        this.methodKeys = new HashMap<>();
+        this.calleesCache = new HashMap<>();
+    }
+
+    /**
+     * Builds a call graph for the given classes.
+     *
+     * @param byteArraySource Byte array source for the classes
+     * @param classNames Java names of the classes
+     * @return The call graph
+     */
+    public static CallGraph build(final ClassByteArraySource byteArraySource,
+                                  final Collection<String> classNames) {
+        final CallGraph callGraph = new CallGraph(byteArraySource);
+        for (final String className : classNames) {
+            final Option<byte[]> bytes = byteArraySource.getBytes(className);
+            if (bytes.hasSome()) {
+                callGraph.addClass(bytes.value());
+            }
+        }
+        return callGraph;
+    }
+
+    private void addClass(final byte[] bytes) {
+        final ClassNode classNode = new ClassNode();
+        new ClassReader(bytes).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        final ClassSummary classSummary = new ClassSummary(classNode);
+        this.classes.put(classNode.name, classSummary);
+        if (classNode.superName != null) {
+            addSubtype(classNode.superName, classNode.name);
+        }
+        for (final String interfaceName : classNode.interfaces) {
+            addSubtype(interfaceName, classNode.name);
+        }
+        for (final MethodNode methodNode : classNode.methods) {
+            this.methodKeys.put(composeMethodFullName(classNode.name, methodNode.name, methodNode.desc),
+                    methodKey(classNode.name, methodNode.name, methodNode.desc));
+        }
+    }
+
+    private void addSubtype(final String superType, final String subType) {
+        Set<String> subtypes = this.directSubtypes.get(superType);
+        if (subtypes == null) {
+            subtypes = new HashSet<>();
+            this.directSubtypes.put(superType, subtypes);
+        }
+        subtypes.add(subType);
+    }
+
+    private static String methodKey(final String owner, final String name, final String desc) {
+        return owner + "." + name + desc;
+    }
+
+    /**
+     * @param methodFullName Full name of a method, e.g. <code>pkg.Cls.m(int)</code>
+     * @return The key of the method, or <code>null</code> if the method is not found
+     *         in the classes of the graph
+     */
+    public String getMethodKey(final String methodFullName) {
+        return this.methodKeys.get(methodFullName);
+    }
+
+    /**
+     * @param methodKey Key of a method of the graph
+     * @return Full names of the instance fields that are directly read or written by the
+     *         method, i.e. through <code>GETFIELD</code> or <code>PUTFIELD</code>
+     */
+    public Set<String> getAccessedFields(final String methodKey) {
+        final MethodSummary methodSummary = getMethodSummary(methodKey);
+        return methodSummary == null ? Collections.<String>emptySet() : methodSummary.accessedFields;
+    }
+
+    /**
+     * @param methodKey Key of a method of the graph
+     * @return Keys of the methods that might be called directly by the method
+     */
+    public synchronized Set<String> getCallees(final String methodKey) {
+        Set<String> callees = this.calleesCache.get(methodKey);
+        if (callees == null) {
+            callees = new HashSet<>();
+            final MethodSummary methodSummary = getMethodSummary(methodKey);
+            if (methodSummary != null) {
+                for (final CallSite callSite : methodSummary.callSites) {
+                    resolve(callSite, callees);
+                }
+            }
+            this.calleesCache.put(methodKey, callees);
+        }
+        return callees;
+    }
+
+    /**
+     * Computes the methods reachable from the given methods, through at most
+     * <code>maxDepth</code> calls.
+     *
+     * @param roots Keys of the root methods
+     * @param maxDepth Maximum length of call chains; negative values mean no limit
+     * @return Keys of the reachable methods, including the roots
+     */
+    public Set<String> getReachableMethods(final Collection<String> roots, final int maxDepth) {
+        final Set<String> visited = new HashSet<>(roots);
+        List<String> frontier = new ArrayList<>(visited);
+        for (int depth = 0; !frontier.isEmpty() && (maxDepth < 0 || depth < maxDepth); depth++) {
+            final List<String> next = new ArrayList<>();
+            for (final String methodKey : frontier) {
+                for (final String callee : getCallees(methodKey)) {
+                    if (visited.add(callee)) {
+                        next.add(callee);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return visited;
+    }
+
+    /**
+     * Computes the methods reachable from the given entry points, in a way that also
+     * accounts for the calls that are not visible in the classes of the graph: static
+     * initializers of the classes referenced by reachable methods are reachable, and so
+     * are the methods of the classes instantiated by reachable methods that override
+     * library methods, as library code might call them back, e.g. <code>compareTo</code>
+     * or <code>run</code>. Reflective calls are still not accounted for.
+     *
+     * @param roots Keys of the entry points
+     * @return Keys of the reachable methods, including the roots
+     */
+    public synchronized Set<String> getConservativelyReachableMethods(final Collection<String> roots) {
+        final Set<String> visited = new HashSet<>();
+        final Set<String> instantiated = new HashSet<>();
+        final LinkedList<String> worklist = new LinkedList<>();
+        for (final String root : roots) {
+            if (visited.add(root)) {
+                worklist.add(root);
+            }
+        }
+        while (!worklist.isEmpty()) {
+            final String methodKey = worklist.poll();
+            final Set<String> successors = new HashSet<>(getCallees(methodKey));
+            final MethodSummary methodSummary = getMethodSummary(methodKey);
+            if (methodSummary != null) {
+                for (final String type : methodSummary.referencedTypes) {
+                    if (this.classes.containsKey(type)) {
+                        successors.add(type + "." + CLINIT);
+                    }
+                }
+                for (final String type : methodSummary.instantiatedTypes) {
+                    if (instantiated.add(type)) {
+                        successors.addAll(getCallbacks(type));
+                    }
+                }
+            }
+            for (final String successor : successors) {
+                if (getMethodSummary(successor) != null && visited.add(successor)) {
+                    worklist.add(successor);
+                }
+            }
+        }
+        return visited;
+    }
+
+    // implementations, in an instance of the type, of the methods declared by library super-types
+    private Set<String> getCallbacks(final String type) {
+        final Set<String> callbacks = new HashSet<>();
+        final Set<String> libraryMethods = new HashSet<>();
+        String className = type;
+        while (className != null) {
+            final ClassSummary classSummary = this.classes.get(className);
+            if (classSummary == null) {
+                libraryMethods.addAll(getLibraryMethods(className));
+                break;
+            }
+            for (final String interfaceName : classSummary.interfaces) {
+                if (!this.classes.containsKey(interfaceName)) {
+                    libraryMethods.addAll(getLibraryMethods(interfaceName));
+                }
+            }
+            className = classSummary.superName;
+        }
+        for (final String nameDesc : libraryMethods) {
+            final String implementation = resolveDeclaration(type, nameDesc);
+            if (implementation != null && isConcrete(implementation)) {
+                callbacks.add(implementation);
+            }
+        }
+        return callbacks;
+    }
+
+    private Set<String> getLibraryMethods(final String type) {
+        Set<String> methods = this.libraryMethodsCache.get(type);
+        if (methods == null) {
+            methods = new HashSet<>();
+            this.libraryMethodsCache.put(type, methods); // guards against cycles
+            final Option<byte[]> bytes = this.byteArraySource.getBytes(type.replace('/', '.'));
+            if (bytes.hasSome()) {
+                final ClassNode classNode = new ClassNode();
+                new ClassReader(bytes.value()).accept(classNode,
+                        ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                for (final MethodNode methodNode : classNode.methods) {
+                    if ((methodNode.access & (Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE)) == 0
+                            && !methodNode.name.startsWith("<")) {
+                        methods.add(methodNode.name + methodNode.desc);
+                    }
+                }
+                if (classNode.superName != null) {
+                    methods.addAll(getLibraryMethods(classNode.superName));
+                }
+                for (final String interfaceName : classNode.interfaces) {
+                    methods.addAll(getLibraryMethods(interfaceName));
+                }
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * @param className Java name of a class
+     * @return <code>true</code> iff the class is in the graph, and is neither abstract
+     *         nor an interface
+     */
+    public boolean isConcreteClass(final String className) {
+        final ClassSummary classSummary = this.classes.get(className.replace('.', '/'));
+        return classSummary != null
+                && (classSummary.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE)) == 0;
+    }
+
+    /**
+     * @param className Java name of a class of the graph
+     * @return Java name of the super-class, which might be outside the graph, or
+     *         <code>null</code> if the class is not in the graph or has no super-class
+     */
+    public String getSuperClassName(final String className) {
+        final ClassSummary classSummary = this.classes.get(className.replace('.', '/'));
+        return classSummary == null || classSummary.superName == null
+                ? null : classSummary.superName.replace('/', '.');
+    }
+
+    /**
+     * @param className Java name of a class
+     * @return Keys of the methods declared in the class; empty if the class is not in the graph
+     */
+    public List<String> getDeclaredMethods(final String className) {
+        final String owner = className.replace('.', '/');
+        final ClassSummary classSummary = this.classes.get(owner);
+        final List<String> methodKeys = new ArrayList<>();
+        if (classSummary != null) {
+            for (final String nameDesc : classSummary.methods.keySet()) {
+                methodKeys.add(owner + "." + nameDesc);
+            }
+        }
+        return methodKeys;
+    }
+
+    /**
+     * @param methodKey Key of a method of the graph
+     * @return Access flags of the method
+     */
+    public int getAccess(final String methodKey) {
+        return getMethodSummary(methodKey).access;
+    }
+
+    /**
+     * @param methodKey Key of a method of the graph
+     * @return Descriptors of the runtime-visible annotations of the method
+     */
+    public Set<String> getAnnotations(final String methodKey) {
+        return getMethodSummary(methodKey).annotations;
+    }
+
+    /**
+     * @param methodKey Key of a method of the graph
+     * @return Method name
+     */
+    public static String getMethodName(final String methodKey) {
+        final String nameDesc = methodKey.substring(1 + methodKey.indexOf('.'));
+        return nameDesc.substring(0, nameDesc.indexOf('('));
+    }
+
+    /**
+     * @param methodKey Key of a method of the graph
+     * @return Method descriptor
+     */
+    public static String getMethodDescriptor(final String methodKey) {
+        return methodKey.substring(methodKey.indexOf('('));
+    }
+
+    private MethodSummary getMethodSummary(final String methodKey) {
+        final int dot = methodKey.indexOf('.');
+        final ClassSummary classSummary = this.classes.get(methodKey.substring(0, dot));
+        return classSummary == null ? null : classSummary.methods.get(methodKey.substring(1 + dot));
+    }
+
+    private void resolve(final CallSite callSite, final Set<String> callees) {
+        final String declaration = resolveDeclaration(callSite.owner, callSite.nameDesc);
+        if (declaration != null && isConcrete(declaration)) {
+            callees.add(declaration);
+        }
+        if (callSite.opcode == Opcodes.INVOKEVIRTUAL || callSite.opcode == Opcodes.INVOKEINTERFACE) {
+            for (final String subtype : getAllSubtypes(callSite.owner)) {
+                final String implementation = resolveDeclaration(subtype, callSite.nameDesc);
+                if (implementation != null && isConcrete(implementation)) {
+                    callees.add(implementation);
+                }
+            }
+        }
+    }
+
+    private boolean isConcrete(final String methodKey) {
+        final MethodSummary methodSummary = getMethodSummary(methodKey);
+        return methodSummary != null && (methodSummary.access & Opcodes.ACC_ABSTRACT) == 0;
+    }
+
+    // looks up the method in the type, its super-classes, and then its super-interfaces
+    private String resolveDeclaration(final String owner, final String nameDesc) {
+        String className = owner;
+        while (className != null) {
+            final ClassSummary classSummary = this.classes.get(className);
+            if (classSummary == null) {
+                break;
+            }
+            if (classSummary.methods.containsKey(nameDesc)) {
+                return className + "." + nameDesc;
+            }
+            className = classSummary.superName;
+        }
+        final LinkedList<String> worklist = new LinkedList<>();
+        final Set<String> visited = new HashSet<>();
+        worklist.add(owner);
+        while (!worklist.isEmpty()) {
+            final ClassSummary classSummary = this.classes.get(worklist.poll());
+            if (classSummary == null) {
+                continue;
+            }
+            for (final String interfaceName : classSummary.interfaces) {
+                final ClassSummary interfaceSummary = this.classes.get(interfaceName);
+                if (interfaceSummary != null && visited.add(interfaceName)) {
+                    if (interfaceSummary.methods.containsKey(nameDesc)) {
+                        return interfaceName + "." + nameDesc;
+                    }
+                    worklist.add(interfaceName);
+                }
+            }
+            if (classSummary.superName != null) {
+                worklist.add(classSummary.superName);
+            }
+        }
+        return null;
+    }
+
+    private Set<String> getAllSubtypes(final String type) {
+        final Set<String> subtypes = new HashSet<>();
+        final LinkedList<String> worklist = new LinkedList<>();
+        worklist.add(type);
+        while (!worklist.isEmpty()) {
+            final Set<String> directSubtypes = this.directSubtypes.get(worklist.poll());
+            if (directSubtypes != null) {
+                for (final String subtype : directSubtypes) {
+                    if (subtypes.add(subtype)) {
+                        worklist.add(subtype);
+                    }
+                }
+            }
+        }
+        return subtypes;
+    }
+
+    private static final class ClassSummary {
+        final int access;
+
+        final String superName;
+
+        final List<String> interfaces;
+
+        final Map<String, MethodSummary> methods; // name + desc --> summary
+
+        ClassSummary(final ClassNode classNode) {
+            this.access = classNode.access;
+            this.superName = classNode.superName;
+            this.interfaces = new ArrayList<>(classNode.interfaces);
+            this.methods = new HashMap<>();
+            for (final MethodNode methodNode : classNode.methods) {
+                this.methods.put(methodNode.name + methodNode.desc, new MethodSummary(methodNode));
+            }
+        }
+    }
+
+    private static final class MethodSummary {
+        final int access;
+
+        final Set<String> accessedFields;
+
+        final List<CallSite> callSites;
+
+        final Set<String> annotations;
+
+        final Set<String> referencedTypes; // types whose static initializers might be triggered
+
+        final Set<String> instantiatedTypes;
+
+        MethodSummary(final MethodNode methodNode) {
+            this.access = methodNode.access;
+            this.accessedFields = new HashSet<>();
+            this.callSites = new ArrayList<>();
+            this.annotations = new HashSet<>();
+            if (methodNode.visibleAnnotations != null) {
+                for (final AnnotationNode annotationNode : methodNode.visibleAnnotations) {
+                    this.annotations.add(annotationNode.desc);
+                }
+            }
+            this.referencedTypes = new HashSet<>();
+            this.instantiatedTypes = new HashSet<>();
+            for (final AbstractInsnNode insn : methodNode.instructions.toArray()) {
+                if (insn instanceof FieldInsnNode) {
+                    final FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                    if (fieldInsn.getOpcode() == Opcodes.GETFIELD || fieldInsn.getOpcode() == Opcodes.PUTFIELD) {
+                        this.accessedFields.add(fieldInsn.owner.replace('/', '.') + "." + fieldInsn.name);
+                    } else {
+                        this.referencedTypes.add(fieldInsn.owner);
+                    }
+                } else if (insn instanceof TypeInsnNode) {
+                    if (insn.getOpcode() == Opcodes.NEW) {
+                        this.referencedTypes.add(((TypeInsnNode) insn).desc);
+                        this.instantiatedTypes.add(((TypeInsnNode) insn).desc);
+                    }
+                } else if (insn instanceof MethodInsnNode) {
+                    final MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                    if (methodInsn.getOpcode() == Opcodes.INVOKESTATIC) {
+                        this.referencedTypes.add(methodInsn.owner);
+                    }
+                    this.callSites.add(new CallSite(methodInsn.getOpcode(), methodInsn.owner,
+                            methodInsn.name + methodInsn.desc));
+                } else if (insn instanceof InvokeDynamicInsnNode) {
+                    // lambdas and method references are bound to method handles
+                    for (final Object bsmArg : ((InvokeDynamicInsnNode) insn).bsmArgs) {
+                        if (bsmArg instanceof Handle) {
+                            final Handle handle = (Handle) bsmArg;
+                            this.callSites.add(new CallSite(toOpcode(handle.getTag()), handle.getOwner(),
+                                    handle.getName() + handle.getDesc()));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int toOpcode(final int handleTag) {
+        switch (handleTag) {
+            case Opcodes.H_INVOKESTATIC:
+                return Opcodes.INVOKESTATIC;
+            case Opcodes.H_INVOKEINTERFACE:
+                return Opcodes.INVOKEINTERFACE;
+            case Opcodes.H_INVOKEVIRTUAL:
+                return Opcodes.INVOKEVIRTUAL;
+            default: // special methods, constructors, and field handles
+                return Opcodes.INVOKESPECIAL;
+        }
+    }
+
+    private static final class CallSite {
+        final int opcode;
+
+        final String owner;
+
+        final String nameDesc;
+
+        CallSite(final int opcode, final String owner, final String nameDesc) {
+            this.opcode = opcode;
+            this.owner = owner;
+            this.nameDesc = nameDesc;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package edu.utdallas.objsim.analysis;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+import edu.utdallas.objsim.profiler.prelude.BlockCoverage;
+import edu.utdallas.objsim.profiler.prelude.PreludeProfilerResults;
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Greedy minimization of the test cases covering patched methods. The execution
+ * profile of a test case is the set of basic blocks of the patched methods it executes,
+ * together with the fields those methods access during the test case, as recorded in
+ * the prelude. Test cases sharing a profile are considered redundant, and only the
+ * fastest one among them is kept. Distinct profiles are then picked one at a time,
+ * each time taking the profile that adds most blocks and fields to those already
+ * exercised, until the cap is reached.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class CoveringTestsMinimizer {
+    private CoveringTestsMinimizer() {
+
+    }
+
+    /**
+     * @param testNames Names of the candidate test cases
+     * @param methodIndices Indices of the patched methods; their basic blocks must have
+     *                      been probed during the prelude
+     * @param preludeResults Prelude results
+     * @param maxTests Maximum number of test cases selected
+     * @return Names of the selected test cases, in the order they are picked
+     */
+    public static List<String> minimize(final Collection<String> testNames,
+                                        final Collection<Integer> methodIndices,
+                                        final PreludeProfilerResults preludeResults,
+                                        final int maxTests) {
+        Validate.isTrue(maxTests > 0);
+        final Map<String, CompressedBitmap> profiles = getProfiles(testNames, methodIndices, preludeResults);
+        final Map<String, Long> testDurations = preludeResults.getTestDurations();
+        final Map<CompressedBitmap, String> representatives = new HashMap<>(); // profile --> fastest test having it
+        for (final Map.Entry<String, CompressedBitmap> entry : profiles.entrySet()) {
+            final String testName = entry.getKey();
+            final String representative = representatives.get(entry.getValue());
+            if (representative == null || compare(testName, representative, testDurations) < 0) {
+                representatives.put(entry.getValue(), testName);
+            }
+        }
+        final List<CompressedBitmap> remaining = new ArrayList<>(representatives.keySet());
+        final CompressedBitmap exercised = new CompressedBitmap();
+        final List<String> selected = new ArrayList<>();
+        while (selected.size() < maxTests && !remaining.isEmpty()) {
+            int best = -1;
+            int bestGain = -1;
+            for (int i = 0; i < remaining.size(); i++) {
+                final CompressedBitmap profile = remaining.get(i);
+                final int gain = countMissing(profile, exercised);
+                if (best < 0 || gain > bestGain || (gain == bestGain && isPreferred(profile, remaining.get(best),
+                        representatives, testDurations))) {
+                    best = i;
+                    bestGain = gain;
+                }
+            }
+            final CompressedBitmap profile = remaining.remove(best);
+            exercised.or(profile);
+            selected.add(representatives.get(profile));
+        }
+        return selected;
+    }
+
+    // test name --> ids of the blocks and fields exercised by the test case
+    private static Map<String, CompressedBitmap> getProfiles(final Collection<String> testNames,
+                                                             final Collection<Integer> methodIndices,
+                                                             final PreludeProfilerResults preludeResults) {
+        final Map<String, CompressedBitmap> profiles = new HashMap<>();
+        for (final String testName : testNames) {
+            profiles.put(testName, new CompressedBitmap());
+        }
+        final BlockCoverage blockCoverage = preludeResults.getBlockCoverage();
+        final Map<String, Map<Integer, int[]>> testFieldAccesses = preludeResults.getTestFieldAccesses();
+        final Map<Long, Integer> featureIds = new HashMap<>(); // block or field key --> id
+        for (final int methodIndex : methodIndices) {
+            for (final Map.Entry<String, CompressedBitmap> entry : blockCoverage.getExecutedBlocks(methodIndex).entrySet()) {
+                final CompressedBitmap profile = profiles.get(entry.getKey());
+                if (profile == null) {
+                    continue;
+                }
+                final CompressedBitmap blocks = entry.getValue();
+                for (int blockId = blocks.nextElement(0); blockId >= 0; blockId = blocks.nextElement(blockId + 1)) {
+                    profile.add(getFeatureId(featureIds, blockId));
+                }
+            }
+            for (final Map.Entry<String, CompressedBitmap> entry : profiles.entrySet()) {
+                final Map<Integer, int[]> accessedFieldsMap = testFieldAccesses.get(entry.getKey());
+                final int[] fields = accessedFieldsMap == null ? null : accessedFieldsMap.get(methodIndex);
+                if (fields == null) {
+                    continue;
+                }
+                for (final int fieldIndex : fields) {
+                    // fields are told apart from blocks, and from the same fields of other methods
+                    entry.getValue().add(getFeatureId(featureIds, ((long) (methodIndex + 1) << 32) | fieldIndex));
+                }
+            }
+        }
+        return profiles;
+    }
+
+    private static int getFeatureId(final Map<Long, Integer> featureIds, final long key) {
+        Integer id = featureIds.get(key);
+        if (id == null) {
+            id = featureIds.size();
+            featureIds.put(key, id);
+        }
+        return id;
+    }
+
+    private static int countMissing(final CompressedBitmap profile, final CompressedBitmap exercised) {
+        int count = 0;
+        for (int id = profile.nextElement(0); id >= 0; id = profile.nextElement(id + 1)) {
+            if (!exercised.contains(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // among profiles adding the same number of blocks and fields, larger ones, and then
+    // those of faster test cases, are preferred
+    private static boolean isPreferred(final CompressedBitmap profile,
+                                       final CompressedBitmap other,
+                                       final Map<CompressedBitmap, String> representatives,
+                                       final Map<String, Long> testDurations) {
+        if (profile.cardinality() != other.cardinality()) {
+            return profile.cardinality() > other.cardinality();
+        }
+        return compare(representatives.get(profile), representatives.get(other), testDurations) < 0;
+    }
+
+    // faster test cases come first; those of unknown duration come last
+    private static int compare(final String testName,
+                               final String other,
+                               final Map<String, Long> testDurations) {
+        final Long duration = testDurations.get(testName);
+        final Long otherDuration = testDurations.get(other);
+        final long d1 = duration == null ? Long.MAX_VALUE : duration;
+        final long d2 = otherDuration == null ? Long.MAX_VALUE : otherDuration;
+        if (d1 != d2) {
+            return d1 < d2 ? -1 : 1;
+        }
+        return testName.compareTo(other);
+    }
+}
@@ -0,0 +1,130 @@
+package edu.utdallas.objsim.analysis;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.relational.FieldsDom;
+import edu.utdallas.objsim.commons.relational.MethodsDom;
+import edu.utdallas.objsim.profiler.prelude.ForwardingPreludeProfilerResults;
+import edu.utdallas.objsim.profiler.prelude.PreludeProfilerResults;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Static analysis computing the transitive set of instance fields read or written by
+ * patched methods, i.e. the fields accessed by a method or any method it might call,
+ * directly or indirectly, according to a call graph.
+ * The analysis is an alternative to recording field accesses during the prelude: it is
+ * faster, as nothing is run, but it over-approximates the fields through virtual
+ * calls, and misses those accessed through calls made by library code.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class FieldAccessAnalysis {
+    private FieldAccessAnalysis() {
+
+    }
+
+    /**
+     * @param callGraph Call graph of the application classes
+     * @param methodFullNames Full names of the patched methods
+     * @param maxDepth Maximum length of the call chains followed; negative values mean no limit
+     * @return Method full name --> full names of the accessed fields; methods that
+     *         are not found in the call graph are left out
+     */
+    public static Map<String, Set<String>> computeAccessedFields(final CallGraph callGraph,
+                                                                 final Collection<String> methodFullNames,
+                                                                 final int maxDepth) {
+        final Map<String, Set<String>> result = new HashMap<>();
+        for (final String methodFullName : methodFullNames) {
+            final String methodKey = callGraph.getMethodKey(methodFullName);
+            if (methodKey == null) {
+                continue;
+            }
+            final Set<String> accessedFields = new HashSet<>();
+            for (final String reachable : callGraph.getReachableMethods(Collections.singleton(methodKey), maxDepth)) {
+                accessedFields.addAll(callGraph.getAccessedFields(reachable));
+            }
+            result.put(methodFullName, accessedFields);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces, or extends, the fields accessed by patched methods in the prelude results
+     * with those computed statically. The fields are added to the fields domain, which is
+     * saved again in the scratch directory, so that profiler processes see them.
+     *
+     * @param preludeResults Prelude results
+     * @param staticallyAccessedFields Method full name --> full names of the accessed fields,
+     *                                 as computed by {@link FieldAccessAnalysis#computeAccessedFields(CallGraph, Collection, int)}
+     * @param union Whether to keep the fields recorded during the prelude
+     * @return Prelude results with updated accessed fields
+     */
+    public static PreludeProfilerResults apply(final PreludeProfilerResults preludeResults,
+                                               final Map<String, Set<String>> staticallyAccessedFields,
+                                               final boolean union) {
+        final FieldsDom fieldsDom = preludeResults.getFieldsDom();
+        final MethodsDom methodsDom = preludeResults.getMethodsDom();
+        final Map<Integer, int[]> accessedFieldsMap = union
+                ? new HashMap<>(preludeResults.accessedFieldsMap())
+                : new HashMap<Integer, int[]>();
+        for (final Map.Entry<String, Set<String>> entry : staticallyAccessedFields.entrySet()) {
+            final int methodIndex = methodsDom.indexOf(entry.getKey());
+            if (methodIndex < 0) {
+                continue; // the method is never loaded by tests
+            }
+            final Set<Integer> fields = new TreeSet<>();
+            final int[] recordedFields = accessedFieldsMap.get(methodIndex);
+            if (recordedFields != null) {
+                Collections.addAll(fields, ArrayUtils.toObject(recordedFields));
+            }
+            for (final String field : entry.getValue()) {
+                fields.add(fieldsDom.getOrAdd(field));
+            }
+            accessedFieldsMap.put(methodIndex, ArrayUtils.toPrimitive(fields.toArray(new Integer[0])));
+        }
+        fieldsDom.save(preludeResults.getScratchDirectory().getAbsolutePath(), true);
+        return new StaticallyAccessedFields(preludeResults, accessedFieldsMap);
+    }
+
+    // prelude results with accessed fields replaced; the fields domain is the same object
+    private static final class StaticallyAccessedFields extends ForwardingPreludeProfilerResults {
+        private final Map<Integer, int[]> accessedFieldsMap;
+
+        StaticallyAccessedFields(final PreludeProfilerResults preludeResults,
+                                 final Map<Integer, int[]> accessedFieldsMap) {
+            super(preludeResults);
+            this.accessedFieldsMap = accessedFieldsMap;
+        }
+
+        @Override
+        public Map<Integer, int[]> accessedFieldsMap() {
+            return this.accessedFieldsMap;
+        }
+    }
+}
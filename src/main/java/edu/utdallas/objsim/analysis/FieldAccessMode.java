@@ -0,0 +1,45 @@
+package edu.utdallas.objsim.analysis;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Ways of computing the fields accessed by patched methods, i.e. the fields included
+ * in system state snapshots.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public enum FieldAccessMode {
+    /**
+     * Fields are computed by {@link FieldAccessAnalysis}, without instrumenting field
+     * accesses during the prelude.
+     */
+    STATIC,
+
+    /**
+     * Fields actually accessed while running the tests are recorded during the prelude.
+     */
+    DYNAMIC,
+
+    /**
+     * Union of the fields computed statically and those recorded dynamically.
+     */
+    UNION
+}
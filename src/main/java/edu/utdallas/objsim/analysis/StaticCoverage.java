@@ -0,0 +1,225 @@
+package edu.utdallas.objsim.analysis;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+import edu.utdallas.objsim.commons.relational.FieldsDom;
+import edu.utdallas.objsim.commons.relational.MethodsDom;
+import edu.utdallas.objsim.profiler.prelude.BasicPreludeProfilerResults;
+import edu.utdallas.objsim.profiler.prelude.PreludeProfilerResults;
+import org.apache.commons.lang3.ArrayUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Static approximation of the test cases covering target methods: a test case covers a
+ * method if the method is reachable, in a call graph of application and test classes,
+ * from the test method or the other (e.g. set-up) methods of its test class.
+ * The approximation is meant to be conservative, so the test classes that do not cover
+ * any target method can be left out of the prelude; calls made via reflection, other
+ * than those made by JUnit itself, are not accounted for, though.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class StaticCoverage {
+    private static final String JUNIT3_TEST_CASE = "junit.framework.TestCase";
+
+    private static final String JUNIT4_TEST = "Lorg/junit/Test;";
+
+    private final Map<String, Set<String>> coverageMap; // test case name --> covered target methods
+
+    private StaticCoverage(final Map<String, Set<String>> coverageMap) {
+        this.coverageMap = coverageMap;
+    }
+
+    /**
+     * @param callGraph Call graph of application and test classes
+     * @param testClassNames Java names of the test classes
+     * @param targetMethods Full names of the target methods
+     * @return Static coverage of the target methods
+     */
+    public static StaticCoverage compute(final CallGraph callGraph,
+                                         final Collection<String> testClassNames,
+                                         final Collection<String> targetMethods) {
+        final Map<String, String> targetKeys = new HashMap<>(); // method key --> method full name
+        for (final String methodFullName : targetMethods) {
+            final String methodKey = callGraph.getMethodKey(methodFullName);
+            if (methodKey != null) {
+                targetKeys.put(methodKey, methodFullName);
+            }
+        }
+        final Map<String, Set<String>> coverageMap = new HashMap<>();
+        for (final String testClassName : testClassNames) {
+            if (!callGraph.isConcreteClass(testClassName)) {
+                continue;
+            }
+            final List<String> testMethods = new ArrayList<>();
+            final List<String> fixtureMethods = new ArrayList<>();
+            final boolean junit3 = isJUnit3TestClass(callGraph, testClassName);
+            for (final String methodKey : getMethods(callGraph, testClassName)) {
+                if (isTestMethod(callGraph, methodKey, junit3)) {
+                    testMethods.add(methodKey);
+                } else {
+                    fixtureMethods.add(methodKey);
+                }
+            }
+            for (final String testMethod : testMethods) {
+                final Set<String> roots = new HashSet<>(fixtureMethods);
+                roots.add(testMethod);
+                final Set<String> covered = new HashSet<>();
+                for (final String methodKey : callGraph.getConservativelyReachableMethods(roots)) {
+                    final String methodFullName = targetKeys.get(methodKey);
+                    if (methodFullName != null) {
+                        covered.add(methodFullName);
+                    }
+                }
+                coverageMap.put(testClassName + "." + CallGraph.getMethodName(testMethod), covered);
+            }
+        }
+        return new StaticCoverage(coverageMap);
+    }
+
+    private static boolean isJUnit3TestClass(final CallGraph callGraph, final String testClassName) {
+        String className = callGraph.getSuperClassName(testClassName);
+        while (className != null) {
+            if (JUNIT3_TEST_CASE.equals(className)) {
+                return true;
+            }
+            className = callGraph.getSuperClassName(className);
+        }
+        return false;
+    }
+
+    // the methods of the class and its super-classes, leaving out overridden methods
+    private static List<String> getMethods(final CallGraph callGraph, final String testClassName) {
+        final List<String> methods = new ArrayList<>();
+        final Set<String> seen = new HashSet<>();
+        String className = testClassName;
+        while (className != null) {
+            for (final String methodKey : callGraph.getDeclaredMethods(className)) {
+                final String nameDesc = methodKey.substring(1 + methodKey.indexOf('.'));
+                if (seen.add(nameDesc) || (callGraph.getAccess(methodKey) & Opcodes.ACC_STATIC) != 0) {
+                    methods.add(methodKey);
+                }
+            }
+            className = callGraph.getSuperClassName(className);
+        }
+        return methods;
+    }
+
+    private static boolean isTestMethod(final CallGraph callGraph, final String methodKey, final boolean junit3) {
+        final int access = callGraph.getAccess(methodKey);
+        if ((access & Opcodes.ACC_PUBLIC) == 0 || (access & Opcodes.ACC_STATIC) != 0) {
+            return false;
+        }
+        if (callGraph.getAnnotations(methodKey).contains(JUNIT4_TEST)) {
+            return true;
+        }
+        final String desc = CallGraph.getMethodDescriptor(methodKey);
+        return junit3
+                && CallGraph.getMethodName(methodKey).startsWith("test")
+                && Type.getArgumentTypes(desc).length == 0
+                && Type.getReturnType(desc) == Type.VOID_TYPE;
+    }
+
+    /**
+     * @return Test case name --> full names of the target methods it might cover
+     */
+    public Map<String, Set<String>> getCoverageMap() {
+        return Collections.unmodifiableMap(this.coverageMap);
+    }
+
+    /**
+     * @return Java names of the test classes with at least one test case covering
+     *         some target method
+     */
+    public Set<String> getCoveringTestClasses() {
+        final Set<String> testClassNames = new HashSet<>();
+        for (final Map.Entry<String, Set<String>> entry : this.coverageMap.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                final String testName = entry.getKey();
+                testClassNames.add(testName.substring(0, testName.lastIndexOf('.')));
+            }
+        }
+        return testClassNames;
+    }
+
+    /**
+     * Constructs prelude results out of the static coverage, so that patches can be
+     * scored without running the prelude. The methods and fields domains are saved in
+     * the scratch directory, so that profiler processes see them.
+     *
+     * @param scratchDirectory Scratch directory
+     * @param targetMethods Full names of the target methods
+     * @param accessedFields Method full name --> full names of the accessed fields, as
+     *                       computed by {@link FieldAccessAnalysis#computeAccessedFields(CallGraph, Collection, int)}
+     * @param failingTests Names of the test cases known to fail on the original program
+     * @return Prelude results
+     */
+    public PreludeProfilerResults toPreludeResults(final File scratchDirectory,
+                                                   final Collection<String> targetMethods,
+                                                   final Map<String, Set<String>> accessedFields,
+                                                   final Set<String> failingTests) {
+        final FieldsDom fieldsDom = new FieldsDom();
+        final MethodsDom methodsDom = new MethodsDom();
+        for (final String methodFullName : targetMethods) {
+            methodsDom.add(methodFullName);
+        }
+        final Map<String, CompressedBitmap> methodCoverageMap = new HashMap<>();
+        for (final Map.Entry<String, Set<String>> entry : this.coverageMap.entrySet()) {
+            final CompressedBitmap methodIndices = new CompressedBitmap();
+            for (final String methodFullName : entry.getValue()) {
+                methodIndices.add(methodsDom.indexOf(methodFullName));
+            }
+            methodCoverageMap.put(entry.getKey(), methodIndices);
+        }
+        final Map<Integer, int[]> accessedFieldsMap = new HashMap<>();
+        for (final Map.Entry<String, Set<String>> entry : accessedFields.entrySet()) {
+            final Set<Integer> fields = new TreeSet<>();
+            for (final String field : entry.getValue()) {
+                fields.add(fieldsDom.getOrAdd(field));
+            }
+            accessedFieldsMap.put(methodsDom.indexOf(entry.getKey()),
+                    ArrayUtils.toPrimitive(fields.toArray(new Integer[0])));
+        }
+        fieldsDom.save(scratchDirectory.getAbsolutePath(), true);
+        methodsDom.save(scratchDirectory.getAbsolutePath(), true);
+        return BasicPreludeProfilerResults.builder()
+                .scratchDirectory(scratchDirectory)
+                .fieldsDom(fieldsDom)
+                .methodsDom(methodsDom)
+                .accessedFieldsMap(accessedFieldsMap)
+                .methodCoverageMap(methodCoverageMap)
+                .failingTests(new HashSet<>(failingTests))
+                .build();
+    }
+}
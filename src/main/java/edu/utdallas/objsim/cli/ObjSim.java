@@ -21,9 +21,11 @@ package edu.utdallas.objsim.cli;
  */
 
 import edu.utdallas.objsim.ObjSimEntryPoint;
+import edu.utdallas.objsim.analysis.FieldAccessMode;
 import edu.utdallas.objsim.commons.classpath.ClassPathUtils;
 import edu.utdallas.objsim.commons.functional.PredicateFactory;
-import edu.utdallas.objsim.maven.AbstractObjSimMojo;
+import edu.utdallas.objsim.distributed.ScoringCoordinator;
+import edu.utdallas.objsim.distributed.ScoringWorker;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -31,11 +33,15 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
 import org.pitest.classinfo.ClassByteArraySource;
 import org.pitest.classpath.ClassPath;
 import org.pitest.functional.predicate.Predicate;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -62,7 +68,28 @@ public class ObjSim {
         options.addOption(varArgsOption("x", "excludedTests", false, "Target test classes to be excluded"));
         options.addOption("b", "buildFolder", true, "Build folder for application classes");
         options.addOption("u", "testBuildFolder", true, "Build folder for test classes; ignored if s = false");
+        options.addOption("p", "praprReports", true, "PraPR report directory from which patches are read directly, instead of the input CSV file");
         options.addOption("l", "classpath", true, "Classpath for the target program");
+        options.addOption("S", "sourceFolder", true, "Source folder against which source-level patches are applied");
+        options.addOption("T", "targetVersion", true, "Java version targeted when compiling source-level patches");
+        options.addOption("g", "maxSchemaSize", true, "Maximum number of patches merged into a meta-class; values less than 2 disable patch schemata");
+        options.addOption(noArgOption("r", "replayInvocations", "Replay invocations of patched methods instead of rerunning whole tests"));
+        options.addOption(noArgOption("d", "differential", "Run original and patched programs side by side in a single child process"));
+        options.addOption(noArgOption("P", "targetedPrelude", "Place coverage probes only on patched methods during the prelude"));
+        options.addOption("F", "fieldAccessMode", true, "How to compute fields accessed by patched methods: STATIC, DYNAMIC (default), or UNION");
+        options.addOption("D", "callGraphDepth", true, "Maximum length of call chains followed by static field access analysis; negative for no limit");
+        options.addOption(noArgOption("R", "testPreselection", "Run only the test classes statically reaching patched methods during the prelude"));
+        options.addOption(noArgOption("K", "skipPrelude", "Skip the prelude, taking statically computed covering tests and accessed fields"));
+        options.addOption("f", "failingTests", true, "File listing the tests failing on the original program; used if the prelude is skipped");
+        options.addOption("j", "preludeThreads", true, "Number of test classes run concurrently during the prelude");
+        options.addOption(noArgOption("B", "blockCoverage", "Run patches only against the tests executing the instructions they modify"));
+        options.addOption("N", "maxCoveringTests", true, "Maximum number of passing tests, with distinct execution profiles, run against each patch; values less than 1 disable minimization");
+        options.addOption("Z", "samplingBatchSize", true, "Number of passing tests drawn at a time when sampling covering tests; values less than 1 disable sampling");
+        options.addOption("A", "samplingConfidence", true, "Confidence level of the score intervals compared when sampling covering tests; 0.95 by default");
+        options.addOption("C", "coordinatorPort", true, "Run as the coordinator of distributed scoring, accepting workers on the given port");
+        options.addOption("W", "worker", true, "Run as a worker of distributed scoring, registering with the coordinator at the given host:port");
+        options.addOption("a", "bindAddress", true, "Address on which the coordinator of distributed scoring accepts workers; loopback by default");
+        options.addOption("k", "secretFile", true, "File containing the secret shared by the coordinator and the workers of distributed scoring");
         options.addOption(noArgOption("h", "help", "Print usage"));
 
         final CommandLineParser clParser = new DefaultParser();
@@ -85,7 +112,14 @@ public class ObjSim {
         if (cmd.hasOption('i')) {
             inputCSVFile = new File(cmd.getOptionValue('i'));
         }
-        if (!inputCSVFile.isFile()) {
+        final File praprReportDirectory = cmd.hasOption('p') ? new File(cmd.getOptionValue('p')) : null;
+        if (praprReportDirectory != null && !praprReportDirectory.isDirectory()) {
+            System.out.printf("PraPR report directory '%s' non-existent%n", praprReportDirectory.getAbsolutePath());
+            printUsage(options);
+            return;
+        }
+        final boolean worker = cmd.hasOption('W');
+        if (!worker && praprReportDirectory == null && !inputCSVFile.isFile()) {
             System.out.printf("Input CSV file '%s' non-existent%n", inputCSVFile.getAbsolutePath());
             printUsage(options);
             return;
@@ -144,7 +178,7 @@ public class ObjSim {
                 printUsage(options);
                 return;
             }
-            excludedClasses = PredicateFactory.or(excludedClasses, AbstractObjSimMojo.classFileFilter(targetTestDirectory));
+            excludedClasses = PredicateFactory.or(excludedClasses, ClassPathUtils.classFileFilter(targetTestDirectory));
         }
         Predicate<String> p;
         if (cmd.hasOption('c')) {
@@ -152,7 +186,7 @@ public class ObjSim {
             Collections.addAll(targetClasses0, cmd.getOptionValues('c'));
             p = PredicateFactory.orGlobs(targetClasses0);
         } else if (includeProductionClasses) {
-            p = AbstractObjSimMojo.classFileFilter(buildFolder);
+            p = ClassPathUtils.classFileFilter(buildFolder);
         } else {
             System.out.println("No target classes are specified");
             printUsage(options);
@@ -174,24 +208,77 @@ public class ObjSim {
         if (!compatibleJREHome.isDirectory()) {
             throw new IllegalStateException("Invalid JAVA_HOME/JRE_HOME");
         }
+        // patch schemata
+        int maxSchemaSize = 0;
+        if (cmd.hasOption('g')) {
+            maxSchemaSize = Integer.parseInt(cmd.getOptionValue('g'));
+        }
         /* -------------------------- */
 
         final ClassPath classPath = createClassPath(extraClasspathElements);
         final ClassByteArraySource byteArraySource = ClassPathUtils.createClassByteArraySource(classPath);
         try {
-            (new ObjSimEntryPoint(buildFolder,
-                    classPath,
-                    byteArraySource,
-                    targetClasses,
-                    targetTests,
-                    compatibleJREHome,
-                    childJVMArgs,
-                    inputCSVFile)).run();
+            final ObjSimEntryPoint entryPoint = ObjSimEntryPoint.builder()
+                    .classPath(classPath)
+                    .byteArraySource(byteArraySource)
+                    .appClassFilter(targetClasses)
+                    .testClassFilter(targetTests)
+                    .compatibleJREHome(compatibleJREHome)
+                    .childJVMArgs(childJVMArgs)
+                    .inputCSVFile(inputCSVFile)
+                    .praprReportDirectory(praprReportDirectory)
+                    .maxSchemaSize(maxSchemaSize)
+                    .replayInvocations(cmd.hasOption('r'))
+                    .differential(cmd.hasOption('d'))
+                    .targetedPrelude(cmd.hasOption('P'))
+                    .fieldAccessMode(cmd.hasOption('F')
+                            ? FieldAccessMode.valueOf(cmd.getOptionValue('F').toUpperCase())
+                            : FieldAccessMode.DYNAMIC)
+                    .callGraphDepth(cmd.hasOption('D') ? Integer.parseInt(cmd.getOptionValue('D')) : 5)
+                    .testPreselection(cmd.hasOption('R'))
+                    .skipPrelude(cmd.hasOption('K'))
+                    .failingTestsFile(cmd.hasOption('f') ? new File(cmd.getOptionValue('f')) : null)
+                    .preludeThreads(cmd.hasOption('j') ? Integer.parseInt(cmd.getOptionValue('j')) : 1)
+                    .blockCoverage(cmd.hasOption('B'))
+                    .maxCoveringTests(cmd.hasOption('N') ? Integer.parseInt(cmd.getOptionValue('N')) : 0)
+                    .samplingBatchSize(cmd.hasOption('Z') ? Integer.parseInt(cmd.getOptionValue('Z')) : 0)
+                    .samplingConfidence(cmd.hasOption('A') ? Double.parseDouble(cmd.getOptionValue('A')) : 0.95D)
+                    .sourceDirectory(cmd.hasOption('S') ? new File(cmd.getOptionValue('S')) : null)
+                    .compilerTargetVersion(cmd.getOptionValue('T'))
+                    .build();
+            final String secret = worker || cmd.hasOption('C') ? readSecret(cmd) : null;
+            if (worker) {
+                final String coordinator = cmd.getOptionValue('W');
+                final int colon = coordinator.lastIndexOf(':');
+                if (colon < 0) {
+                    throw new IllegalArgumentException("Coordinator shall be given as host:port");
+                }
+                new ScoringWorker(entryPoint,
+                        coordinator.substring(0, colon),
+                        Integer.parseInt(coordinator.substring(colon + 1)),
+                        secret).run();
+            } else if (cmd.hasOption('C')) {
+                final InetAddress bindAddress = cmd.hasOption('a') ? InetAddress.getByName(cmd.getOptionValue('a')) : null;
+                new ScoringCoordinator(entryPoint, bindAddress, Integer.parseInt(cmd.getOptionValue('C')), secret).run();
+            } else {
+                entryPoint.run();
+            }
         } catch (Exception e) {
             throw new IllegalStateException(e.getMessage(), e);
         }
     }
 
+    private static String readSecret(final CommandLine cmd) throws IOException {
+        if (!cmd.hasOption('k')) {
+            throw new IllegalArgumentException("Shared secret file shall be given for distributed scoring");
+        }
+        final String secret = FileUtils.readFileToString(new File(cmd.getOptionValue('k')), StandardCharsets.UTF_8).trim();
+        if (secret.isEmpty()) {
+            throw new IllegalArgumentException("Shared secret file is empty");
+        }
+        return secret;
+    }
+
     private static void printUsage(final Options options) {
         final HelpFormatter formatter = new HelpFormatter();
         formatter.printHelp("ObjSim", options);
@@ -209,7 +296,7 @@ public class ObjSim {
         return option;
     }
 
-    private static ClassPath createClassPath(final Collection<File> extraElements) {
+    static ClassPath createClassPath(final Collection<File> extraElements) {
         final Set<File> elements = new HashSet<>(ClassPathUtils.getClassPathElements());
         elements.addAll(extraElements);
         return new ClassPath(elements);
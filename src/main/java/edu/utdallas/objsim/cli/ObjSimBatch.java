@@ -0,0 +1,231 @@
+package edu.utdallas.objsim.cli;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.ObjSimEntryPoint;
+import edu.utdallas.objsim.ScoringJob;
+import edu.utdallas.objsim.analysis.FieldAccessMode;
+import edu.utdallas.objsim.commons.classpath.ClassPathUtils;
+import edu.utdallas.objsim.commons.functional.PredicateFactory;
+import edu.utdallas.objsim.commons.process.FairShareScheduler;
+import edu.utdallas.objsim.commons.process.MemoryUtils;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.pitest.functional.predicate.Predicate;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Commandline interface for applying the tool on several buggy projects at once.
+ * All the profiling tasks of all the projects share a single pool of workers that
+ * is fair to the projects (i.e. a project with many patches does not starve others)
+ * and does not launch more child processes than the available memory allows.
+ *
+ * The projects are listed in a manifest CSV file with the following columns:
+ * project directory, input CSV file (or PraPR report directory), build folder, test build folder, and class path.
+ * Relative paths are resolved against the project directory, and the output CSV file
+ * of each project is written to its directory.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class ObjSimBatch {
+    private static final long DEFAULT_MEMORY_BUDGET = 16L << 10; // in megabytes
+
+    public static void main(final String[] args) throws Exception {
+        /* ------------- Processing Commandline Options ------------- */
+        final Options options = new Options();
+
+        options.addOption("m", "manifest", true, "The CSV file listing the projects");
+        options.addOption("w", "workers", true, "Maximum number of child processes running simultaneously");
+        options.addOption("M", "memoryBudget", true, "Total memory, in megabytes, available to child processes");
+        final Option jvmArgsOption = new Option("v", "childJVMArgs", true, "A list of JVM arguments used when creating a child JVM process, i.e. during profiling");
+        jvmArgsOption.setArgs(Option.UNLIMITED_VALUES);
+        options.addOption(jvmArgsOption);
+        options.addOption("g", "maxSchemaSize", true, "Maximum number of patches merged into a meta-class; values less than 2 disable patch schemata");
+        options.addOption("r", "replayInvocations", false, "Replay invocations of patched methods instead of rerunning whole tests");
+        options.addOption("d", "differential", false, "Run original and patched programs side by side in a single child process");
+        options.addOption("P", "targetedPrelude", false, "Place coverage probes only on patched methods during the prelude");
+        options.addOption("F", "fieldAccessMode", true, "How to compute fields accessed by patched methods: STATIC, DYNAMIC (default), or UNION");
+        options.addOption("D", "callGraphDepth", true, "Maximum length of call chains followed by static field access analysis; negative for no limit");
+        options.addOption("R", "testPreselection", false, "Run only the test classes statically reaching patched methods during the prelude");
+        options.addOption("K", "skipPrelude", false, "Skip the prelude, taking statically computed covering tests and accessed fields");
+        options.addOption("f", "failingTests", true, "File, relative to project directories, listing the tests failing on the original programs; used if the prelude is skipped");
+        options.addOption("j", "preludeThreads", true, "Number of test classes run concurrently during the prelude of each project");
+        options.addOption("B", "blockCoverage", false, "Run patches only against the tests executing the instructions they modify");
+        options.addOption("N", "maxCoveringTests", true, "Maximum number of passing tests, with distinct execution profiles, run against each patch; values less than 1 disable minimization");
+        options.addOption("Z", "samplingBatchSize", true, "Number of passing tests drawn at a time when sampling covering tests; values less than 1 disable sampling");
+        options.addOption("A", "samplingConfidence", true, "Confidence level of the score intervals compared when sampling covering tests; 0.95 by default");
+        options.addOption("h", "help", false, "Print usage");
+
+        final CommandLineParser clParser = new DefaultParser();
+        final CommandLine cmd;
+        try {
+            cmd = clParser.parse(options, args);
+        } catch (ParseException pe) {
+            System.out.printf("Error %s: %s%n", pe.getClass().getName(), pe.getMessage());
+            printUsage(options);
+            return;
+        }
+
+        // help?
+        if (cmd.hasOption('h') || !cmd.hasOption('m')) {
+            printUsage(options);
+            return;
+        }
+        final File manifestFile = new File(cmd.getOptionValue('m'));
+        if (!manifestFile.isFile()) {
+            System.out.printf("Manifest file '%s' non-existent%n", manifestFile.getAbsolutePath());
+            printUsage(options);
+            return;
+        }
+        final int workers = cmd.hasOption('w')
+                ? Integer.parseInt(cmd.getOptionValue('w'))
+                : Runtime.getRuntime().availableProcessors();
+        final long memoryBudget = cmd.hasOption('M')
+                ? Long.parseLong(cmd.getOptionValue('M'))
+                : MemoryUtils.getTotalPhysicalMemory(DEFAULT_MEMORY_BUDGET);
+        List<String> childJVMArgs = Collections.singletonList("-Xmx4g");
+        if (cmd.hasOption('v')) {
+            childJVMArgs = Arrays.asList(cmd.getOptionValues('v'));
+        }
+        // locating JRE
+        final String jreHome = System.getProperty("java.home");
+        if (jreHome == null) {
+            throw new IllegalStateException("JAVA_HOME is not set");
+        }
+        final File compatibleJREHome = new File(jreHome);
+        if (!compatibleJREHome.isDirectory()) {
+            throw new IllegalStateException("Invalid JAVA_HOME/JRE_HOME");
+        }
+        final int maxSchemaSize = cmd.hasOption('g') ? Integer.parseInt(cmd.getOptionValue('g')) : 0;
+        /* -------------------------- */
+
+        final long memoryPerTask = MemoryUtils.getMaxHeapSize(childJVMArgs, memoryBudget);
+        final FairShareScheduler scheduler = new FairShareScheduler(workers, memoryBudget);
+        final List<ScoringJob> jobs = new ArrayList<>();
+        try (final Reader fr = new FileReader(manifestFile);
+             final CSVParser parser = CSVParser.parse(fr, CSVFormat.DEFAULT)) {
+            for (final CSVRecord record : parser.getRecords()) {
+                final ScoringJob job = new ScoringJob(record.get(0).trim(),
+                        createEntryPoint(record, cmd, compatibleJREHome, childJVMArgs, maxSchemaSize),
+                        scheduler,
+                        memoryPerTask);
+                jobs.add(job);
+                job.start();
+            }
+        }
+        int failures = 0;
+        for (final ScoringJob job : jobs) {
+            final Throwable failure = job.await();
+            if (failure != null) {
+                failures++;
+                System.out.printf("ERROR: project '%s' failed: %s%n", job.getName(), failure.getMessage());
+                failure.printStackTrace();
+            }
+        }
+        scheduler.shutdown();
+        System.out.printf("INFO: %d out of %d project(s) successfully processed%n", jobs.size() - failures, jobs.size());
+    }
+
+    private static ObjSimEntryPoint createEntryPoint(final CSVRecord record,
+                                                     final CommandLine cmd,
+                                                     final File compatibleJREHome,
+                                                     final List<String> childJVMArgs,
+                                                     final int maxSchemaSize) {
+        final File projectDir = new File(record.get(0).trim());
+        final File input = resolve(projectDir, record.get(1)); // input CSV file or PraPR report directory
+        final File buildFolder = resolve(projectDir, record.get(2));
+        final File testBuildFolder = resolve(projectDir, record.get(3));
+        final Set<File> extraClasspathElements = new HashSet<>();
+        extraClasspathElements.add(buildFolder);
+        extraClasspathElements.add(testBuildFolder);
+        if (record.size() > 4) {
+            for (final String element : record.get(4).split(File.pathSeparator)) {
+                if (!element.trim().isEmpty()) {
+                    extraClasspathElements.add(resolve(projectDir, element));
+                }
+            }
+        }
+        final Set<String> targetTests = new HashSet<>();
+        targetTests.add("*Test");
+        targetTests.add("*Tests");
+        targetTests.add("*TestCase*");
+        final Predicate<String> targetClasses = PredicateFactory.and(ClassPathUtils.classFileFilter(buildFolder),
+                PredicateFactory.not(ClassPathUtils.classFileFilter(testBuildFolder)));
+        final ObjSimEntryPoint.Builder builder = ObjSimEntryPoint.builder();
+        if (input.isDirectory()) {
+            builder.praprReportDirectory(input);
+        } else {
+            builder.inputCSVFile(input);
+        }
+        return builder
+                .classPath(ObjSim.createClassPath(extraClasspathElements))
+                .appClassFilter(targetClasses)
+                .testClassFilter(PredicateFactory.orGlobs(targetTests))
+                .compatibleJREHome(compatibleJREHome)
+                .childJVMArgs(childJVMArgs)
+                .maxSchemaSize(maxSchemaSize)
+                .replayInvocations(cmd.hasOption('r'))
+                .differential(cmd.hasOption('d'))
+                .targetedPrelude(cmd.hasOption('P'))
+                .fieldAccessMode(cmd.hasOption('F')
+                        ? FieldAccessMode.valueOf(cmd.getOptionValue('F').toUpperCase())
+                        : FieldAccessMode.DYNAMIC)
+                .callGraphDepth(cmd.hasOption('D') ? Integer.parseInt(cmd.getOptionValue('D')) : 5)
+                .testPreselection(cmd.hasOption('R'))
+                .skipPrelude(cmd.hasOption('K'))
+                .failingTestsFile(cmd.hasOption('f') ? resolve(projectDir, cmd.getOptionValue('f')) : null)
+                .preludeThreads(cmd.hasOption('j') ? Integer.parseInt(cmd.getOptionValue('j')) : 1)
+                .blockCoverage(cmd.hasOption('B'))
+                .maxCoveringTests(cmd.hasOption('N') ? Integer.parseInt(cmd.getOptionValue('N')) : 0)
+                .samplingBatchSize(cmd.hasOption('Z') ? Integer.parseInt(cmd.getOptionValue('Z')) : 0)
+                .samplingConfidence(cmd.hasOption('A') ? Double.parseDouble(cmd.getOptionValue('A')) : 0.95D)
+                .outputCSVFile(new File(projectDir, "objsim-scores-complete.csv"))
+                .baseDirectory(projectDir)
+                .build();
+    }
+
+    private static File resolve(final File projectDir, final String path) {
+        final File file = new File(path.trim());
+        return file.isAbsolute() ? file : new File(projectDir, path.trim());
+    }
+
+    private static void printUsage(final Options options) {
+        final HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("ObjSimBatch", options);
+    }
+}
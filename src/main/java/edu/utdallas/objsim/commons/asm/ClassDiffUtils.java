@@ -0,0 +1,276 @@
+package edu.utdallas.objsim.commons.asm;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.util.Textifier;
+import org.objectweb.asm.util.TraceMethodVisitor;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static edu.utdallas.objsim.commons.misc.NameUtils.composeMethodFullName;
+
+/**
+ * A set of utility functions for comparing different versions of a class.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class ClassDiffUtils {
+    private ClassDiffUtils() {
+
+    }
+
+    public static ClassNode readClass(final byte[] bytes) {
+        final ClassNode classNode = new ClassNode();
+        new ClassReader(bytes).accept(classNode, ClassReader.SKIP_FRAMES);
+        return classNode;
+    }
+
+    /**
+     * Returns full names of the methods of the patched version of a class whose bodies
+     * differ from those of the original version, including the methods that are
+     * absent in the original version.
+     *
+     * @param original Bytes of the original class
+     * @param patched Bytes of the patched class
+     * @return Full names of modified methods
+     */
+    public static Set<String> getModifiedMethods(final byte[] original, final byte[] patched) {
+        final ClassNode originalNode = readClass(original);
+        final ClassNode patchedNode = readClass(patched);
+        final Map<String, String> originalBodies = new HashMap<>();
+        for (final MethodNode methodNode : originalNode.methods) {
+            originalBodies.put(methodNode.name + methodNode.desc, textOf(methodNode));
+        }
+        final Set<String> modifiedMethods = new HashSet<>();
+        for (final MethodNode methodNode : patchedNode.methods) {
+            if (!textOf(methodNode).equals(originalBodies.get(methodNode.name + methodNode.desc))) {
+                modifiedMethods.add(composeMethodFullName(patchedNode.name, methodNode.name, methodNode.desc));
+            }
+        }
+        return modifiedMethods;
+    }
+
+    /**
+     * Returns the modified region of each method of the original version of a class
+     * whose body differs from that of the patched version. A region is a range
+     * <code>[from, to)</code> of instruction indices, where pseudo-instructions,
+     * i.e. labels, line numbers and frames, are not counted. The region spans the
+     * instructions between the longest common prefix and the longest common suffix
+     * of the two versions; if the number of instructions changes, it also spans the
+     * first instruction of the suffix, before which code is inserted or removed.
+     * Methods whose exception handlers change outside of the region are left out, as
+     * is any method absent in either version; a missing region means that the whole
+     * method shall be considered modified.
+     *
+     * @param original Bytes of the original class
+     * @param patched Bytes of the patched class
+     * @return Full name of modified method --> <code>{from, to}</code>
+     */
+    public static Map<String, int[]> getModifiedRegions(final byte[] original, final byte[] patched) {
+        final ClassNode originalNode = readClass(original);
+        final ClassNode patchedNode = readClass(patched);
+        final Map<String, MethodNode> patchedMethods = new HashMap<>();
+        for (final MethodNode methodNode : patchedNode.methods) {
+            patchedMethods.put(methodNode.name + methodNode.desc, methodNode);
+        }
+        final Map<String, int[]> regions = new HashMap<>();
+        for (final MethodNode methodNode : originalNode.methods) {
+            final MethodNode patchedMethod = patchedMethods.get(methodNode.name + methodNode.desc);
+            if (patchedMethod == null) {
+                continue;
+            }
+            final int[] region = getModifiedRegion(methodNode, patchedMethod);
+            if (region != null) {
+                regions.put(composeMethodFullName(originalNode.name, methodNode.name, methodNode.desc), region);
+            }
+        }
+        return regions;
+    }
+
+    // null if the methods are the same or the region cannot be determined
+    private static int[] getModifiedRegion(final MethodNode original, final MethodNode patched) {
+        final List<String> originalInsns = instructionKeys(original);
+        final List<String> patchedInsns = instructionKeys(patched);
+        final int originalLength = originalInsns.size();
+        final int patchedLength = patchedInsns.size();
+        if (originalLength == 0) {
+            return null;
+        }
+        int prefix = 0;
+        while (prefix < originalLength && prefix < patchedLength
+                && originalInsns.get(prefix).equals(patchedInsns.get(prefix))) {
+            prefix++;
+        }
+        if (prefix == originalLength && prefix == patchedLength) {
+            return null;
+        }
+        int suffix = 0;
+        while (suffix < originalLength - prefix && suffix < patchedLength - prefix
+                && originalInsns.get(originalLength - 1 - suffix).equals(patchedInsns.get(patchedLength - 1 - suffix))) {
+            suffix++;
+        }
+        if (!tryCatchBlockKeys(original, prefix, suffix).equals(tryCatchBlockKeys(patched, prefix, suffix))) {
+            return null;
+        }
+        int from = prefix;
+        int to = originalLength - suffix;
+        if (originalLength != patchedLength) {
+            // code inserted, or removed, before the first instruction of the suffix is
+            // reached where the original program reaches that instruction, e.g. via jumps
+            // or exception handlers targeting it
+            to = Math.min(originalLength, to + 1);
+            if (to <= from) {
+                from = to - 1;
+            }
+        }
+        return new int[] {from, to};
+    }
+
+    // jump targets are given relative to the jump, so that they are not affected by
+    // the code inserted, or removed, outside of the jump
+    private static List<String> instructionKeys(final MethodNode methodNode) {
+        final Map<LabelNode, Integer> labelIndices = labelIndices(methodNode);
+        final List<String> keys = new ArrayList<>();
+        final Iterator<AbstractInsnNode> it = methodNode.instructions.iterator();
+        while (it.hasNext()) {
+            final AbstractInsnNode insn = it.next();
+            if (insn.getOpcode() < 0) {
+                continue;
+            }
+            final int index = keys.size();
+            final StringBuilder key = new StringBuilder();
+            key.append(insn.getOpcode());
+            if (insn instanceof JumpInsnNode) {
+                key.append(' ').append(labelIndices.get(((JumpInsnNode) insn).label) - index);
+            } else if (insn instanceof TableSwitchInsnNode) {
+                final TableSwitchInsnNode switchInsn = (TableSwitchInsnNode) insn;
+                key.append(' ').append(switchInsn.min).append(' ').append(switchInsn.max);
+                key.append(' ').append(labelIndices.get(switchInsn.dflt) - index);
+                for (final LabelNode label : switchInsn.labels) {
+                    key.append(' ').append(labelIndices.get(label) - index);
+                }
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                final LookupSwitchInsnNode switchInsn = (LookupSwitchInsnNode) insn;
+                key.append(' ').append(switchInsn.keys);
+                key.append(' ').append(labelIndices.get(switchInsn.dflt) - index);
+                for (final LabelNode label : switchInsn.labels) {
+                    key.append(' ').append(labelIndices.get(label) - index);
+                }
+            } else {
+                final Textifier textifier = new Textifier();
+                insn.accept(new TraceMethodVisitor(textifier));
+                final StringWriter sw = new StringWriter();
+                textifier.print(new PrintWriter(sw));
+                key.append(' ').append(sw);
+            }
+            keys.add(key.toString());
+        }
+        return keys;
+    }
+
+    // label --> index of the instruction that follows it
+    private static Map<LabelNode, Integer> labelIndices(final MethodNode methodNode) {
+        final Map<LabelNode, Integer> labelIndices = new HashMap<>();
+        int index = 0;
+        final Iterator<AbstractInsnNode> it = methodNode.instructions.iterator();
+        while (it.hasNext()) {
+            final AbstractInsnNode insn = it.next();
+            if (insn instanceof LabelNode) {
+                labelIndices.put((LabelNode) insn, index);
+            } else if (insn.getOpcode() >= 0) {
+                index++;
+            }
+        }
+        return labelIndices;
+    }
+
+    // boundaries of exception handlers are given relative to the start of the method
+    // if they fall in the common prefix, and to its end if they fall in the common suffix
+    private static List<String> tryCatchBlockKeys(final MethodNode methodNode, final int prefix, final int suffix) {
+        final Map<LabelNode, Integer> labelIndices = labelIndices(methodNode);
+        int length = 0;
+        final Iterator<AbstractInsnNode> it = methodNode.instructions.iterator();
+        while (it.hasNext()) {
+            if (it.next().getOpcode() >= 0) {
+                length++;
+            }
+        }
+        final List<String> keys = new ArrayList<>();
+        for (final TryCatchBlockNode tcb : methodNode.tryCatchBlocks) {
+            final StringBuilder key = new StringBuilder(String.valueOf(tcb.type));
+            for (final LabelNode label : new LabelNode[] {tcb.start, tcb.end, tcb.handler}) {
+                final int index = labelIndices.get(label);
+                if (index < prefix) {
+                    key.append(" P").append(index);
+                } else if (index >= length - suffix) {
+                    key.append(" S").append(length - index);
+                } else {
+                    key.append(" M");
+                }
+            }
+            keys.add(key.toString());
+        }
+        return keys;
+    }
+
+    /**
+     * Textual representation of a method body, ignoring line numbers and local
+     * variable tables, so that recompiled versions of a method compare equal.
+     *
+     * @param methodNode The method
+     * @return Textual representation of the body of the method
+     */
+    public static String textOf(final MethodNode methodNode) {
+        final Textifier textifier = new Textifier();
+        final TraceMethodVisitor tmv = new TraceMethodVisitor(textifier);
+        final Iterator<AbstractInsnNode> it = methodNode.instructions.iterator();
+        while (it.hasNext()) {
+            final AbstractInsnNode insn = it.next();
+            if (!(insn instanceof LineNumberNode)) {
+                insn.accept(tmv);
+            }
+        }
+        for (final TryCatchBlockNode tcb : methodNode.tryCatchBlocks) {
+            tcb.accept(tmv);
+        }
+        final StringWriter sw = new StringWriter();
+        textifier.print(new PrintWriter(sw));
+        return sw.toString();
+    }
+}
@@ -20,18 +20,25 @@ package edu.utdallas.objsim.commons.classpath;
  * #L%
  */
 
+import edu.utdallas.objsim.commons.functional.PredicateFactory;
+import edu.utdallas.objsim.commons.misc.NameUtils;
+import org.apache.commons.io.FileUtils;
 import org.pitest.classinfo.CachingByteArraySource;
 import org.pitest.classinfo.ClassByteArraySource;
 import org.pitest.classpath.ClassPath;
 import org.pitest.classpath.ClassPathByteArraySource;
 import org.pitest.classpath.ClassloaderByteArraySource;
 import org.pitest.functional.Option;
+import org.pitest.functional.predicate.Predicate;
 
 import java.io.File;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ClassPathUtils {
     private static final int CACHE_SIZE = 200;
@@ -49,6 +56,19 @@ public class ClassPathUtils {
         return elements;
     }
 
+    /**
+     * @param classesBaseDirectory A directory of class files, e.g. a build output directory
+     * @return A predicate accepting the full names of the classes found in the directory
+     */
+    public static Predicate<String> classFileFilter(final File classesBaseDirectory) {
+        final Collection<File> classFiles = FileUtils.listFiles(classesBaseDirectory, new String[] {"class"}, true);
+        final Set<String> classes = new HashSet<>();
+        for (final File classFile : classFiles) {
+            classes.add(NameUtils.getClassName(classFile));
+        }
+        return PredicateFactory.fromCollection(classes);
+    }
+
     public static ClassByteArraySource createClassByteArraySource(final ClassPath classPath) {
         ClassByteArraySource arraySource = new ClassPathByteArraySource(classPath);
         arraySource = fallbackToClassLoader(arraySource);
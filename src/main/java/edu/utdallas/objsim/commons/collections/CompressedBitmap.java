@@ -0,0 +1,354 @@
+package edu.utdallas.objsim.commons.collections;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A growable, compressed set of non-negative integers, after Roaring bitmaps: the
+ * integers are partitioned by their upper 16 bits into chunks, each stored in a
+ * container that is either a sorted array of the lower 16 bits, for sparse chunks,
+ * or a 65536-bit bitmap, for dense ones. The memory footprint is thus proportional
+ * to the number of elements, rather than to the largest element.
+ * Instances are not thread-safe.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class CompressedBitmap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int ARRAY_CONTAINER_MAX_SIZE = 4096; // beyond which a bitmap is smaller
+
+    private static final int BITMAP_WORDS = (1 << 16) / Long.SIZE;
+
+    private transient char[] keys; // sorted upper 16 bits of chunks
+
+    private transient Object[] containers; // char[] (array container) or long[] (bitmap container)
+
+    private transient int[] cardinalities;
+
+    private transient int size; // number of containers
+
+    public CompressedBitmap() {
+        this.keys = new char[4];
+        this.containers = new Object[4];
+        this.cardinalities = new int[4];
+    }
+
+    /**
+     * @param elements Elements, in any order
+     * @return A bitmap containing the elements
+     */
+    public static CompressedBitmap of(final int... elements) {
+        final int[] sorted = elements.clone();
+        Arrays.sort(sorted);
+        final CompressedBitmap bitmap = new CompressedBitmap();
+        for (final int element : sorted) {
+            bitmap.add(element);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @param element A non-negative integer
+     * @return <code>true</code> iff the element was not already in the bitmap
+     */
+    public boolean add(final int element) {
+        if (element < 0) {
+            throw new IllegalArgumentException("negative element: " + element);
+        }
+        final char key = (char) (element >>> 16);
+        final char low = (char) element;
+        int index = indexOfKey(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key);
+        }
+        final Object container = this.containers[index];
+        if (container instanceof long[]) {
+            final long[] words = (long[]) container;
+            final long mask = 1L << low;
+            if ((words[low >>> 6] & mask) != 0L) {
+                return false;
+            }
+            words[low >>> 6] |= mask;
+            this.cardinalities[index]++;
+            return true;
+        }
+        char[] values = (char[]) container;
+        final int cardinality = this.cardinalities[index];
+        int position;
+        if (cardinality == 0 || values[cardinality - 1] < low) {
+            position = cardinality; // fast path for elements added in ascending order
+        } else {
+            position = Arrays.binarySearch(values, 0, cardinality, low);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+        }
+        if (cardinality == ARRAY_CONTAINER_MAX_SIZE) {
+            final long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            words[low >>> 6] |= 1L << low;
+            this.containers[index] = words;
+            this.cardinalities[index]++;
+            return true;
+        }
+        if (cardinality == values.length) {
+            values = Arrays.copyOf(values, Math.min(ARRAY_CONTAINER_MAX_SIZE, 2 * cardinality));
+            this.containers[index] = values;
+        }
+        System.arraycopy(values, position, values, position + 1, cardinality - position);
+        values[position] = low;
+        this.cardinalities[index]++;
+        return true;
+    }
+
+    public boolean contains(final int element) {
+        if (element < 0) {
+            return false;
+        }
+        final int index = indexOfKey((char) (element >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        final char low = (char) element;
+        final Object container = this.containers[index];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0L;
+        }
+        return Arrays.binarySearch((char[]) container, 0, this.cardinalities[index], low) >= 0;
+    }
+
+    /**
+     * @param fromElement Lower bound, inclusive
+     * @return The smallest element of the bitmap greater than or equal to the bound,
+     *         or -1 if there is none
+     */
+    public int nextElement(final int fromElement) {
+        final int from = Math.max(0, fromElement);
+        int index = indexOfKey((char) (from >>> 16));
+        char low = (char) from;
+        if (index < 0) {
+            index = -index - 1;
+            low = 0;
+        }
+        for (; index < this.size; index++) {
+            final int high = this.keys[index] << 16;
+            final Object container = this.containers[index];
+            if (container instanceof long[]) {
+                final long[] words = (long[]) container;
+                int wordIndex = low >>> 6;
+                long word = words[wordIndex] & (-1L << low);
+                while (true) {
+                    if (word != 0L) {
+                        return high | (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                    }
+                    if (++wordIndex == BITMAP_WORDS) {
+                        break;
+                    }
+                    word = words[wordIndex];
+                }
+            } else {
+                final char[] values = (char[]) container;
+                final int cardinality = this.cardinalities[index];
+                int position = Arrays.binarySearch(values, 0, cardinality, low);
+                if (position < 0) {
+                    position = -position - 1;
+                }
+                if (position < cardinality) {
+                    return high | values[position];
+                }
+            }
+            low = 0;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds all the elements of another bitmap to this one. Dense chunks present in
+     * both bitmaps are merged word by word.
+     *
+     * @param other Another bitmap
+     */
+    public void or(final CompressedBitmap other) {
+        for (int otherIndex = 0; otherIndex < other.size; otherIndex++) {
+            final char key = other.keys[otherIndex];
+            final Object otherContainer = other.containers[otherIndex];
+            final int index = indexOfKey(key);
+            if (index >= 0 && this.containers[index] instanceof long[] && otherContainer instanceof long[]) {
+                final long[] words = (long[]) this.containers[index];
+                final long[] otherWords = (long[]) otherContainer;
+                int cardinality = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    words[i] |= otherWords[i];
+                    cardinality += Long.bitCount(words[i]);
+                }
+                this.cardinalities[index] = cardinality;
+                continue;
+            }
+            final int high = key << 16;
+            if (otherContainer instanceof long[]) {
+                final long[] otherWords = (long[]) otherContainer;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    long word = otherWords[i];
+                    while (word != 0L) {
+                        add(high | (i << 6) + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                final char[] otherValues = (char[]) otherContainer;
+                for (int i = 0; i < other.cardinalities[otherIndex]; i++) {
+                    add(high | otherValues[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of elements
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int index = 0; index < this.size; index++) {
+            cardinality += this.cardinalities[index];
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return Elements in ascending order
+     */
+    public int[] toArray() {
+        final int[] elements = new int[cardinality()];
+        int i = 0;
+        for (int element = nextElement(0); element >= 0; element = nextElement(element + 1)) {
+            elements[i++] = element;
+            if (element == Integer.MAX_VALUE) {
+                break; // element + 1 would wrap around to the first element
+            }
+        }
+        return elements;
+    }
+
+    private int indexOfKey(final char key) {
+        if (this.size > 0 && this.keys[this.size - 1] == key) {
+            return this.size - 1;
+        }
+        return Arrays.binarySearch(this.keys, 0, this.size, key);
+    }
+
+    private void insertContainer(final int index, final char key) {
+        if (this.size == this.keys.length) {
+            final int capacity = 2 * this.size;
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.containers = Arrays.copyOf(this.containers, capacity);
+            this.cardinalities = Arrays.copyOf(this.cardinalities, capacity);
+        }
+        System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+        System.arraycopy(this.containers, index, this.containers, index + 1, this.size - index);
+        System.arraycopy(this.cardinalities, index, this.cardinalities, index + 1, this.size - index);
+        this.keys[index] = key;
+        this.containers[index] = new char[4];
+        this.cardinalities[index] = 0;
+        this.size++;
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(this.size);
+        for (int index = 0; index < this.size; index++) {
+            out.writeChar(this.keys[index]);
+            out.writeInt(this.cardinalities[index]);
+            final Object container = this.containers[index];
+            if (container instanceof long[]) {
+                for (final long word : (long[]) container) {
+                    out.writeLong(word);
+                }
+            } else {
+                final char[] values = (char[]) container;
+                for (int i = 0; i < this.cardinalities[index]; i++) {
+                    out.writeChar(values[i]);
+                }
+            }
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.size = in.readInt();
+        final int capacity = Math.max(4, this.size);
+        this.keys = new char[capacity];
+        this.containers = new Object[capacity];
+        this.cardinalities = new int[capacity];
+        for (int index = 0; index < this.size; index++) {
+            this.keys[index] = in.readChar();
+            final int cardinality = in.readInt();
+            this.cardinalities[index] = cardinality;
+            if (cardinality > ARRAY_CONTAINER_MAX_SIZE) {
+                final long[] words = new long[BITMAP_WORDS];
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    words[i] = in.readLong();
+                }
+                this.containers[index] = words;
+            } else {
+                final char[] values = new char[Math.max(4, cardinality)];
+                for (int i = 0; i < cardinality; i++) {
+                    values[i] = in.readChar();
+                }
+                this.containers[index] = values;
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompressedBitmap)) {
+            return false;
+        }
+        return Arrays.equals(toArray(), ((CompressedBitmap) o).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
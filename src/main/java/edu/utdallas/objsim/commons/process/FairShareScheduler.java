@@ -0,0 +1,196 @@
+package edu.utdallas.objsim.commons.process;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A memory-aware worker pool that shares its workers fairly among several groups
+ * of tasks, e.g. tasks of different buggy projects.
+ * Each task declares the amount of memory it needs, e.g. heap size of the child
+ * process it launches, and a task is dispatched only if the memory it needs is
+ * available. Groups are served in a round-robin fashion, so that a group with lots
+ * of tasks cannot starve other groups.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class FairShareScheduler {
+    private final Object lock;
+
+    private final Map<String, Deque<Task<?>>> queues; // group name --> pending tasks
+
+    private final long memoryBudget; // in megabytes
+
+    private long availableMemory;
+
+    private int cursor; // index of the group to be served next
+
+    private boolean shutdown;
+
+    private final List<Thread> workers;
+
+    /**
+     * Constructs and starts a scheduler.
+     *
+     * @param workersCount Maximum number of tasks running simultaneously
+     * @param memoryBudget Total amount of memory, in megabytes, that can be allotted
+     *                     to the running tasks
+     */
+    public FairShareScheduler(final int workersCount, final long memoryBudget) {
+        if (workersCount <= 0 || memoryBudget <= 0L) {
+            throw new IllegalArgumentException();
+        }
+        this.lock = new Object();
+        this.queues = new LinkedHashMap<>();
+        this.memoryBudget = memoryBudget;
+        this.availableMemory = memoryBudget;
+        this.cursor = 0;
+        this.shutdown = false;
+        this.workers = new ArrayList<>(workersCount);
+        for (int i = 0; i < workersCount; i++) {
+            final Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "objsim-worker-" + i);
+            worker.setDaemon(true);
+            this.workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Submits a task for execution.
+     *
+     * @param group Name of the group the task belongs to
+     * @param memory Amount of memory, in megabytes, needed by the task. Tasks needing
+     *               more than the memory budget of the scheduler shall be executed
+     *               only when no other task is running.
+     * @param callable The task
+     * @param <T> Type of the result of the task
+     * @return A future representing the pending result of the task
+     */
+    public <T> Future<T> submit(final String group, final long memory, final Callable<T> callable) {
+        final Task<T> task = new Task<>(callable, Math.min(Math.max(memory, 0L), this.memoryBudget));
+        synchronized (this.lock) {
+            if (this.shutdown) {
+                throw new IllegalStateException("scheduler is shut down");
+            }
+            Deque<Task<?>> queue = this.queues.get(group);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                this.queues.put(group, queue);
+            }
+            queue.offerLast(task);
+            this.lock.notifyAll();
+        }
+        return task;
+    }
+
+    /**
+     * Stops accepting new tasks; already submitted tasks are still executed.
+     */
+    public void shutdown() {
+        synchronized (this.lock) {
+            this.shutdown = true;
+            this.lock.notifyAll();
+        }
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        for (final Thread worker : this.workers) {
+            worker.join();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            final Task<?> task;
+            synchronized (this.lock) {
+                Task<?> next;
+                while ((next = pollNext()) == null) {
+                    if (this.shutdown && isDrained()) {
+                        return;
+                    }
+                    try {
+                        this.lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                task = next;
+                this.availableMemory -= task.memory;
+            }
+            try {
+                task.run();
+            } finally {
+                synchronized (this.lock) {
+                    this.availableMemory += task.memory;
+                    this.lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    // must be called while holding the lock
+    private Task<?> pollNext() {
+        final List<Deque<Task<?>>> queues = new ArrayList<>(this.queues.values());
+        final int n = queues.size();
+        for (int i = 0; i < n; i++) {
+            final int index = (this.cursor + i) % n;
+            final Deque<Task<?>> queue = queues.get(index);
+            final Task<?> head = queue.peekFirst();
+            if (head != null && head.memory <= this.availableMemory) {
+                this.cursor = (index + 1) % n;
+                return queue.pollFirst();
+            }
+        }
+        return null;
+    }
+
+    // must be called while holding the lock
+    private boolean isDrained() {
+        for (final Deque<Task<?>> queue : this.queues.values()) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Task<T> extends FutureTask<T> {
+        final long memory;
+
+        Task(final Callable<T> callable, final long memory) {
+            super(callable);
+            this.memory = memory;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package edu.utdallas.objsim.commons.process;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Utility methods for estimating memory requirements of child processes.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class MemoryUtils {
+    private static final Pattern XMX = Pattern.compile("^-Xmx(\\d+)([kKmMgGtT]?)$");
+
+    private MemoryUtils() { }
+
+    /**
+     * Extracts maximum heap size specified in a list of JVM arguments.
+     *
+     * @param jvmArgs JVM arguments
+     * @param defaultVal Value to be returned if no <code>-Xmx</code> is given
+     * @return Maximum heap size in megabytes
+     */
+    public static long getMaxHeapSize(final Collection<String> jvmArgs, final long defaultVal) {
+        long result = defaultVal;
+        for (final String arg : jvmArgs) {
+            final Matcher matcher = XMX.matcher(arg.trim());
+            if (matcher.matches()) {
+                final long value = Long.parseLong(matcher.group(1));
+                switch (matcher.group(2).toLowerCase()) {
+                    case "":
+                        result = value >> 20;
+                        break;
+                    case "k":
+                        result = value >> 10;
+                        break;
+                    case "m":
+                        result = value;
+                        break;
+                    case "g":
+                        result = value << 10;
+                        break;
+                    default: // t
+                        result = value << 20;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param defaultVal Value to be returned if the platform does not expose the amount
+     *                   of physical memory
+     * @return Total physical memory of the machine in megabytes
+     */
+    public static long getTotalPhysicalMemory(final long defaultVal) {
+        final OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) bean).getTotalPhysicalMemorySize() >> 20;
+        }
+        return defaultVal;
+    }
+}
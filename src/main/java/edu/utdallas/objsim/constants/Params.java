@@ -24,4 +24,17 @@ import edu.utdallas.objsim.commons.misc.PropertyUtils;
 
 public class Params {
     public static final int MAX_TIMEOUT_MINS = PropertyUtils.getIntProperty("objsim.max.timeout.mins", 5);
+
+    /* the timeout of a test case run in the primary profiler is max(MIN_TIMEOUT_MILLIS, TIMEOUT_FACTOR * prelude duration
+       + SNAPSHOT_TIMEOUT_MILLIS * prelude invocations of patched methods), as snapshots are taken at every exit */
+
+    public static final long MIN_TIMEOUT_MILLIS = PropertyUtils.getLongProperty("objsim.min.timeout.millis", 5000L);
+
+    public static final int TIMEOUT_FACTOR = PropertyUtils.getIntProperty("objsim.timeout.factor", 10);
+
+    public static final long SNAPSHOT_TIMEOUT_MILLIS = PropertyUtils.getLongProperty("objsim.snapshot.timeout.millis", 20L);
+
+    /* test cases calling patched methods more often than this are reported, and run last, in the primary profiler */
+
+    public static final long HEAVY_TEST_INVOCATIONS = PropertyUtils.getLongProperty("objsim.heavy.test.invocations", 1000000L);
 }
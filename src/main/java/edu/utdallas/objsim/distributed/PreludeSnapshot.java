@@ -0,0 +1,125 @@
+package edu.utdallas.objsim.distributed;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+import edu.utdallas.objsim.commons.relational.FieldsDom;
+import edu.utdallas.objsim.commons.relational.MethodsDom;
+import edu.utdallas.objsim.profiler.prelude.BasicPreludeProfilerResults;
+import edu.utdallas.objsim.profiler.prelude.BlockCoverage;
+import edu.utdallas.objsim.profiler.prelude.PreludeProfilerResults;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * A self-contained copy of prelude results that can be shipped to the workers.
+ * Field and method domains, which are normally kept in the scratch directory of the
+ * coordinator, are carried along and re-created in the scratch directory of each
+ * worker.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+final class PreludeSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<String> fields;
+
+    private final ArrayList<String> methods;
+
+    private final HashMap<Integer, int[]> accessedFieldsMap;
+
+    private final HashMap<String, CompressedBitmap> methodCoverageMap;
+
+    private final HashSet<String> failingTests;
+
+    private final HashMap<String, Long> testDurations;
+
+    private final HashMap<String, Map<Integer, Long>> invocationCounts;
+
+    private final BlockCoverage blockCoverage;
+
+    private final HashMap<String, Map<Integer, int[]>> testFieldAccesses;
+
+    PreludeSnapshot(final PreludeProfilerResults preludeResults) {
+        this.fields = new ArrayList<>();
+        for (final String field : preludeResults.getFieldsDom()) {
+            this.fields.add(field);
+        }
+        this.methods = new ArrayList<>();
+        for (final String method : preludeResults.getMethodsDom()) {
+            this.methods.add(method);
+        }
+        this.accessedFieldsMap = new HashMap<>(preludeResults.accessedFieldsMap());
+        this.methodCoverageMap = new HashMap<>(preludeResults.getMethodCoverageMap());
+        this.failingTests = new HashSet<>(preludeResults.getFailingTests());
+        this.testDurations = new HashMap<>(preludeResults.getTestDurations());
+        this.invocationCounts = new HashMap<>();
+        for (final Map.Entry<String, Map<Integer, Long>> entry : preludeResults.getInvocationCounts().entrySet()) {
+            this.invocationCounts.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+        this.blockCoverage = preludeResults.getBlockCoverage();
+        this.testFieldAccesses = new HashMap<>();
+        for (final Map.Entry<String, Map<Integer, int[]>> entry : preludeResults.getTestFieldAccesses().entrySet()) {
+            this.testFieldAccesses.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+    }
+
+    /**
+     * Re-creates field and method domains in the given scratch directory.
+     *
+     * @param scratchDirectory Scratch directory of the worker
+     * @return Prelude results to be used by the worker
+     * @throws IOException In case of failure to create the directory
+     */
+    PreludeProfilerResults install(final File scratchDirectory) throws IOException {
+        FileUtils.forceMkdir(scratchDirectory);
+        final FieldsDom fieldsDom = new FieldsDom();
+        for (final String field : this.fields) {
+            fieldsDom.add(field);
+        }
+        final MethodsDom methodsDom = new MethodsDom();
+        for (final String method : this.methods) {
+            methodsDom.add(method);
+        }
+        fieldsDom.save(scratchDirectory.getAbsolutePath(), true);
+        methodsDom.save(scratchDirectory.getAbsolutePath(), true);
+        return BasicPreludeProfilerResults.builder()
+                .scratchDirectory(scratchDirectory)
+                .fieldsDom(fieldsDom)
+                .methodsDom(methodsDom)
+                .accessedFieldsMap(this.accessedFieldsMap)
+                .methodCoverageMap(this.methodCoverageMap)
+                .failingTests(this.failingTests)
+                .testDurations(this.testDurations)
+                .invocationCounts(this.invocationCounts)
+                .blockCoverage(this.blockCoverage)
+                .testFieldAccesses(this.testFieldAccesses)
+                .build();
+    }
+}
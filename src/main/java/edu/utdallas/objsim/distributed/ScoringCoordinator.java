@@ -0,0 +1,192 @@
+package edu.utdallas.objsim.distributed;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.InputSource;
+import edu.utdallas.objsim.ObjSimEntryPoint;
+import edu.utdallas.objsim.Patch;
+import edu.utdallas.objsim.PatchScore;
+import edu.utdallas.objsim.commons.process.ResourceUtils;
+import edu.utdallas.objsim.profiler.ControlId;
+import org.apache.commons.lang3.Validate;
+import org.pitest.util.ExitCode;
+import org.pitest.util.SafeDataInputStream;
+import org.pitest.util.SafeDataOutputStream;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * Coordinator of distributed scoring.
+ * The coordinator runs the prelude locally, and hands the patches, one at a time, to
+ * the workers (see {@link ScoringWorker}) registered over TCP, together with the
+ * prelude results. Each worker shall be configured for the same program as that of
+ * the coordinator. A patch assigned to a worker that is lost, i.e. whose connection
+ * is closed or has been silent for a while, is reassigned to other workers.
+ * Scores are written into the output CSV file of the entry point, in the order of the
+ * input, once all the patches are scored.
+ * Workers have to prove that they know the shared secret of the coordinator before
+ * anything is sent to, or read from, them. By default, the coordinator only accepts
+ * workers on the loopback interface.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class ScoringCoordinator {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final int ACCEPT_TIMEOUT = 1000; // in milliseconds
+
+    // a worker not heard from within this period is considered lost
+    private static final int WORKER_TIMEOUT = 6 * ScoringWorker.HEARTBEAT_INTERVAL;
+
+    private final ObjSimEntryPoint entryPoint;
+
+    private final InetAddress bindAddress;
+
+    private final int port;
+
+    private final String secret;
+
+    /**
+     * @param entryPoint Entry point configured for the program and the input
+     * @param bindAddress The address on which workers are accepted; <code>null</code>
+     *                    for the loopback address
+     * @param port The port on which workers are accepted; 0 for an arbitrary port
+     * @param secret The secret shared with the workers
+     */
+    public ScoringCoordinator(final ObjSimEntryPoint entryPoint,
+                              final InetAddress bindAddress,
+                              final int port,
+                              final String secret) {
+        Validate.notNull(entryPoint);
+        Validate.isTrue(port >= 0, "invalid port number %d", port);
+        Validate.notEmpty(secret, "shared secret is not specified");
+        this.entryPoint = entryPoint;
+        this.bindAddress = bindAddress == null ? InetAddress.getLoopbackAddress() : bindAddress;
+        this.port = port;
+        this.secret = secret;
+    }
+
+    public void run() throws Exception {
+        final InputSource inputSource = this.entryPoint.getInputSource();
+        Validate.notNull(inputSource, "input source is not specified");
+        try (final ServerSocket serverSocket = new ServerSocket(this.port, 0, this.bindAddress)) {
+            // workers may register while the prelude is running
+            System.out.println("INFO: Coordinator is listening on "
+                    + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort());
+            final PreludeSnapshot preludeSnapshot =
+                    new PreludeSnapshot(this.entryPoint.runPrelude(inputSource.getTargetMethods()));
+            final WorkQueue workQueue = new WorkQueue(inputSource.iterator(), MAX_ATTEMPTS);
+            serverSocket.setSoTimeout(ACCEPT_TIMEOUT);
+            while (!workQueue.isDone()) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketTimeoutException e) {
+                    continue;
+                }
+                final String workerName = socket.getRemoteSocketAddress().toString();
+                final Thread handler = new Thread(new WorkerHandler(workerName, socket, this.secret, preludeSnapshot, workQueue),
+                        "objsim-worker-handler");
+                handler.setDaemon(true);
+                handler.start();
+            }
+            workQueue.awaitCompletion();
+            this.entryPoint.writeScores(workQueue.getGroundTruthMap(), workQueue.orderedScores());
+        }
+    }
+
+    private static class WorkerHandler implements Runnable {
+        private final String workerName;
+
+        private final Socket socket;
+
+        private final String secret;
+
+        private final PreludeSnapshot preludeSnapshot;
+
+        private final WorkQueue workQueue;
+
+        WorkerHandler(final String workerName,
+                      final Socket socket,
+                      final String secret,
+                      final PreludeSnapshot preludeSnapshot,
+                      final WorkQueue workQueue) {
+            this.workerName = workerName;
+            this.socket = socket;
+            this.secret = secret;
+            this.preludeSnapshot = preludeSnapshot;
+            this.workQueue = workQueue;
+        }
+
+        @Override
+        public void run() {
+            Patch patch = null;
+            try {
+                this.socket.setSoTimeout(WORKER_TIMEOUT);
+                try {
+                    ScoringProtocol.authenticate(this.socket.getInputStream(),
+                            this.socket.getOutputStream(), this.secret, true);
+                } catch (IOException e) {
+                    System.out.println("WARNING: Rejected worker " + this.workerName + ": " + e.getMessage());
+                    return;
+                }
+                System.out.println("INFO: Worker " + this.workerName + " registered");
+                final SafeDataOutputStream dos = new SafeDataOutputStream(this.socket.getOutputStream());
+                final SafeDataInputStream dis = new SafeDataInputStream(this.socket.getInputStream());
+                dos.write(this.preludeSnapshot);
+                dos.flush();
+                while ((patch = this.workQueue.take()) != null) {
+                    dos.writeByte(ControlId.ASSIGN_PATCH);
+                    dos.write(patch);
+                    dos.flush();
+                    byte controlId;
+                    do {
+                        controlId = dis.readByte();
+                    } while (controlId == ControlId.HEARTBEAT);
+                    if (controlId == ControlId.REPORT_PATCH_SCORE) {
+                        this.workQueue.complete(ScoringProtocol.read(dis, PatchScore.class));
+                    } else if (controlId == ControlId.REPORT_PATCH_FAILURE) {
+                        this.workQueue.fail(patch, dis.readString());
+                    } else {
+                        throw new IllegalStateException("Unknown code: " + controlId);
+                    }
+                    patch = null;
+                }
+                dos.writeByte(ControlId.DONE);
+                dos.writeInt(ExitCode.OK.getCode());
+                dos.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) { // socket errors are wrapped by safe data streams
+                System.out.println("WARNING: Worker " + this.workerName + " is lost: " + e.getMessage());
+                if (patch != null) {
+                    this.workQueue.fail(patch, "worker " + this.workerName + " is lost");
+                }
+            } finally {
+                ResourceUtils.safelyCloseSocket(this.socket);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package edu.utdallas.objsim.distributed;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.Patch;
+import edu.utdallas.objsim.PatchScore;
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+import edu.utdallas.objsim.profiler.prelude.BlockCoverage;
+import org.apache.commons.io.serialization.ValidatingObjectInputStream;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.pitest.util.SafeDataInputStream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Utility functions shared by the coordinator and the workers of distributed scoring.
+ * Before anything else is exchanged, the two ends of a connection prove to each other
+ * that they know the same shared secret by a challenge-response handshake, and the
+ * objects received afterwards are only deserialized if they are made up of the
+ * classes that the protocol actually sends.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+final class ScoringProtocol {
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private static final int NONCE_LENGTH = 32; // in bytes
+
+    private static final byte COORDINATOR_ROLE = 'C';
+
+    private static final byte WORKER_ROLE = 'W';
+
+    private static final Class<?>[] ACCEPTED_CLASSES = {
+            PreludeSnapshot.class,
+            Patch.class,
+            PatchScore.class,
+            BlockCoverage.class,
+            CompressedBitmap.class,
+            CompressedBitmap[].class,
+            ImmutableTriple.class,
+            Triple.class,
+            ArrayList.class,
+            HashMap.class,
+            HashSet.class,
+            String[].class,
+            Number.class,
+            Integer.class,
+            Long.class,
+            Double.class,
+            byte[].class,
+            int[].class
+    };
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ScoringProtocol() { }
+
+    /**
+     * Mutually authenticates the two ends of a connection. Each end sends a fresh
+     * nonce, and then a MAC of both nonces, and its role, keyed by the shared secret.
+     * This shall be done before the streams are wrapped in safe data streams.
+     *
+     * @param in Input stream of the connection
+     * @param out Output stream of the connection
+     * @param secret The shared secret
+     * @param coordinator Whether this end is the coordinator, or a worker
+     * @throws IOException In case of connection failure, or if the other end does
+     *                     not know the shared secret
+     */
+    static void authenticate(final InputStream in,
+                             final OutputStream out,
+                             final String secret,
+                             final boolean coordinator) throws IOException {
+        final DataInputStream dis = new DataInputStream(in);
+        final DataOutputStream dos = new DataOutputStream(out);
+        final byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        dos.write(nonce);
+        dos.flush();
+        final byte[] peerNonce = new byte[NONCE_LENGTH];
+        dis.readFully(peerNonce);
+        final byte[] coordinatorNonce = coordinator ? nonce : peerNonce;
+        final byte[] workerNonce = coordinator ? peerNonce : nonce;
+        final byte ownRole = coordinator ? COORDINATOR_ROLE : WORKER_ROLE;
+        final byte peerRole = coordinator ? WORKER_ROLE : COORDINATOR_ROLE;
+        dos.write(mac(secret, ownRole, coordinatorNonce, workerNonce));
+        dos.flush();
+        final byte[] expected = mac(secret, peerRole, coordinatorNonce, workerNonce);
+        final byte[] received = new byte[expected.length];
+        dis.readFully(received);
+        if (!MessageDigest.isEqual(expected, received)) {
+            throw new IOException("authentication failed");
+        }
+    }
+
+    private static byte[] mac(final String secret,
+                              final byte role,
+                              final byte[] coordinatorNonce,
+                              final byte[] workerNonce) {
+        try {
+            final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM));
+            mac.update(role);
+            mac.update(coordinatorNonce);
+            mac.update(workerNonce);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads an object written by {@link org.pitest.util.SafeDataOutputStream#write(Serializable)},
+     * rejecting any class that is not sent by the protocol.
+     *
+     * @param dis Input stream
+     * @param type Expected type of the object
+     * @param <T> Expected type of the object
+     * @return The object read
+     */
+    static <T extends Serializable> T read(final SafeDataInputStream dis, final Class<T> type) {
+        final byte[] bytes = dis.readBytes();
+        try (final ValidatingObjectInputStream ois = new ValidatingObjectInputStream(new ByteArrayInputStream(bytes))) {
+            ois.accept(ACCEPTED_CLASSES);
+            return type.cast(ois.readObject());
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("invalid " + type.getSimpleName() + " received: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package edu.utdallas.objsim.distributed;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.ObjSimEntryPoint;
+import edu.utdallas.objsim.Patch;
+import edu.utdallas.objsim.PatchScore;
+import edu.utdallas.objsim.commons.process.ResourceUtils;
+import edu.utdallas.objsim.profiler.ControlId;
+import edu.utdallas.objsim.profiler.prelude.PreludeProfilerResults;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+import org.pitest.util.SafeDataInputStream;
+import org.pitest.util.SafeDataOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Worker of distributed scoring.
+ * A worker registers itself with the coordinator (see {@link ScoringCoordinator}),
+ * receives the prelude results, and then scores the patches assigned to it, using
+ * its own entry point, until the coordinator runs out of patches. While scoring a
+ * patch, the worker sends heartbeats to the coordinator, so that a worker whose host
+ * is down can be told apart from a worker that is busy.
+ * Several workers may run on the same host, as each of them keeps the prelude results
+ * in a private subdirectory of the scratch directory of the entry point.
+ * The worker and the coordinator authenticate each other using a shared secret before
+ * anything else is exchanged.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class ScoringWorker {
+    static final int HEARTBEAT_INTERVAL = 10000; // in milliseconds
+
+    private static final int CONNECT_ATTEMPTS = 60;
+
+    private static final long CONNECT_RETRY_DELAY = 1000L; // in milliseconds
+
+    private final ObjSimEntryPoint entryPoint;
+
+    private final String coordinatorHost;
+
+    private final int coordinatorPort;
+
+    private final String secret;
+
+    /**
+     * @param entryPoint Entry point configured for the program; input and output files
+     *                   are not used
+     * @param coordinatorHost Host name of the coordinator
+     * @param coordinatorPort Port number of the coordinator
+     * @param secret The secret shared with the coordinator
+     */
+    public ScoringWorker(final ObjSimEntryPoint entryPoint,
+                         final String coordinatorHost,
+                         final int coordinatorPort,
+                         final String secret) {
+        Validate.notNull(entryPoint);
+        Validate.notBlank(coordinatorHost);
+        Validate.notEmpty(secret, "shared secret is not specified");
+        this.entryPoint = entryPoint;
+        this.coordinatorHost = coordinatorHost;
+        this.coordinatorPort = coordinatorPort;
+        this.secret = secret;
+    }
+
+    public void run() throws Exception {
+        final Socket socket = connect();
+        final File scratchDirectory = this.entryPoint.getScratchDirectory();
+        FileUtils.forceMkdir(scratchDirectory);
+        final File workerDirectory = Files.createTempDirectory(scratchDirectory.toPath(), "objsim-worker").toFile();
+        try {
+            ScoringProtocol.authenticate(socket.getInputStream(), socket.getOutputStream(), this.secret, false);
+            final SafeDataOutputStream dos = new SafeDataOutputStream(socket.getOutputStream());
+            final SafeDataInputStream dis = new SafeDataInputStream(socket.getInputStream());
+            final PreludeProfilerResults preludeResults = ScoringProtocol.read(dis, PreludeSnapshot.class).install(workerDirectory);
+            System.out.println("INFO: Registered with coordinator " + socket.getRemoteSocketAddress());
+            final Timer heartbeat = new Timer("objsim-heartbeat", true);
+            heartbeat.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        synchronized (dos) {
+                            dos.writeByte(ControlId.HEARTBEAT);
+                            dos.flush();
+                        }
+                    } catch (RuntimeException e) {
+                        cancel(); // the coordinator is gone; the main loop will notice
+                    }
+                }
+            }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL);
+            try {
+                serve(dis, dos, preludeResults);
+            } finally {
+                heartbeat.cancel();
+            }
+        } finally {
+            ResourceUtils.safelyCloseSocket(socket);
+            FileUtils.deleteQuietly(workerDirectory);
+        }
+    }
+
+    private void serve(final SafeDataInputStream dis,
+                       final SafeDataOutputStream dos,
+                       final PreludeProfilerResults preludeResults) {
+        while (true) {
+            final byte controlId = dis.readByte();
+            if (controlId == ControlId.DONE) {
+                dis.readInt(); // exit code
+                return;
+            }
+            if (controlId != ControlId.ASSIGN_PATCH) {
+                throw new IllegalStateException("Unknown code: " + controlId);
+            }
+            final Patch patch = ScoringProtocol.read(dis, Patch.class);
+            System.out.println("INFO: Scoring patch " + patch.getPatchId());
+            PatchScore score = null;
+            String failure = null;
+            try {
+                score = this.entryPoint.score(patch, preludeResults);
+            } catch (Exception e) {
+                e.printStackTrace(System.out);
+                failure = String.valueOf(e.getMessage());
+            }
+            synchronized (dos) {
+                if (score != null) {
+                    dos.writeByte(ControlId.REPORT_PATCH_SCORE);
+                    dos.write(score);
+                } else {
+                    dos.writeByte(ControlId.REPORT_PATCH_FAILURE);
+                    dos.writeString(failure);
+                }
+                dos.flush();
+            }
+        }
+    }
+
+    private Socket connect() throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return new Socket(this.coordinatorHost, this.coordinatorPort);
+            } catch (IOException e) {
+                if (attempt >= CONNECT_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.sleep(CONNECT_RETRY_DELAY);
+            }
+        }
+    }
+}
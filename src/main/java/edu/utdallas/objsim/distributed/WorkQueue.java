@@ -0,0 +1,159 @@
+package edu.utdallas.objsim.distributed;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.Patch;
+import edu.utdallas.objsim.PatchScore;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Patches waiting to be scored by the workers.
+ * Patches are pulled lazily from the input, and those assigned to a lost worker are
+ * put back so that other workers can pick them up. A patch is given up on after
+ * having been tried a few times.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+final class WorkQueue {
+    private final Iterator<Patch> patches;
+
+    private final int maxAttempts;
+
+    private final LinkedList<Patch> reassigned;
+
+    private final Map<Integer, Integer> attempts; // patchId --> number of failed attempts
+
+    private final Map<Integer, String> groundTruthMap; // patchId --> ground-truth label, in input order
+
+    private final Map<Integer, PatchScore> scores;
+
+    private int inFlight;
+
+    private RuntimeException failure;
+
+    WorkQueue(final Iterator<Patch> patches, final int maxAttempts) {
+        this.patches = patches;
+        this.maxAttempts = maxAttempts;
+        this.reassigned = new LinkedList<>();
+        this.attempts = new HashMap<>();
+        this.groundTruthMap = new LinkedHashMap<>();
+        this.scores = new HashMap<>();
+    }
+
+    /**
+     * Blocks until a patch is available.
+     *
+     * @return The next patch to be scored, or <code>null</code> if there is no more work
+     * @throws InterruptedException If interrupted while waiting for patches assigned to
+     *                              other workers
+     */
+    synchronized Patch take() throws InterruptedException {
+        while (true) {
+            if (this.failure != null) {
+                return null;
+            }
+            Patch patch = this.reassigned.poll();
+            if (patch == null && hasMoreInput()) {
+                patch = this.patches.next();
+                this.groundTruthMap.put(patch.getPatchId(), patch.getGroundTruthLabel());
+            }
+            if (patch != null) {
+                this.inFlight++;
+                return patch;
+            }
+            if (this.inFlight == 0) {
+                return null;
+            }
+            // some other worker might be lost
+            wait();
+        }
+    }
+
+    private boolean hasMoreInput() {
+        try {
+            return this.patches.hasNext();
+        } catch (RuntimeException e) {
+            this.failure = e;
+            notifyAll();
+            return false;
+        }
+    }
+
+    synchronized void complete(final PatchScore score) {
+        this.inFlight--;
+        this.scores.put(score.getPatchId(), score);
+        notifyAll();
+    }
+
+    synchronized void fail(final Patch patch, final String reason) {
+        this.inFlight--;
+        final int patchId = patch.getPatchId();
+        final Integer count = this.attempts.get(patchId);
+        final int attempts = count == null ? 1 : count + 1;
+        this.attempts.put(patchId, attempts);
+        if (attempts < this.maxAttempts) {
+            System.out.println("WARNING: Patch " + patchId + " is reassigned: " + reason);
+            this.reassigned.add(patch);
+        } else {
+            System.out.println("WARNING: Patch " + patchId + " is skipped after " + attempts + " attempts: " + reason);
+        }
+        notifyAll();
+    }
+
+    synchronized boolean isDone() {
+        return this.failure != null
+                || (this.inFlight == 0 && this.reassigned.isEmpty() && !hasMoreInput());
+    }
+
+    synchronized void awaitCompletion() throws InterruptedException {
+        while (!isDone()) {
+            wait();
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    Map<Integer, String> getGroundTruthMap() {
+        return this.groundTruthMap;
+    }
+
+    /**
+     * @return Scores of the patches, in the order of the input; patches that were given
+     *         up on are left out
+     */
+    synchronized Iterator<PatchScore> orderedScores() {
+        final LinkedList<PatchScore> orderedScores = new LinkedList<>();
+        for (final Integer patchId : this.groundTruthMap.keySet()) {
+            final PatchScore score = this.scores.get(patchId);
+            if (score != null) {
+                orderedScores.add(score);
+            }
+        }
+        return orderedScores.iterator();
+    }
+}
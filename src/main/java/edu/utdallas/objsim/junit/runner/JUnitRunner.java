@@ -25,15 +25,21 @@ import org.pitest.functional.predicate.Predicate;
 import org.pitest.testapi.ResultCollector;
 import org.pitest.testapi.TestUnit;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import static edu.utdallas.objsim.commons.misc.NameUtils.sanitizeExtendedTestName;
 import static edu.utdallas.objsim.junit.JUnitUtils.discoverTestUnits;
 
 /**
@@ -43,27 +49,37 @@ import static edu.utdallas.objsim.junit.JUnitUtils.discoverTestUnits;
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public class JUnitRunner {
-    private static final ExecutorService EXECUTOR_SERVICE;
+    private static final TestExecutor EXECUTOR;
 
     static {
-        EXECUTOR_SERVICE = Executors.newSingleThreadExecutor();
+        EXECUTOR = new TestExecutor();
     }
 
 
     private List<CloseableTestUnit> testUnits;
 
+    private Map<String, Long> timeouts; // test name --> timeout in milliseconds
+
+    private long defaultTimeout; // in milliseconds
+
+    private boolean abortOnTimeout;
+
+    private volatile boolean timedOut;
+
     private final ResultCollector resultCollector;
 
     private final HashSet<String> failingTests;
 
     public JUnitRunner(final Collection<String> testClassNames) {
         this.testUnits = discoverTestUnits(testClassNames);
+        this.defaultTimeout = TimeUnit.MINUTES.toMillis(Params.MAX_TIMEOUT_MINS);
         this.failingTests = new HashSet<>();
         this.resultCollector = new PrinterResultCollector(this.failingTests);
     }
 
     public JUnitRunner(final List<CloseableTestUnit> testUnits) {
         this.testUnits = testUnits;
+        this.defaultTimeout = TimeUnit.MINUTES.toMillis(Params.MAX_TIMEOUT_MINS);
         this.failingTests = new HashSet<>();
         this.resultCollector = new PrinterResultCollector(this.failingTests);
     }
@@ -84,6 +100,57 @@ public class JUnitRunner {
         this.testUnits = testUnits;
     }
 
+    /**
+     * Sets per-test timeouts. Test cases without a timeout are given the default
+     * timeout.
+     *
+     * @param timeouts Test name --> timeout in milliseconds
+     */
+    public void setTimeouts(final Map<String, Long> timeouts) {
+        this.timeouts = timeouts;
+    }
+
+    /**
+     * Sets the timeout of test cases without a per-test timeout, e.g. pseudo test
+     * units whose names are not test names. Defaults to {@link Params#MAX_TIMEOUT_MINS}
+     * minutes.
+     *
+     * @param defaultTimeout Timeout in milliseconds
+     */
+    public void setDefaultTimeout(final long defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * A timed out test case cannot be stopped, so its thread is abandoned and keeps
+     * running alongside the following test cases, possibly tampering with the state
+     * they share, e.g. recorded snapshots. Aborting upon timeout, the rest of the
+     * test cases are not run, so that the caller can run them in a fresh JVM.
+     *
+     * @param abortOnTimeout Whether or not to stop running test cases after the first
+     *                       timeout
+     */
+    public void setAbortOnTimeout(final boolean abortOnTimeout) {
+        this.abortOnTimeout = abortOnTimeout;
+    }
+
+    /**
+     * @return <code>true</code> iff a test case has run into timeout
+     */
+    public boolean hasTimedOut() {
+        return this.timedOut;
+    }
+
+    private long getTimeoutMillis(final CloseableTestUnit testUnit) {
+        if (this.timeouts != null) {
+            final Long timeout = this.timeouts.get(sanitizeExtendedTestName(testUnit.getDescription().getName()));
+            if (timeout != null) {
+                return timeout;
+            }
+        }
+        return this.defaultTimeout;
+    }
+
     /**
      * Runs entire test class.
      *
@@ -101,10 +168,66 @@ public class JUnitRunner {
      * @return <code>true</code> iff all the admitted test cases passed.
      */
     public boolean run(final Predicate<CloseableTestUnit> shouldRun) {
+        return run(this.testUnits, shouldRun, EXECUTOR);
+    }
+
+    /**
+     * Runs entire test classes concurrently: the test cases of a test class are run one
+     * after another, on a thread of their own, while up to <code>threads</code> test
+     * classes are run at the same time.
+     *
+     * @param threads Maximum number of test classes run concurrently
+     * @return <code>true</code> iff all the executed tests passed.
+     */
+    public boolean runInParallel(final int threads) {
+        final Map<String, List<CloseableTestUnit>> testClasses = new LinkedHashMap<>();
         for (final CloseableTestUnit testUnit : this.testUnits) {
+            final String testClassName = testUnit.getDescription().getFirstTestClass();
+            List<CloseableTestUnit> testClass = testClasses.get(testClassName);
+            if (testClass == null) {
+                testClass = new ArrayList<>();
+                testClasses.put(testClassName, testClass);
+            }
+            testClass.add(testUnit);
+        }
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        final List<Future<Boolean>> results = new ArrayList<>();
+        for (final List<CloseableTestUnit> testClass : testClasses.values()) {
+            results.add(executorService.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    final TestExecutor testExecutor = new TestExecutor();
+                    try {
+                        return run(testClass, TestUnitFilter.all(), testExecutor);
+                    } finally {
+                        testExecutor.shutdown();
+                    }
+                }
+            }));
+        }
+        executorService.shutdown();
+        boolean allPassed = true;
+        for (final Future<Boolean> result : results) {
+            try {
+                allPassed &= result.get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace(System.out);
+                allPassed = false;
+            }
+        }
+        return allPassed;
+    }
+
+    private boolean run(final List<CloseableTestUnit> testUnits,
+                        final Predicate<CloseableTestUnit> shouldRun,
+                        final TestExecutor executor) {
+        for (final CloseableTestUnit testUnit : testUnits) {
             if (!shouldRun.apply(testUnit)) {
                 continue;
             }
+            if (this.abortOnTimeout && this.timedOut) {
+                return false; // another test class has run into timeout
+            }
             final Runnable task = new Runnable() {
                 @Override
                 public void run() {
@@ -116,10 +239,16 @@ public class JUnitRunner {
                 }
             };
             try {
-                EXECUTOR_SERVICE.submit(task).get(Params.MAX_TIMEOUT_MINS, TimeUnit.MINUTES);
+                executor.submit(task).get(getTimeoutMillis(testUnit), TimeUnit.MILLISECONDS);
             } catch (TimeoutException e) {
                 System.out.println("WARNING: Running the test case is terminated due to timeout.");
+                this.timedOut = true;
+                executor.replace(); // the thread might never return
                 testUnit.close();
+                if (this.abortOnTimeout) {
+                    System.out.println("WARNING: Running test cases is aborted due to timeout.");
+                    return false;
+                }
                 continue;
             } catch (InterruptedException | ExecutionException e) {
                 e.printStackTrace(System.out);
@@ -132,4 +261,30 @@ public class JUnitRunner {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * A single-thread executor whose thread can be abandoned, e.g. when a test case
+     * runs into an infinite loop, so that the following test cases are not stuck
+     * behind it.
+     */
+    private static final class TestExecutor {
+        private ExecutorService executorService;
+
+        TestExecutor() {
+            this.executorService = Executors.newSingleThreadExecutor();
+        }
+
+        synchronized Future<?> submit(final Runnable task) {
+            return this.executorService.submit(task);
+        }
+
+        synchronized void replace() {
+            this.executorService.shutdownNow();
+            this.executorService = Executors.newSingleThreadExecutor();
+        }
+
+        synchronized void shutdown() {
+            this.executorService.shutdownNow();
+        }
+    }
+}
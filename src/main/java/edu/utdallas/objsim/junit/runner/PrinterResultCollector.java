@@ -47,7 +47,9 @@ class PrinterResultCollector implements ResultCollector {
     @Override
     public void notifyEnd(Description description, Throwable t) {
         final String testName = sanitizeExtendedTestName(description.getName());
-        this.failingTests.add(testName);
+        synchronized (this.failingTests) { // test cases might run concurrently
+            this.failingTests.add(testName);
+        }
         if (t != null) {
             System.out.flush();
             System.err.println();
@@ -64,4 +64,20 @@ public final class TestUnitFilter {
             }
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * A test unit filter that admits only test suites absent from <code>testUnitNames</code>.
+     * @param testUnitNames A set of fully qualified names of the test cases to be left out.
+     * @return A predicates that returns true iff the input test suite name was not present
+     *         in <code>testUnitNames</code>
+     */
+    public static Predicate<CloseableTestUnit> allBut(final Collection<String> testUnitNames) {
+        return new Predicate<CloseableTestUnit>() {
+            @Override
+            public Boolean apply(final CloseableTestUnit testUnit) {
+                final String testName = sanitizeExtendedTestName(testUnit.getDescription().getName());
+                return !testUnitNames.contains(testName);
+            }
+        };
+    }
+}
@@ -21,10 +21,9 @@ package edu.utdallas.objsim.maven;
  */
 
 import edu.utdallas.objsim.ObjSimEntryPoint;
+import edu.utdallas.objsim.analysis.FieldAccessMode;
 import edu.utdallas.objsim.commons.classpath.ClassPathUtils;
 import edu.utdallas.objsim.commons.functional.PredicateFactory;
-import edu.utdallas.objsim.commons.misc.NameUtils;
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.plugin.AbstractMojo;
@@ -37,12 +36,13 @@ import org.pitest.classpath.ClassPath;
 import org.pitest.functional.predicate.Predicate;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * The base class for our awesome Maven plugin Mojo!
@@ -75,6 +75,15 @@ public abstract class AbstractObjSimMojo extends AbstractMojo {
     @Parameter(property = "inputCSVFile", defaultValue = "input-file.csv")
     protected File inputCSVFile;
 
+    /**
+     * PraPR report directory, i.e. either <code>target/prapr-reports</code>, in which
+     * case the latest report is taken, or a specific report therein.
+     * If specified, patches are read directly from the report, and the input CSV
+     * file is ignored.
+     */
+    @Parameter(property = "praprReports")
+    protected File praprReportDirectory;
+
     @Parameter(property = "targetClasses")
     protected Set<String> targetClasses;
 
@@ -99,29 +108,246 @@ public abstract class AbstractObjSimMojo extends AbstractMojo {
     @Parameter(property = "childJVMArgs")
     protected Set<String> childJVMArgs;
 
+    /**
+     * Whether or not to process the patches even if the inputs are not changed
+     * since the last run.
+     */
+    @Parameter(property = "force", defaultValue = "false")
+    protected boolean force;
+
+    /**
+     * Maximum number of patches of the same methods that are merged into
+     * meta-classes and profiled in a single child process.
+     * Values less than 2 disable patch schemata.
+     */
+    @Parameter(property = "maxSchemaSize", defaultValue = "0")
+    protected int maxSchemaSize;
+
+    /**
+     * Whether or not to replay the invocations of patched methods recorded during
+     * the execution of covering tests on the original program, instead of running
+     * whole tests against patched programs.
+     */
+    @Parameter(property = "replayInvocations", defaultValue = "false")
+    protected boolean replayInvocations;
+
+    /**
+     * Whether or not to run original and patched programs in the same child process,
+     * through two different class loaders, transferring only snapshot distances.
+     */
+    @Parameter(property = "differential", defaultValue = "false")
+    protected boolean differential;
+
+    /**
+     * Whether or not to instrument only the patched methods for coverage during the
+     * prelude, so that the rest of the program runs without coverage probes.
+     */
+    @Parameter(property = "targetedPrelude", defaultValue = "false")
+    protected boolean targetedPrelude;
+
+    /**
+     * How to compute the fields accessed by patched methods: <code>STATIC</code>,
+     * i.e. through a static analysis, <code>DYNAMIC</code>, i.e. by recording field
+     * accesses during the prelude, or <code>UNION</code> of the two.
+     */
+    @Parameter(property = "fieldAccessMode", defaultValue = "DYNAMIC")
+    protected FieldAccessMode fieldAccessMode;
+
+    /**
+     * Maximum length of the call chains followed by the static field access analysis.
+     * Negative values mean no limit.
+     */
+    @Parameter(property = "callGraphDepth", defaultValue = "5")
+    protected int callGraphDepth;
+
+    /**
+     * Whether or not to run, during the prelude, only the test classes that reach some
+     * patched method according to a static call graph.
+     */
+    @Parameter(property = "testPreselection", defaultValue = "false")
+    protected boolean testPreselection;
+
+    /**
+     * Whether or not to skip the prelude, taking the tests that statically reach a
+     * patched method as its covering tests. Covering tests are over-approximated.
+     */
+    @Parameter(property = "skipPrelude", defaultValue = "false")
+    protected boolean skipPrelude;
+
+    /**
+     * File listing the tests failing on the original program, either one per line or
+     * in Defects4J format; only used if the prelude is skipped.
+     */
+    @Parameter(property = "failingTests")
+    protected File failingTests;
+
+    /**
+     * Number of test classes run concurrently during the prelude. Test classes must
+     * not interfere with each other, e.g. through static state or files, for this to
+     * be safe.
+     */
+    @Parameter(property = "preludeThreads", defaultValue = "1")
+    protected int preludeThreads;
+
+    /**
+     * Probe the basic blocks of patched methods during the prelude, so that a patch
+     * is only run against the test cases executing the instructions it modifies,
+     * rather than all the test cases entering the patched methods.
+     */
+    @Parameter(property = "blockCoverage", defaultValue = "false")
+    protected boolean blockCoverage;
+
+    /**
+     * Maximum number of passing test cases run against each patch. If positive, the
+     * passing test cases covering a patch are minimized, during the prelude, to a
+     * subset of at most this many test cases that exercise distinct basic blocks and
+     * fields of the patched methods. Values less than 1 disable minimization.
+     */
+    @Parameter(property = "maxCoveringTests", defaultValue = "0")
+    protected int maxCoveringTests;
+
+    /**
+     * Number of passing test cases drawn at a time when sampling the test cases covering
+     * patches. Sampling for a patch stops once the confidence interval of its average
+     * passing score is apart from those of its neighbours in the ranking. Values less
+     * than 1 disable sampling, i.e. all covering tests are run. Sampling cannot be
+     * combined with <code>maxSchemaSize</code> greater than 1 or <code>replayInvocations</code>.
+     */
+    @Parameter(property = "samplingBatchSize", defaultValue = "0")
+    protected int samplingBatchSize;
+
+    /**
+     * Confidence level of the intervals compared when sampling covering tests.
+     */
+    @Parameter(property = "samplingConfidence", defaultValue = "0.95")
+    protected double samplingConfidence;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         validateAndSanitizeParameters();
 
-        final ClassPath classPath = createClassPath();
-        final ClassByteArraySource byteArraySource = ClassPathUtils.createClassByteArraySource(classPath);
-
-        final File classBuildDirectory = new File(this.project.getBuild().getOutputDirectory());
         try {
-            (new ObjSimEntryPoint(classBuildDirectory,
-                    classPath,
-                    byteArraySource,
-                    this.appClassFilter,
-                    this.testClassFilter,
-                    this.compatibleJREHome,
-                    this.childJVMArgs,
-                    this.inputCSVFile)).run();
+            final ObjSimEntryPoint entryPoint = createEntryPoint(this.project, getInput());
+            final InputsManifest inputsManifest = computeInputsManifest(this.project, entryPoint);
+            if (isUpToDate(this.project, inputsManifest)) {
+                getLog().info("ObjSim results are up-to-date");
+                return;
+            }
+            entryPoint.run();
+            inputsManifest.save(getInputsManifestFile(this.project));
         } catch (Exception e) {
             throw new MojoExecutionException(e.getMessage(), e);
         }
     }
 
-    private void validateAndSanitizeParameters() throws MojoFailureException {
+    /**
+     * @return The PraPR report directory, if specified, or the input CSV file otherwise
+     */
+    protected File getInput() {
+        return this.praprReportDirectory == null ? this.inputCSVFile : this.praprReportDirectory;
+    }
+
+    /**
+     * Creates an entry point for processing the patches of a module.
+     * Output CSV file is written to the base directory of the module, while the
+     * intermediate files are kept in <code>target/objsim</code> of the module so that
+     * several modules can be processed in parallel.
+     *
+     * @param module The module whose patches shall be processed
+     * @param input Input CSV file, or PraPR report directory, of the module
+     * @return The entry point
+     */
+    protected ObjSimEntryPoint createEntryPoint(final MavenProject module, final File input) {
+        final ClassPath classPath = createClassPath(module);
+        final ClassByteArraySource byteArraySource = ClassPathUtils.createClassByteArraySource(classPath);
+        final File baseDirectory = module.getBasedir();
+        final ObjSimEntryPoint.Builder builder = ObjSimEntryPoint.builder();
+        if (this.praprReportDirectory == null) {
+            builder.inputCSVFile(input);
+        } else {
+            builder.praprReportDirectory(input);
+        }
+        return builder
+                .classPath(classPath)
+                .byteArraySource(byteArraySource)
+                .appClassFilter(createAppClassFilter(module))
+                .testClassFilter(createTestClassFilter(module))
+                .compatibleJREHome(this.compatibleJREHome)
+                .childJVMArgs(this.childJVMArgs)
+                .outputCSVFile(getOutputCSVFile(module))
+                .baseDirectory(baseDirectory)
+                .scratchDirectory(new File(module.getBuild().getDirectory(), "objsim"))
+                .maxSchemaSize(this.maxSchemaSize)
+                .replayInvocations(this.replayInvocations)
+                .differential(this.differential)
+                .targetedPrelude(this.targetedPrelude)
+                .fieldAccessMode(this.fieldAccessMode)
+                .callGraphDepth(this.callGraphDepth)
+                .testPreselection(this.testPreselection)
+                .skipPrelude(this.skipPrelude)
+                .failingTestsFile(this.failingTests)
+                .preludeThreads(this.preludeThreads)
+                .blockCoverage(this.blockCoverage)
+                .maxCoveringTests(this.maxCoveringTests)
+                .samplingBatchSize(this.samplingBatchSize)
+                .samplingConfidence(this.samplingConfidence)
+                .sourceDirectory(new File(module.getBuild().getSourceDirectory()))
+                .compilerTargetVersion(module.getProperties().getProperty("maven.compiler.target"))
+                .build();
+    }
+
+    protected File getOutputCSVFile(final MavenProject module) {
+        return new File(module.getBasedir(), "objsim-scores-complete.csv");
+    }
+
+    protected File getInputsManifestFile(final MavenProject module) {
+        return new File(module.getBasedir(), "objsim-inputs.properties");
+    }
+
+    protected InputsManifest computeInputsManifest(final MavenProject module,
+                                                   final ObjSimEntryPoint entryPoint) throws IOException {
+        return InputsManifest.compute(entryPoint.listInputFiles(),
+                getClassPathElements(module),
+                describeConfiguration());
+    }
+
+    /**
+     * Checks if the results of the last run are still valid, i.e. the output file
+     * exists and none of the inputs are changed since then.
+     *
+     * @param module The module being processed
+     * @param inputsManifest Fingerprints of current inputs
+     * @return <code>true</code> iff the module need not be processed
+     */
+    protected boolean isUpToDate(final MavenProject module, final InputsManifest inputsManifest) {
+        if (this.force || !getOutputCSVFile(module).isFile()) {
+            return false;
+        }
+        return inputsManifest.equals(InputsManifest.load(getInputsManifestFile(module)));
+    }
+
+    private String describeConfiguration() {
+        return "targetClasses=" + new TreeSet<>(this.targetClasses)
+                + ";excludedClasses=" + new TreeSet<>(this.excludedClasses)
+                + ";excludeTestClasses=" + this.excludeTestClasses
+                + ";targetTests=" + new TreeSet<>(this.targetTests)
+                + ";excludedTests=" + new TreeSet<>(this.excludedTests)
+                + ";includeProductionClasses=" + this.includeProductionClasses
+                + ";childJVMArgs=" + new TreeSet<>(this.childJVMArgs)
+                + ";maxSchemaSize=" + this.maxSchemaSize
+                + ";replayInvocations=" + this.replayInvocations
+                + ";differential=" + this.differential
+                + ";fieldAccessMode=" + this.fieldAccessMode
+                + ";callGraphDepth=" + this.callGraphDepth
+                + ";testPreselection=" + this.testPreselection
+                + ";skipPrelude=" + this.skipPrelude
+                + ";blockCoverage=" + this.blockCoverage
+                + ";maxCoveringTests=" + this.maxCoveringTests
+                + ";samplingBatchSize=" + this.samplingBatchSize
+                + ";samplingConfidence=" + this.samplingConfidence;
+    }
+
+    protected void validateAndSanitizeParameters() throws MojoFailureException {
         final String jreHome = System.getProperty("java.home");
         if (jreHome == null) {
             throw new MojoFailureException("JAVA_HOME is not set");
@@ -131,42 +357,18 @@ public abstract class AbstractObjSimMojo extends AbstractMojo {
             throw new MojoFailureException("Invalid JAVA_HOME");
         }
 
-        final String groupId = this.project.getGroupId();
-
         if (this.targetTests == null) {
             this.targetTests = new HashSet<>();
         }
         if (this.excludedTests == null) {
             this.excludedTests = new HashSet<>();
         }
-        if (this.targetTests.isEmpty()) {
-            this.targetTests.add(String.format("%s*Test", groupId));
-            this.targetTests.add(String.format("%s*Tests", groupId));
-            this.targetTests.add(String.format("%s*TestCase*", groupId));
-        }
-        this.testClassFilter = PredicateFactory.and(PredicateFactory.orGlobs(this.targetTests),
-                PredicateFactory.not(PredicateFactory.orGlobs(this.excludedTests)));
-
         if (this.targetClasses == null) {
             this.targetClasses = new HashSet<>();
         }
         if (this.excludedClasses == null) {
             this.excludedClasses = new HashSet<>();
         }
-        if (this.targetClasses.isEmpty()) {
-            this.targetClasses.add(groupId + "*");
-        }
-        Predicate<String> excludedClassesFilter = PredicateFactory.orGlobs(this.excludedClasses);
-        if (this.excludeTestClasses) {
-            final File testClassesBaseDirectory = new File(this.project.getBuild().getTestOutputDirectory());
-            excludedClassesFilter = PredicateFactory.or(excludedClassesFilter, classFileFilter(testClassesBaseDirectory));
-        }
-        Predicate<String> p = PredicateFactory.orGlobs(this.targetClasses);
-        if (this.includeProductionClasses) {
-            final File classesBaseDirectory = new File(this.project.getBuild().getOutputDirectory());
-            p = PredicateFactory.or(p, classFileFilter(classesBaseDirectory));
-        }
-        this.appClassFilter = PredicateFactory.and(p, PredicateFactory.not(excludedClassesFilter));
 
         if (this.childJVMArgs == null) {
             this.childJVMArgs = new HashSet<>();
@@ -174,28 +376,60 @@ public abstract class AbstractObjSimMojo extends AbstractMojo {
         if (this.childJVMArgs.isEmpty()) {
             this.childJVMArgs.add("-Xmx128g");
         }
+
+        this.testClassFilter = createTestClassFilter(this.project);
+        this.appClassFilter = createAppClassFilter(this.project);
+    }
+
+    private Predicate<String> createTestClassFilter(final MavenProject module) {
+        final String groupId = module.getGroupId();
+        final Set<String> targetTests = new HashSet<>(this.targetTests);
+        if (targetTests.isEmpty()) {
+            targetTests.add(String.format("%s*Test", groupId));
+            targetTests.add(String.format("%s*Tests", groupId));
+            targetTests.add(String.format("%s*TestCase*", groupId));
+        }
+        return PredicateFactory.and(PredicateFactory.orGlobs(targetTests),
+                PredicateFactory.not(PredicateFactory.orGlobs(this.excludedTests)));
     }
 
-    public static Predicate<String> classFileFilter(final File classesBaseDirectory) {
-        final Collection<File> classFiles = FileUtils.listFiles(classesBaseDirectory, new String[] {"class"}, true);
-        final Set<String> classes = new HashSet<>();
-        for (final File classFile : classFiles) {
-            classes.add(NameUtils.getClassName(classFile));
+    private Predicate<String> createAppClassFilter(final MavenProject module) {
+        final Set<String> targetClasses = new HashSet<>(this.targetClasses);
+        if (targetClasses.isEmpty()) {
+            targetClasses.add(module.getGroupId() + "*");
+        }
+        Predicate<String> excludedClassesFilter = PredicateFactory.orGlobs(this.excludedClasses);
+        if (this.excludeTestClasses) {
+            final File testClassesBaseDirectory = new File(module.getBuild().getTestOutputDirectory());
+            if (testClassesBaseDirectory.isDirectory()) {
+                excludedClassesFilter = PredicateFactory.or(excludedClassesFilter, ClassPathUtils.classFileFilter(testClassesBaseDirectory));
+            }
+        }
+        Predicate<String> p = PredicateFactory.orGlobs(targetClasses);
+        if (this.includeProductionClasses) {
+            final File classesBaseDirectory = new File(module.getBuild().getOutputDirectory());
+            if (classesBaseDirectory.isDirectory()) {
+                p = PredicateFactory.or(p, ClassPathUtils.classFileFilter(classesBaseDirectory));
+            }
         }
-        return PredicateFactory.fromCollection(classes);
+        return PredicateFactory.and(p, PredicateFactory.not(excludedClassesFilter));
+    }
+
+    private ClassPath createClassPath(final MavenProject module) {
+        return new ClassPath(getClassPathElements(module));
     }
 
-    private ClassPath createClassPath() {
+    private List<File> getClassPathElements(final MavenProject module) {
         final List<File> classPathElements = new ArrayList<>();
-        classPathElements.addAll(getProjectClassPath());
+        classPathElements.addAll(getProjectClassPath(module));
         classPathElements.addAll(getPluginClassPath());
-        return new ClassPath(classPathElements);
+        return classPathElements;
     }
 
-    private List<File> getProjectClassPath() {
+    private List<File> getProjectClassPath(final MavenProject module) {
         final List<File> classPath = new ArrayList<>();
         try {
-            for (final Object cpElement : this.project.getTestClasspathElements()) {
+            for (final Object cpElement : module.getTestClasspathElements()) {
                 classPath.add(new File((String) cpElement));
             }
         } catch (DependencyResolutionRequiredException e) {
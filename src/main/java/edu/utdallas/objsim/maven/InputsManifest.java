@@ -0,0 +1,156 @@
+package edu.utdallas.objsim.maven;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Fingerprints of the inputs of a run, i.e. input CSV file, patch files, class path
+ * and the configuration of the plugin.
+ * The manifest is stored next to the output so that subsequent runs with the same
+ * inputs can be skipped.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+final class InputsManifest {
+    private static final String CONFIGURATION_KEY = "configuration";
+
+    private final Map<String, String> fingerprints; // key --> fingerprint
+
+    private InputsManifest(final Map<String, String> fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Computes fingerprints of the inputs.
+     * Input files and class path directories are fingerprinted based on their
+     * contents, while the class path archives, i.e. dependencies, are fingerprinted
+     * based on their size and time stamps.
+     *
+     * @param inputFiles Input CSV file and patch files
+     * @param classPathElements Class path elements
+     * @param configuration A string describing plugin parameters
+     * @return The manifest
+     * @throws IOException In case of failure to read any of the files
+     */
+    static InputsManifest compute(final Collection<File> inputFiles,
+                                  final Collection<File> classPathElements,
+                                  final String configuration) throws IOException {
+        final Map<String, String> fingerprints = new TreeMap<>();
+        fingerprints.put(CONFIGURATION_KEY, configuration);
+        for (final File inputFile : inputFiles) {
+            fingerprints.put("input:" + inputFile.getAbsolutePath(),
+                    inputFile.isFile() ? digest(inputFile) : "missing");
+        }
+        for (final File element : classPathElements) {
+            if (element.isDirectory()) {
+                for (final File file : FileUtils.listFiles(element, null, true)) {
+                    fingerprints.put("classpath:" + file.getAbsolutePath(), digest(file));
+                }
+            } else if (element.isFile()) {
+                fingerprints.put("classpath:" + element.getAbsolutePath(),
+                        element.length() + "@" + element.lastModified());
+            }
+        }
+        return new InputsManifest(fingerprints);
+    }
+
+    /**
+     * @param manifestFile The file storing a manifest
+     * @return The manifest, or <code>null</code> if the file does not exist or is
+     *         not readable
+     */
+    static InputsManifest load(final File manifestFile) {
+        if (!manifestFile.isFile()) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try (final InputStream is = new FileInputStream(manifestFile)) {
+            properties.load(is);
+        } catch (IOException e) {
+            return null;
+        }
+        final Map<String, String> fingerprints = new TreeMap<>();
+        for (final String key : properties.stringPropertyNames()) {
+            fingerprints.put(key, properties.getProperty(key));
+        }
+        return new InputsManifest(fingerprints);
+    }
+
+    void save(final File manifestFile) throws IOException {
+        final Properties properties = new Properties();
+        properties.putAll(this.fingerprints);
+        try (final OutputStream os = new FileOutputStream(manifestFile)) {
+            properties.store(os, "ObjSim inputs manifest; do not edit");
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return this.fingerprints.equals(((InputsManifest) o).fingerprints);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.fingerprints.hashCode();
+    }
+
+    private static String digest(final File file) throws IOException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final byte[] buffer = new byte[8192];
+        try (final InputStream is = new FileInputStream(file)) {
+            int n;
+            while ((n = is.read(buffer)) > 0) {
+                md.update(buffer, 0, n);
+            }
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : md.digest()) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+}
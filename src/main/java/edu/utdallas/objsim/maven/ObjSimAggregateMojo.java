@@ -0,0 +1,152 @@
+package edu.utdallas.objsim.maven;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.ObjSimEntryPoint;
+import edu.utdallas.objsim.ScoringJob;
+import edu.utdallas.objsim.commons.process.FairShareScheduler;
+import edu.utdallas.objsim.commons.process.MemoryUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reactor-aware version of {@link ObjSimMojo}: processes the patches of all the
+ * modules of a multi-module project under a single scheduler.
+ * Each module has its own input CSV file (located at the same relative path as in
+ * the root project) and its own scratch directory, and modules without an input
+ * file are skipped.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+@Mojo(name = "validate-aggregate", aggregator = true, requiresDependencyResolution = ResolutionScope.TEST)
+public class ObjSimAggregateMojo extends AbstractObjSimMojo {
+    private static final long DEFAULT_MEMORY_BUDGET = 16L << 10; // in megabytes
+
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    protected List<MavenProject> reactorProjects;
+
+    /**
+     * Maximum number of child processes running simultaneously.
+     * By default, the number of available processors is used.
+     */
+    @Parameter(property = "workers", defaultValue = "0")
+    protected int workers;
+
+    /**
+     * Total memory, in megabytes, that can be allotted to child processes.
+     * By default, the amount of physical memory is used.
+     */
+    @Parameter(property = "memoryBudget", defaultValue = "0")
+    protected long memoryBudget;
+
+    /**
+     * Memory, in megabytes, claimed from the memory budget by each child process.
+     * The maximum heap size of child processes is not a good estimate of this, as it
+     * is only an upper bound, which is way too high by default. By default, the memory
+     * budget is divided evenly among the workers.
+     */
+    @Parameter(property = "memoryPerTask", defaultValue = "0")
+    protected long memoryPerTask;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        validateAndSanitizeParameters();
+
+        final int workers = this.workers > 0 ? this.workers : Runtime.getRuntime().availableProcessors();
+        final long memoryBudget = this.memoryBudget > 0L
+                ? this.memoryBudget
+                : MemoryUtils.getTotalPhysicalMemory(DEFAULT_MEMORY_BUDGET);
+        final long memoryPerTask = this.memoryPerTask > 0L ? this.memoryPerTask : Math.max(1L, memoryBudget / workers);
+        final FairShareScheduler scheduler = new FairShareScheduler(workers, memoryBudget);
+        final String inputPath = relativize(this.project.getBasedir(), getInput());
+
+        final List<ScoringJob> jobs = new ArrayList<>();
+        final List<MavenProject> modules = new ArrayList<>();
+        final List<InputsManifest> inputsManifests = new ArrayList<>();
+        for (final MavenProject module : this.reactorProjects) {
+            final File input = new File(module.getBasedir(), inputPath);
+            if (!input.exists()) {
+                getLog().info("Skipping module " + module.getArtifactId() + ": no " + inputPath);
+                continue;
+            }
+            final ObjSimEntryPoint entryPoint = createEntryPoint(module, input);
+            final InputsManifest inputsManifest;
+            try {
+                inputsManifest = computeInputsManifest(module, entryPoint);
+            } catch (IOException e) {
+                throw new MojoExecutionException(e.getMessage(), e);
+            }
+            if (isUpToDate(module, inputsManifest)) {
+                getLog().info("ObjSim results for module " + module.getArtifactId() + " are up-to-date");
+                continue;
+            }
+            final ScoringJob job = new ScoringJob(module.getArtifactId(), entryPoint, scheduler, memoryPerTask);
+            jobs.add(job);
+            modules.add(module);
+            inputsManifests.add(inputsManifest);
+            job.start();
+        }
+
+        final List<String> failedModules = new ArrayList<>();
+        try {
+            for (int i = 0; i < jobs.size(); i++) {
+                final ScoringJob job = jobs.get(i);
+                final Throwable failure = job.await();
+                if (failure != null) {
+                    getLog().error("Module " + job.getName() + " failed", failure);
+                    failedModules.add(job.getName());
+                } else {
+                    inputsManifests.get(i).save(getInputsManifestFile(modules.get(i)));
+                }
+            }
+        } catch (InterruptedException | IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } finally {
+            scheduler.shutdown();
+        }
+        if (!failedModules.isEmpty()) {
+            throw new MojoExecutionException("Failed modules: " + failedModules);
+        }
+    }
+
+    // the input of each module is located at the same relative path as in the root project
+    private static String relativize(final File baseDirectory, final File file) throws MojoExecutionException {
+        if (!file.isAbsolute()) {
+            return file.getPath();
+        }
+        final URI relative = baseDirectory.getAbsoluteFile().toURI().relativize(file.toURI());
+        if (relative.isAbsolute()) {
+            throw new MojoExecutionException("Input " + file.getPath()
+                    + " is not within the base directory of the root project");
+        }
+        return relative.getPath();
+    }
+}
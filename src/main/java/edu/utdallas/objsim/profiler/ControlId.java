@@ -31,13 +31,31 @@ import org.pitest.util.Id;
 public class ControlId {
     public static final byte DONE = Id.DONE;
 
-    public static final byte REPORT_METHOD_COVERAGE_MAP = 1;
-
-    public static final byte REPORT_FIELD_ACCESSES_MAP = 2;
-
     public static final byte REPORT_SNAPSHOTS = 4;
 
     public static final byte REPORT_FAILING_TESTS = 8;
 
+    public static final byte REPORT_VARIANT_SNAPSHOTS = 16;
+
+    public static final byte REPORT_TEST_DISTANCES = 32;
+
+    /* codes for prelude results in binary encoding; see PreludeWireFormat */
+
+    public static final byte REPORT_METHOD_COVERAGE_TABLE = 9;
+
+    public static final byte REPORT_FIELD_ACCESSES_TABLE = 10;
+
+    public static final byte REPORT_TEST_PROFILES = 11; // test durations, invocation counts, block coverage, and per-test field accesses
+
+    /* codes used between the coordinator and the workers in distributed mode */
+
+    public static final byte ASSIGN_PATCH = 3;
+
+    public static final byte REPORT_PATCH_SCORE = 5;
+
+    public static final byte REPORT_PATCH_FAILURE = 6;
+
+    public static final byte HEARTBEAT = 7;
+
     private ControlId() { }
 }
\ No newline at end of file
@@ -0,0 +1,247 @@
+package edu.utdallas.objsim.profiler.prelude;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+import edu.utdallas.objsim.commons.relational.FieldsDom;
+import edu.utdallas.objsim.commons.relational.MethodsDom;
+import org.apache.commons.lang3.Validate;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prelude results held in memory, whether they are reported by the prelude profiler,
+ * computed statically, or shipped to a worker.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class BasicPreludeProfilerResults implements PreludeProfilerResults {
+    private final File scratchDirectory;
+
+    private final FieldsDom fieldsDom;
+
+    private final MethodsDom methodsDom;
+
+    private final Map<Integer, int[]> accessedFieldsMap;
+
+    private final Map<String, CompressedBitmap> methodCoverageMap;
+
+    private final Set<String> failingTests;
+
+    private final CoverageIndex coverageIndex;
+
+    private final Map<String, Long> testDurations;
+
+    private final Map<String, Map<Integer, Long>> invocationCounts;
+
+    private final BlockCoverage blockCoverage;
+
+    private final Map<String, Map<Integer, int[]>> testFieldAccesses;
+
+    private BasicPreludeProfilerResults(final Builder builder) {
+        this.scratchDirectory = builder.scratchDirectory;
+        this.fieldsDom = builder.fieldsDom;
+        this.methodsDom = builder.methodsDom;
+        this.accessedFieldsMap = builder.accessedFieldsMap;
+        this.methodCoverageMap = builder.methodCoverageMap;
+        this.failingTests = builder.failingTests;
+        this.coverageIndex = builder.coverageIndex == null
+                ? new CoverageIndex(builder.methodCoverageMap, builder.failingTests)
+                : builder.coverageIndex;
+        this.testDurations = builder.testDurations;
+        this.invocationCounts = builder.invocationCounts;
+        this.blockCoverage = builder.blockCoverage;
+        this.testFieldAccesses = builder.testFieldAccesses;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public File getScratchDirectory() {
+        return this.scratchDirectory;
+    }
+
+    @Override
+    public FieldsDom getFieldsDom() {
+        return this.fieldsDom;
+    }
+
+    @Override
+    public MethodsDom getMethodsDom() {
+        return this.methodsDom;
+    }
+
+    @Override
+    public Map<Integer, int[]> accessedFieldsMap() {
+        return this.accessedFieldsMap;
+    }
+
+    @Override
+    public Map<String, CompressedBitmap> getMethodCoverageMap() {
+        return this.methodCoverageMap;
+    }
+
+    @Override
+    public Set<String> getFailingTests() {
+        return this.failingTests;
+    }
+
+    @Override
+    public CoverageIndex getCoverageIndex() {
+        return this.coverageIndex;
+    }
+
+    @Override
+    public Map<String, Long> getTestDurations() {
+        return this.testDurations;
+    }
+
+    @Override
+    public Map<String, Map<Integer, Long>> getInvocationCounts() {
+        return this.invocationCounts;
+    }
+
+    @Override
+    public BlockCoverage getBlockCoverage() {
+        return this.blockCoverage;
+    }
+
+    @Override
+    public Map<String, Map<Integer, int[]>> getTestFieldAccesses() {
+        return this.testFieldAccesses;
+    }
+
+    /**
+     * A builder for {@link BasicPreludeProfilerResults}.
+     * Scratch directory, field and method domains, and method coverage map are
+     * mandatory; the rest of the results are empty unless specified.
+     */
+    public static class Builder {
+        private File scratchDirectory;
+
+        private FieldsDom fieldsDom;
+
+        private MethodsDom methodsDom;
+
+        private Map<Integer, int[]> accessedFieldsMap;
+
+        private Map<String, CompressedBitmap> methodCoverageMap;
+
+        private Set<String> failingTests;
+
+        private CoverageIndex coverageIndex;
+
+        private Map<String, Long> testDurations;
+
+        private Map<String, Map<Integer, Long>> invocationCounts;
+
+        private BlockCoverage blockCoverage;
+
+        private Map<String, Map<Integer, int[]>> testFieldAccesses;
+
+        private Builder() {
+            this.accessedFieldsMap = Collections.emptyMap();
+            this.failingTests = Collections.emptySet();
+            this.testDurations = Collections.emptyMap();
+            this.invocationCounts = Collections.emptyMap();
+            this.blockCoverage = BlockCoverage.empty();
+            this.testFieldAccesses = Collections.emptyMap();
+        }
+
+        public Builder scratchDirectory(final File scratchDirectory) {
+            this.scratchDirectory = scratchDirectory;
+            return this;
+        }
+
+        public Builder fieldsDom(final FieldsDom fieldsDom) {
+            this.fieldsDom = fieldsDom;
+            return this;
+        }
+
+        public Builder methodsDom(final MethodsDom methodsDom) {
+            this.methodsDom = methodsDom;
+            return this;
+        }
+
+        public Builder accessedFieldsMap(final Map<Integer, int[]> accessedFieldsMap) {
+            this.accessedFieldsMap = accessedFieldsMap;
+            return this;
+        }
+
+        public Builder methodCoverageMap(final Map<String, CompressedBitmap> methodCoverageMap) {
+            this.methodCoverageMap = methodCoverageMap;
+            return this;
+        }
+
+        public Builder failingTests(final Set<String> failingTests) {
+            this.failingTests = failingTests;
+            return this;
+        }
+
+        /**
+         * Optional; by default the index is built from method coverage map and
+         * failing tests.
+         */
+        public Builder coverageIndex(final CoverageIndex coverageIndex) {
+            this.coverageIndex = coverageIndex;
+            return this;
+        }
+
+        public Builder testDurations(final Map<String, Long> testDurations) {
+            this.testDurations = testDurations;
+            return this;
+        }
+
+        public Builder invocationCounts(final Map<String, Map<Integer, Long>> invocationCounts) {
+            this.invocationCounts = invocationCounts;
+            return this;
+        }
+
+        public Builder blockCoverage(final BlockCoverage blockCoverage) {
+            this.blockCoverage = blockCoverage;
+            return this;
+        }
+
+        public Builder testFieldAccesses(final Map<String, Map<Integer, int[]>> testFieldAccesses) {
+            this.testFieldAccesses = testFieldAccesses;
+            return this;
+        }
+
+        public BasicPreludeProfilerResults build() {
+            Validate.notNull(this.scratchDirectory, "scratch directory is not specified");
+            Validate.notNull(this.fieldsDom, "fields domain is not specified");
+            Validate.notNull(this.methodsDom, "methods domain is not specified");
+            Validate.notNull(this.methodCoverageMap, "method coverage map is not specified");
+            Validate.notNull(this.accessedFieldsMap);
+            Validate.notNull(this.failingTests);
+            Validate.notNull(this.testDurations);
+            Validate.notNull(this.invocationCounts);
+            Validate.notNull(this.blockCoverage);
+            Validate.notNull(this.testFieldAccesses);
+            return new BasicPreludeProfilerResults(this);
+        }
+    }
+}
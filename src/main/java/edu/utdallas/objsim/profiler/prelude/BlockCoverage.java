@@ -0,0 +1,186 @@
+package edu.utdallas.objsim.profiler.prelude;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Basic blocks of patched methods executed by each test case. Blocks are numbered
+ * globally; each block is described by the index of its method and the range
+ * <code>[start, end)</code> of its instruction indices, where pseudo-instructions,
+ * i.e. labels, line numbers and frames, are not counted. For every block, the
+ * bitmap of the tests executing it is kept, where tests are identified by their
+ * position in the sorted list of test names.
+ *
+ * A block is considered executed as soon as it is entered, so a test case that
+ * leaves a block halfway, e.g. by an exception, is taken to have executed all of it.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class BlockCoverage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] methodIndices; // block id --> method index
+
+    private final int[] starts; // block id --> index of the first instruction
+
+    private final int[] ends; // block id --> index of the instruction after the last one
+
+    private final String[] testNames;
+
+    private final CompressedBitmap[] tests; // block id --> tests executing the block
+
+    /**
+     * @param methodIndices Block id --> method index
+     * @param starts Block id --> index of the first instruction of the block
+     * @param ends Block id --> index of the instruction after the last one of the block
+     * @param blockCoverageMap Test name --> executed block ids
+     */
+    public BlockCoverage(final int[] methodIndices,
+                         final int[] starts,
+                         final int[] ends,
+                         final Map<String, CompressedBitmap> blockCoverageMap) {
+        this.methodIndices = methodIndices;
+        this.starts = starts;
+        this.ends = ends;
+        this.testNames = blockCoverageMap.keySet().toArray(new String[0]);
+        Arrays.sort(this.testNames);
+        this.tests = new CompressedBitmap[methodIndices.length];
+        for (int blockId = 0; blockId < this.tests.length; blockId++) {
+            this.tests[blockId] = new CompressedBitmap();
+        }
+        for (int testIndex = 0; testIndex < this.testNames.length; testIndex++) {
+            final CompressedBitmap blocks = blockCoverageMap.get(this.testNames[testIndex]);
+            for (int blockId = blocks.nextElement(0); blockId >= 0; blockId = blocks.nextElement(blockId + 1)) {
+                this.tests[blockId].add(testIndex); // test indices are added in ascending order
+            }
+        }
+    }
+
+    BlockCoverage(final int[] methodIndices,
+                  final int[] starts,
+                  final int[] ends,
+                  final String[] testNames,
+                  final CompressedBitmap[] tests) {
+        this.methodIndices = methodIndices;
+        this.starts = starts;
+        this.ends = ends;
+        this.testNames = testNames;
+        this.tests = tests;
+    }
+
+    /**
+     * @return Block coverage with no block, e.g. when blocks are not probed
+     */
+    public static BlockCoverage empty() {
+        return new BlockCoverage(new int[0], new int[0], new int[0], new String[0], new CompressedBitmap[0]);
+    }
+
+    int getBlocksCount() {
+        return this.methodIndices.length;
+    }
+
+    int getMethodIndex(final int blockId) {
+        return this.methodIndices[blockId];
+    }
+
+    int getStart(final int blockId) {
+        return this.starts[blockId];
+    }
+
+    int getEnd(final int blockId) {
+        return this.ends[blockId];
+    }
+
+    String[] getTestNames() {
+        return this.testNames;
+    }
+
+    CompressedBitmap getTests(final int blockId) {
+        return this.tests[blockId];
+    }
+
+    /**
+     * @param methodIndex Method index
+     * @return <code>true</code> iff the blocks of the method are probed
+     */
+    public boolean hasBlocks(final int methodIndex) {
+        for (final int blockMethodIndex : this.methodIndices) {
+            if (blockMethodIndex == methodIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param methodIndex Method index
+     * @param from Index of the first instruction of the range
+     * @param to Index of the instruction after the last one of the range
+     * @return Names of the tests executing some block of the method overlapping the
+     *         range, in ascending order
+     */
+    public List<String> getTestsReaching(final int methodIndex, final int from, final int to) {
+        final CompressedBitmap reaching = new CompressedBitmap();
+        for (int blockId = 0; blockId < this.methodIndices.length; blockId++) {
+            if (this.methodIndices[blockId] == methodIndex && this.starts[blockId] < to && this.ends[blockId] > from) {
+                reaching.or(this.tests[blockId]);
+            }
+        }
+        final List<String> names = new ArrayList<>(reaching.cardinality());
+        for (int testIndex = reaching.nextElement(0); testIndex >= 0; testIndex = reaching.nextElement(testIndex + 1)) {
+            names.add(this.testNames[testIndex]);
+        }
+        return names;
+    }
+
+    /**
+     * @param methodIndex Method index
+     * @return Test name --> ids of the blocks of the method executed by the test; tests
+     *         executing no block of the method are left out
+     */
+    public Map<String, CompressedBitmap> getExecutedBlocks(final int methodIndex) {
+        final Map<String, CompressedBitmap> executedBlocks = new HashMap<>();
+        for (int blockId = 0; blockId < this.methodIndices.length; blockId++) {
+            if (this.methodIndices[blockId] != methodIndex) {
+                continue;
+            }
+            final CompressedBitmap tests = this.tests[blockId];
+            for (int testIndex = tests.nextElement(0); testIndex >= 0; testIndex = tests.nextElement(testIndex + 1)) {
+                final String testName = this.testNames[testIndex];
+                CompressedBitmap blocks = executedBlocks.get(testName);
+                if (blocks == null) {
+                    blocks = new CompressedBitmap();
+                    executedBlocks.put(testName, blocks);
+                }
+                blocks.add(blockId); // block ids are added in ascending order
+            }
+        }
+        return executedBlocks;
+    }
+}
@@ -0,0 +1,184 @@
+package edu.utdallas.objsim.profiler.prelude;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.objectweb.asm.Opcodes.ASM7;
+
+/**
+ * Places a coverage probe at the beginning of every basic block of a patched method.
+ * Leaders of basic blocks are the first instruction, targets of jumps, switches and
+ * exception handlers, and the instructions following jumps, switches, returns and
+ * throws. The method is buffered, so that backward jump targets are known, and then
+ * passed on, with the probes inserted, to the next visitor. Like method probes, block
+ * probes set an element of the probes array of the class.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class BlockCoverageTransformer extends MethodNode {
+    private static final String METHOD_COVERAGE_RECORDER = Type.getInternalName(MethodCoverageRecorder.class);
+
+    private final MethodVisitor next;
+
+    private final PreludeTransformerClassVisitor owner;
+
+    private final boolean perThread;
+
+    private final int classId;
+
+    private final int methodIndex;
+
+    /**
+     * @param next The visitor to which the probed method is passed on
+     * @param owner The class visitor allocating probe indices
+     * @param perThread Whether or not to obtain the probes of the current test case
+     * @param classId Class id obtained from the coverage recorder
+     * @param methodIndex Index of the method in the methods domain
+     */
+    public BlockCoverageTransformer(final MethodVisitor next,
+                                    final int access,
+                                    final String name,
+                                    final String descriptor,
+                                    final String signature,
+                                    final String[] exceptions,
+                                    final PreludeTransformerClassVisitor owner,
+                                    final boolean perThread,
+                                    final int classId,
+                                    final int methodIndex) {
+        super(ASM7, access, name, descriptor, signature, exceptions);
+        this.next = next;
+        this.owner = owner;
+        this.perThread = perThread;
+        this.classId = classId;
+        this.methodIndex = methodIndex;
+    }
+
+    @Override
+    public void visitEnd() {
+        super.visitEnd();
+        final Set<LabelNode> targets = jumpTargets();
+        final List<AbstractInsnNode> leaders = new ArrayList<>();
+        final List<Integer> starts = new ArrayList<>();
+        boolean leader = true;
+        int index = 0;
+        final Iterator<AbstractInsnNode> it = this.instructions.iterator();
+        while (it.hasNext()) {
+            final AbstractInsnNode insn = it.next();
+            if (insn instanceof LabelNode) {
+                leader |= targets.contains(insn);
+            } else if (insn.getOpcode() >= 0) {
+                if (leader) {
+                    leaders.add(insn);
+                    starts.add(index);
+                    leader = false;
+                }
+                index++;
+                leader = endsBlock(insn);
+            }
+        }
+        for (int i = 0; i < leaders.size(); i++) {
+            final int end = i + 1 < leaders.size() ? starts.get(i + 1) : index;
+            final int blockId = MethodCoverageRecorder.newBlock(this.methodIndex, starts.get(i), end);
+            this.instructions.insertBefore(leaders.get(i), probe(this.owner.newBlockProbe(blockId)));
+        }
+        accept(this.next);
+    }
+
+    private Set<LabelNode> jumpTargets() {
+        final Set<LabelNode> targets = new HashSet<>();
+        final Iterator<AbstractInsnNode> it = this.instructions.iterator();
+        while (it.hasNext()) {
+            final AbstractInsnNode insn = it.next();
+            if (insn instanceof JumpInsnNode) {
+                targets.add(((JumpInsnNode) insn).label);
+            } else if (insn instanceof TableSwitchInsnNode) {
+                targets.add(((TableSwitchInsnNode) insn).dflt);
+                targets.addAll(((TableSwitchInsnNode) insn).labels);
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                targets.add(((LookupSwitchInsnNode) insn).dflt);
+                targets.addAll(((LookupSwitchInsnNode) insn).labels);
+            }
+        }
+        for (final TryCatchBlockNode tcb : this.tryCatchBlocks) {
+            targets.add(tcb.handler);
+        }
+        return targets;
+    }
+
+    private static boolean endsBlock(final AbstractInsnNode insn) {
+        final int opcode = insn.getOpcode();
+        return insn instanceof JumpInsnNode
+                || insn instanceof TableSwitchInsnNode
+                || insn instanceof LookupSwitchInsnNode
+                || (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN)
+                || opcode == Opcodes.ATHROW
+                || opcode == Opcodes.RET;
+    }
+
+    private InsnList probe(final int probeIndex) {
+        final InsnList probe = new InsnList();
+        probe.add(push(this.classId));
+        probe.add(new MethodInsnNode(Opcodes.INVOKESTATIC,
+                METHOD_COVERAGE_RECORDER,
+                this.perThread ? "getThreadProbes" : "getProbes",
+                "(I)[Z",
+                false));
+        probe.add(push(probeIndex));
+        probe.add(new InsnNode(Opcodes.ICONST_1));
+        probe.add(new InsnNode(Opcodes.BASTORE));
+        return probe;
+    }
+
+    private static AbstractInsnNode push(final int value) {
+        if (value >= -1 && value <= 5) {
+            return new InsnNode(Opcodes.ICONST_0 + value);
+        }
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return new IntInsnNode(Opcodes.BIPUSH, value);
+        }
+        if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return new IntInsnNode(Opcodes.SIPUSH, value);
+        }
+        return new LdcInsnNode(value);
+    }
+}
@@ -0,0 +1,128 @@
+package edu.utdallas.objsim.profiler.prelude;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index of prelude coverage: for every method index, the bitmaps of
+ * passing and failing tests covering the method, where tests are identified by their
+ * position in the sorted list of test names. Resolving the tests covering a set of
+ * methods thus amounts to a few bitmap unions, rather than a scan of the coverage map.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class CoverageIndex {
+    private static final CompressedBitmap EMPTY = new CompressedBitmap();
+
+    private final String[] testNames;
+
+    private final List<CompressedBitmap> passingTests; // method index --> passing covering tests
+
+    private final List<CompressedBitmap> failingTests; // method index --> failing covering tests
+
+    /**
+     * @param methodCoverageMap Test name --> covered method indices
+     * @param failingTests Names of the tests failing on the original program
+     */
+    public CoverageIndex(final Map<String, CompressedBitmap> methodCoverageMap,
+                         final Set<String> failingTests) {
+        this.testNames = methodCoverageMap.keySet().toArray(new String[0]);
+        Arrays.sort(this.testNames);
+        this.passingTests = new ArrayList<>();
+        this.failingTests = new ArrayList<>();
+        for (int testIndex = 0; testIndex < this.testNames.length; testIndex++) {
+            final String testName = this.testNames[testIndex];
+            final List<CompressedBitmap> index = failingTests.contains(testName) ? this.failingTests : this.passingTests;
+            final CompressedBitmap coveredMethods = methodCoverageMap.get(testName);
+            for (int methodIndex = coveredMethods.nextElement(0);
+                 methodIndex >= 0;
+                 methodIndex = coveredMethods.nextElement(methodIndex + 1)) {
+                getOrCreate(index, methodIndex).add(testIndex); // test indices are added in ascending order
+            }
+        }
+    }
+
+    CoverageIndex(final String[] testNames,
+                  final List<CompressedBitmap> passingTests,
+                  final List<CompressedBitmap> failingTests) {
+        this.testNames = testNames;
+        this.passingTests = passingTests;
+        this.failingTests = failingTests;
+    }
+
+    static CompressedBitmap getOrCreate(final List<CompressedBitmap> index, final int methodIndex) {
+        while (index.size() <= methodIndex) {
+            index.add(null);
+        }
+        CompressedBitmap tests = index.get(methodIndex);
+        if (tests == null) {
+            tests = new CompressedBitmap();
+            index.set(methodIndex, tests);
+        }
+        return tests;
+    }
+
+    private static CompressedBitmap get(final List<CompressedBitmap> index, final int methodIndex) {
+        if (methodIndex < 0 || methodIndex >= index.size() || index.get(methodIndex) == null) {
+            return EMPTY;
+        }
+        return index.get(methodIndex);
+    }
+
+    /**
+     * @param methodIndex Method index
+     * @return Indices of the passing tests covering the method; shall not be modified
+     */
+    public CompressedBitmap getPassingTests(final int methodIndex) {
+        return get(this.passingTests, methodIndex);
+    }
+
+    /**
+     * @param methodIndex Method index
+     * @return Indices of the failing tests covering the method; shall not be modified
+     */
+    public CompressedBitmap getFailingTests(final int methodIndex) {
+        return get(this.failingTests, methodIndex);
+    }
+
+    public String getTestName(final int testIndex) {
+        return this.testNames[testIndex];
+    }
+
+    /**
+     * @param tests Test indices
+     * @return Names of the tests, in ascending order
+     */
+    public List<String> getTestNames(final CompressedBitmap tests) {
+        final List<String> names = new ArrayList<>(tests.cardinality());
+        for (int testIndex = tests.nextElement(0); testIndex >= 0; testIndex = tests.nextElement(testIndex + 1)) {
+            names.add(this.testNames[testIndex]);
+        }
+        return names;
+    }
+}
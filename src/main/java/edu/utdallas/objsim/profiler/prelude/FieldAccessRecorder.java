@@ -20,88 +20,321 @@ package edu.utdallas.objsim.profiler.prelude;
  * #L%
  */
 
-import org.apache.commons.lang3.ArrayUtils;
-
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A versatile, fast class for keeping track of accessed fields by the patched method.
+ * Each thread keeps a stack of the patched methods it is currently executing,
+ * together with its own growable bit sets of accessed fields, so that recording a
+ * field access touches only the bit sets of the active methods of the current thread
+ * and needs no synchronization. Per-thread bit sets are merged at report time.
+ * A thread spawned by a patched method inherits the active methods of its parent, so
+ * that its field accesses are also attributed to them for as long as they are active.
+ *
+ * Field accesses might also be recorded per test case. Each test case then gets a
+ * context, inherited by the threads it spawns, and every thread running on behalf of
+ * the test case gets its own bit sets in that context, which are merged once the test
+ * case is done.
  * !Internal use only!
  *
  * @author Ali Ghanbari (ali.ghanbari@utdallas)
  */
 public final class FieldAccessRecorder {
-    private static final int BITMAP_UNIT_SIZE = 1024;
+    private static final int INITIAL_STACK_SIZE = 16;
+
+    // number of patched method frames on the stacks of all threads
+    private static final AtomicInteger ACTIVE_FRAMES;
+
+    private static final ConcurrentLinkedQueue<ThreadState> THREAD_STATES;
+
+    private static final InheritableThreadLocal<ThreadState> THREAD_STATE;
 
-    private static final long[] BITMAP_TEMPLATE;
+    private static final InheritableThreadLocal<TestContext> CONTEXT = new InheritableThreadLocal<>();
 
-    private static final Map<Integer, long[]> FIELD_ACCESS_BITMAP;
+    private static final Object LOCK = new Object();
 
-    private static final Map<Integer, Integer> METHOD_ENTRIES;
+    private static final Map<Integer, BitSet> HARVESTED; // patched method index --> fields accessed within finished test cases
+
+    private static final Map<String, Map<Integer, int[]>> TEST_FIELD_ACCESSES; // test name --> patched method index --> accessed fields
+
+    private static volatile boolean perTest;
+
+    /**
+     * Whether or not any patched method is on the stack of any thread. Field access
+     * probes check this flag before calling {@link FieldAccessRecorder#registerFieldAccess(int)},
+     * so that outside of patched methods a probe costs a single volatile read.
+     * The flag might be stale for an instant after the last patched method exits, in
+     * which case the call is made and ignored.
+     */
+    public static volatile boolean active = false;
 
     static {
-        METHOD_ENTRIES = new ConcurrentHashMap<>();
-        FIELD_ACCESS_BITMAP = new ConcurrentHashMap<>();
-        BITMAP_TEMPLATE = new long[BITMAP_UNIT_SIZE];
-        Arrays.fill(BITMAP_TEMPLATE, 0L);
+        ACTIVE_FRAMES = new AtomicInteger(0);
+        THREAD_STATES = new ConcurrentLinkedQueue<>();
+        HARVESTED = new HashMap<>();
+        TEST_FIELD_ACCESSES = new HashMap<>();
+        THREAD_STATE = new InheritableThreadLocal<ThreadState>() {
+            @Override
+            protected ThreadState initialValue() {
+                final ThreadState state = new ThreadState(new Frame[0]);
+                THREAD_STATES.add(state);
+                return state;
+            }
+
+            // called on the parent thread while the child thread is being created
+            @Override
+            protected ThreadState childValue(final ThreadState parentState) {
+                final ThreadState state = new ThreadState(parentState.shareActiveFrames());
+                THREAD_STATES.add(state);
+                return state;
+            }
+        };
     }
 
     private FieldAccessRecorder() { }
 
+    // an activation of a patched method
+    private static final class Frame {
+        int methodIndex;
+
+        BitSet accessedFields;
+
+        boolean shared; // inherited by a child thread, so it cannot be reused for another activation
+
+        volatile boolean live; // only maintained for shared frames
+
+        void set(final int methodIndex, final BitSet accessedFields) {
+            this.methodIndex = methodIndex;
+            this.accessedFields = accessedFields;
+        }
+    }
+
+    private static final class ThreadState {
+        // patched method index --> accessed fields; concurrent as it is read at report time
+        final Map<Integer, BitSet> accessedFields;
+
+        Frame[] stack; // active patched methods, innermost last
+
+        int depth;
+
+        final Frame[] inherited; // active patched methods of the parent thread when this thread was created
+
+        BitSet[] inheritedAccessedFields; // accessed fields of the inherited methods on this thread
+
+        Map<Integer, BitSet> inheritedAccessedFieldsMap; // the map the above bit sets belong to
+
+        TestContext context; // test case on behalf of which the thread last entered a patched method
+
+        Map<Integer, BitSet> contextAccessedFields; // accessed fields of the thread within that test case
+
+        ThreadState(final Frame[] inherited) {
+            this.accessedFields = new ConcurrentHashMap<>();
+            this.stack = new Frame[INITIAL_STACK_SIZE];
+            this.depth = 0;
+            this.inherited = inherited;
+        }
+
+        Frame[] shareActiveFrames() {
+            final List<Frame> frames = new ArrayList<>();
+            for (final Frame frame : this.inherited) {
+                if (frame.live) {
+                    frames.add(frame);
+                }
+            }
+            for (int i = 0; i < this.depth; i++) {
+                final Frame frame = this.stack[i];
+                if (!frame.shared) {
+                    frame.shared = true;
+                    frame.live = true;
+                }
+                frames.add(frame);
+            }
+            return frames.toArray(new Frame[0]);
+        }
+    }
+
+    private static final class TestContext {
+        final Queue<Map<Integer, BitSet>> accessedFields = new ConcurrentLinkedQueue<>(); // one map per thread
+    }
+
+    /**
+     * @param perTest Whether or not to record the fields accessed by patched methods
+     *                during each test case separately
+     */
+    static void setPerTest(final boolean perTest) {
+        FieldAccessRecorder.perTest = perTest;
+    }
+
+    static void startTestUnit() {
+        if (perTest) {
+            CONTEXT.set(new TestContext());
+        }
+    }
+
+    static void endTestUnit(final String testUnitName) {
+        if (!perTest) {
+            return;
+        }
+        final TestContext context = CONTEXT.get();
+        CONTEXT.remove();
+        if (context == null) {
+            return;
+        }
+        final Map<Integer, BitSet> merged = new HashMap<>();
+        for (final Map<Integer, BitSet> accessedFields : context.accessedFields) {
+            merge(merged, accessedFields);
+        }
+        synchronized (LOCK) {
+            merge(HARVESTED, merged);
+            if (!merged.isEmpty()) {
+                TEST_FIELD_ACCESSES.put(testUnitName, toArrays(merged));
+            }
+        }
+    }
+
+    // bit sets of the current thread to which the accesses of a patched method shall go
+    private static Map<Integer, BitSet> getAccessedFields(final ThreadState state) {
+        if (perTest) {
+            final TestContext context = CONTEXT.get();
+            if (context != null) {
+                if (state.context != context) {
+                    state.context = context;
+                    state.contextAccessedFields = new ConcurrentHashMap<>();
+                    context.accessedFields.add(state.contextAccessedFields);
+                }
+                return state.contextAccessedFields;
+            }
+        }
+        return state.accessedFields;
+    }
+
+    private static BitSet getAccessedFields(final Map<Integer, BitSet> accessedFieldsMap, final int methodIndex) {
+        BitSet accessedFields = accessedFieldsMap.get(methodIndex);
+        if (accessedFields == null) {
+            accessedFields = new BitSet();
+            accessedFieldsMap.put(methodIndex, accessedFields);
+        }
+        return accessedFields;
+    }
+
     public static void inc(final int methodIndex) {
-        long[] bitmap = FIELD_ACCESS_BITMAP.get(methodIndex);
-        if (bitmap == null) {
-            bitmap = BITMAP_TEMPLATE.clone();
-            FIELD_ACCESS_BITMAP.put(methodIndex, bitmap);
+        final ThreadState state = THREAD_STATE.get();
+        final BitSet accessedFields = getAccessedFields(getAccessedFields(state), methodIndex);
+        if (state.depth == state.stack.length) {
+            state.stack = Arrays.copyOf(state.stack, 2 * state.depth);
         }
-        Integer entries = METHOD_ENTRIES.get(methodIndex);
-        if (entries == null) {
-            entries = 0;
+        Frame frame = state.stack[state.depth];
+        if (frame == null || frame.shared) {
+            frame = new Frame();
+            state.stack[state.depth] = frame;
         }
-        METHOD_ENTRIES.put(methodIndex, 1 + entries);
+        frame.set(methodIndex, accessedFields);
+        state.depth++;
+        ACTIVE_FRAMES.incrementAndGet();
+        active = true;
     }
 
     public static void dec(final int methodIndex) {
-        Integer entries = METHOD_ENTRIES.get(methodIndex);
-        if (entries == null) {
+        final ThreadState state = THREAD_STATE.get();
+        if (state.depth == 0) {
             throw new IllegalArgumentException();
         }
-        METHOD_ENTRIES.put(methodIndex, entries - 1);
+        final Frame frame = state.stack[--state.depth];
+        if (frame.shared) {
+            frame.live = false;
+        }
+        if (ACTIVE_FRAMES.decrementAndGet() == 0) {
+            active = false;
+            // another thread might have entered a patched method in the meantime
+            if (ACTIVE_FRAMES.get() > 0) {
+                active = true;
+            }
+        }
     }
 
     public static void registerFieldAccess(final int fieldIndex) {
-        for (final Map.Entry<Integer, Integer> entry : METHOD_ENTRIES.entrySet()) {
-            if (entry.getValue() > 0) {
-                final long[] bitmap = FIELD_ACCESS_BITMAP.get(entry.getKey());
-                final int index = (fieldIndex / Long.SIZE) % bitmap.length;
-                bitmap[index] |= 1L << (fieldIndex % Long.SIZE);
+        if (ACTIVE_FRAMES.get() == 0) {
+            return; // no patched method on any stack
+        }
+        final ThreadState state = THREAD_STATE.get();
+        final Frame[] stack = state.stack;
+        for (int i = state.depth - 1; i >= 0; i--) {
+            stack[i].accessedFields.set(fieldIndex);
+        }
+        if (state.inherited.length > 0) {
+            registerInheritedFieldAccess(state, fieldIndex);
+        }
+    }
+
+    private static void registerInheritedFieldAccess(final ThreadState state, final int fieldIndex) {
+        final Map<Integer, BitSet> accessedFieldsMap = getAccessedFields(state);
+        if (state.inheritedAccessedFieldsMap != accessedFieldsMap) { // e.g. a new test case
+            state.inheritedAccessedFields = new BitSet[state.inherited.length];
+            state.inheritedAccessedFieldsMap = accessedFieldsMap;
+        }
+        for (int i = 0; i < state.inherited.length; i++) {
+            final Frame frame = state.inherited[i];
+            if (frame.live) {
+                BitSet accessedFields = state.inheritedAccessedFields[i];
+                if (accessedFields == null) {
+                    accessedFields = getAccessedFields(accessedFieldsMap, frame.methodIndex);
+                    state.inheritedAccessedFields[i] = accessedFields;
+                }
+                accessedFields.set(fieldIndex);
             }
         }
     }
 
     public static HashMap<Integer, int[]> getFieldAccesses() {
+        final Map<Integer, BitSet> merged = new HashMap<>();
+        for (final ThreadState state : THREAD_STATES) {
+            merge(merged, state.accessedFields);
+        }
+        synchronized (LOCK) {
+            merge(merged, HARVESTED);
+        }
+        return toArrays(merged);
+    }
+
+    // tests that do not call any patched method are left out
+    static HashMap<String, Map<Integer, int[]>> getTestFieldAccesses() {
+        synchronized (LOCK) {
+            return new HashMap<>(TEST_FIELD_ACCESSES);
+        }
+    }
+
+    private static void merge(final Map<Integer, BitSet> merged, final Map<Integer, BitSet> accessedFieldsMap) {
+        for (final Map.Entry<Integer, BitSet> entry : accessedFieldsMap.entrySet()) {
+            final BitSet accessedFields = merged.get(entry.getKey());
+            if (accessedFields == null) {
+                merged.put(entry.getKey(), (BitSet) entry.getValue().clone());
+            } else {
+                accessedFields.or(entry.getValue());
+            }
+        }
+    }
+
+    private static HashMap<Integer, int[]> toArrays(final Map<Integer, BitSet> accessedFieldsMap) {
         final HashMap<Integer, int[]> result = new HashMap<>();
-        for (final Map.Entry<Integer, long[]> entry : FIELD_ACCESS_BITMAP.entrySet()) {
-            final ArrayList<Integer> accessedFields = new ArrayList<>();
-            int fieldIndex = 0;
-            for (long group : entry.getValue()) {
-                if (group == 0) {
-                    fieldIndex += Long.SIZE;
-                    continue;
-                }
-                while (group != 0) {
-                    if ((group & 1L) != 0) {
-                        accessedFields.add(fieldIndex);
-                    }
-                    group >>>= 1;
-                    fieldIndex++;
-                }
+        for (final Map.Entry<Integer, BitSet> entry : accessedFieldsMap.entrySet()) {
+            final BitSet accessedFields = entry.getValue();
+            final int[] fields = new int[accessedFields.cardinality()];
+            int i = 0;
+            for (int fieldIndex = accessedFields.nextSetBit(0);
+                 fieldIndex >= 0;
+                 fieldIndex = accessedFields.nextSetBit(fieldIndex + 1)) {
+                fields[i++] = fieldIndex;
             }
-            result.put(entry.getKey(), ArrayUtils.toPrimitive(accessedFields.toArray(new Integer[0])));
+            result.put(entry.getKey(), fields);
         }
         return result;
     }
@@ -21,6 +21,7 @@ package edu.utdallas.objsim.profiler.prelude;
  */
 
 import edu.utdallas.objsim.commons.relational.FieldsDom;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.GeneratorAdapter;
@@ -55,8 +56,13 @@ class FieldAccessRecorderMethodVisitor extends GeneratorAdapter {
     public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
         if (opcode == GETFIELD || opcode == PUTFIELD) {
             final int fieldIndex = this.fieldsDom.getOrAdd(getFieldFullName(owner, name));
+            // the call is skipped unless some patched method is active
+            final Label skip = newLabel();
+            getStatic(FIELD_ACCESS_RECORDER, "active", Type.BOOLEAN_TYPE);
+            ifZCmp(EQ, skip);
             push(fieldIndex);
             invokeStatic(FIELD_ACCESS_RECORDER, Method.getMethod("void registerFieldAccess(int)"));
+            mark(skip);
         }
         super.visitFieldInsn(opcode, owner, name, descriptor);
     }
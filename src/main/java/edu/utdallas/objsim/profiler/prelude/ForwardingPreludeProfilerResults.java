@@ -0,0 +1,98 @@
+package edu.utdallas.objsim.profiler.prelude;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+import edu.utdallas.objsim.commons.relational.FieldsDom;
+import edu.utdallas.objsim.commons.relational.MethodsDom;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prelude results that forward every call to other prelude results. Subclasses
+ * override the calls whose results they change.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public abstract class ForwardingPreludeProfilerResults implements PreludeProfilerResults {
+    private final PreludeProfilerResults delegate;
+
+    protected ForwardingPreludeProfilerResults(final PreludeProfilerResults delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public File getScratchDirectory() {
+        return this.delegate.getScratchDirectory();
+    }
+
+    @Override
+    public FieldsDom getFieldsDom() {
+        return this.delegate.getFieldsDom();
+    }
+
+    @Override
+    public MethodsDom getMethodsDom() {
+        return this.delegate.getMethodsDom();
+    }
+
+    @Override
+    public Map<Integer, int[]> accessedFieldsMap() {
+        return this.delegate.accessedFieldsMap();
+    }
+
+    @Override
+    public Map<String, CompressedBitmap> getMethodCoverageMap() {
+        return this.delegate.getMethodCoverageMap();
+    }
+
+    @Override
+    public Set<String> getFailingTests() {
+        return this.delegate.getFailingTests();
+    }
+
+    @Override
+    public CoverageIndex getCoverageIndex() {
+        return this.delegate.getCoverageIndex();
+    }
+
+    @Override
+    public Map<String, Long> getTestDurations() {
+        return this.delegate.getTestDurations();
+    }
+
+    @Override
+    public Map<String, Map<Integer, Long>> getInvocationCounts() {
+        return this.delegate.getInvocationCounts();
+    }
+
+    @Override
+    public BlockCoverage getBlockCoverage() {
+        return this.delegate.getBlockCoverage();
+    }
+
+    @Override
+    public Map<String, Map<Integer, int[]>> getTestFieldAccesses() {
+        return this.delegate.getTestFieldAccesses();
+    }
+}
@@ -20,64 +20,338 @@ package edu.utdallas.objsim.profiler.prelude;
  * #L%
  */
 
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Records the methods covered by each test case. Every instrumented class gets an
+ * array of boolean probes, one per instrumented method, which is cached in a
+ * synthetic static field of the class, so that recording a method call costs a
+ * single array store. Probes are reset before, and harvested after, each test case,
+ * into a compressed bitmap of covered method indices.
+ *
+ * When test cases run concurrently, each test case gets its own probe arrays, held
+ * in an inheritable thread-local test context, so that the code run by the threads
+ * spawned during a test case is attributed to that test case. Instrumented code then
+ * looks up the probes of the current test case at every call.
+ *
+ * Patched methods additionally get an invocation counter, so that the number of
+ * times each test case calls each patched method is known; this tells how many
+ * snapshots the test case would take in the primary profiler. Patched methods might
+ * also get a probe at every basic block, which occupies a slot of the probes array of
+ * the class, just like a method probe, so that the blocks executed by each test case
+ * are harvested along with the covered methods.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
 public class MethodCoverageRecorder {
-    private static final int BITMAP_UNIT_SIZE = 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final Object LOCK = new Object();
+
+    private static final Map<String, CompressedBitmap> COVERAGE_MAP; // test suite/case name --> set of covered methods
+
+    private static volatile boolean[][] probes; // class id --> probes
+
+    private static int[][] methodIndices; // class id --> probe index --> method index, or -1 for block probes
+
+    private static int[][] blockIds; // class id --> probe index --> block id, or -1 for method probes
+
+    private static int classCount;
+
+    private static final Map<String, Map<Integer, Long>> INVOCATION_COUNTS; // test name --> patched method index --> invocations
+
+    private static Map<String, Integer> counterIndices; // patched method full name --> counter index
+
+    private static int[] counterMethodIndices; // counter index --> method index
 
-    private static final long[] METHODS_BITMAP;
+    private static volatile AtomicLongArray counters; // counter index --> invocations
 
-    public static final Map<String, long[]> COVERAGE_MAP; // test suite/case name --> set of covered methods
+    private static final Map<String, CompressedBitmap> BLOCK_COVERAGE_MAP; // test name --> executed blocks
 
-    public static long[] coveredMethods;
+    private static int[] blockMethodIndices; // block id --> method index
+
+    private static int[] blockStarts; // block id --> index of the first instruction
+
+    private static int[] blockEnds; // block id --> index of the instruction after the last one
+
+    private static int blockCount;
+
+    private static final InheritableThreadLocal<TestContext> CONTEXT = new InheritableThreadLocal<>();
+
+    private static volatile boolean perThread;
 
     static {
-        METHODS_BITMAP = new long[BITMAP_UNIT_SIZE];
-        Arrays.fill(METHODS_BITMAP, 0L);
         COVERAGE_MAP = new HashMap<>();
+        probes = new boolean[INITIAL_CAPACITY][];
+        methodIndices = new int[INITIAL_CAPACITY][];
+        blockIds = new int[INITIAL_CAPACITY][];
+        BLOCK_COVERAGE_MAP = new HashMap<>();
+        blockMethodIndices = new int[INITIAL_CAPACITY];
+        blockStarts = new int[INITIAL_CAPACITY];
+        blockEnds = new int[INITIAL_CAPACITY];
+        INVOCATION_COUNTS = new HashMap<>();
+        counterIndices = new HashMap<>();
+        counterMethodIndices = new int[0];
+        counters = new AtomicLongArray(0);
     }
 
     private MethodCoverageRecorder() { }
 
-    static void addTestUnit(final String testUnitName) {
-        coveredMethods = METHODS_BITMAP.clone();
-        COVERAGE_MAP.put(testUnitName, coveredMethods);
+    static int newClassId() {
+        synchronized (LOCK) {
+            return classCount++;
+        }
+    }
+
+    /**
+     * @param methodIndex Index of the method containing the block
+     * @param start Index of the first instruction of the block
+     * @param end Index of the instruction after the last one of the block
+     * @return Block id
+     */
+    static int newBlock(final int methodIndex, final int start, final int end) {
+        synchronized (LOCK) {
+            if (blockCount == blockMethodIndices.length) {
+                blockMethodIndices = Arrays.copyOf(blockMethodIndices, 2 * blockCount);
+                blockStarts = Arrays.copyOf(blockStarts, 2 * blockCount);
+                blockEnds = Arrays.copyOf(blockEnds, 2 * blockCount);
+            }
+            blockMethodIndices[blockCount] = methodIndex;
+            blockStarts[blockCount] = start;
+            blockEnds[blockCount] = end;
+            return blockCount++;
+        }
     }
 
-    public static void recordMethod(final int methodIndex) {
-        if (coveredMethods == null) {
-            /*some of the programs like JacksonDatabind from Defects4J use user-defined annotations from
-            production code in their test classes. therefore "recordMethod" gets called before any
-            "addTestUnit" and we get NPE in "recordMethod"! this is to circumvent this situation.*/
+    /**
+     * Registers the probes of a class. This is called at the end of class
+     * transformation, i.e. before any method of the class could run.
+     *
+     * @param classId Class id obtained from {@link MethodCoverageRecorder#newClassId()}
+     * @param methodIndices Method index of each probe, or <code>-1</code> for block probes
+     * @param blockIds Block id of each probe, or <code>-1</code> for method probes
+     */
+    static void registerClass(final int classId, final int[] methodIndices, final int[] blockIds) {
+        synchronized (LOCK) {
+            boolean[][] probes = MethodCoverageRecorder.probes;
+            if (classId >= probes.length) {
+                final int capacity = Math.max(2 * probes.length, classId + 1);
+                probes = Arrays.copyOf(probes, capacity);
+                MethodCoverageRecorder.methodIndices = Arrays.copyOf(MethodCoverageRecorder.methodIndices, capacity);
+                MethodCoverageRecorder.blockIds = Arrays.copyOf(MethodCoverageRecorder.blockIds, capacity);
+            }
+            probes[classId] = new boolean[methodIndices.length];
+            MethodCoverageRecorder.methodIndices[classId] = methodIndices;
+            MethodCoverageRecorder.blockIds[classId] = blockIds;
+            MethodCoverageRecorder.probes = probes;
+        }
+    }
+
+    /**
+     * Allocates one invocation counter per patched method. This is called before any
+     * class is transformed.
+     *
+     * @param patchedMethods Full names of the patched methods
+     */
+    static void setCountedMethods(final Collection<String> patchedMethods) {
+        synchronized (LOCK) {
+            final Map<String, Integer> counterIndices = new HashMap<>();
+            for (final String methodFullName : patchedMethods) {
+                if (!counterIndices.containsKey(methodFullName)) {
+                    counterIndices.put(methodFullName, counterIndices.size());
+                }
+            }
+            MethodCoverageRecorder.counterIndices = counterIndices;
+            counterMethodIndices = new int[counterIndices.size()];
+            Arrays.fill(counterMethodIndices, -1);
+            counters = new AtomicLongArray(counterIndices.size());
+        }
+    }
+
+    /**
+     * Binds the invocation counter of a patched method to the index of the method in
+     * the methods domain.
+     *
+     * @param methodFullName Full name of the method
+     * @param methodIndex Method index
+     * @return Counter index, or <code>-1</code> if the method is not patched
+     */
+    static int registerCounter(final String methodFullName, final int methodIndex) {
+        synchronized (LOCK) {
+            final Integer counterIndex = counterIndices.get(methodFullName);
+            if (counterIndex == null) {
+                return -1;
+            }
+            counterMethodIndices[counterIndex] = methodIndex;
+            return counterIndex;
+        }
+    }
+
+    public static void countInvocation(final int counterIndex) {
+        if (perThread) {
+            final TestContext context = CONTEXT.get();
+            if (context != null) {
+                context.counters.incrementAndGet(counterIndex);
+                return;
+            }
+        }
+        counters.incrementAndGet(counterIndex);
+    }
+
+    public static boolean[] getProbes(final int classId) {
+        return probes[classId];
+    }
+
+    /**
+     * @param classId Class id
+     * @return Probes of the class for the test case being run by the current thread;
+     *         code run outside of test cases is not attributed to any test case
+     */
+    public static boolean[] getThreadProbes(final int classId) {
+        final TestContext context = CONTEXT.get();
+        if (context == null) {
+            return probes[classId];
+        }
+        return context.getProbes(classId);
+    }
+
+    /**
+     * @param perThread Whether or not test cases run concurrently, in which case
+     *                  classes must be instrumented to use
+     *                  {@link MethodCoverageRecorder#getThreadProbes(int)}
+     */
+    static void setPerThread(final boolean perThread) {
+        MethodCoverageRecorder.perThread = perThread;
+    }
+
+    private static int getProbesCount(final int classId) {
+        synchronized (LOCK) {
+            return methodIndices[classId].length;
+        }
+    }
+
+    static void startTestUnit() {
+        if (perThread) {
+            CONTEXT.set(new TestContext());
             return;
         }
-        final int unitIndex = methodIndex / Long.SIZE;
-        final int bitIndex = methodIndex % Long.SIZE;
-        coveredMethods[unitIndex] |= 1L << bitIndex;
-    }
-
-    static HashMap<String, Set<Integer>> getCoverageMap() {
-        final HashMap<String, Set<Integer>> coverageMap = new HashMap<>();
-        for (final Map.Entry<String, long[]> entry : COVERAGE_MAP.entrySet()) {
-            final String testUnitName = entry.getKey();
-            final Set<Integer> set = new HashSet<>();
-            final long[] methodsBitmap = entry.getValue();
-            int methodIndex = 0;
-            for (long unit : methodsBitmap) {
-                for (int bitIndex = 0; bitIndex < Long.SIZE; bitIndex++) {
-                    if ((unit & 1L) != 0L) {
-                        set.add(methodIndex);
+        synchronized (LOCK) {
+            for (int classId = 0; classId < classCount; classId++) {
+                final boolean[] classProbes = probes[classId];
+                if (classProbes != null) {
+                    Arrays.fill(classProbes, false);
+                }
+            }
+            for (int counterIndex = 0; counterIndex < counters.length(); counterIndex++) {
+                counters.set(counterIndex, 0L);
+            }
+        }
+    }
+
+    static void endTestUnit(final String testUnitName) {
+        if (perThread) {
+            final TestContext context = CONTEXT.get();
+            CONTEXT.remove();
+            harvest(testUnitName, context.probes, context.counters);
+        } else {
+            harvest(testUnitName, probes, counters);
+        }
+    }
+
+    private static void harvest(final String testUnitName,
+                                final boolean[][] probes,
+                                final AtomicLongArray counters) {
+        int[] coveredMethods = new int[64];
+        int count = 0;
+        final CompressedBitmap executedBlocks = new CompressedBitmap();
+        synchronized (LOCK) {
+            for (int classId = 0; classId < Math.min(classCount, probes.length); classId++) {
+                final boolean[] classProbes = probes[classId];
+                if (classProbes == null) {
+                    continue;
+                }
+                for (int probeIndex = 0; probeIndex < classProbes.length; probeIndex++) {
+                    if (!classProbes[probeIndex]) {
+                        continue;
+                    }
+                    final int blockId = blockIds[classId][probeIndex];
+                    if (blockId >= 0) {
+                        executedBlocks.add(blockId);
+                    } else {
+                        if (count == coveredMethods.length) {
+                            coveredMethods = Arrays.copyOf(coveredMethods, 2 * count);
+                        }
+                        coveredMethods[count++] = methodIndices[classId][probeIndex];
                     }
-                    unit >>>= 1;
-                    methodIndex++;
                 }
             }
-            coverageMap.put(testUnitName, set);
+            COVERAGE_MAP.put(testUnitName, CompressedBitmap.of(Arrays.copyOf(coveredMethods, count)));
+            if (blockCount > 0) {
+                BLOCK_COVERAGE_MAP.put(testUnitName, executedBlocks);
+            }
+            final Map<Integer, Long> invocationCounts = new HashMap<>();
+            for (int counterIndex = 0; counterIndex < counters.length(); counterIndex++) {
+                final long invocations = counters.get(counterIndex);
+                if (invocations > 0L) {
+                    invocationCounts.put(counterMethodIndices[counterIndex], invocations);
+                }
+            }
+            if (!invocationCounts.isEmpty()) {
+                INVOCATION_COUNTS.put(testUnitName, invocationCounts);
+            }
+        }
+    }
+
+    static HashMap<String, CompressedBitmap> getCoverageMap() {
+        synchronized (LOCK) {
+            return new HashMap<>(COVERAGE_MAP);
+        }
+    }
+
+    static BlockCoverage getBlockCoverage() {
+        synchronized (LOCK) {
+            return new BlockCoverage(Arrays.copyOf(blockMethodIndices, blockCount),
+                    Arrays.copyOf(blockStarts, blockCount),
+                    Arrays.copyOf(blockEnds, blockCount),
+                    BLOCK_COVERAGE_MAP);
+        }
+    }
+
+    // tests that do not call any patched method are left out
+    static HashMap<String, Map<Integer, Long>> getInvocationCounts() {
+        synchronized (LOCK) {
+            return new HashMap<>(INVOCATION_COUNTS);
+        }
+    }
+
+    private static final class TestContext {
+        private volatile boolean[][] probes = new boolean[INITIAL_CAPACITY][];
+
+        private final AtomicLongArray counters = new AtomicLongArray(MethodCoverageRecorder.counters.length());
+
+        boolean[] getProbes(final int classId) {
+            final boolean[][] probes = this.probes;
+            if (classId < probes.length && probes[classId] != null) {
+                return probes[classId];
+            }
+            synchronized (this) {
+                boolean[][] current = this.probes;
+                if (classId >= current.length) {
+                    current = Arrays.copyOf(current, Math.max(2 * current.length, classId + 1));
+                }
+                if (current[classId] == null) {
+                    current[classId] = new boolean[getProbesCount(classId)];
+                }
+                this.probes = current;
+                return current[classId];
+            }
         }
-        return coverageMap;
     }
 }
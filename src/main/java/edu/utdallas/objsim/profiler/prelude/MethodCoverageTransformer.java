@@ -20,28 +20,99 @@ package edu.utdallas.objsim.profiler.prelude;
  * #L%
  */
 
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.AdviceAdapter;
 import org.objectweb.asm.commons.Method;
 
+/**
+ * Places a coverage probe at the entry of a method: the probe sets an element of
+ * the probes array of the class, which is obtained from {@link MethodCoverageRecorder}
+ * at the first call and cached in a synthetic static field. Interfaces cannot have
+ * such a field, so the array is obtained at every call. When test cases run
+ * concurrently, the array of the current test case is obtained at every call.
+ * Patched methods also increment their invocation counter.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
 class MethodCoverageTransformer extends AdviceAdapter {
+    static final String PROBES_FIELD_NAME = "$objsimProbes";
+
+    static final String PROBES_FIELD_DESC = "[Z";
+
     private static final Type METHOD_COVERAGE_RECORDER = Type.getType(MethodCoverageRecorder.class);
 
-    private final int methodIndex;
+    private static final Method GET_PROBES = Method.getMethod("boolean[] getProbes(int)");
+
+    private static final Method GET_THREAD_PROBES = Method.getMethod("boolean[] getThreadProbes(int)");
+
+    private static final Method COUNT_INVOCATION = Method.getMethod("void countInvocation(int)");
+
+    private final Type owner;
+
+    private final boolean probesField;
+
+    private final boolean perThread;
+
+    private final int classId;
+
+    private final int probeIndex;
+
+    private final int counterIndex;
 
+    /**
+     * @param owner Internal name of the class
+     * @param probesField Whether or not the class has the synthetic probes field
+     * @param perThread Whether or not to obtain the probes of the current test case
+     * @param classId Class id obtained from the coverage recorder
+     * @param probeIndex Index of the method's probe in the probes array of the class
+     * @param counterIndex Index of the method's invocation counter, or <code>-1</code>
+     *                     if invocations of the method are not counted
+     */
     public MethodCoverageTransformer(final MethodVisitor methodVisitor,
                                      final int access,
                                      final String name,
                                      final String descriptor,
-                                     final int methodIndex) {
+                                     final String owner,
+                                     final boolean probesField,
+                                     final boolean perThread,
+                                     final int classId,
+                                     final int probeIndex,
+                                     final int counterIndex) {
         super(ASM7, methodVisitor, access, name, descriptor);
-        this.methodIndex = methodIndex;
+        this.owner = Type.getObjectType(owner);
+        this.probesField = probesField;
+        this.perThread = perThread;
+        this.classId = classId;
+        this.probeIndex = probeIndex;
+        this.counterIndex = counterIndex;
     }
 
     @Override
     protected void onMethodEnter() {
-        push(this.methodIndex);
-        invokeStatic(METHOD_COVERAGE_RECORDER, Method.getMethod("void recordMethod(int)"));
+        if (this.probesField) {
+            final Label initialized = newLabel();
+            getStatic(this.owner, PROBES_FIELD_NAME, Type.getType(PROBES_FIELD_DESC));
+            dup();
+            ifNonNull(initialized);
+            pop();
+            push(this.classId);
+            invokeStatic(METHOD_COVERAGE_RECORDER, GET_PROBES);
+            dup();
+            putStatic(this.owner, PROBES_FIELD_NAME, Type.getType(PROBES_FIELD_DESC));
+            mark(initialized);
+        } else {
+            push(this.classId);
+            invokeStatic(METHOD_COVERAGE_RECORDER, this.perThread ? GET_THREAD_PROBES : GET_PROBES);
+        }
+        push(this.probeIndex);
+        push(true);
+        arrayStore(Type.BOOLEAN_TYPE);
+        if (this.counterIndex >= 0) {
+            push(this.counterIndex);
+            invokeStatic(METHOD_COVERAGE_RECORDER, COUNT_INVOCATION);
+        }
     }
 }
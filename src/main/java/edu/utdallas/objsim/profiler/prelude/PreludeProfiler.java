@@ -30,7 +30,6 @@ import org.pitest.boot.HotSwapAgent;
 import org.pitest.classinfo.CachingByteArraySource;
 import org.pitest.classinfo.ClassByteArraySource;
 import org.pitest.classpath.ClassloaderByteArraySource;
-import org.pitest.functional.predicate.Predicate;
 import org.pitest.process.ProcessArgs;
 import org.pitest.testapi.Description;
 import org.pitest.testapi.ResultCollector;
@@ -39,14 +38,16 @@ import org.pitest.util.ExitCode;
 import org.pitest.util.IsolationUtils;
 import org.pitest.util.SafeDataInputStream;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.instrument.ClassFileTransformer;
 import java.net.Socket;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Entry point for Profiler.
@@ -78,24 +79,41 @@ public final class PreludeProfiler {
 
             final FieldsDom fieldsDom = new FieldsDom();
             final MethodsDom methodsDom = new MethodsDom();
+            final boolean parallel = arguments.threads > 1;
+            MethodCoverageRecorder.setPerThread(parallel);
+            MethodCoverageRecorder.setCountedMethods(arguments.patchedMethods);
+            FieldAccessRecorder.setPerTest(arguments.profileTests && arguments.recordFieldAccesses);
             final ClassFileTransformer transformer = new PreludeTransformer(byteArraySource,
                     arguments.appClassFilter,
                     arguments.patchedMethods,
                     fieldsDom,
-                    methodsDom);
+                    methodsDom,
+                    arguments.targeted,
+                    arguments.recordFieldAccesses,
+                    parallel,
+                    arguments.blockCoverage || arguments.profileTests);
             HotSwapAgent.addTransformer(transformer);
 
             final ProfilerReporter reporter = new ProfilerReporter(socket.getOutputStream());
 
             final JUnitRunner runner = new JUnitRunner(arguments.testClassNames);
-            runner.setTestUnits(decorateTestCases(runner.getTestUnits()));
-            runner.run();
+            final Map<String, Long> testDurations = Collections.synchronizedMap(new HashMap<String, Long>());
+            runner.setTestUnits(decorateTestCases(runner.getTestUnits(), testDurations));
+            if (parallel) {
+                runner.runInParallel(arguments.threads);
+            } else {
+                runner.run();
+            }
 
-            fieldsDom.save(".", true);
-            methodsDom.save(".", true);
-            reporter.reportMethodCoverageMap(MethodCoverageRecorder.getCoverageMap());
+            fieldsDom.save(arguments.scratchDirectory, true);
+            methodsDom.save(arguments.scratchDirectory, true);
+            reporter.reportMethodCoverageMap(MethodCoverageRecorder.getCoverageMap(), runner.getFailingTests());
             reporter.reportFieldAccessesMap(FieldAccessRecorder.getFieldAccesses());
             reporter.reportFailingTests(runner.getFailingTests());
+            reporter.reportTestProfiles(testDurations,
+                    MethodCoverageRecorder.getInvocationCounts(),
+                    MethodCoverageRecorder.getBlockCoverage(),
+                    FieldAccessRecorder.getTestFieldAccesses());
 
             System.out.println("Prelude Profiler is DONE!");
             reporter.done(ExitCode.OK);
@@ -107,15 +125,24 @@ public final class PreludeProfiler {
         }
     }
 
-    private static List<CloseableTestUnit> decorateTestCases(final List<CloseableTestUnit> testUnits) {
+    private static List<CloseableTestUnit> decorateTestCases(final List<CloseableTestUnit> testUnits,
+                                                             final Map<String, Long> testDurations) {
         final List<CloseableTestUnit> res = new LinkedList<>();
         for (final TestUnit testUnit : testUnits) {
             res.add(new CloseableTestUnit() {
                 @Override
                 public void execute(ResultCollector resultCollector) {
                     final String testName = NameUtils.sanitizeExtendedTestName(testUnit.getDescription().getName());
-                    MethodCoverageRecorder.addTestUnit(testName);
-                    testUnit.execute(resultCollector);
+                    MethodCoverageRecorder.startTestUnit();
+                    FieldAccessRecorder.startTestUnit();
+                    final long start = System.nanoTime();
+                    try {
+                        testUnit.execute(resultCollector);
+                    } finally {
+                        testDurations.put(testName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        MethodCoverageRecorder.endTestUnit(testName);
+                        FieldAccessRecorder.endTestUnit(testName);
+                    }
                 }
 
                 @Override
@@ -130,43 +157,24 @@ public final class PreludeProfiler {
         return res;
     }
 
+    /**
+     * Runs the prelude in a child process.
+     *
+     * @param defaultProcessArgs Arguments of the child process
+     * @param arguments What to run and what to record, see {@link PreludeProfilerArguments.Builder}
+     * @return Prelude results
+     * @throws IOException In case of communication failure
+     * @throws InterruptedException If interrupted while waiting for the child process
+     */
     public static PreludeProfilerResults runPrelude(final ProcessArgs defaultProcessArgs,
-                                                    final Predicate<String> appClassFilter,
-                                                    final Collection<String> testClassNames,
-                                                    final Collection<String> patchedMethods) throws IOException, InterruptedException {
-        final PreludeProfilerArguments arguments = new PreludeProfilerArguments(appClassFilter,
-                testClassNames,
-                patchedMethods);
+                                                    final PreludeProfilerArguments arguments) throws IOException, InterruptedException {
         final ProfilerProcess process = new ProfilerProcess(defaultProcessArgs, arguments);
         process.start();
         process.waitToDie();
-        final FieldsDom fieldsDom = new FieldsDom(".");
-        final MethodsDom methodsDom = new MethodsDom(".");
-        return new PreludeProfilerResults() {
-            @Override
-            public FieldsDom getFieldsDom() {
-                return fieldsDom;
-            }
-
-            @Override
-            public MethodsDom getMethodsDom() {
-                return methodsDom;
-            }
-
-            @Override
-            public Map<Integer, int[]> accessedFieldsMap() {
-                return process.getAccessedFieldsMap();
-            }
-
-            @Override
-            public Map<String, Set<Integer>> getMethodCoverageMap() {
-                return process.getMethodCoverageMap();
-            }
-
-            @Override
-            public Set<String> getFailingTests() {
-                return process.getFailingTests();
-            }
-        };
+        return process.getResults()
+                .scratchDirectory(new File(arguments.scratchDirectory))
+                .fieldsDom(new FieldsDom(arguments.scratchDirectory))
+                .methodsDom(new MethodsDom(arguments.scratchDirectory))
+                .build();
     }
 }
@@ -23,6 +23,7 @@ package edu.utdallas.objsim.profiler.prelude;
 import org.apache.commons.lang3.Validate;
 import org.pitest.functional.predicate.Predicate;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.Collection;
 
@@ -33,7 +34,7 @@ import java.util.Collection;
  *
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
-class PreludeProfilerArguments implements Serializable {
+public class PreludeProfilerArguments implements Serializable {
     private static final long serialVersionUID = 1L;
 
     final Predicate<String> appClassFilter;
@@ -42,14 +43,151 @@ class PreludeProfilerArguments implements Serializable {
 
     final Collection<String> patchedMethods;
 
-    public PreludeProfilerArguments(final Predicate<String> appClassFilter,
-                                    final Collection<String> testClassNames,
-                                    final Collection<String> patchedMethods) {
-        Validate.isInstanceOf(Serializable.class, appClassFilter);
-        Validate.isInstanceOf(Serializable.class, testClassNames);
-        Validate.isInstanceOf(Serializable.class, patchedMethods);
-        this.appClassFilter = appClassFilter;
-        this.testClassNames = testClassNames;
-        this.patchedMethods = patchedMethods;
+    final String scratchDirectory; // where field and method domains shall be stored
+
+    final boolean targeted; // instrument only patched methods for coverage
+
+    final boolean recordFieldAccesses; // instrument field accesses; false if they are computed statically
+
+    final int threads; // number of test classes run concurrently
+
+    final boolean blockCoverage; // probe basic blocks of patched methods
+
+    final boolean profileTests; // record blocks and fields of patched methods exercised by each test case
+
+    private PreludeProfilerArguments(final Builder builder) {
+        this.appClassFilter = builder.appClassFilter;
+        this.testClassNames = builder.testClassNames;
+        this.patchedMethods = builder.patchedMethods;
+        this.scratchDirectory = builder.scratchDirectory.getAbsolutePath();
+        this.targeted = builder.targeted;
+        this.recordFieldAccesses = builder.recordFieldAccesses;
+        this.threads = builder.threads;
+        this.blockCoverage = builder.blockCoverage;
+        this.profileTests = builder.profileTests;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A builder for {@link PreludeProfilerArguments}.
+     * Application class filter, test class names, patched methods, and scratch
+     * directory are mandatory.
+     */
+    public static class Builder {
+        private Predicate<String> appClassFilter;
+
+        private Collection<String> testClassNames;
+
+        private Collection<String> patchedMethods;
+
+        private File scratchDirectory;
+
+        private boolean targeted;
+
+        private boolean recordFieldAccesses;
+
+        private int threads;
+
+        private boolean blockCoverage;
+
+        private boolean profileTests;
+
+        private Builder() {
+            this.recordFieldAccesses = true;
+            this.threads = 1;
+        }
+
+        /**
+         * Application classes to be instrumented; shall be serializable.
+         */
+        public Builder appClassFilter(final Predicate<String> appClassFilter) {
+            this.appClassFilter = appClassFilter;
+            return this;
+        }
+
+        /**
+         * Test classes to be run; shall be serializable.
+         */
+        public Builder testClassNames(final Collection<String> testClassNames) {
+            this.testClassNames = testClassNames;
+            return this;
+        }
+
+        /**
+         * Full names of the methods that might be modified by patches; shall be
+         * serializable.
+         */
+        public Builder patchedMethods(final Collection<String> patchedMethods) {
+            this.patchedMethods = patchedMethods;
+            return this;
+        }
+
+        /**
+         * Directory wherein field and method domains shall be stored.
+         */
+        public Builder scratchDirectory(final File scratchDirectory) {
+            this.scratchDirectory = scratchDirectory;
+            return this;
+        }
+
+        /**
+         * Whether or not to record coverage only for patched methods, so that the rest
+         * of the application runs without coverage probes. Disabled by default.
+         */
+        public Builder targeted(final boolean targeted) {
+            this.targeted = targeted;
+            return this;
+        }
+
+        /**
+         * Whether or not to record the fields accessed by patched methods; if not,
+         * accessed fields map of the results is empty. Enabled by default.
+         */
+        public Builder recordFieldAccesses(final boolean recordFieldAccesses) {
+            this.recordFieldAccesses = recordFieldAccesses;
+            return this;
+        }
+
+        /**
+         * Number of test classes run concurrently; test cases of a test class are
+         * always run one after another. Defaults to 1.
+         */
+        public Builder threads(final int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Whether or not to record the basic blocks of patched methods executed by
+         * each test case; if not, block coverage of the results is empty. Disabled
+         * by default.
+         */
+        public Builder blockCoverage(final boolean blockCoverage) {
+            this.blockCoverage = blockCoverage;
+            return this;
+        }
+
+        /**
+         * Whether or not to record the execution profile of each test case, i.e. the
+         * basic blocks of patched methods it executes and, if field accesses are
+         * recorded, the fields they access during the test case; this implies probing
+         * basic blocks. Disabled by default.
+         */
+        public Builder profileTests(final boolean profileTests) {
+            this.profileTests = profileTests;
+            return this;
+        }
+
+        public PreludeProfilerArguments build() {
+            Validate.isInstanceOf(Serializable.class, this.appClassFilter);
+            Validate.isInstanceOf(Serializable.class, this.testClassNames);
+            Validate.isInstanceOf(Serializable.class, this.patchedMethods);
+            Validate.notNull(this.scratchDirectory, "scratch directory is not specified");
+            Validate.isTrue(this.threads > 0, "number of threads must be positive");
+            return new PreludeProfilerArguments(this);
+        }
     }
 }
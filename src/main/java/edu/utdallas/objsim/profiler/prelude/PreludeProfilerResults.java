@@ -20,20 +20,34 @@ package edu.utdallas.objsim.profiler.prelude;
  * #L%
  */
 
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
 import edu.utdallas.objsim.commons.relational.FieldsDom;
 import edu.utdallas.objsim.commons.relational.MethodsDom;
 
+import java.io.File;
 import java.util.Map;
 import java.util.Set;
 
 public interface PreludeProfilerResults {
+    File getScratchDirectory(); // where field and method domains are stored
+
     FieldsDom getFieldsDom();
 
     MethodsDom getMethodsDom();
 
     Map<Integer, int[]> accessedFieldsMap(); // method index -> accessed fields
 
-    Map<String, Set<Integer>> getMethodCoverageMap(); // test name -> covered methods
+    Map<String, CompressedBitmap> getMethodCoverageMap(); // test name -> covered methods
 
     Set<String> getFailingTests();
+
+    CoverageIndex getCoverageIndex(); // method index -> covering passing/failing tests
+
+    Map<String, Long> getTestDurations(); // test name -> wall-clock time in milliseconds; empty if unknown
+
+    Map<String, Map<Integer, Long>> getInvocationCounts(); // test name -> patched method index -> invocations; empty if unknown
+
+    BlockCoverage getBlockCoverage(); // empty if basic blocks are not probed
+
+    Map<String, Map<Integer, int[]>> getTestFieldAccesses(); // test name -> patched method index -> accessed fields; empty if unknown
 }
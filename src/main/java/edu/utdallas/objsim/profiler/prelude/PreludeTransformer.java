@@ -56,18 +56,34 @@ public class PreludeTransformer implements ClassFileTransformer {
 
     private final MethodsDom methodsDom;
 
+    private final boolean targeted;
+
+    private final boolean recordFieldAccesses;
+
+    private final boolean perThread;
+
+    private final boolean blockCoverage;
+
     private final Map<String, String> cache;
 
     public PreludeTransformer(final ClassByteArraySource byteArraySource,
                               final Predicate<String> appClassFilter,
                               final Collection<String> patchedMethods,
                               final FieldsDom fieldsDom,
-                              final MethodsDom methodsDom) {
+                              final MethodsDom methodsDom,
+                              final boolean targeted,
+                              final boolean recordFieldAccesses,
+                              final boolean perThread,
+                              final boolean blockCoverage) {
         this.byteArraySource = byteArraySource;
         this.appClassFilter = appClassFilter;
         this.patchedMethods = patchedMethods;
         this.fieldsDom = fieldsDom;
         this.methodsDom = methodsDom;
+        this.targeted = targeted;
+        this.recordFieldAccesses = recordFieldAccesses;
+        this.perThread = perThread;
+        this.blockCoverage = blockCoverage;
         this.cache = new HashMap<>();
     }
 
@@ -93,7 +109,11 @@ public class PreludeTransformer implements ClassFileTransformer {
             final ClassVisitor classVisitor = new PreludeTransformerClassVisitor(classWriter,
                     this.fieldsDom,
                     this.methodsDom,
-                    this.patchedMethods);
+                    this.patchedMethods,
+                    this.targeted,
+                    this.recordFieldAccesses,
+                    this.perThread,
+                    this.blockCoverage);
             classReader.accept(classVisitor, ClassReader.EXPAND_FRAMES);
             return classWriter.toByteArray();
         } catch (Throwable t) {
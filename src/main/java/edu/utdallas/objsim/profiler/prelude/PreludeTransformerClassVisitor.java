@@ -24,8 +24,11 @@ import edu.utdallas.objsim.commons.relational.FieldsDom;
 import edu.utdallas.objsim.commons.relational.MethodsDom;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import static edu.utdallas.objsim.commons.misc.NameUtils.composeMethodFullName;
 import static org.objectweb.asm.Opcodes.ASM7;
@@ -44,21 +47,60 @@ class PreludeTransformerClassVisitor extends ClassVisitor {
 
     private final MethodsDom methodsDom;
 
+    private final boolean targeted;
+
+    private final boolean recordFieldAccesses;
+
+    private final boolean perThread;
+
+    private final boolean blockCoverage;
+
     private String owner;
 
+    private boolean isInterface;
+
+    private int classId = -1;
+
+    private final List<Integer> probedMethods; // probe index --> method index, or -1 for block probes
+
+    private final List<Integer> probedBlocks; // probe index --> block id, or -1 for method probes
+
+    /**
+     * @param targeted If <code>true</code>, only patched methods are registered in the
+     *                 methods domain and get coverage probes; other methods only get
+     *                 field access probes, which are no-ops unless a patched method is
+     *                 on the stack.
+     * @param recordFieldAccesses If <code>false</code>, no field access probe is placed,
+     *                            as the accessed fields are computed statically.
+     * @param perThread If <code>true</code>, coverage probes are looked up for the current
+     *                  test case at every call, as test cases run concurrently.
+     * @param blockCoverage If <code>true</code>, patched methods get a coverage probe at
+     *                      every basic block.
+     */
     public PreludeTransformerClassVisitor(final ClassVisitor classVisitor,
                                           final FieldsDom fieldsDom,
                                           final MethodsDom methodsDom,
-                                          final Collection<String> patchedMethods) {
+                                          final Collection<String> patchedMethods,
+                                          final boolean targeted,
+                                          final boolean recordFieldAccesses,
+                                          final boolean perThread,
+                                          final boolean blockCoverage) {
         super(ASM7, classVisitor);
         this.fieldsDom = fieldsDom;
         this.methodsDom = methodsDom;
         this.patchedMethods = patchedMethods;
+        this.targeted = targeted;
+        this.recordFieldAccesses = recordFieldAccesses;
+        this.perThread = perThread;
+        this.blockCoverage = blockCoverage;
+        this.probedMethods = new ArrayList<>();
+        this.probedBlocks = new ArrayList<>();
     }
 
     @Override
     public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
         this.owner = name;
+        this.isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
         super.visit(version, access, name, signature, superName, interfaces);
     }
 
@@ -66,11 +108,75 @@ class PreludeTransformerClassVisitor extends ClassVisitor {
     public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
         MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
         final String methodFullName = composeMethodFullName(this.owner, name, descriptor);
-        final int methodIndex = this.methodsDom.getOrAdd(methodFullName);
-        if (this.patchedMethods.contains(methodFullName)) {
-            methodVisitor = new PatchedMethodDecorator(methodVisitor, access, name, descriptor, methodIndex);
+        final boolean patched = this.patchedMethods.contains(methodFullName);
+        int methodIndex = -1;
+        if (patched || !this.targeted) {
+            methodIndex = this.methodsDom.getOrAdd(methodFullName);
+            if (patched && this.recordFieldAccesses) {
+                methodVisitor = new PatchedMethodDecorator(methodVisitor, access, name, descriptor, methodIndex);
+            }
+            if (this.classId < 0) {
+                this.classId = MethodCoverageRecorder.newClassId();
+            }
+            methodVisitor = new MethodCoverageTransformer(methodVisitor,
+                    access,
+                    name,
+                    descriptor,
+                    this.owner,
+                    !this.isInterface && !this.perThread,
+                    this.perThread,
+                    this.classId,
+                    this.probedMethods.size(),
+                    patched ? MethodCoverageRecorder.registerCounter(methodFullName, methodIndex) : -1);
+            this.probedMethods.add(methodIndex);
+            this.probedBlocks.add(-1);
+        }
+        if (this.recordFieldAccesses) {
+            methodVisitor = new FieldAccessRecorderMethodVisitor(methodVisitor, access, name, descriptor, this.fieldsDom);
+        }
+        if (patched && this.blockCoverage) {
+            methodVisitor = new BlockCoverageTransformer(methodVisitor,
+                    access,
+                    name,
+                    descriptor,
+                    signature,
+                    exceptions,
+                    this,
+                    this.perThread,
+                    this.classId,
+                    methodIndex);
+        }
+        return methodVisitor;
+    }
+
+    /**
+     * @param blockId Block id obtained from the coverage recorder
+     * @return Index of the probe of the block in the probes array of the class
+     */
+    int newBlockProbe(final int blockId) {
+        this.probedMethods.add(-1);
+        this.probedBlocks.add(blockId);
+        return this.probedMethods.size() - 1;
+    }
+
+    @Override
+    public void visitEnd() {
+        if (this.classId >= 0) {
+            if (!this.isInterface && !this.perThread) {
+                super.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC,
+                        MethodCoverageTransformer.PROBES_FIELD_NAME,
+                        MethodCoverageTransformer.PROBES_FIELD_DESC,
+                        null,
+                        null).visitEnd();
+            }
+            final int[] methodIndices = new int[this.probedMethods.size()];
+            final int[] blockIds = new int[methodIndices.length];
+            for (int probeIndex = 0; probeIndex < methodIndices.length; probeIndex++) {
+                methodIndices[probeIndex] = this.probedMethods.get(probeIndex);
+                blockIds[probeIndex] = this.probedBlocks.get(probeIndex);
+            }
+            MethodCoverageRecorder.registerClass(this.classId, methodIndices, blockIds);
         }
-        methodVisitor = new MethodCoverageTransformer(methodVisitor, access, name, descriptor, methodIndex);
-        return new FieldAccessRecorderMethodVisitor(methodVisitor, access, name, descriptor, this.fieldsDom);
+        super.visitEnd();
     }
 }
@@ -0,0 +1,407 @@
+package edu.utdallas.objsim.profiler.prelude;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary encoding of prelude results sent from the child process, replacing Java
+ * serialization of boxed collections.
+ *
+ * Method coverage is encoded as a table of tests, sorted by name, each entry being
+ * the test name, a flag telling whether the test fails, and the covered method
+ * indices either as delta-encoded varints or as a raw bitset, whichever is smaller.
+ * As tests are sorted, the table is decoded straight into a {@link CoverageIndex}.
+ *
+ * Field accesses are encoded as a sequence of varints: the number of methods, and
+ * for each method, its index, the number of accessed fields, and the field indices.
+ * Test durations are encoded as the number of tests, followed by the name and the
+ * duration in milliseconds of each test. Invocation counts are encoded as the number
+ * of tests, followed by, for each test, its name, the number of patched methods it
+ * calls, and the index and the number of invocations of each such method. Block
+ * coverage is encoded as the table of blocks, i.e. the method index and the range of
+ * each block, followed by the sorted test names and, for each block, the
+ * delta-encoded indices of the tests executing it. Per-test field accesses are
+ * encoded as the number of tests, followed by the name of each test and its field
+ * accesses, encoded as above.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+final class PreludeWireFormat {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte DELTAS = 0;
+
+    private static final byte BITSET = 1;
+
+    private PreludeWireFormat() { }
+
+    static byte[] encodeMethodCoverage(final Map<String, CompressedBitmap> methodCoverageMap,
+                                       final Set<String> failingTests) {
+        final String[] testNames = methodCoverageMap.keySet().toArray(new String[0]);
+        Arrays.sort(testNames);
+        final Encoder encoder = new Encoder();
+        encoder.writeVarInt(testNames.length);
+        for (final String testName : testNames) {
+            encoder.writeString(testName);
+            encoder.writeByte(failingTests.contains(testName) ? 1 : 0);
+            final int[] methodIndices = methodCoverageMap.get(testName).toArray();
+            int deltasSize = 0;
+            int previous = 0;
+            for (final int methodIndex : methodIndices) {
+                deltasSize += varIntSize(methodIndex - previous);
+                previous = methodIndex;
+            }
+            final int bitsetSize = methodIndices.length == 0 ? 0 : 1 + (previous >>> 3);
+            if (bitsetSize + varIntSize(bitsetSize) < deltasSize + varIntSize(methodIndices.length)) {
+                final byte[] bitset = new byte[bitsetSize];
+                for (final int methodIndex : methodIndices) {
+                    bitset[methodIndex >>> 3] |= 1 << (methodIndex & 7);
+                }
+                encoder.writeByte(BITSET);
+                encoder.writeVarInt(bitsetSize);
+                encoder.writeBytes(bitset);
+            } else {
+                encoder.writeByte(DELTAS);
+                encoder.writeVarInt(methodIndices.length);
+                previous = 0;
+                for (final int methodIndex : methodIndices) {
+                    encoder.writeVarInt(methodIndex - previous);
+                    previous = methodIndex;
+                }
+            }
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * @param bytes Encoded method coverage
+     * @param methodCoverageMap Map to be populated with test name --> covered methods
+     * @return Inverted index of the coverage
+     */
+    static CoverageIndex decodeMethodCoverage(final byte[] bytes,
+                                              final Map<String, CompressedBitmap> methodCoverageMap) {
+        final Decoder decoder = new Decoder(bytes);
+        final String[] testNames = new String[decoder.readVarInt()];
+        final List<CompressedBitmap> passingTests = new ArrayList<>();
+        final List<CompressedBitmap> failingTests = new ArrayList<>();
+        for (int testIndex = 0; testIndex < testNames.length; testIndex++) {
+            testNames[testIndex] = decoder.readString();
+            final List<CompressedBitmap> index = decoder.readByte() != 0 ? failingTests : passingTests;
+            final CompressedBitmap coveredMethods = new CompressedBitmap();
+            if (decoder.readByte() == BITSET) {
+                final int bitsetSize = decoder.readVarInt();
+                for (int i = 0; i < bitsetSize; i++) {
+                    final int b = decoder.readByte() & 0xFF;
+                    for (int bit = 0; bit < 8; bit++) {
+                        if ((b & (1 << bit)) != 0) {
+                            coveredMethods.add((i << 3) | bit);
+                        }
+                    }
+                }
+            } else {
+                int methodIndex = 0;
+                for (int count = decoder.readVarInt(); count > 0; count--) {
+                    methodIndex += decoder.readVarInt();
+                    coveredMethods.add(methodIndex);
+                }
+            }
+            for (int methodIndex = coveredMethods.nextElement(0);
+                 methodIndex >= 0;
+                 methodIndex = coveredMethods.nextElement(methodIndex + 1)) {
+                CoverageIndex.getOrCreate(index, methodIndex).add(testIndex);
+            }
+            methodCoverageMap.put(testNames[testIndex], coveredMethods);
+        }
+        return new CoverageIndex(testNames, passingTests, failingTests);
+    }
+
+    static byte[] encodeFieldAccesses(final Map<Integer, int[]> accessedFieldsMap) {
+        final Encoder encoder = new Encoder();
+        encoder.writeFieldAccesses(accessedFieldsMap);
+        return encoder.toByteArray();
+    }
+
+    static HashMap<Integer, int[]> decodeFieldAccesses(final byte[] bytes) {
+        return new Decoder(bytes).readFieldAccesses();
+    }
+
+    static byte[] encodeTestFieldAccesses(final Map<String, Map<Integer, int[]>> testFieldAccesses) {
+        final Encoder encoder = new Encoder();
+        encoder.writeVarInt(testFieldAccesses.size());
+        for (final Map.Entry<String, Map<Integer, int[]>> entry : testFieldAccesses.entrySet()) {
+            encoder.writeString(entry.getKey());
+            encoder.writeFieldAccesses(entry.getValue());
+        }
+        return encoder.toByteArray();
+    }
+
+    static HashMap<String, Map<Integer, int[]>> decodeTestFieldAccesses(final byte[] bytes) {
+        final Decoder decoder = new Decoder(bytes);
+        final HashMap<String, Map<Integer, int[]>> testFieldAccesses = new HashMap<>();
+        for (int count = decoder.readVarInt(); count > 0; count--) {
+            final String testName = decoder.readString();
+            testFieldAccesses.put(testName, decoder.readFieldAccesses());
+        }
+        return testFieldAccesses;
+    }
+
+    static byte[] encodeTestDurations(final Map<String, Long> testDurations) {
+        final Encoder encoder = new Encoder();
+        synchronized (testDurations) {
+            encoder.writeVarInt(testDurations.size());
+            for (final Map.Entry<String, Long> entry : testDurations.entrySet()) {
+                encoder.writeString(entry.getKey());
+                encoder.writeVarInt((int) Math.min(Integer.MAX_VALUE, entry.getValue()));
+            }
+        }
+        return encoder.toByteArray();
+    }
+
+    static HashMap<String, Long> decodeTestDurations(final byte[] bytes) {
+        final Decoder decoder = new Decoder(bytes);
+        final HashMap<String, Long> testDurations = new HashMap<>();
+        for (int count = decoder.readVarInt(); count > 0; count--) {
+            final String testName = decoder.readString();
+            testDurations.put(testName, (long) decoder.readVarInt());
+        }
+        return testDurations;
+    }
+
+    static byte[] encodeInvocationCounts(final Map<String, Map<Integer, Long>> invocationCounts) {
+        final Encoder encoder = new Encoder();
+        encoder.writeVarInt(invocationCounts.size());
+        for (final Map.Entry<String, Map<Integer, Long>> entry : invocationCounts.entrySet()) {
+            encoder.writeString(entry.getKey());
+            encoder.writeVarInt(entry.getValue().size());
+            for (final Map.Entry<Integer, Long> methodEntry : entry.getValue().entrySet()) {
+                encoder.writeVarInt(methodEntry.getKey());
+                encoder.writeVarLong(methodEntry.getValue());
+            }
+        }
+        return encoder.toByteArray();
+    }
+
+    static HashMap<String, Map<Integer, Long>> decodeInvocationCounts(final byte[] bytes) {
+        final Decoder decoder = new Decoder(bytes);
+        final HashMap<String, Map<Integer, Long>> invocationCounts = new HashMap<>();
+        for (int count = decoder.readVarInt(); count > 0; count--) {
+            final String testName = decoder.readString();
+            final Map<Integer, Long> counts = new HashMap<>();
+            for (int methodsCount = decoder.readVarInt(); methodsCount > 0; methodsCount--) {
+                final int methodIndex = decoder.readVarInt();
+                counts.put(methodIndex, decoder.readVarLong());
+            }
+            invocationCounts.put(testName, counts);
+        }
+        return invocationCounts;
+    }
+
+    static byte[] encodeBlockCoverage(final BlockCoverage blockCoverage) {
+        final Encoder encoder = new Encoder();
+        final int blocksCount = blockCoverage.getBlocksCount();
+        encoder.writeVarInt(blocksCount);
+        for (int blockId = 0; blockId < blocksCount; blockId++) {
+            encoder.writeVarInt(blockCoverage.getMethodIndex(blockId));
+            encoder.writeVarInt(blockCoverage.getStart(blockId));
+            encoder.writeVarInt(blockCoverage.getEnd(blockId));
+        }
+        final String[] testNames = blockCoverage.getTestNames();
+        encoder.writeVarInt(testNames.length);
+        for (final String testName : testNames) {
+            encoder.writeString(testName);
+        }
+        for (int blockId = 0; blockId < blocksCount; blockId++) {
+            final CompressedBitmap tests = blockCoverage.getTests(blockId);
+            encoder.writeVarInt(tests.cardinality());
+            int previous = 0;
+            for (int testIndex = tests.nextElement(0); testIndex >= 0; testIndex = tests.nextElement(testIndex + 1)) {
+                encoder.writeVarInt(testIndex - previous);
+                previous = testIndex;
+            }
+        }
+        return encoder.toByteArray();
+    }
+
+    static BlockCoverage decodeBlockCoverage(final byte[] bytes) {
+        final Decoder decoder = new Decoder(bytes);
+        final int blocksCount = decoder.readVarInt();
+        final int[] methodIndices = new int[blocksCount];
+        final int[] starts = new int[blocksCount];
+        final int[] ends = new int[blocksCount];
+        for (int blockId = 0; blockId < blocksCount; blockId++) {
+            methodIndices[blockId] = decoder.readVarInt();
+            starts[blockId] = decoder.readVarInt();
+            ends[blockId] = decoder.readVarInt();
+        }
+        final String[] testNames = new String[decoder.readVarInt()];
+        for (int testIndex = 0; testIndex < testNames.length; testIndex++) {
+            testNames[testIndex] = decoder.readString();
+        }
+        final CompressedBitmap[] tests = new CompressedBitmap[blocksCount];
+        for (int blockId = 0; blockId < blocksCount; blockId++) {
+            tests[blockId] = new CompressedBitmap();
+            int testIndex = 0;
+            for (int count = decoder.readVarInt(); count > 0; count--) {
+                testIndex += decoder.readVarInt();
+                tests[blockId].add(testIndex);
+            }
+        }
+        return new BlockCoverage(methodIndices, starts, ends, testNames, tests);
+    }
+
+    private static int varIntSize(final int value) {
+        int size = 1;
+        for (int v = value >>> 7; v != 0; v >>>= 7) {
+            size++;
+        }
+        return size;
+    }
+
+    private static final class Encoder {
+        private byte[] buffer = new byte[1024];
+
+        private int position;
+
+        private void ensureCapacity(final int extra) {
+            if (this.position + extra > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(2 * this.buffer.length, this.position + extra));
+            }
+        }
+
+        void writeByte(final int b) {
+            ensureCapacity(1);
+            this.buffer[this.position++] = (byte) b;
+        }
+
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0L) {
+                this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        void writeBytes(final byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+            this.position += bytes.length;
+        }
+
+        void writeString(final String s) {
+            final byte[] bytes = s.getBytes(UTF_8);
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        }
+
+        void writeFieldAccesses(final Map<Integer, int[]> accessedFieldsMap) {
+            writeVarInt(accessedFieldsMap.size());
+            for (final Map.Entry<Integer, int[]> entry : accessedFieldsMap.entrySet()) {
+                writeVarInt(entry.getKey());
+                writeVarInt(entry.getValue().length);
+                for (final int fieldIndex : entry.getValue()) {
+                    writeVarInt(fieldIndex);
+                }
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(this.buffer, this.position);
+        }
+    }
+
+    private static final class Decoder {
+        private final byte[] buffer;
+
+        private int position;
+
+        Decoder(final byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return this.buffer[this.position++];
+        }
+
+        int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = this.buffer[this.position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long readVarLong() {
+            long value = 0L;
+            int shift = 0;
+            byte b;
+            do {
+                b = this.buffer[this.position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        String readString() {
+            final int length = readVarInt();
+            final String s = new String(this.buffer, this.position, length, UTF_8);
+            this.position += length;
+            return s;
+        }
+
+        HashMap<Integer, int[]> readFieldAccesses() {
+            final HashMap<Integer, int[]> accessedFieldsMap = new HashMap<>();
+            for (int count = readVarInt(); count > 0; count--) {
+                final int methodIndex = readVarInt();
+                final int[] fields = new int[readVarInt()];
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = readVarInt();
+                }
+                accessedFieldsMap.put(methodIndex, fields);
+            }
+            return accessedFieldsMap;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package edu.utdallas.objsim.profiler.prelude;
  * #L%
  */
 
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
 import edu.utdallas.objsim.profiler.ControlId;
 import org.pitest.functional.SideEffect1;
 import org.pitest.util.CommunicationThread;
@@ -31,7 +32,6 @@ import java.net.ServerSocket;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Communication thread used for transferring information to/from the child process.
@@ -54,16 +54,11 @@ class ProfilerCommunicationThread extends CommunicationThread {
         this.receiver = receiver;
     }
 
-    final Map<Integer, int[]> getAccessedFieldsMap() {
-        return this.receiver.accessedFieldsMap;
+    // results but the scratch directory and the domains, which are stored by the child process
+    final BasicPreludeProfilerResults.Builder getResults() {
+        return this.receiver.results;
     }
 
-    final Map<String, Set<Integer>> getMethodCoverageMap() {
-        return this.receiver.methodCoverageMap;
-    }
-
-    final Set<String> getFailingTestNames() { return this.receiver.failingTestNames; }
-
     private static class DataSender implements SideEffect1<SafeDataOutputStream> {
         final PreludeProfilerArguments arguments;
 
@@ -78,28 +73,32 @@ class ProfilerCommunicationThread extends CommunicationThread {
     }
 
     private static class DataReceiver implements ReceiveStrategy {
-        Map<Integer, int[]> accessedFieldsMap;
-
-        Map<String, Set<Integer>> methodCoverageMap;
-
-        Set<String> failingTestNames;
+        final BasicPreludeProfilerResults.Builder results = BasicPreludeProfilerResults.builder();
 
         @Override
         @SuppressWarnings({"unchecked"})
         public void apply(final byte controlId, final SafeDataInputStream dis) {
             switch (controlId) {
-                case ControlId.REPORT_FIELD_ACCESSES_MAP:
-                    this.accessedFieldsMap = dis.read(HashMap.class);
+                case ControlId.REPORT_FIELD_ACCESSES_TABLE:
+                    this.results.accessedFieldsMap(PreludeWireFormat.decodeFieldAccesses(dis.readBytes()));
+                    break;
+                case ControlId.REPORT_METHOD_COVERAGE_TABLE:
+                    final Map<String, CompressedBitmap> methodCoverageMap = new HashMap<>();
+                    this.results.coverageIndex(PreludeWireFormat.decodeMethodCoverage(dis.readBytes(), methodCoverageMap));
+                    this.results.methodCoverageMap(methodCoverageMap);
                     break;
-                case ControlId.REPORT_METHOD_COVERAGE_MAP:
-                    this.methodCoverageMap = dis.read(HashMap.class);
+                case ControlId.REPORT_TEST_PROFILES:
+                    this.results.testDurations(PreludeWireFormat.decodeTestDurations(dis.readBytes()));
+                    this.results.invocationCounts(PreludeWireFormat.decodeInvocationCounts(dis.readBytes()));
+                    this.results.blockCoverage(PreludeWireFormat.decodeBlockCoverage(dis.readBytes()));
+                    this.results.testFieldAccesses(PreludeWireFormat.decodeTestFieldAccesses(dis.readBytes()));
                     break;
                 case ControlId.REPORT_FAILING_TESTS:
-                    this.failingTestNames = dis.read(HashSet.class);
+                    this.results.failingTests(dis.read(HashSet.class));
                     break;
                 default:
                     throw new IllegalArgumentException("Unknown code: " + controlId);
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -27,8 +27,6 @@ import org.pitest.util.SocketFinder;
 
 import java.io.IOException;
 import java.net.ServerSocket;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * Represents a (running) profiler process.
@@ -66,15 +64,7 @@ class ProfilerProcess {
         }
     }
 
-    final Map<Integer, int[]> getAccessedFieldsMap() {
-        return this.communicationThread.getAccessedFieldsMap();
+    final BasicPreludeProfilerResults.Builder getResults() {
+        return this.communicationThread.getResults();
     }
-
-    final Map<String, Set<Integer>> getMethodCoverageMap() {
-        return this.communicationThread.getMethodCoverageMap();
-    }
-
-    final Set<String> getFailingTests() {
-        return this.communicationThread.getFailingTestNames();
-    }
-}
\ No newline at end of file
+}
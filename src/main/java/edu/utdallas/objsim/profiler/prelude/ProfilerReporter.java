@@ -20,13 +20,14 @@ package edu.utdallas.objsim.profiler.prelude;
  * #L%
  */
 
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
 import edu.utdallas.objsim.profiler.ControlId;
 import org.pitest.util.ExitCode;
 import org.pitest.util.SafeDataOutputStream;
 
 import java.io.OutputStream;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -49,15 +50,28 @@ class ProfilerReporter {
         this.dos.flush();
     }
 
-    public synchronized void reportMethodCoverageMap(final HashMap<String, Set<Integer>> methodCoverageMap) {
-        this.dos.writeByte(ControlId.REPORT_METHOD_COVERAGE_MAP);
-        this.dos.write(methodCoverageMap);
+    public synchronized void reportMethodCoverageMap(final Map<String, CompressedBitmap> methodCoverageMap,
+                                                     final Set<String> failingTestNames) {
+        this.dos.writeByte(ControlId.REPORT_METHOD_COVERAGE_TABLE);
+        this.dos.writeBytes(PreludeWireFormat.encodeMethodCoverage(methodCoverageMap, failingTestNames));
         this.dos.flush();
     }
 
-    public synchronized void reportFieldAccessesMap(final HashMap<Integer, int[]> accessedFieldsMap) {
-        this.dos.writeByte(ControlId.REPORT_FIELD_ACCESSES_MAP);
-        this.dos.write(accessedFieldsMap);
+    public synchronized void reportFieldAccessesMap(final Map<Integer, int[]> accessedFieldsMap) {
+        this.dos.writeByte(ControlId.REPORT_FIELD_ACCESSES_TABLE);
+        this.dos.writeBytes(PreludeWireFormat.encodeFieldAccesses(accessedFieldsMap));
+        this.dos.flush();
+    }
+
+    public synchronized void reportTestProfiles(final Map<String, Long> testDurations,
+                                                final Map<String, Map<Integer, Long>> invocationCounts,
+                                                final BlockCoverage blockCoverage,
+                                                final Map<String, Map<Integer, int[]>> testFieldAccesses) {
+        this.dos.writeByte(ControlId.REPORT_TEST_PROFILES);
+        this.dos.writeBytes(PreludeWireFormat.encodeTestDurations(testDurations));
+        this.dos.writeBytes(PreludeWireFormat.encodeInvocationCounts(invocationCounts));
+        this.dos.writeBytes(PreludeWireFormat.encodeBlockCoverage(blockCoverage));
+        this.dos.writeBytes(PreludeWireFormat.encodeTestFieldAccesses(testFieldAccesses));
         this.dos.flush();
     }
 
@@ -0,0 +1,149 @@
+package edu.utdallas.objsim.profiler.primary;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Makes deep copies of object graphs so that the inputs of a method invocation can
+ * be restored later on.
+ * Immutable objects, as well as the objects that are inherently bound to the running
+ * JVM (e.g. class loaders and threads), are shared with the copy. If an object cannot
+ * be copied, e.g. due to access restrictions, copying fails altogether, as sharing it
+ * would make the copy refer to live objects that the program goes on modifying.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+final class DeepCopier {
+    private static final Object UNSAFE;
+
+    private static final Method ALLOCATE_INSTANCE;
+
+    static {
+        Object unsafe = null;
+        Method allocateInstance = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            allocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+        } catch (Exception e) {
+            System.out.println("WARNING: Unsafe is not available; invocations shall not be replayed.");
+        }
+        UNSAFE = unsafe;
+        ALLOCATE_INSTANCE = allocateInstance;
+    }
+
+    private final Map<Object, Object> copies; // original --> copy
+
+    DeepCopier() {
+        this.copies = new IdentityHashMap<>();
+    }
+
+    /**
+     * @param object The root of the object graph to be copied
+     * @return A deep copy of the object graph
+     * @throws IllegalStateException If an object in the graph cannot be copied
+     */
+    Object copy(final Object object) {
+        if (object == null) {
+            return null;
+        }
+        final Object existing = this.copies.get(object);
+        if (existing != null) {
+            return existing;
+        }
+        final Class<?> clazz = object.getClass();
+        if (isShared(clazz)) {
+            return object;
+        }
+        if (clazz.isArray()) {
+            return copyArray(object, clazz);
+        }
+        if (UNSAFE == null) {
+            throw new IllegalStateException("cannot copy objects without Unsafe");
+        }
+        try {
+            final Object copy = ALLOCATE_INSTANCE.invoke(UNSAFE, clazz);
+            this.copies.put(object, copy);
+            for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    final Object value = field.get(object);
+                    field.set(copy, field.getType().isPrimitive() ? value : copy(value));
+                }
+            }
+            return copy;
+        } catch (Exception e) {
+            throw new IllegalStateException("cannot copy an instance of " + clazz.getName(), e);
+        }
+    }
+
+    private Object copyArray(final Object array, final Class<?> clazz) {
+        final int length = Array.getLength(array);
+        final Class<?> componentType = clazz.getComponentType();
+        final Object copy = Array.newInstance(componentType, length);
+        this.copies.put(array, copy);
+        if (componentType.isPrimitive()) {
+            System.arraycopy(array, 0, copy, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                Array.set(copy, i, copy(Array.get(array, i)));
+            }
+        }
+        return copy;
+    }
+
+    private static boolean isShared(final Class<?> clazz) {
+        if (clazz == String.class
+                || clazz == Boolean.class
+                || clazz == Character.class
+                || clazz == Class.class
+                || clazz.isEnum()
+                || Enum.class.isAssignableFrom(clazz)
+                || ClassLoader.class.isAssignableFrom(clazz)
+                || Thread.class.isAssignableFrom(clazz)
+                || clazz.getName().contains("$$Lambda$")) {
+            return true;
+        }
+        final Package pkg = clazz.getPackage();
+        if (pkg == null) {
+            return false;
+        }
+        final String packageName = pkg.getName();
+        return (Number.class.isAssignableFrom(clazz)
+                && (packageName.equals("java.lang") || packageName.equals("java.math")))
+                || packageName.startsWith("java.lang.reflect")
+                || packageName.startsWith("java.lang.invoke")
+                || packageName.startsWith("sun.")
+                || packageName.startsWith("jdk.");
+    }
+}
@@ -0,0 +1,138 @@
+package edu.utdallas.objsim.profiler.primary;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objectutils.Wrapped;
+import edu.utdallas.objsim.junit.runner.CloseableTestUnit;
+import org.pitest.testapi.Description;
+import org.pitest.testapi.ResultCollector;
+
+/**
+ * A test unit that runs a test case against the original and the patched copies of
+ * the program, loaded by different class loaders, and reports the distances between
+ * the system state snapshots taken during the two executions.
+ * Only the outcome of the execution against the patched program is passed on to the
+ * result collector, as the test case is expected to pass on the original program.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class DifferentialTestUnit implements CloseableTestUnit {
+    private static final ResultCollector SILENT_COLLECTOR = new ResultCollector() {
+        @Override
+        public void notifyEnd(final Description description, final Throwable t) {
+            // nothing
+        }
+
+        @Override
+        public void notifyEnd(final Description description) {
+            // nothing
+        }
+
+        @Override
+        public void notifyStart(final Description description) {
+            // nothing
+        }
+
+        @Override
+        public void notifySkipped(final Description description) {
+            // nothing
+        }
+
+        @Override
+        public boolean shouldExit() {
+            return false;
+        }
+    };
+
+    private final String testName;
+
+    private final CloseableTestUnit originalTestUnit;
+
+    private final ClassLoader originalClassLoader;
+
+    private final CloseableTestUnit patchedTestUnit;
+
+    private final ClassLoader patchedClassLoader;
+
+    private final ProfilerReporter reporter;
+
+    private Wrapped[] originalSnapshots;
+
+    private boolean reported;
+
+    DifferentialTestUnit(final String testName,
+                         final CloseableTestUnit originalTestUnit,
+                         final ClassLoader originalClassLoader,
+                         final CloseableTestUnit patchedTestUnit,
+                         final ClassLoader patchedClassLoader,
+                         final ProfilerReporter reporter) {
+        this.testName = testName;
+        this.originalTestUnit = originalTestUnit;
+        this.originalClassLoader = originalClassLoader;
+        this.patchedTestUnit = patchedTestUnit;
+        this.patchedClassLoader = patchedClassLoader;
+        this.reporter = reporter;
+        this.reported = false;
+    }
+
+    @Override
+    public void execute(final ResultCollector resultCollector) {
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextClassLoader = thread.getContextClassLoader();
+        try {
+            SnapshotTracker.SNAPSHOTS.clear();
+            thread.setContextClassLoader(this.originalClassLoader);
+            this.originalTestUnit.execute(SILENT_COLLECTOR);
+            this.originalSnapshots = SnapshotTracker.SNAPSHOTS.toArray(new Wrapped[0]);
+            SnapshotTracker.SNAPSHOTS.clear();
+            thread.setContextClassLoader(this.patchedClassLoader);
+            this.patchedTestUnit.execute(resultCollector);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+        close();
+    }
+
+    @Override
+    public void close() {
+        if (this.reported) {
+            return;
+        }
+        this.reported = true;
+        final Wrapped[] patchedSnapshots = SnapshotTracker.SNAPSHOTS.toArray(new Wrapped[0]);
+        SnapshotTracker.SNAPSHOTS.clear();
+        if (this.originalSnapshots == null || this.originalSnapshots.length != patchedSnapshots.length) {
+            this.reporter.reportDistances(this.testName, null); // incomparable executions
+            return;
+        }
+        final double[] distances = new double[patchedSnapshots.length];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = this.originalSnapshots[i].distance(patchedSnapshots[i]);
+        }
+        this.reporter.reportDistances(this.testName, distances);
+    }
+
+    @Override
+    public Description getDescription() {
+        return this.originalTestUnit.getDescription();
+    }
+}
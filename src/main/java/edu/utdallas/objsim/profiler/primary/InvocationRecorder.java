@@ -0,0 +1,112 @@
+package edu.utdallas.objsim.profiler.primary;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.collections.MovingLimitedList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A class used for recording the inputs of the invocations of patched methods, i.e.
+ * receiver object and arguments, so that the invocations can be replayed against
+ * patched versions of the methods without rerunning entire test cases.
+ * Only the outermost invocations of patched methods on each thread are recorded, as
+ * nested ones are replayed along with them, and only the last few of them are kept,
+ * just like {@link SnapshotTracker}. An invocation whose inputs cannot be copied is
+ * recorded as not replayable.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class InvocationRecorder {
+    private static final Collection<RecordedInvocation> INVOCATIONS = new MovingLimitedList<>(5);
+
+    private static final ThreadLocal<int[]> DEPTH = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1]; // number of active invocations of patched methods on the thread
+        }
+    };
+
+    private static volatile boolean recording = false; // written and read by different threads
+
+    private InvocationRecorder() { }
+
+    static void startRecording() {
+        INVOCATIONS.clear();
+        recording = true;
+    }
+
+    static List<RecordedInvocation> stopRecording() {
+        recording = false;
+        final List<RecordedInvocation> invocations = new ArrayList<>(INVOCATIONS);
+        INVOCATIONS.clear();
+        return invocations;
+    }
+
+    /**
+     * Should be called upon entering a patched constructor, which is not recorded.
+     */
+    public static void enterInvocation() {
+        DEPTH.get()[0]++;
+    }
+
+    /**
+     * Should be called upon leaving a patched method or constructor.
+     *
+     * @return <code>true</code> iff the invocation was the outermost invocation of a
+     *         patched method on the current thread, and it was not being recorded
+     */
+    static boolean leaveInvocation() {
+        return --DEPTH.get()[0] == 0 && !recording;
+    }
+
+    /**
+     * Should be called upon entering a patched method.
+     *
+     * @param owner Internal name of the class declaring the method
+     * @param name Name of the method
+     * @param descriptor Descriptor of the method
+     * @param receiver <code>this</code> parameter, or <code>null</code> in case of
+     *                 static methods
+     * @param arguments Arguments passed to the method
+     */
+    public static void recordInvocation(final String owner,
+                                        final String name,
+                                        final String descriptor,
+                                        final Object receiver,
+                                        final Object[] arguments) {
+        if (DEPTH.get()[0]++ > 0 || !recording) {
+            return;
+        }
+        recording = false; // copying might trigger patched methods, e.g. via class initializers
+        try {
+            final Object[] inputs = (Object[]) new DeepCopier().copy(new Object[] {receiver, arguments});
+            INVOCATIONS.add(new RecordedInvocation(owner, name, descriptor, inputs[0], (Object[]) inputs[1]));
+        } catch (Throwable t) {
+            INVOCATIONS.add(RecordedInvocation.notReplayable(owner, name, descriptor));
+        } finally {
+            recording = true;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package edu.utdallas.objsim.profiler.primary;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A child-first class loader used for loading a private copy of the program under
+ * test, optionally with some of its classes substituted by patched ones.
+ * Classes of the JRE, the test framework, and ObjSim itself are delegated to the
+ * parent class loader so that both copies of the program report to the same
+ * snapshot tracker.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class OverlayClassLoader extends URLClassLoader {
+    private static final String[] SHARED_PREFIXES = {
+            "java.",
+            "javax.",
+            "sun.",
+            "com.sun.",
+            "jdk.",
+            "org.junit.",
+            "junit.",
+            "org.hamcrest.",
+            "org.pitest.",
+            "org.objectweb.asm.",
+            "edu.utdallas.objsim.",
+            "edu.utdallas.objectutils.",
+            "edu.utdallas.relational."
+    };
+
+    private final Map<String, byte[]> patchedClasses; // class name --> class file bytes
+
+    OverlayClassLoader(final URL[] urls,
+                       final ClassLoader parent,
+                       final Map<String, byte[]> patchedClasses) {
+        super(urls, parent);
+        this.patchedClasses = new HashMap<>(patchedClasses);
+    }
+
+    /**
+     * @return URLs of the class path elements of the running JVM
+     */
+    static URL[] getClassPathURLs() throws MalformedURLException {
+        final List<URL> urls = new ArrayList<>();
+        for (final String element : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (!element.isEmpty()) {
+                urls.add(new File(element).toURI().toURL());
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+    @Override
+    protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+        if (isShared(name)) {
+            return super.loadClass(name, resolve);
+        }
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = findLoadedClass(name);
+            if (clazz == null) {
+                final byte[] bytes = this.patchedClasses.get(name);
+                if (bytes != null) {
+                    clazz = defineClass(name, bytes, 0, bytes.length);
+                } else {
+                    try {
+                        clazz = findClass(name);
+                    } catch (ClassNotFoundException e) {
+                        clazz = getParent().loadClass(name);
+                    }
+                }
+            }
+            if (resolve) {
+                resolveClass(clazz);
+            }
+            return clazz;
+        }
+    }
+
+    private static boolean isShared(final String className) {
+        for (final String prefix : SHARED_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
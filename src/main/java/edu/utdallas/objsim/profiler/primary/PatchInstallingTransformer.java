@@ -0,0 +1,57 @@
+package edu.utdallas.objsim.profiler.primary;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A class file transformer that substitutes the bytes of patched classes for those
+ * of their original counterparts as they are being loaded, so that patches are
+ * installed without touching class files on the disk.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class PatchInstallingTransformer implements ClassFileTransformer {
+    private final Map<String, byte[]> patchedClasses; // internal name --> class file bytes
+
+    PatchInstallingTransformer(final Map<String, byte[]> patchedClasses) {
+        this.patchedClasses = new HashMap<>();
+        for (final Map.Entry<String, byte[]> entry : patchedClasses.entrySet()) {
+            this.patchedClasses.put(entry.getKey().replace('.', '/'), entry.getValue());
+        }
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader,
+                            String className,
+                            Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain,
+                            byte[] classfileBuffer) {
+        if (className == null) {
+            return null;
+        }
+        return this.patchedClasses.get(className); // null means no transformation
+    }
+}
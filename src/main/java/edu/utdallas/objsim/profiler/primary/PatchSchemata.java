@@ -0,0 +1,231 @@
+package edu.utdallas.objsim.profiler.primary;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.asm.ComputeClassWriter;
+import org.apache.commons.lang3.Validate;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.pitest.classinfo.ClassByteArraySource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static edu.utdallas.objsim.commons.asm.ClassDiffUtils.readClass;
+import static edu.utdallas.objsim.commons.asm.ClassDiffUtils.textOf;
+import static edu.utdallas.objsim.commons.misc.NameUtils.composeMethodFullName;
+
+/**
+ * Merges several patched versions of a class into a single meta-class.
+ * Body of each patched method is moved to a private method per version, and the
+ * patched method itself is turned into a dispatcher that calls one of those
+ * methods depending on {@link PatchSelector#activePatchId}. Thus a single JVM can
+ * run tests against the original program and several patches by just flipping the
+ * selector, without reloading or redefining any class.
+ *
+ * Patches that modify constructors or static initializers, patches of interfaces,
+ * and patches that change anything other than the bodies of patched methods cannot
+ * be merged.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class PatchSchemata {
+    private static final String SELECTOR_OWNER = Type.getInternalName(PatchSelector.class);
+
+    private static final String SELECTOR_NAME = "activePatchId";
+
+    private static final String BODY_SUFFIX = "$objsim$";
+
+    private PatchSchemata() { }
+
+    /**
+     * Merges patched versions of a class.
+     *
+     * @param byteArraySource Class byte array source used for computing stack map frames
+     * @param original Bytes of the original class
+     * @param patched Bytes of the patched versions of the class; the i-th element
+     *                shall be selected when {@link PatchSelector#activePatchId} is
+     *                <code>i + 1</code>
+     * @param patchedMethods Full names of the patched methods
+     * @return Bytes of the meta-class, or <code>null</code> if the versions cannot
+     *         be merged
+     */
+    public static byte[] merge(final ClassByteArraySource byteArraySource,
+                               final byte[] original,
+                               final List<byte[]> patched,
+                               final Collection<String> patchedMethods) {
+        Validate.notEmpty(patched);
+        final ClassNode originalNode = readClass(original);
+        if ((originalNode.access & Opcodes.ACC_INTERFACE) != 0) {
+            return null;
+        }
+        final List<ClassNode> patchedNodes = new ArrayList<>(patched.size());
+        for (final byte[] bytes : patched) {
+            final ClassNode patchedNode = readClass(bytes);
+            if (!haveSameShape(originalNode, patchedNode, patchedMethods)) {
+                return null;
+            }
+            patchedNodes.add(patchedNode);
+        }
+        final List<MethodNode> bodies = new ArrayList<>();
+        for (final MethodNode dispatcher : originalNode.methods) {
+            if (!patchedMethods.contains(composeMethodFullName(originalNode.name, dispatcher.name, dispatcher.desc))) {
+                continue;
+            }
+            if (dispatcher.name.startsWith("<")
+                    || (dispatcher.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+                return null;
+            }
+            final List<MethodNode> versions = new ArrayList<>();
+            versions.add(dispatcher);
+            for (final ClassNode patchedNode : patchedNodes) {
+                versions.add(findMethod(patchedNode, dispatcher.name, dispatcher.desc));
+            }
+            for (int i = 0; i < versions.size(); i++) {
+                bodies.add(toBody(versions.get(i), i));
+            }
+            makeDispatcher(originalNode.name, dispatcher, versions.size());
+        }
+        originalNode.methods.addAll(bodies);
+        final ClassWriter classWriter = new ComputeClassWriter(byteArraySource,
+                new HashMap<String, String>(),
+                ClassWriter.COMPUTE_FRAMES);
+        originalNode.accept(classWriter);
+        return classWriter.toByteArray();
+    }
+
+    private static MethodNode findMethod(final ClassNode classNode, final String name, final String desc) {
+        for (final MethodNode methodNode : classNode.methods) {
+            if (methodNode.name.equals(name) && methodNode.desc.equals(desc)) {
+                return methodNode;
+            }
+        }
+        throw new IllegalStateException("method " + name + desc + " not found in " + classNode.name);
+    }
+
+    private static MethodNode toBody(final MethodNode version, final int index) {
+        int access = version.access & ~(Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_SYNCHRONIZED
+                | Opcodes.ACC_BRIDGE | Opcodes.ACC_VARARGS);
+        access |= Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC;
+        final String[] exceptions = version.exceptions.toArray(new String[0]);
+        final MethodNode body = new MethodNode(Opcodes.ASM7, access, version.name + BODY_SUFFIX + index,
+                version.desc, version.signature, exceptions);
+        body.instructions = version.instructions;
+        body.tryCatchBlocks = version.tryCatchBlocks;
+        body.localVariables = version.localVariables;
+        body.maxStack = version.maxStack;
+        body.maxLocals = version.maxLocals;
+        return body;
+    }
+
+    private static void makeDispatcher(final String owner, final MethodNode dispatcher, final int versionsCount) {
+        final boolean isStatic = (dispatcher.access & Opcodes.ACC_STATIC) != 0;
+        final Type returnType = Type.getReturnType(dispatcher.desc);
+        final LabelNode[] labels = new LabelNode[versionsCount];
+        for (int i = 0; i < versionsCount; i++) {
+            labels[i] = new LabelNode();
+        }
+        final InsnList insns = new InsnList();
+        insns.add(new FieldInsnNode(Opcodes.GETSTATIC, SELECTOR_OWNER, SELECTOR_NAME, "I"));
+        final LabelNode[] cases = new LabelNode[versionsCount - 1];
+        System.arraycopy(labels, 1, cases, 0, versionsCount - 1);
+        insns.add(new TableSwitchInsnNode(1, versionsCount - 1, labels[0], cases));
+        for (int i = 0; i < versionsCount; i++) {
+            insns.add(labels[i]);
+            int local = 0;
+            if (!isStatic) {
+                insns.add(new VarInsnNode(Opcodes.ALOAD, local++));
+            }
+            for (final Type argType : Type.getArgumentTypes(dispatcher.desc)) {
+                insns.add(new VarInsnNode(argType.getOpcode(Opcodes.ILOAD), local));
+                local += argType.getSize();
+            }
+            insns.add(new MethodInsnNode(isStatic ? Opcodes.INVOKESTATIC : Opcodes.INVOKESPECIAL,
+                    owner, dispatcher.name + BODY_SUFFIX + i, dispatcher.desc, false));
+            insns.add(new InsnNode(returnType.getOpcode(Opcodes.IRETURN)));
+        }
+        dispatcher.instructions = insns;
+        dispatcher.tryCatchBlocks = new ArrayList<TryCatchBlockNode>();
+        dispatcher.localVariables = null;
+        dispatcher.visibleLocalVariableAnnotations = null;
+        dispatcher.invisibleLocalVariableAnnotations = null;
+        dispatcher.maxStack = 0; // computed by class writer
+        dispatcher.maxLocals = 0;
+    }
+
+    private static boolean haveSameShape(final ClassNode original,
+                                         final ClassNode patched,
+                                         final Collection<String> patchedMethods) {
+        if (original.access != patched.access
+                || !original.name.equals(patched.name)
+                || !String.valueOf(original.superName).equals(String.valueOf(patched.superName))
+                || !new HashSet<>(original.interfaces).equals(new HashSet<>(patched.interfaces))) {
+            return false;
+        }
+        if (!fieldsOf(original).equals(fieldsOf(patched))) {
+            return false;
+        }
+        if (original.methods.size() != patched.methods.size()) {
+            return false;
+        }
+        for (final MethodNode methodNode : original.methods) {
+            final MethodNode counterpart;
+            try {
+                counterpart = findMethod(patched, methodNode.name, methodNode.desc);
+            } catch (IllegalStateException e) {
+                return false;
+            }
+            if (methodNode.access != counterpart.access) {
+                return false;
+            }
+            if (!patchedMethods.contains(composeMethodFullName(original.name, methodNode.name, methodNode.desc))
+                    && !textOf(methodNode).equals(textOf(counterpart))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> fieldsOf(final ClassNode classNode) {
+        final Set<String> fields = new HashSet<>();
+        for (final FieldNode fieldNode : classNode.fields) {
+            fields.add(fieldNode.access + " " + fieldNode.name + " " + fieldNode.desc + " " + fieldNode.value);
+        }
+        return fields;
+    }
+}
@@ -41,19 +41,45 @@ class PrimaryMethodTransformer extends FinallyBlockAdviceAdapter {
 
     private static final Type SNAPSHOT_TRACKER = Type.getType(SnapshotTracker.class);
 
+    private static final Type INVOCATION_RECORDER = Type.getType(InvocationRecorder.class);
+
     private final Type retType;
 
+    private final String owner;
+
+    private final String name;
+
+    private final boolean recordInvocations;
+
     public PrimaryMethodTransformer(final MethodVisitor methodVisitor,
                                     final int access,
+                                    final String owner,
                                     final String name,
-                                    final String descriptor) {
+                                    final String descriptor,
+                                    final boolean recordInvocations) {
         super(ASM7, methodVisitor, access, name, descriptor);
         this.retType = Type.getReturnType(descriptor);
+        this.owner = owner;
+        this.name = name;
+        this.recordInvocations = recordInvocations;
     }
 
     @Override
     protected void insertPrelude() {
-        // nothing
+        if (this.recordInvocations && "<init>".equals(this.name)) {
+            invokeStatic(INVOCATION_RECORDER, Method.getMethod("void enterInvocation()"));
+        } else if (this.recordInvocations) {
+            push(this.owner);
+            push(this.name);
+            push(this.methodDesc);
+            if (Modifier.isStatic(this.methodAccess)) {
+                visitInsn(ACONST_NULL);
+            } else {
+                loadThis();
+            }
+            loadArgArray();
+            invokeStatic(INVOCATION_RECORDER, Method.getMethod("void recordInvocation(java.lang.String,java.lang.String,java.lang.String,java.lang.Object,java.lang.Object[])"));
+        }
     }
 
     @Override
@@ -88,7 +114,11 @@ class PrimaryMethodTransformer extends FinallyBlockAdviceAdapter {
             arrayStore(OBJECT_TYPE);
         }
         dup();
-        invokeStatic(SNAPSHOT_TRACKER, Method.getMethod("void submitSystemState(java.lang.Object[])"));
+        if (this.recordInvocations) {
+            invokeStatic(SNAPSHOT_TRACKER, Method.getMethod("void submitOutermostSystemState(java.lang.Object[])"));
+        } else {
+            invokeStatic(SNAPSHOT_TRACKER, Method.getMethod("void submitSystemState(java.lang.Object[])"));
+        }
         // revive return value
         if (normalExit && isNonVoidMethod()) {
             push(arrayIndex);
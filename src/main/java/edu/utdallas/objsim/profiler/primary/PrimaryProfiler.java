@@ -24,12 +24,12 @@ import edu.utdallas.objectutils.Wrapped;
 import edu.utdallas.objsim.commons.misc.NameUtils;
 import edu.utdallas.objsim.commons.process.ResourceUtils;
 import edu.utdallas.objsim.commons.relational.FieldsDom;
+import edu.utdallas.objsim.constants.Params;
 import edu.utdallas.objsim.junit.runner.CloseableTestUnit;
 import edu.utdallas.objsim.junit.runner.JUnitRunner;
+import edu.utdallas.objsim.junit.runner.TestUnitFilter;
 import edu.utdallas.objsim.junit.runner.WrappingTestUnit;
 import edu.utdallas.objsim.profiler.prelude.PreludeProfilerResults;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.runner.manipulation.Filter;
 import org.pitest.boot.HotSwapAgent;
@@ -51,17 +51,21 @@ import org.pitest.util.SafeDataInputStream;
 import javax.management.Notification;
 import javax.management.NotificationListener;
 import javax.management.openmbean.CompositeData;
-import java.io.File;
 import java.io.IOException;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.management.MemoryNotificationInfo;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.net.Socket;
+import java.net.URL;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.runner.Description.createTestDescription;
 
@@ -95,8 +99,12 @@ public final class PrimaryProfiler {
             ClassByteArraySource byteArraySource = new ClassloaderByteArraySource(contextClassLoader);
             byteArraySource = new CachingByteArraySource(byteArraySource, CACHE_SIZE);
 
+            if (!arguments.patchedClasses.isEmpty() && !arguments.differential) {
+                // must be registered first so that the snapshot recording code is added to the patched code
+                HotSwapAgent.addTransformer(new PatchInstallingTransformer(arguments.patchedClasses));
+            }
             final ClassFileTransformer transformer = new PrimaryTransformer(arguments.getPatchedMethods(),
-                    byteArraySource);
+                    byteArraySource, arguments.replayInvocations);
             HotSwapAgent.addTransformer(transformer);
 
             final ProfilerReporter reporter = new ProfilerReporter(socket.getOutputStream());
@@ -109,12 +117,37 @@ public final class PrimaryProfiler {
                 SnapshotTracker.setAccessedFields(fieldsDom, entry.getValue());
             }
 
-            final JUnitRunner runner = new JUnitRunner(testNameToTestUnit(arguments.coveringTests));
-            runner.setTestUnits(decorateTestCases(runner.getTestUnits(), reporter));
-            runner.run();
+            final boolean completed;
+            if (arguments.differential) {
+                completed = runDifferentially(arguments, reporter);
+            } else if (arguments.variantsCount == 0) {
+                final JUnitRunner runner = createRunner(decorateTestCases(testNameToTestUnit(arguments.coveringTests), reporter, -1));
+                runner.setTimeouts(arguments.testTimeouts);
+                runner.run(TestUnitFilter.allBut(arguments.getReportedTests(-1)));
+                completed = !runner.hasTimedOut();
+            } else if (arguments.replayInvocations) {
+                completed = replayInvocations(arguments, reporter);
+            } else {
+                // patches are merged into meta-classes, so we just flip the selector
+                boolean timedOut = false;
+                for (int variant = 0; variant < arguments.variantsCount && !timedOut; variant++) {
+                    PatchSelector.activePatchId = variant;
+                    final JUnitRunner runner = createRunner(decorateTestCases(testNameToTestUnit(arguments.coveringTests), reporter, variant));
+                    runner.setTimeouts(arguments.testTimeouts);
+                    runner.run(TestUnitFilter.allBut(arguments.getReportedTests(variant)));
+                    timedOut = runner.hasTimedOut();
+                }
+                completed = !timedOut;
+            }
 
-            System.out.println("Primary Profiler is DONE!");
-            reporter.done(ExitCode.OK);
+            if (completed) {
+                System.out.println("Primary Profiler is DONE!");
+                reporter.done(ExitCode.OK);
+            } else {
+                // the timed out test case keeps running, so the rest are left to a fresh process
+                System.out.println("WARNING: Primary Profiler is aborted due to timeout.");
+                reporter.done(ExitCode.TIMEOUT);
+            }
         } catch (Throwable throwable) {
             throwable.printStackTrace(System.out);
             System.out.println("WARNING: Error during profiling!");
@@ -123,8 +156,132 @@ public final class PrimaryProfiler {
         }
     }
 
+    /**
+     * Loads the original and the patched programs through two different class loaders,
+     * runs each test case against both, and reports distances between the snapshots.
+     */
+    private static boolean runDifferentially(final PrimaryProfilerArguments arguments,
+                                             final ProfilerReporter reporter) throws Exception {
+        final ClassLoader parent = IsolationUtils.getContextClassLoader();
+        final URL[] urls = OverlayClassLoader.getClassPathURLs();
+        final ClassLoader originalClassLoader = new OverlayClassLoader(urls, parent,
+                Collections.<String, byte[]>emptyMap());
+        final ClassLoader patchedClassLoader = new OverlayClassLoader(urls, parent, arguments.patchedClasses);
+        final Iterator<CloseableTestUnit> originalTestUnits =
+                testNameToTestUnit(arguments.coveringTests, originalClassLoader).iterator();
+        final Iterator<CloseableTestUnit> patchedTestUnits =
+                testNameToTestUnit(arguments.coveringTests, patchedClassLoader).iterator();
+        final List<CloseableTestUnit> testUnits = new LinkedList<>();
+        while (originalTestUnits.hasNext()) {
+            final CloseableTestUnit originalTestUnit = originalTestUnits.next();
+            final String testName = NameUtils.sanitizeExtendedTestName(originalTestUnit.getDescription().getName());
+            testUnits.add(new DifferentialTestUnit(testName,
+                    originalTestUnit, originalClassLoader,
+                    patchedTestUnits.next(), patchedClassLoader,
+                    reporter));
+        }
+        // each test case is run twice, against the original and the patched program
+        final Map<String, Long> testTimeouts = new HashMap<>();
+        for (final Map.Entry<String, Long> entry : arguments.testTimeouts.entrySet()) {
+            testTimeouts.put(entry.getKey(), 2L * entry.getValue());
+        }
+        final JUnitRunner runner = createRunner(testUnits);
+        runner.setTimeouts(testTimeouts);
+        runner.setDefaultTimeout(2L * TimeUnit.MINUTES.toMillis(Params.MAX_TIMEOUT_MINS));
+        runner.run(TestUnitFilter.allBut(arguments.getReportedTests(-1)));
+        return !runner.hasTimedOut();
+    }
+
+    /**
+     * Runs each test case against the original version, while recording the inputs
+     * of the outermost invocations of patched methods, and then replays the invocations
+     * against each version, instead of running the whole test case again. The original
+     * version is replayed as well, so that snapshots of all versions are taken alike.
+     * Test cases with an invocation whose inputs could not be copied are run against
+     * each version as usual.
+     */
+    private static boolean replayInvocations(final PrimaryProfilerArguments arguments,
+                                             final ProfilerReporter reporter) throws Exception {
+        for (final CloseableTestUnit testUnit : testNameToTestUnit(arguments.coveringTests)) {
+            final String testName = NameUtils.sanitizeExtendedTestName(testUnit.getDescription().getName());
+            if (isReported(arguments, testName)) {
+                continue;
+            }
+            PatchSelector.activePatchId = 0;
+            InvocationRecorder.startRecording();
+            final JUnitRunner runner = createRunner(Collections.singletonList(testUnit));
+            runner.setTimeouts(arguments.testTimeouts);
+            runner.run();
+            final List<RecordedInvocation> invocations = InvocationRecorder.stopRecording();
+            SnapshotTracker.SNAPSHOTS.clear();
+            if (runner.hasTimedOut()) {
+                return false;
+            }
+            if (!RecordedInvocation.areReplayable(invocations)) {
+                if (!runAgainstVariants(arguments, reporter, testUnit, testName)) {
+                    return false;
+                }
+                continue;
+            }
+            final List<CloseableTestUnit> replayUnits = new LinkedList<>();
+            for (int variant = 0; variant < arguments.variantsCount; variant++) {
+                if (!arguments.getReportedTests(variant).contains(testName)) {
+                    replayUnits.add(new ReplayTestUnit(testName, variant, invocations, reporter));
+                }
+            }
+            final JUnitRunner replayRunner = createRunner(replayUnits);
+            final Long testTimeout = arguments.testTimeouts.get(testName);
+            if (testTimeout != null) {
+                replayRunner.setDefaultTimeout(testTimeout); // replay units are not named after the test
+            }
+            replayRunner.run();
+            if (replayRunner.hasTimedOut()) {
+                return false;
+            }
+        }
+        PatchSelector.activePatchId = 0;
+        return true;
+    }
+
+    private static boolean runAgainstVariants(final PrimaryProfilerArguments arguments,
+                                              final ProfilerReporter reporter,
+                                              final CloseableTestUnit testUnit,
+                                              final String testName) {
+        for (int variant = 0; variant < arguments.variantsCount; variant++) {
+            if (arguments.getReportedTests(variant).contains(testName)) {
+                continue;
+            }
+            PatchSelector.activePatchId = variant;
+            final JUnitRunner runner = createRunner(decorateTestCases(Collections.singletonList(testUnit), reporter, variant));
+            runner.setTimeouts(arguments.testTimeouts);
+            runner.run();
+            if (runner.hasTimedOut()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // whether or not the results of all versions for the test are reported by an earlier process
+    private static boolean isReported(final PrimaryProfilerArguments arguments, final String testName) {
+        for (int variant = 0; variant < arguments.variantsCount; variant++) {
+            if (!arguments.getReportedTests(variant).contains(testName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // a runner that gives up after the first timeout, see JUnitRunner.setAbortOnTimeout
+    private static JUnitRunner createRunner(final List<CloseableTestUnit> testUnits) {
+        final JUnitRunner runner = new JUnitRunner(testUnits);
+        runner.setAbortOnTimeout(true);
+        return runner;
+    }
+
     private static List<CloseableTestUnit> decorateTestCases(final List<CloseableTestUnit> testUnits,
-                                                    final ProfilerReporter reporter) {
+                                                             final ProfilerReporter reporter,
+                                                             final int variant) {
         final List<CloseableTestUnit> res = new LinkedList<>();
         for (final TestUnit testUnit : testUnits) {
             res.add(new CloseableTestUnit() {
@@ -137,7 +294,12 @@ public final class PrimaryProfiler {
                 @Override
                 public void close() {
                     final String testName = NameUtils.sanitizeExtendedTestName(testUnit.getDescription().getName());
-                    reporter.reportSnapshots(testName, SnapshotTracker.SNAPSHOTS.toArray(new Wrapped[0]));
+                    final Wrapped[] snapshots = SnapshotTracker.SNAPSHOTS.toArray(new Wrapped[0]);
+                    if (variant < 0) {
+                        reporter.reportSnapshots(testName, snapshots);
+                    } else {
+                        reporter.reportVariantSnapshots(variant, testName, snapshots);
+                    }
                     SnapshotTracker.SNAPSHOTS.clear();
                 }
 
@@ -152,10 +314,15 @@ public final class PrimaryProfiler {
 
 
     private static List<CloseableTestUnit> testNameToTestUnit(final Collection<String> testCaseNames) throws Exception {
+        return testNameToTestUnit(testCaseNames, IsolationUtils.getContextClassLoader());
+    }
+
+    private static List<CloseableTestUnit> testNameToTestUnit(final Collection<String> testCaseNames,
+                                                              final ClassLoader classLoader) throws Exception {
         final List<CloseableTestUnit> res = new LinkedList<>();
         for (final String testCaseName : testCaseNames) {
             final Pair<String, String> methodNameParts = decomposeMethodName(NameUtils.sanitizeExtendedTestName(testCaseName));
-            final Class<?> testSuite = Class.forName(methodNameParts.getLeft());
+            final Class<?> testSuite = Class.forName(methodNameParts.getLeft(), true, classLoader);
             Method testCase = null;
             for (final Method method : testSuite.getMethods()) {
                 final int mod = method.getModifiers();
@@ -196,76 +363,87 @@ public final class PrimaryProfiler {
         MemoryWatchdog.addWatchDogToAllPools(90, listener);
     }
 
+    /**
+     * Runs covering tests against the patched program and returns system state snapshots.
+     * Patched classes are installed in the child process as they are loaded, so the class
+     * files of the original program are left intact.
+     */
     public static Map<String, Wrapped[]> getSnapshots(final ProcessArgs defaultProcessArgs,
-                                                      final File classBuildDirectory,
-                                                      final Collection<File> patchedClassFiles,
+                                                      final Map<String, byte[]> patchedClasses,
                                                       final Collection<String> patchedMethods,
                                                       final Collection<String> coveringTests,
                                                       final PreludeProfilerResults preludeResults)
             throws IOException, InterruptedException {
-        for (final File patchedClassFile : patchedClassFiles) {
-            if (!patchedClassFile.isFile()) {
-                throw new IllegalArgumentException("Invalid patch file " + patchedClassFile.getAbsolutePath());
-            }
-        }
-        Validate.isTrue(classBuildDirectory.isDirectory());
-        final List<Backup> backupList = backup(classBuildDirectory, patchedClassFiles);
-        final Map<String, Wrapped[]> snapshots = getSnapshots(defaultProcessArgs,
-                patchedMethods,
-                coveringTests,
-                preludeResults);
-        for (final Backup backup : backupList) {
-            backup.restore();
-        }
-        return snapshots;
+        final PrimaryProfilerArguments arguments = new PrimaryProfilerArguments(patchedClasses,
+                patchedMethods, coveringTests, preludeResults);
+        final ProfilerProcess process = new ProfilerProcess(defaultProcessArgs, arguments);
+        process.start();
+        process.waitToDie();
+        return process.getSnapshots();
     }
 
-    public static Map<String, Wrapped[]> getSnapshots(final ProcessArgs defaultProcessArgs,
-                                                      final Collection<String> patchedMethods,
-                                                      final Collection<String> coveringTests,
-                                                      final PreludeProfilerResults preludeResults)
+    /**
+     * Runs covering tests against several versions of the program merged into
+     * meta-classes (see {@link PatchSchemata}) within a single child process.
+     *
+     * @param metaClasses Class name --> bytes of the meta-class
+     * @param variantsCount Number of versions merged into meta-classes, including the
+     *                      original version
+     * @param replayInvocations Whether or not to replay the invocations of patched
+     *                          methods recorded while running the original version,
+     *                          instead of running whole test cases against patched versions
+     * @return Version index --> test name --> system state snapshots
+     */
+    public static Map<Integer, Map<String, Wrapped[]>> getSnapshots(final ProcessArgs defaultProcessArgs,
+                                                                    final Map<String, byte[]> metaClasses,
+                                                                    final int variantsCount,
+                                                                    final boolean replayInvocations,
+                                                                    final Collection<String> patchedMethods,
+                                                                    final Collection<String> coveringTests,
+                                                                    final PreludeProfilerResults preludeResults)
             throws IOException, InterruptedException {
-        final PrimaryProfilerArguments arguments = new PrimaryProfilerArguments(patchedMethods,
-                coveringTests, preludeResults.accessedFieldsMap());
+        final PrimaryProfilerArguments arguments = new PrimaryProfilerArguments(metaClasses,
+                variantsCount, replayInvocations, false, patchedMethods, coveringTests, preludeResults);
         final ProfilerProcess process = new ProfilerProcess(defaultProcessArgs, arguments);
         process.start();
         process.waitToDie();
-        return process.getSnapshots();
+        return process.getVariantSnapshots();
     }
 
-    private static List<Backup> backup(final File baseDirectory,
-                                       final Collection<File> patchedClassFiles) throws IOException {
-        final List<Backup> list = new LinkedList<>();
-        for (final File patchedClassFile : patchedClassFiles) {
-            final String classFullName = NameUtils.getClassName(patchedClassFile);
-            final int indexOfLastDot = classFullName.lastIndexOf('.');
-            final String packageName = classFullName.substring(0, indexOfLastDot);
-            final String className = classFullName.substring(1 + indexOfLastDot);
-            final File destDirectory = FileUtils.getFile(baseDirectory, packageName.split("\\."));
-            final File backupFile = new File(className + ".class.bak");
-            final File replacedFile = new File(destDirectory, className + ".class");
-            FileUtils.copyFile(replacedFile, backupFile);
-            FileUtils.copyFile(patchedClassFile, replacedFile);
-            list.add(new Backup(backupFile, replacedFile));
-        }
-        return list;
+    /**
+     * Runs covering tests against the original and the patched program side by side
+     * in a single child process and returns the distances between system state
+     * snapshots, rather than the snapshots themselves.
+     *
+     * @return Test name --> distances between corresponding snapshots; the value is
+     *         <code>null</code> if the number of snapshots differ
+     */
+    public static Map<String, double[]> getDistances(final ProcessArgs defaultProcessArgs,
+                                                     final Map<String, byte[]> patchedClasses,
+                                                     final Collection<String> patchedMethods,
+                                                     final Collection<String> coveringTests,
+                                                     final PreludeProfilerResults preludeResults)
+            throws IOException, InterruptedException {
+        final PrimaryProfilerArguments arguments = new PrimaryProfilerArguments(patchedClasses,
+                0, false, true, patchedMethods, coveringTests, preludeResults);
+        final ProfilerProcess process = new ProfilerProcess(defaultProcessArgs, arguments);
+        process.start();
+        process.waitToDie();
+        return process.getDistances();
     }
 
-    private static final class Backup {
-        private final File backupFile;
-
-        private final File replacedFile;
-
-        Backup(final File backupFile, final File replacedFile) {
-            this.backupFile = backupFile;
-            this.replacedFile = replacedFile;
-        }
-
-        void restore() throws IOException {
-            FileUtils.copyFile(this.backupFile, this.replacedFile);
-            if (!this.backupFile.delete()) {
-                throw new RuntimeException("Unable to delete " + this.backupFile);
-            }
-        }
+    /**
+     * Runs covering tests against the original program and returns system state snapshots.
+     */
+    public static Map<String, Wrapped[]> getSnapshots(final ProcessArgs defaultProcessArgs,
+                                                      final Collection<String> patchedMethods,
+                                                      final Collection<String> coveringTests,
+                                                      final PreludeProfilerResults preludeResults)
+            throws IOException, InterruptedException {
+        return getSnapshots(defaultProcessArgs,
+                Collections.<String, byte[]>emptyMap(),
+                patchedMethods,
+                coveringTests,
+                preludeResults);
     }
 }
@@ -22,13 +22,21 @@ package edu.utdallas.objsim.profiler.primary;
 
 import edu.utdallas.objsim.commons.relational.FieldsDom;
 import edu.utdallas.objsim.commons.relational.MethodsDom;
+import edu.utdallas.objsim.constants.Params;
+import edu.utdallas.objsim.profiler.prelude.PreludeProfilerResults;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Arguments for "primary" profiler process which is intended to record system state
@@ -48,13 +56,39 @@ class PrimaryProfilerArguments implements Serializable {
 
     final Map<Integer, int[]> accessedFieldsMap; // patched method index --> accessed fields
 
-    final Set<String> coveringTests;
+    final Set<String> coveringTests; // in ascending order of the number of invocations of patched methods
 
-    PrimaryProfilerArguments(final Collection<String> patchedMethods,
+    final HashMap<String, Long> testTimeouts; // covering test name --> timeout in milliseconds
+
+    final HashMap<String, byte[]> patchedClasses; // class name --> class file bytes
+
+    final int variantsCount; // number of program versions in meta-classes, or 0 if patches are not merged
+
+    final boolean replayInvocations; // replay recorded invocations instead of rerunning tests on patched versions
+
+    final boolean differential; // run original and patched programs side by side and report distances
+
+    final HashMap<Integer, HashSet<String>> reportedTests; // variant (-1 if not merged) --> tests reported by an earlier process
+
+    private final String scratchDirectory; // where field and method domains are stored
+
+    PrimaryProfilerArguments(final Map<String, byte[]> patchedClasses,
+                             final Collection<String> patchedMethods,
+                             final Collection<String> coveringTests,
+                             final PreludeProfilerResults preludeResults) {
+        this(patchedClasses, 0, false, false, patchedMethods, coveringTests, preludeResults);
+    }
+
+    PrimaryProfilerArguments(final Map<String, byte[]> patchedClasses,
+                             final int variantsCount,
+                             final boolean replayInvocations,
+                             final boolean differential,
+                             final Collection<String> patchedMethods,
                              final Collection<String> coveringTests,
-                             final Map<Integer, int[]> accessedFieldsMap) {
+                             final PreludeProfilerResults preludeResults) {
         final Map<Integer, int[]> map = new HashMap<>();
-        final MethodsDom methodsDom = getMethodsDom();
+        final MethodsDom methodsDom = preludeResults.getMethodsDom();
+        final Map<Integer, int[]> accessedFieldsMap = preludeResults.accessedFieldsMap();
         for (final String methodName : patchedMethods) {
             final int methodIndex = methodsDom.indexOf(methodName);
             if (methodIndex < 0) {
@@ -67,19 +101,91 @@ class PrimaryProfilerArguments implements Serializable {
             map.put(methodIndex, accessedFields);
         }
         this.accessedFieldsMap = map;
-        this.coveringTests = new HashSet<>(coveringTests);
+        final Map<String, Long> invocations = countInvocations(coveringTests, map.keySet(),
+                preludeResults.getInvocationCounts());
+        this.coveringTests = orderCoveringTests(invocations);
+        this.testTimeouts = computeTestTimeouts(invocations, preludeResults.getTestDurations());
+        this.patchedClasses = new HashMap<>(patchedClasses);
+        this.variantsCount = variantsCount;
+        this.replayInvocations = replayInvocations;
+        this.differential = differential;
+        this.reportedTests = new HashMap<>();
+        this.scratchDirectory = preludeResults.getScratchDirectory().getAbsolutePath();
+    }
+
+    // covering test name --> number of invocations of patched methods in the prelude
+    private static Map<String, Long> countInvocations(final Collection<String> coveringTests,
+                                                     final Set<Integer> patchedMethodIndices,
+                                                     final Map<String, Map<Integer, Long>> invocationCounts) {
+        final Map<String, Long> invocations = new HashMap<>();
+        for (final String testName : coveringTests) {
+            long sum = 0L;
+            final Map<Integer, Long> counts = invocationCounts.get(testName);
+            if (counts != null) {
+                for (final Integer methodIndex : patchedMethodIndices) {
+                    final Long count = counts.get(methodIndex);
+                    if (count != null) {
+                        sum += count;
+                    }
+                }
+            }
+            invocations.put(testName, sum);
+        }
+        return invocations;
+    }
+
+    // tests calling patched methods more often take more snapshots and are run later, so
+    // that they cannot hold back the others, e.g. when the memory watchdog kills the process
+    private static LinkedHashSet<String> orderCoveringTests(final Map<String, Long> invocations) {
+        final List<String> ordered = new ArrayList<>(invocations.keySet());
+        Collections.sort(ordered, new Comparator<String>() {
+            @Override
+            public int compare(final String t1, final String t2) {
+                final int res = Long.compare(invocations.get(t1), invocations.get(t2));
+                return res == 0 ? t1.compareTo(t2) : res;
+            }
+        });
+        return new LinkedHashSet<>(ordered);
+    }
+
+    // max(floor, k * duration in the prelude + allowance * invocations of patched methods),
+    // but no more than the maximum timeout, as the prelude takes no snapshots; tests with
+    // unknown durations are left out, so they get the maximum timeout
+    private static HashMap<String, Long> computeTestTimeouts(final Map<String, Long> invocations,
+                                                             final Map<String, Long> testDurations) {
+        final long maxTimeout = TimeUnit.MINUTES.toMillis(Params.MAX_TIMEOUT_MINS);
+        final HashMap<String, Long> testTimeouts = new HashMap<>();
+        for (final Map.Entry<String, Long> entry : invocations.entrySet()) {
+            final Long duration = testDurations.get(entry.getKey());
+            if (duration != null) {
+                final long timeout = Math.max(Params.MIN_TIMEOUT_MILLIS,
+                        Params.TIMEOUT_FACTOR * duration + Params.SNAPSHOT_TIMEOUT_MILLIS * entry.getValue());
+                testTimeouts.put(entry.getKey(), Math.min(maxTimeout, timeout));
+            }
+        }
+        return testTimeouts;
+    }
+
+    /**
+     * @param variant Version index, or <code>-1</code> if patches are not merged
+     * @return Names of the tests whose results for <code>variant</code> are already
+     *         reported by a process that has been aborted due to timeout
+     */
+    Set<String> getReportedTests(final int variant) {
+        final Set<String> testNames = this.reportedTests.get(variant);
+        return testNames == null ? Collections.<String>emptySet() : testNames;
     }
 
     public MethodsDom getMethodsDom() {
         if (this.methodsDom == null) {
-            this.methodsDom = new MethodsDom(".");
+            this.methodsDom = new MethodsDom(this.scratchDirectory);
         }
         return this.methodsDom;
     }
 
     public FieldsDom getFieldsDom() {
         if (this.fieldsDom == null) {
-            this.fieldsDom = new FieldsDom(".");
+            this.fieldsDom = new FieldsDom(this.scratchDirectory);
         }
         return fieldsDom;
     }
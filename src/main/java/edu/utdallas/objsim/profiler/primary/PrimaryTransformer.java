@@ -53,8 +53,20 @@ public class PrimaryTransformer implements ClassFileTransformer {
 
     private final Set<String> patchedMethods;
 
+    private final boolean recordInvocations;
+
     public PrimaryTransformer(final Set<String> patchedMethods,
                               final ClassByteArraySource byteArraySource) {
+        this(patchedMethods, byteArraySource, false);
+    }
+
+    /**
+     * @param recordInvocations Whether or not to record inputs of the invocations of
+     *                          patched methods (see {@link InvocationRecorder})
+     */
+    public PrimaryTransformer(final Set<String> patchedMethods,
+                              final ClassByteArraySource byteArraySource,
+                              final boolean recordInvocations) {
         final Set<String> patchedClasses = new HashSet<>();
         for (final String methodName : patchedMethods) {
             final int indexOfLP = methodName.indexOf('(');
@@ -64,6 +76,7 @@ public class PrimaryTransformer implements ClassFileTransformer {
         this.patchedClasses = patchedClasses;
         this.patchedMethods = patchedMethods;
         this.byteArraySource = byteArraySource;
+        this.recordInvocations = recordInvocations;
         this.cache = new HashMap<>();
     }
 
@@ -79,7 +92,8 @@ public class PrimaryTransformer implements ClassFileTransformer {
         final ClassReader classReader = new ClassReader(classfileBuffer);
         final ClassWriter classWriter = new ComputeClassWriter(this.byteArraySource,
                 this.cache, pickFlags(classfileBuffer));
-        final ClassVisitor classVisitor = new PrimaryTransformerClassVisitor(classWriter, this.patchedMethods);
+        final ClassVisitor classVisitor = new PrimaryTransformerClassVisitor(classWriter, this.patchedMethods,
+                this.recordInvocations);
         classReader.accept(classVisitor, ClassReader.EXPAND_FRAMES);
         return classWriter.toByteArray();
     }
@@ -38,11 +38,16 @@ import static org.objectweb.asm.Opcodes.ASM7;
 class PrimaryTransformerClassVisitor extends ClassVisitor {
     private final Set<String> patchedMethods;
 
+    private final boolean recordInvocations;
+
     private String owner;
 
-    public PrimaryTransformerClassVisitor(final ClassVisitor classVisitor, final Set<String> patchedMethods) {
+    public PrimaryTransformerClassVisitor(final ClassVisitor classVisitor,
+                                          final Set<String> patchedMethods,
+                                          final boolean recordInvocations) {
         super(ASM7, classVisitor);
         this.patchedMethods = patchedMethods;
+        this.recordInvocations = recordInvocations;
     }
 
     @Override
@@ -56,7 +61,8 @@ class PrimaryTransformerClassVisitor extends ClassVisitor {
         final MethodVisitor defMethodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
         final String methodFullName = composeMethodFullName(this.owner, name, descriptor);
         if (this.patchedMethods.contains(methodFullName)) {
-            return new PrimaryMethodTransformer(defMethodVisitor, access, name, descriptor);
+            return new PrimaryMethodTransformer(defMethodVisitor, access, this.owner, name, descriptor,
+                    this.recordInvocations);
         }
         return defMethodVisitor;
     }
@@ -31,6 +31,7 @@ import org.pitest.util.SafeDataOutputStream;
 
 import java.net.ServerSocket;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -41,22 +42,16 @@ import java.util.Map;
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 class ProfilerCommunicationThread extends CommunicationThread {
-    private final DataReceiver receiver;
-
     ProfilerCommunicationThread(final ServerSocket socket,
-                                final PrimaryProfilerArguments arguments) {
-        this(socket, new DataSender(arguments), new DataReceiver());
+                                final PrimaryProfilerArguments arguments,
+                                final DataReceiver receiver) {
+        this(socket, new DataSender(arguments), receiver);
     }
 
     ProfilerCommunicationThread(final ServerSocket socket,
                                 final DataSender sender,
                                 final DataReceiver receiver) {
         super(socket,sender, receiver);
-        this.receiver = receiver;
-    }
-
-    final Map<String, Wrapped[]> getSnapshots() {
-        return this.receiver.snapshots;
     }
 
     private static class DataSender implements SideEffect1<SafeDataOutputStream> {
@@ -72,11 +67,30 @@ class ProfilerCommunicationThread extends CommunicationThread {
         }
     }
 
-    private static class DataReceiver implements ReceiveStrategy {
+    // shared by the processes restarted after timeouts, so that their results accumulate
+    static class DataReceiver implements ReceiveStrategy {
         final Map<String, Wrapped[]> snapshots;
 
-        public DataReceiver() {
+        final Map<Integer, Map<String, Wrapped[]>> variantSnapshots; // variant --> test name --> snapshots
+
+        final Map<String, double[]> distances; // test name --> distances (null if incomparable)
+
+        final Map<Integer, HashSet<String>> reportedTests; // variant (-1 if not merged) --> test names
+
+        public DataReceiver(final Map<Integer, HashSet<String>> reportedTests) {
             this.snapshots = new HashMap<>();
+            this.variantSnapshots = new HashMap<>();
+            this.distances = new HashMap<>();
+            this.reportedTests = reportedTests;
+        }
+
+        private void markReported(final int variant, final String testName) {
+            HashSet<String> testNames = this.reportedTests.get(variant);
+            if (testNames == null) {
+                testNames = new HashSet<>();
+                this.reportedTests.put(variant, testNames);
+            }
+            testNames.add(testName);
         }
 
         @Override
@@ -85,6 +99,23 @@ class ProfilerCommunicationThread extends CommunicationThread {
                 final String testName = dis.readString();
                 final Wrapped[] snapshots = dis.read(Wrapped[].class);
                 this.snapshots.put(testName, snapshots);
+                markReported(-1, testName);
+            } else if (controlId == ControlId.REPORT_VARIANT_SNAPSHOTS) {
+                final int variant = dis.readInt();
+                final String testName = dis.readString();
+                final Wrapped[] snapshots = dis.read(Wrapped[].class);
+                Map<String, Wrapped[]> map = this.variantSnapshots.get(variant);
+                if (map == null) {
+                    map = new HashMap<>();
+                    this.variantSnapshots.put(variant, map);
+                }
+                map.put(testName, snapshots);
+                markReported(variant, testName);
+            } else if (controlId == ControlId.REPORT_TEST_DISTANCES) {
+                final String testName = dis.readString();
+                final double[] distances = dis.readBoolean() ? dis.read(double[].class) : null;
+                this.distances.put(testName, distances);
+                markReported(-1, testName);
             } else {
                 throw new IllegalArgumentException("Unknown code: " + controlId);
             }
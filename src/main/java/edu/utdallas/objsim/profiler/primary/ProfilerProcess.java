@@ -29,6 +29,7 @@ import org.pitest.util.SocketFinder;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a (running) profiler process.
@@ -37,28 +38,52 @@ import java.util.Map;
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 class ProfilerProcess {
-    private final WrappingProcess process;
+    private final ProcessArgs processArgs;
 
-    private final ProfilerCommunicationThread communicationThread;
+    private final PrimaryProfilerArguments arguments;
+
+    private final ProfilerCommunicationThread.DataReceiver receiver;
+
+    private WrappingProcess process;
+
+    private ProfilerCommunicationThread communicationThread;
 
     ProfilerProcess(final ProcessArgs processArgs,
                     final PrimaryProfilerArguments arguments) {
-        this((new SocketFinder()).getNextAvailableServerSocket(), processArgs, arguments);
-    }
-
-    private ProfilerProcess(final ServerSocket socket,
-                            final ProcessArgs processArgs,
-                            final PrimaryProfilerArguments arguments) {
-        this.process = new WrappingProcess(socket.getLocalPort(), processArgs, PrimaryProfiler.class);
-        this.communicationThread = new ProfilerCommunicationThread(socket, arguments);
+        this.processArgs = processArgs;
+        this.arguments = arguments;
+        this.receiver = new ProfilerCommunicationThread.DataReceiver(arguments.reportedTests);
     }
 
     void start() throws IOException, InterruptedException {
+        final ServerSocket socket = (new SocketFinder()).getNextAvailableServerSocket();
+        this.process = new WrappingProcess(socket.getLocalPort(), this.processArgs, PrimaryProfiler.class);
+        this.communicationThread = new ProfilerCommunicationThread(socket, this.arguments, this.receiver);
         this.communicationThread.start();
         this.process.start();
     }
 
-    ExitCode waitToDie() {
+    /**
+     * Waits for the child process to finish. A child process aborted due to timeout
+     * is restarted for the tests it has not reported, as long as it makes progress.
+     */
+    ExitCode waitToDie() throws IOException, InterruptedException {
+        int reported = countReportedTests();
+        ExitCode exitCode = waitForProcess();
+        while (exitCode == ExitCode.TIMEOUT) {
+            final int newlyReported = countReportedTests();
+            if (newlyReported == reported) {
+                break;
+            }
+            reported = newlyReported;
+            System.out.println("INFO: Restarting profiler for the remaining test cases.");
+            start();
+            exitCode = waitForProcess();
+        }
+        return exitCode;
+    }
+
+    private ExitCode waitForProcess() {
         try {
             return this.communicationThread.waitToFinish();
         } finally {
@@ -66,7 +91,23 @@ class ProfilerProcess {
         }
     }
 
+    private int countReportedTests() {
+        int count = 0;
+        for (final Set<String> testNames : this.arguments.reportedTests.values()) {
+            count += testNames.size();
+        }
+        return count;
+    }
+
     Map<String, Wrapped[]> getSnapshots() {
-        return this.communicationThread.getSnapshots();
+        return this.receiver.snapshots;
+    }
+
+    Map<Integer, Map<String, Wrapped[]>> getVariantSnapshots() {
+        return this.receiver.variantSnapshots;
+    }
+
+    Map<String, double[]> getDistances() {
+        return this.receiver.distances;
     }
-}
\ No newline at end of file
+}
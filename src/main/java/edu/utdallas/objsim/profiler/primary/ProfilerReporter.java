@@ -53,4 +53,28 @@ class ProfilerReporter {
         this.dos.write(snapshots);
         this.dos.flush();
     }
+
+    /**
+     * @param distances Distances between corresponding snapshots, or <code>null</code>
+     *                  if the executions are not comparable
+     */
+    public synchronized void reportDistances(final String testName, final double[] distances) {
+        this.dos.writeByte(ControlId.REPORT_TEST_DISTANCES);
+        this.dos.writeString(testName);
+        this.dos.writeBoolean(distances != null);
+        if (distances != null) {
+            this.dos.write(distances);
+        }
+        this.dos.flush();
+    }
+
+    public synchronized void reportVariantSnapshots(final int variant,
+                                                    final String testName,
+                                                    final Wrapped[] snapshots) {
+        this.dos.writeByte(ControlId.REPORT_VARIANT_SNAPSHOTS);
+        this.dos.writeInt(variant);
+        this.dos.writeString(testName);
+        this.dos.write(snapshots);
+        this.dos.flush();
+    }
 }
\ No newline at end of file
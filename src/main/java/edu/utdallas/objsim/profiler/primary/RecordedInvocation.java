@@ -0,0 +1,114 @@
+package edu.utdallas.objsim.profiler.primary;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Inputs of an invocation of a patched method recorded by {@link InvocationRecorder}.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class RecordedInvocation {
+    private final String owner;
+
+    private final String name;
+
+    private final String descriptor;
+
+    private final Object receiver;
+
+    private final Object[] arguments; // null if the invocation is not replayable
+
+    private Method method;
+
+    RecordedInvocation(final String owner,
+                       final String name,
+                       final String descriptor,
+                       final Object receiver,
+                       final Object[] arguments) {
+        this.owner = owner;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.receiver = receiver;
+        this.arguments = arguments;
+    }
+
+    /**
+     * @return A recorded invocation whose inputs could not be copied
+     */
+    static RecordedInvocation notReplayable(final String owner, final String name, final String descriptor) {
+        return new RecordedInvocation(owner, name, descriptor, null, null);
+    }
+
+    boolean isReplayable() {
+        return this.arguments != null;
+    }
+
+    static boolean areReplayable(final List<RecordedInvocation> invocations) {
+        for (final RecordedInvocation invocation : invocations) {
+            if (!invocation.isReplayable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Invokes the method on a fresh copy of the recorded inputs. Exceptions thrown by
+     * the method are swallowed, as system state is recorded by instrumented code
+     * regardless of the way the method exits.
+     */
+    void replay() throws Exception {
+        if (!isReplayable()) {
+            throw new IllegalStateException("invocation of " + this.name + " is not replayable");
+        }
+        final Object[] inputs = (Object[]) new DeepCopier().copy(new Object[] {this.receiver, this.arguments});
+        try {
+            getMethod().invoke(inputs[0], (Object[]) inputs[1]);
+        } catch (InvocationTargetException e) {
+            // nothing
+        }
+    }
+
+    private Method getMethod() throws ClassNotFoundException, NoSuchMethodException {
+        if (this.method == null) {
+            final ClassLoader loader = this.receiver == null
+                    ? Thread.currentThread().getContextClassLoader()
+                    : this.receiver.getClass().getClassLoader();
+            final Class<?> ownerClass = Class.forName(this.owner.replace('/', '.'), false, loader);
+            for (final Method method : ownerClass.getDeclaredMethods()) {
+                if (method.getName().equals(this.name) && Type.getMethodDescriptor(method).equals(this.descriptor)) {
+                    method.setAccessible(true);
+                    this.method = method;
+                    return method;
+                }
+            }
+            throw new NoSuchMethodException(this.owner + "." + this.name + this.descriptor);
+        }
+        return this.method;
+    }
+}
@@ -0,0 +1,82 @@
+package edu.utdallas.objsim.profiler.primary;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objectutils.Wrapped;
+import edu.utdallas.objsim.junit.runner.CloseableTestUnit;
+import org.pitest.testapi.Description;
+import org.pitest.testapi.ResultCollector;
+
+import java.util.List;
+
+/**
+ * A pseudo test unit that replays the invocations of patched methods recorded
+ * during the execution of a test case against a patched version of the program.
+ * !Internal use only!
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class ReplayTestUnit implements CloseableTestUnit {
+    private final String testName;
+
+    private final int variant;
+
+    private final List<RecordedInvocation> invocations;
+
+    private final ProfilerReporter reporter;
+
+    ReplayTestUnit(final String testName,
+                   final int variant,
+                   final List<RecordedInvocation> invocations,
+                   final ProfilerReporter reporter) {
+        this.testName = testName;
+        this.variant = variant;
+        this.invocations = invocations;
+        this.reporter = reporter;
+    }
+
+    @Override
+    public void execute(final ResultCollector resultCollector) {
+        PatchSelector.activePatchId = this.variant;
+        SnapshotTracker.SNAPSHOTS.clear();
+        try {
+            for (final RecordedInvocation invocation : this.invocations) {
+                invocation.replay();
+            }
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+        close();
+    }
+
+    @Override
+    public void close() {
+        this.reporter.reportVariantSnapshots(this.variant,
+                this.testName,
+                SnapshotTracker.SNAPSHOTS.toArray(new Wrapped[0]));
+        SnapshotTracker.SNAPSHOTS.clear();
+    }
+
+    @Override
+    public Description getDescription() {
+        return new Description(this.testName + " [replay of patch " + this.variant + "]");
+    }
+}
@@ -95,4 +95,18 @@ public final class SnapshotTracker {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Used instead of {@link SnapshotTracker#submitSystemState(Object[])} while
+     * replaying invocations: system state is recorded only at the exit point(s) of the
+     * outermost invocation of a patched method on the current thread, so that each
+     * replayed invocation takes exactly one snapshot regardless of the version.
+     *
+     * @param references See {@link SnapshotTracker#submitSystemState(Object[])}
+     */
+    public static void submitOutermostSystemState(final Object[] references) {
+        if (InvocationRecorder.leaveInvocation()) {
+            submitSystemState(references);
+        }
+    }
 }
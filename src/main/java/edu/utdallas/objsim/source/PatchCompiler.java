@@ -0,0 +1,206 @@
+package edu.utdallas.objsim.source;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles source-level patches in memory.
+ * Each patch is compiled in a compilation task of its own, as patched compilation
+ * units compiled together would see each other instead of the class files of the
+ * original program, e.g. constants, overloads, and members introduced by other
+ * patches. All the tasks share the same file manager, and hence the same class path
+ * index. Only patched compilation units are compiled; the rest of the program is
+ * referred to through its class files on the class path.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class PatchCompiler {
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+
+    private final JavaCompiler compiler;
+
+    private final StandardJavaFileManager standardFileManager;
+
+    private final List<String> options;
+
+    /**
+     * @param classPath Class path for compiling patches, which shall include the
+     *                  compiled classes of the program
+     * @param targetVersion Target Java version, e.g. <code>1.7</code>, or
+     *                      <code>null</code> for compiler default
+     */
+    public PatchCompiler(final String classPath, final String targetVersion) {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        if (this.compiler == null) {
+            throw new IllegalStateException("no Java compiler found; ObjSim shall be run on a JDK");
+        }
+        this.standardFileManager = this.compiler.getStandardFileManager(null, null, Charset.defaultCharset());
+        this.options = new ArrayList<>(Arrays.asList("-g", "-nowarn", "-proc:none", "-classpath", classPath));
+        if (targetVersion != null) {
+            this.options.addAll(Arrays.asList("-source", targetVersion, "-target", targetVersion));
+        }
+    }
+
+    /**
+     * Compiles patches.
+     *
+     * @param patches Patch key --> (compilation unit path --> patched source code)
+     * @param <K> Type of patch keys, e.g. patch ids
+     * @return Patch key --> (class name --> class file bytes); patches that do not
+     *         compile are absent from the result
+     */
+    public <K> Map<K, Map<String, byte[]>> compile(final Map<K, Map<String, String>> patches) {
+        final Map<K, Map<String, byte[]>> result = new LinkedHashMap<>();
+        for (final Map.Entry<K, Map<String, String>> patch : patches.entrySet()) {
+            final Map<String, byte[]> compiled = compilePatch(patch.getKey(), patch.getValue());
+            if (compiled != null) {
+                result.put(patch.getKey(), compiled);
+            }
+        }
+        return result;
+    }
+
+    public void close() throws IOException {
+        this.standardFileManager.close();
+    }
+
+    // fully qualified name of the top-level class of the compilation unit
+    private static String getUnitName(final String path, final String source) {
+        String simpleName = path.replace('\\', '/');
+        simpleName = simpleName.substring(1 + simpleName.lastIndexOf('/'));
+        if (simpleName.endsWith(".java")) {
+            simpleName = simpleName.substring(0, simpleName.length() - 5);
+        }
+        final Matcher matcher = PACKAGE.matcher(source);
+        return matcher.find() ? matcher.group(1) + "." + simpleName : simpleName;
+    }
+
+    // returns null if the patch does not compile
+    private Map<String, byte[]> compilePatch(final Object key, final Map<String, String> patch) {
+        final List<JavaFileObject> units = new ArrayList<>();
+        for (final Map.Entry<String, String> entry : patch.entrySet()) {
+            units.add(new SourceFile(getUnitName(entry.getKey(), entry.getValue()), entry.getValue()));
+        }
+        final InMemoryFileManager fileManager = new InMemoryFileManager(this.standardFileManager);
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final Boolean success = this.compiler.getTask(null, fileManager, diagnostics, this.options, null, units)
+                .call();
+        if (success == null || !success) {
+            for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    System.out.println("WARNING: Patch " + key + " does not compile: "
+                            + diagnostic.getMessage(null));
+                }
+            }
+            return null;
+        }
+        final Map<String, byte[]> result = new HashMap<>();
+        for (final ClassFile classFile : fileManager.classFiles) {
+            result.put(classFile.className, classFile.toByteArray());
+        }
+        return result;
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(final String unitName, final String source) {
+            super(URI.create("string:///" + unitName.replace('.', '/') + Kind.SOURCE.extension),
+                    Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+            return this.source;
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+        final String className;
+
+        private final ByteArrayOutputStream bytes;
+
+        ClassFile(final String className) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.className = className;
+            this.bytes = new ByteArrayOutputStream();
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return this.bytes;
+        }
+
+        byte[] toByteArray() {
+            return this.bytes.toByteArray();
+        }
+    }
+
+    private static final class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        final List<ClassFile> classFiles;
+
+        InMemoryFileManager(final StandardJavaFileManager fileManager) {
+            super(fileManager);
+            this.classFiles = new ArrayList<>();
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(final Location location,
+                                                   final String className,
+                                                   final JavaFileObject.Kind kind,
+                                                   final FileObject sibling) throws IOException {
+            if (kind != JavaFileObject.Kind.CLASS) {
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+            final ClassFile classFile = new ClassFile(className);
+            this.classFiles.add(classFile);
+            return classFile;
+        }
+
+        @Override
+        public void close() {
+            // the underlying file manager is shared among compilation tasks
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package edu.utdallas.objsim.source;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The changes made to a single file by a unified diff, e.g. the output of
+ * <code>diff -u</code> or <code>git diff</code>.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class UnifiedDiff {
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@.*$");
+
+    private final String targetPath;
+
+    private final List<Hunk> hunks;
+
+    private UnifiedDiff(final String targetPath) {
+        this.targetPath = targetPath;
+        this.hunks = new ArrayList<>();
+    }
+
+    /**
+     * @return Path of the patched file, as appears in the diff, without
+     *         <code>a/</code> or <code>b/</code> prefixes
+     */
+    public String getTargetPath() {
+        return this.targetPath;
+    }
+
+    /**
+     * Parses a diff file.
+     *
+     * @param diffFile The diff file, possibly touching several files
+     * @return One object per patched file
+     * @throws IOException In case of failure to read the file
+     */
+    public static List<UnifiedDiff> parse(final File diffFile) throws IOException {
+        return parse(FileUtils.readLines(diffFile, Charset.defaultCharset()));
+    }
+
+    public static List<UnifiedDiff> parse(final List<String> lines) {
+        final List<UnifiedDiff> diffs = new ArrayList<>();
+        UnifiedDiff current = null;
+        Hunk hunk = null;
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i);
+            if (line.startsWith("--- ") && i + 1 < lines.size() && lines.get(i + 1).startsWith("+++ ")) {
+                final String path = stripPath(lines.get(i + 1).substring(4));
+                if (path.equals("/dev/null")) {
+                    throw new IllegalArgumentException("deleting files is not supported");
+                }
+                current = new UnifiedDiff(path);
+                diffs.add(current);
+                hunk = null;
+                i++;
+                continue;
+            }
+            final Matcher matcher = HUNK_HEADER.matcher(line);
+            if (matcher.matches()) {
+                if (current == null) {
+                    throw new IllegalArgumentException("hunk without file header at line " + (i + 1));
+                }
+                hunk = new Hunk(Integer.parseInt(matcher.group(1)));
+                current.hunks.add(hunk);
+                continue;
+            }
+            if (hunk == null) {
+                continue; // e.g. "diff --git" or "index" lines
+            }
+            if (line.startsWith(" ") || line.isEmpty()) {
+                final String text = line.isEmpty() ? "" : line.substring(1);
+                hunk.newLineOrigins.add(hunk.oldLines.size());
+                hunk.oldLines.add(text);
+                hunk.newLines.add(text);
+            } else if (line.startsWith("-")) {
+                hunk.oldLines.add(line.substring(1));
+            } else if (line.startsWith("+")) {
+                hunk.newLineOrigins.add(-1);
+                hunk.newLines.add(line.substring(1));
+            } else if (!line.startsWith("\\")) { // "\ No newline at end of file"
+                hunk = null;
+            }
+        }
+        return diffs;
+    }
+
+    /**
+     * Applies the changes to the original contents of the file.
+     * Hunks are looked up near the positions given in the diff, so that a diff made
+     * against a slightly different version of the file can still be applied. Lines
+     * are compared regardless of leading and trailing white spaces, and context lines
+     * are left as they are in the original contents.
+     *
+     * @param original Original contents
+     * @return Patched contents
+     */
+    public String apply(final String original) {
+        final List<String> lines = new ArrayList<>(Arrays.asList(original.split("\r?\n", -1)));
+        final boolean trailingNewLine = !lines.isEmpty() && lines.get(lines.size() - 1).isEmpty();
+        if (trailingNewLine) {
+            lines.remove(lines.size() - 1);
+        }
+        int offset = 0;
+        for (final Hunk hunk : this.hunks) {
+            final int expected = Math.max(0, hunk.oldStart - 1 + offset);
+            final int position = find(lines, hunk.oldLines, expected);
+            if (position < 0) {
+                throw new IllegalArgumentException("hunk at line " + hunk.oldStart + " does not apply to "
+                        + this.targetPath);
+            }
+            final List<String> replacement = new ArrayList<>(hunk.newLines.size());
+            for (int i = 0; i < hunk.newLines.size(); i++) {
+                final int origin = hunk.newLineOrigins.get(i);
+                replacement.add(origin < 0 ? hunk.newLines.get(i) : lines.get(position + origin));
+            }
+            lines.subList(position, position + hunk.oldLines.size()).clear();
+            lines.addAll(position, replacement);
+            offset = position - (hunk.oldStart - 1) + hunk.newLines.size() - hunk.oldLines.size();
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            sb.append(lines.get(i));
+            if (i < lines.size() - 1 || trailingNewLine) {
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    // returns the position of the block closest to expected position, or -1 if not found
+    private static int find(final List<String> lines, final List<String> block, final int expected) {
+        final int last = lines.size() - block.size();
+        for (int distance = 0; distance <= Math.max(expected, last - expected); distance++) {
+            if (matches(lines, block, expected - distance)) {
+                return expected - distance;
+            }
+            if (matches(lines, block, expected + distance)) {
+                return expected + distance;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(final List<String> lines, final List<String> block, final int position) {
+        if (position < 0 || position + block.size() > lines.size()) {
+            return false;
+        }
+        for (int i = 0; i < block.size(); i++) {
+            if (!lines.get(position + i).trim().equals(block.get(i).trim())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripPath(String path) {
+        final int indexOfTab = path.indexOf('\t');
+        if (indexOfTab >= 0) {
+            path = path.substring(0, indexOfTab); // time stamp
+        }
+        path = path.trim();
+        if (path.startsWith("a/") || path.startsWith("b/")) {
+            path = path.substring(2);
+        }
+        return path;
+    }
+
+    // a contiguous block of changes
+    private static final class Hunk {
+        final int oldStart;
+
+        final List<String> oldLines;
+
+        final List<String> newLines;
+
+        final List<Integer> newLineOrigins; // index of the line among old lines for context lines; -1 for added lines
+
+        Hunk(final int oldStart) {
+            this.oldStart = oldStart;
+            this.oldLines = new ArrayList<>();
+            this.newLines = new ArrayList<>();
+            this.newLineOrigins = new ArrayList<>();
+        }
+    }
+}
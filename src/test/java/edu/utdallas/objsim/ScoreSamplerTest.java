@@ -0,0 +1,254 @@
+package edu.utdallas.objsim;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class ScoreSamplerTest {
+    private static final double EPSILON = 1e-6;
+
+    @Test
+    public void testBatchesAreProportionalToStrata() {
+        final List<String> testNames = new ArrayList<>();
+        testNames.addAll(tests("a.ATest", 6));
+        testNames.addAll(tests("b.BTest", 3));
+        testNames.addAll(tests("c.CTest", 1));
+        final ScoreSampler sampler = new ScoreSampler(testNames, 4, 0L);
+        final Set<String> sampled = new HashSet<>();
+        final int[] batchSizes = {4, 4, 2};
+        for (final int batchSize : batchSizes) {
+            assertTrue(sampler.hasNext());
+            final List<String> batch = sampler.nextBatch();
+            assertEquals(batchSize, batch.size());
+            for (final String testName : batch) {
+                assertTrue(sampled.add(testName)); // batches are disjoint
+            }
+            // each test class is sampled within one test case of its share
+            final double fraction = (double) sampled.size() / testNames.size();
+            assertEquals(6 * fraction, count(sampled, "a.ATest"), 1D);
+            assertEquals(3 * fraction, count(sampled, "b.BTest"), 1D);
+            assertEquals(fraction, count(sampled, "c.CTest"), 1D);
+        }
+        assertFalse(sampler.hasNext());
+        assertEquals(new HashSet<>(testNames), sampled);
+    }
+
+    @Test
+    public void testSamplesAreReproducible() {
+        final List<String> testNames = tests("a.ATest", 10);
+        final List<String> reversed = new ArrayList<>(testNames);
+        Collections.reverse(reversed);
+        final ScoreSampler s1 = new ScoreSampler(testNames, 3, 7L);
+        final ScoreSampler s2 = new ScoreSampler(reversed, 3, 7L);
+        while (s1.hasNext()) {
+            assertEquals(s1.nextBatch(), s2.nextBatch());
+        }
+    }
+
+    @Test
+    public void testEstimate() {
+        final ScoreSampler sampler = new ScoreSampler(tests("a.ATest", 4), 4, 0L);
+        assertEquals(0D, sampler.getEstimate(), 0D);
+        final List<String> batch = sampler.nextBatch();
+        // the ratio of sums, rather than the average of per-test averages
+        sampler.addDistances(distances(batch, new double[] {1D, 3D}, new double[] {2D}, new double[0], new double[0]));
+        assertEquals(2D, sampler.getEstimate(), 0D);
+        assertTrue(sampler.isSettled());
+        assertEquals(0D, sampler.getStandardError(), 0D);
+    }
+
+    @Test
+    public void testIncomparableExecutions() {
+        final ScoreSampler sampler = new ScoreSampler(tests("a.ATest", 4), 2, 0L);
+        sampler.addDistances(distances(sampler.nextBatch(), new double[] {1D}, null));
+        assertTrue(sampler.hasNext());
+        assertEquals(Double.POSITIVE_INFINITY, sampler.getEstimate(), 0D);
+        assertTrue(sampler.isSettled());
+    }
+
+    @Test
+    public void testStandardError() {
+        final ScoreSampler sampler = new ScoreSampler(tests("a.ATest", 4), 1, 0L);
+        sampler.addDistances(distances(sampler.nextBatch(), new double[] {1D}));
+        assertEquals(Double.POSITIVE_INFINITY, sampler.getStandardError(), 0D); // a single test case
+        sampler.addDistances(distances(sampler.nextBatch(), new double[] {3D}));
+        // residuals are -1 and 1, i.e. variance 2, with finite population correction 1 - 2 / 4
+        assertEquals(2D, sampler.getEstimate(), 0D);
+        assertEquals(Math.sqrt(0.5D * 2D / 2D), sampler.getStandardError(), EPSILON);
+    }
+
+    @Test
+    public void testStandardErrorOfStrata() {
+        final List<String> testNames = new ArrayList<>();
+        testNames.addAll(tests("a.ATest", 4));
+        testNames.addAll(tests("b.BTest", 4));
+        final ScoreSampler sampler = new ScoreSampler(testNames, 4, 0L);
+        final Map<String, double[]> distances = new HashMap<>();
+        for (final String testName : sampler.nextBatch()) {
+            // distances vary within test class a, and are constant within test class b
+            final boolean a = testName.startsWith("a.");
+            distances.put(testName, new double[] {a ? (count(distances.keySet(), "a.ATest") == 0 ? 0D : 4D) : 2D});
+        }
+        sampler.addDistances(distances);
+        assertEquals(2D, sampler.getEstimate(), 0D);
+        // only test class a contributes: weight 1/2, residuals -2 and 2, i.e. variance 8, and fpc 1/2
+        assertEquals(Math.sqrt(0.25D * 0.5D * 8D / 2D), sampler.getStandardError(), EPSILON);
+    }
+
+    @Test
+    public void testSeparationConfidence() {
+        final ScoreSampler infinite1 = settledSampler(Double.POSITIVE_INFINITY);
+        final ScoreSampler infinite2 = settledSampler(Double.POSITIVE_INFINITY);
+        final ScoreSampler zero = settledSampler(0D);
+        final ScoreSampler one = settledSampler(1D);
+        assertEquals(0D, ScoreSampler.separationConfidence(infinite1, infinite2), 0D);
+        assertEquals(1D, ScoreSampler.separationConfidence(infinite1, one), 0D);
+        assertEquals(1D, ScoreSampler.separationConfidence(zero, one), 0D);
+        assertEquals(0D, ScoreSampler.separationConfidence(one, settledSampler(1D)), 0D);
+        // estimates 2 and 2 + d, each with standard error sqrt(0.5), are 1.96 standard errors apart
+        final double d = 1.96D * 2D * Math.sqrt(0.5D);
+        final ScoreSampler s1 = new ScoreSampler(tests("a.ATest", 4), 2, 0L);
+        s1.addDistances(distances(s1.nextBatch(), new double[] {1D}, new double[] {3D}));
+        final ScoreSampler s2 = new ScoreSampler(tests("a.ATest", 4), 2, 0L);
+        s2.addDistances(distances(s2.nextBatch(), new double[] {1D + d}, new double[] {3D + d}));
+        assertEquals(0.95D, ScoreSampler.separationConfidence(s1, s2), 1e-4);
+        assertEquals(ScoreSampler.separationConfidence(s1, s2), ScoreSampler.separationConfidence(s2, s1), 0D);
+        assertEquals(0D, ScoreSampler.separationConfidence(s1, s1), 0D);
+    }
+
+    @Test
+    public void testSamplingStopsOnceEstimatesAreApart() throws Exception {
+        final List<ScoreSampler> samplers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            samplers.add(new ScoreSampler(tests("a.ATest", 20), 5, i));
+        }
+        final int[] batches = new int[3];
+        final double[] confidences = new SamplingScorer(samplers, 0.95D).sample(new SamplingScorer.BatchRunner() {
+            @Override
+            public Map<String, double[]> run(final int patchIndex, final Set<String> testNames) {
+                batches[patchIndex]++;
+                final Map<String, double[]> distances = new HashMap<>();
+                for (final String testName : testNames) {
+                    // patch 0 is far from the others, and patch 2 is noisy around patch 1
+                    final int testNumber = Integer.parseInt(testName.substring(testName.lastIndexOf('t') + 1));
+                    final double noise = patchIndex == 2 ? (testNumber % 2 == 0 ? -50D : 50D) : 0D;
+                    distances.put(testName, new double[] {patchIndex == 0 ? 0D : 1000D + noise});
+                }
+                return distances;
+            }
+        });
+        assertEquals(1, batches[0]);
+        assertEquals(1D, confidences[0], 0D);
+        assertEquals(0, SamplingScorer.rank(samplers).get(0).intValue());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(confidences[i] >= 0.95D || samplers.get(i).isSettled());
+        }
+    }
+
+    @Test
+    public void testSamplingOfTiedPatchesEndsOnceAllTestsAreRun() throws Exception {
+        final List<ScoreSampler> samplers = Arrays.asList(new ScoreSampler(tests("a.ATest", 10), 3, 0L),
+                new ScoreSampler(tests("a.ATest", 10), 3, 1L));
+        final double[] confidences = new SamplingScorer(samplers, 0.95D).sample(new SamplingScorer.BatchRunner() {
+            @Override
+            public Map<String, double[]> run(final int patchIndex, final Set<String> testNames) {
+                final Map<String, double[]> distances = new HashMap<>();
+                for (final String testName : testNames) {
+                    distances.put(testName, new double[] {1D});
+                }
+                return distances;
+            }
+        });
+        assertFalse(samplers.get(0).hasNext());
+        assertFalse(samplers.get(1).hasNext());
+        assertEquals(0D, confidences[0], 0D);
+        assertEquals(0D, confidences[1], 0D);
+    }
+
+    @Test
+    public void testTiedInfiniteEstimates() throws Exception {
+        final List<ScoreSampler> samplers = Arrays.asList(new ScoreSampler(tests("a.ATest", 10), 2, 0L),
+                new ScoreSampler(tests("a.ATest", 10), 2, 1L));
+        final double[] confidences = new SamplingScorer(samplers, 0.95D).sample(new SamplingScorer.BatchRunner() {
+            @Override
+            public Map<String, double[]> run(final int patchIndex, final Set<String> testNames) {
+                final Map<String, double[]> distances = new HashMap<>();
+                for (final String testName : testNames) {
+                    distances.put(testName, null);
+                }
+                return distances;
+            }
+        });
+        assertEquals(0D, confidences[0], 0D);
+        assertEquals(0D, confidences[1], 0D);
+        assertTrue(samplers.get(0).hasNext()); // an infinite estimate is settled after a single batch
+    }
+
+    // a fully sampled single test case with the given distance
+    private static ScoreSampler settledSampler(final double distance) {
+        final ScoreSampler sampler = new ScoreSampler(Collections.singletonList("a.ATest.test"), 1, 0L);
+        sampler.addDistances(distances(sampler.nextBatch(), new double[] {distance}));
+        assertTrue(sampler.isSettled());
+        return sampler;
+    }
+
+    private static List<String> tests(final String testClassName, final int count) {
+        final List<String> testNames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            testNames.add(testClassName + ".test" + i);
+        }
+        return testNames;
+    }
+
+    private static int count(final Set<String> testNames, final String testClassName) {
+        int count = 0;
+        for (final String testName : testNames) {
+            if (testName.startsWith(testClassName + ".")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Map<String, double[]> distances(final List<String> batch, final double[]... distances) {
+        final Map<String, double[]> result = new HashMap<>();
+        for (int i = 0; i < distances.length; i++) {
+            result.put(batch.get(i), distances[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,201 @@
+package edu.utdallas.objsim.commons.collections;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class CompressedBitmapTest {
+    private static final int CHUNK = 1 << 16;
+
+    @Test
+    public void testEmpty() {
+        final CompressedBitmap bitmap = new CompressedBitmap();
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.cardinality());
+        assertEquals(-1, bitmap.nextElement(0));
+        assertFalse(bitmap.contains(0));
+        assertArrayEquals(new int[0], bitmap.toArray());
+    }
+
+    @Test
+    public void testAddAndContains() {
+        final CompressedBitmap bitmap = CompressedBitmap.of(5, 3, CHUNK + 1, 3);
+        assertEquals(3, bitmap.cardinality());
+        assertTrue(bitmap.contains(3));
+        assertTrue(bitmap.contains(CHUNK + 1));
+        assertFalse(bitmap.contains(4));
+        assertFalse(bitmap.contains(-1));
+        assertFalse(bitmap.add(5));
+        assertTrue(bitmap.add(4));
+        assertArrayEquals(new int[] {3, 4, 5, CHUNK + 1}, bitmap.toArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeElement() {
+        new CompressedBitmap().add(-1);
+    }
+
+    @Test
+    public void testConversionToBitmapContainer() {
+        final CompressedBitmap bitmap = new CompressedBitmap();
+        final TreeSet<Integer> expected = new TreeSet<>();
+        // even numbers in descending order, so that the slow path of add is taken
+        for (int element = 2 * 4096; element >= 2; element -= 2) {
+            assertTrue(bitmap.add(element));
+            expected.add(element);
+        }
+        assertEquals(4096, bitmap.cardinality());
+        assertTrue(bitmap.add(1)); // the 4097th element converts the container
+        expected.add(1);
+        assertFalse(bitmap.add(2));
+        assertEquals(4097, bitmap.cardinality());
+        assertTrue(bitmap.contains(1));
+        assertFalse(bitmap.contains(3));
+        assertArrayEquals(toArray(expected), bitmap.toArray());
+    }
+
+    @Test
+    public void testNextElementAcrossChunks() {
+        final CompressedBitmap bitmap = new CompressedBitmap();
+        for (int element = 0; element < 5000; element++) {
+            bitmap.add(3 * CHUNK + element); // bitmap container
+        }
+        bitmap.add(10); // array container
+        bitmap.add(CHUNK - 1);
+        assertEquals(10, bitmap.nextElement(0));
+        assertEquals(CHUNK - 1, bitmap.nextElement(11));
+        // no chunk for keys 1 and 2
+        assertEquals(3 * CHUNK, bitmap.nextElement(CHUNK));
+        assertEquals(3 * CHUNK, bitmap.nextElement(2 * CHUNK + 7));
+        assertEquals(3 * CHUNK + 4999, bitmap.nextElement(3 * CHUNK + 4999));
+        assertEquals(-1, bitmap.nextElement(3 * CHUNK + 5000));
+        assertEquals(-1, bitmap.nextElement(Integer.MAX_VALUE));
+        assertEquals(10, bitmap.nextElement(-5));
+    }
+
+    @Test
+    public void testOr() {
+        final Random random = new Random(0L);
+        final CompressedBitmap sparse = new CompressedBitmap();
+        final CompressedBitmap dense = new CompressedBitmap();
+        final CompressedBitmap other = new CompressedBitmap();
+        final TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 3000; i++) {
+            final int element = random.nextInt(3 * CHUNK);
+            sparse.add(element);
+            expected.add(element);
+        }
+        for (int element = 0; element < CHUNK; element += 3) {
+            dense.add(element);
+            other.add(element);
+            expected.add(element);
+        }
+        for (int element = 1; element < CHUNK; element += 5) {
+            other.add(element);
+            expected.add(element);
+        }
+        // dense into dense, sparse into dense and dense into sparse
+        dense.or(other);
+        dense.or(sparse);
+        sparse.or(dense);
+        assertArrayEquals(toArray(expected), dense.toArray());
+        assertArrayEquals(toArray(expected), sparse.toArray());
+        assertEquals(expected.size(), dense.cardinality());
+        assertEquals(expected.size(), sparse.cardinality());
+        assertEquals(dense, sparse);
+        assertEquals(dense.hashCode(), sparse.hashCode());
+    }
+
+    @Test
+    public void testRandomAgainstTreeSet() {
+        final Random random = new Random(42L);
+        final CompressedBitmap bitmap = new CompressedBitmap();
+        final TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 20000; i++) {
+            // dense region, sparse region and a few far-away elements
+            final int element = i % 100 == 0 ? random.nextInt(Integer.MAX_VALUE)
+                    : i % 2 == 0 ? random.nextInt(8000) : CHUNK + random.nextInt(10 * CHUNK);
+            assertEquals(expected.add(element), bitmap.add(element));
+        }
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertArrayEquals(toArray(expected), bitmap.toArray());
+        for (int i = 0; i < 1000; i++) {
+            final int probe = random.nextInt(12 * CHUNK);
+            assertEquals(expected.contains(probe), bitmap.contains(probe));
+            final Integer next = expected.ceiling(probe);
+            assertEquals(next == null ? -1 : next, bitmap.nextElement(probe));
+        }
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        final CompressedBitmap bitmap = new CompressedBitmap();
+        for (int element = 0; element < 10000; element++) {
+            bitmap.add(element); // bitmap container
+        }
+        bitmap.add(2 * CHUNK + 3); // array container
+        bitmap.add(Integer.MAX_VALUE);
+        final CompressedBitmap copy = serializeAndDeserialize(bitmap);
+        assertEquals(bitmap, copy);
+        assertEquals(bitmap.cardinality(), copy.cardinality());
+        // the copy is still growable
+        assertTrue(copy.add(2 * CHUNK + 4));
+        assertTrue(copy.add(CHUNK));
+        assertEquals(bitmap.cardinality() + 2, copy.cardinality());
+        assertEquals(new CompressedBitmap(), serializeAndDeserialize(new CompressedBitmap()));
+    }
+
+    private static CompressedBitmap serializeAndDeserialize(final CompressedBitmap bitmap)
+            throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (final ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(bitmap);
+        }
+        try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            return (CompressedBitmap) ois.readObject();
+        }
+    }
+
+    private static int[] toArray(final TreeSet<Integer> set) {
+        final int[] array = new int[set.size()];
+        int i = 0;
+        for (final int element : set) {
+            array[i++] = element;
+        }
+        return array;
+    }
+}
@@ -0,0 +1,158 @@
+package edu.utdallas.objsim.profiler.prelude;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.objsim.commons.collections.CompressedBitmap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class PreludeWireFormatTest {
+    @Test
+    public void testMethodCoverage() {
+        final Map<String, CompressedBitmap> methodCoverageMap = new HashMap<>();
+        final CompressedBitmap dense = new CompressedBitmap(); // encoded as a bitset
+        for (int methodIndex = 0; methodIndex < 100; methodIndex++) {
+            dense.add(methodIndex);
+        }
+        methodCoverageMap.put("a.Test.dense", dense);
+        methodCoverageMap.put("a.Test.sparse", CompressedBitmap.of(5, 300, 100000)); // encoded as deltas
+        methodCoverageMap.put("a.Test.none", new CompressedBitmap());
+        methodCoverageMap.put("b.Test.failing", CompressedBitmap.of(5, 7));
+        final byte[] bytes = PreludeWireFormat.encodeMethodCoverage(methodCoverageMap,
+                Collections.singleton("b.Test.failing"));
+        final Map<String, CompressedBitmap> decoded = new HashMap<>();
+        final CoverageIndex coverageIndex = PreludeWireFormat.decodeMethodCoverage(bytes, decoded);
+        assertEquals(methodCoverageMap, decoded);
+        assertEquals(Arrays.asList("a.Test.dense", "a.Test.sparse"),
+                coverageIndex.getTestNames(coverageIndex.getPassingTests(5)));
+        assertEquals(Collections.singletonList("b.Test.failing"),
+                coverageIndex.getTestNames(coverageIndex.getFailingTests(5)));
+        assertEquals(Collections.singletonList("a.Test.sparse"),
+                coverageIndex.getTestNames(coverageIndex.getPassingTests(100000)));
+        assertEquals(Collections.singletonList("a.Test.dense"),
+                coverageIndex.getTestNames(coverageIndex.getPassingTests(7)));
+        assertTrue(coverageIndex.getPassingTests(150).isEmpty());
+        assertTrue(coverageIndex.getFailingTests(100000).isEmpty());
+    }
+
+    @Test
+    public void testEmptyMethodCoverage() {
+        final Map<String, CompressedBitmap> decoded = new HashMap<>();
+        final byte[] bytes = PreludeWireFormat.encodeMethodCoverage(new HashMap<String, CompressedBitmap>(),
+                Collections.<String>emptySet());
+        PreludeWireFormat.decodeMethodCoverage(bytes, decoded);
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    public void testFieldAccesses() {
+        final Map<Integer, int[]> accessedFieldsMap = new HashMap<>();
+        accessedFieldsMap.put(0, new int[0]);
+        accessedFieldsMap.put(1, new int[] {0, 127, 128, 16383, 16384});
+        accessedFieldsMap.put(Integer.MAX_VALUE, new int[] {1 << 28, Integer.MAX_VALUE});
+        assertFieldAccessesEqual(accessedFieldsMap,
+                PreludeWireFormat.decodeFieldAccesses(PreludeWireFormat.encodeFieldAccesses(accessedFieldsMap)));
+    }
+
+    @Test
+    public void testTestFieldAccesses() {
+        final Map<String, Map<Integer, int[]>> testFieldAccesses = new HashMap<>();
+        testFieldAccesses.put("a.Test.t\u00e9st", Collections.singletonMap(3, new int[] {1, 2}));
+        testFieldAccesses.put("a.Test.other", Collections.<Integer, int[]>emptyMap());
+        final Map<String, Map<Integer, int[]>> decoded =
+                PreludeWireFormat.decodeTestFieldAccesses(PreludeWireFormat.encodeTestFieldAccesses(testFieldAccesses));
+        assertEquals(testFieldAccesses.keySet(), decoded.keySet());
+        for (final String testName : testFieldAccesses.keySet()) {
+            assertFieldAccessesEqual(testFieldAccesses.get(testName), decoded.get(testName));
+        }
+    }
+
+    @Test
+    public void testTestDurations() {
+        final Map<String, Long> testDurations = new HashMap<>();
+        testDurations.put("a.Test.fast", 0L);
+        testDurations.put("a.Test.slow", 123456L);
+        testDurations.put("a.Test.endless", Long.MAX_VALUE);
+        final Map<String, Long> decoded =
+                PreludeWireFormat.decodeTestDurations(PreludeWireFormat.encodeTestDurations(testDurations));
+        assertEquals(3, decoded.size());
+        assertEquals(0L, (long) decoded.get("a.Test.fast"));
+        assertEquals(123456L, (long) decoded.get("a.Test.slow"));
+        assertEquals(Integer.MAX_VALUE, (long) decoded.get("a.Test.endless")); // clamped
+    }
+
+    @Test
+    public void testInvocationCounts() {
+        final Map<String, Map<Integer, Long>> invocationCounts = new HashMap<>();
+        final Map<Integer, Long> counts = new HashMap<>();
+        counts.put(0, 1L);
+        counts.put(200, 1L << 40);
+        counts.put(7, Long.MAX_VALUE);
+        invocationCounts.put("a.Test.t", counts);
+        invocationCounts.put("a.Test.none", new HashMap<Integer, Long>());
+        assertEquals(invocationCounts,
+                PreludeWireFormat.decodeInvocationCounts(PreludeWireFormat.encodeInvocationCounts(invocationCounts)));
+    }
+
+    @Test
+    public void testBlockCoverage() {
+        final Map<String, CompressedBitmap> blockCoverageMap = new HashMap<>();
+        blockCoverageMap.put("a.Test.t1", CompressedBitmap.of(0, 2));
+        blockCoverageMap.put("a.Test.t0", CompressedBitmap.of(2));
+        final BlockCoverage blockCoverage = new BlockCoverage(new int[] {4, 4, 9},
+                new int[] {0, 10, 0},
+                new int[] {10, 300, 2},
+                blockCoverageMap);
+        final BlockCoverage decoded =
+                PreludeWireFormat.decodeBlockCoverage(PreludeWireFormat.encodeBlockCoverage(blockCoverage));
+        assertEquals(3, decoded.getBlocksCount());
+        for (int blockId = 0; blockId < 3; blockId++) {
+            assertEquals(blockCoverage.getMethodIndex(blockId), decoded.getMethodIndex(blockId));
+            assertEquals(blockCoverage.getStart(blockId), decoded.getStart(blockId));
+            assertEquals(blockCoverage.getEnd(blockId), decoded.getEnd(blockId));
+            assertEquals(blockCoverage.getTests(blockId), decoded.getTests(blockId));
+        }
+        assertArrayEquals(new String[] {"a.Test.t0", "a.Test.t1"}, decoded.getTestNames());
+        assertEquals(Collections.singletonList("a.Test.t1"), decoded.getTestsReaching(4, 0, 5));
+        assertEquals(Arrays.asList("a.Test.t0", "a.Test.t1"), decoded.getTestsReaching(9, 0, 1));
+        assertTrue(decoded.getTestsReaching(4, 12, 13).isEmpty());
+        assertEquals(0, PreludeWireFormat.decodeBlockCoverage(
+                PreludeWireFormat.encodeBlockCoverage(BlockCoverage.empty())).getBlocksCount());
+    }
+
+    private static void assertFieldAccessesEqual(final Map<Integer, int[]> expected, final Map<Integer, int[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (final Map.Entry<Integer, int[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+}
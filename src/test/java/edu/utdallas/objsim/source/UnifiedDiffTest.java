@@ -0,0 +1,183 @@
+package edu.utdallas.objsim.source;
+
+/*
+ * #%L
+ * objsim
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class UnifiedDiffTest {
+    private static final String ORIGINAL = lines("a", "b", "c", "d", "e", "f", "g", "h", "i", "j");
+
+    @Test
+    public void testParseHeaders() {
+        final List<UnifiedDiff> diffs = UnifiedDiff.parse(Arrays.asList(
+                "diff --git a/src/A.java b/src/A.java",
+                "index 1234567..89abcde 100644",
+                "--- a/src/A.java",
+                "+++ b/src/A.java",
+                "@@ -1,1 +1,1 @@",
+                "-a",
+                "+x",
+                "--- src/B.java\t2020-01-01 00:00:00.000000000 +0000",
+                "+++ src/B.java\t2020-01-02 00:00:00.000000000 +0000",
+                "@@ -1 +1 @@",
+                "-a",
+                "+y"));
+        assertEquals(2, diffs.size());
+        assertEquals("src/A.java", diffs.get(0).getTargetPath());
+        assertEquals("src/B.java", diffs.get(1).getTargetPath());
+        assertEquals(lines("x", "b"), diffs.get(0).apply(lines("a", "b")));
+        assertEquals(lines("y", "b"), diffs.get(1).apply(lines("a", "b")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeletedFile() {
+        UnifiedDiff.parse(Arrays.asList("--- a/A.java", "+++ /dev/null", "@@ -1 +0,0 @@", "-a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHunkWithoutFileHeader() {
+        UnifiedDiff.parse(Arrays.asList("@@ -1 +1 @@", "-a", "+b"));
+    }
+
+    @Test
+    public void testSingleHunk() {
+        final UnifiedDiff diff = diff("@@ -3,3 +3,4 @@",
+                " c",
+                "-d",
+                "+D",
+                "+D2",
+                " e");
+        assertEquals(lines("a", "b", "c", "D", "D2", "e", "f", "g", "h", "i", "j"), diff.apply(ORIGINAL));
+    }
+
+    @Test
+    public void testHunkOffsets() {
+        // the first hunk adds two lines, shifting the second one
+        final UnifiedDiff diff = diff("@@ -2,2 +2,4 @@",
+                " b",
+                "+b1",
+                "+b2",
+                " c",
+                "@@ -8,3 +10,2 @@",
+                " h",
+                "-i",
+                " j");
+        assertEquals(lines("a", "b", "b1", "b2", "c", "d", "e", "f", "g", "h", "j"), diff.apply(ORIGINAL));
+    }
+
+    @Test
+    public void testFuzzyPosition() {
+        // the diff was made against a version of the file without the first two lines
+        final UnifiedDiff diff = diff("@@ -1,2 +1,2 @@",
+                " c",
+                "-d",
+                "+D",
+                "@@ -6,2 +6,1 @@",
+                "-h",
+                " i");
+        assertEquals(lines("a", "b", "c", "D", "e", "f", "g", "i", "j"), diff.apply(ORIGINAL));
+        // ... or against a version with two more lines at the beginning
+        final UnifiedDiff shifted = diff("@@ -8,2 +8,2 @@",
+                "-f",
+                "+F",
+                " g");
+        assertEquals(lines("a", "b", "c", "d", "e", "F", "g", "h", "i", "j"), shifted.apply(ORIGINAL));
+    }
+
+    @Test
+    public void testClosestMatchIsPreferred() {
+        final String original = lines("x", "y", "x", "y", "x", "y");
+        final UnifiedDiff diff = diff("@@ -3,2 +3,2 @@",
+                "-x",
+                "+z",
+                " y");
+        assertEquals(lines("x", "y", "z", "y", "x", "y"), diff.apply(original));
+    }
+
+    @Test
+    public void testWhitespaceIsIgnoredWhenMatching() {
+        final UnifiedDiff diff = diff("@@ -1,2 +1,2 @@",
+                " int x = 0;",
+                "-return x;",
+                "+return x + 1;");
+        assertEquals(lines("    int x = 0;", "return x + 1;"), diff.apply(lines("    int x = 0;", "\treturn x;  ")));
+    }
+
+    @Test
+    public void testEmptyContextLine() {
+        // some tools strip the space of empty context lines
+        final UnifiedDiff diff = diff("@@ -1,3 +1,3 @@",
+                " a",
+                "",
+                "-b");
+        assertEquals(lines("a", ""), diff.apply(lines("a", "", "b")));
+    }
+
+    @Test
+    public void testInsertionIntoEmptyFile() {
+        final UnifiedDiff diff = diff("@@ -0,0 +1,2 @@",
+                "+a",
+                "+b");
+        assertEquals(lines("a", "b"), diff.apply(""));
+    }
+
+    @Test
+    public void testTrailingNewLineAndLineSeparators() {
+        final UnifiedDiff diff = diff("@@ -1,2 +1,2 @@",
+                "-a",
+                "+A",
+                " b",
+                "\\ No newline at end of file");
+        assertEquals("A\nb", diff.apply("a\nb"));
+        assertEquals("A\nb\n", diff.apply("a\r\nb\r\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonApplicableHunk() {
+        diff("@@ -3,2 +3,2 @@", "-z", "+Z", " d").apply(ORIGINAL);
+    }
+
+    private static UnifiedDiff diff(final String... hunks) {
+        final String[] lines = new String[hunks.length + 2];
+        lines[0] = "--- a/A.java";
+        lines[1] = "+++ b/A.java";
+        System.arraycopy(hunks, 0, lines, 2, hunks.length);
+        final List<UnifiedDiff> diffs = UnifiedDiff.parse(Arrays.asList(lines));
+        assertEquals(1, diffs.size());
+        return diffs.get(0);
+    }
+
+    private static String lines(final String... lines) {
+        final StringBuilder sb = new StringBuilder();
+        for (final String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+}